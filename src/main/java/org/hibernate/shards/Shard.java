@@ -20,6 +20,7 @@ package org.hibernate.shards;
 
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.ScrollableResults;
 import org.hibernate.classic.Session;
 import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.shards.criteria.CriteriaEvent;
@@ -30,6 +31,7 @@ import org.hibernate.shards.query.QueryId;
 import org.hibernate.shards.query.ShardedQuery;
 import org.hibernate.shards.session.OpenSessionEvent;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -68,6 +70,38 @@ public interface Shard {
      */
     Session establishSession();
 
+    /**
+     * @return the Session opened against a read replica of this Shard.  Will
+     *         return null if the read Session has not yet been established.
+     */
+  /* @Nullable */ Session getReadSession();
+
+    /**
+     * @param event the event to apply to the read Session of this Shard.  The
+     *              event fires right away if the read Session is already open.
+     */
+    void addReadSessionEvent(OpenSessionEvent event);
+
+    /**
+     * @return establish a Session against a read replica of this Shard and
+     *         apply any read session events that have been added.  If the Shard
+     *         has no replicas, or a transaction is active, this is the same as
+     *         {@link #establishSession()}.
+     */
+    Session establishReadSession();
+
+    /**
+     * @param active whether a transaction spanning the shards is active.  While
+     *               it is, reads that a replica could serve go to the primary
+     *               Session instead, so they see the writes of the transaction.
+     */
+    void setTransactionActive(boolean active);
+
+    /**
+     * @return true if a transaction spanning the shards is active
+     */
+    boolean isTransactionActive();
+
     /**
      * @param id the id of the Criteria
      * @return the Critieria uniquely identified by the given id (unique to the Shard)
@@ -97,6 +131,12 @@ public interface Shard {
      */
     Object uniqueResult(CriteriaId criteriaId);
 
+    /**
+     * @return a forward-only cursor over the results of the criteria on this shard
+     * @see Criteria#scroll(org.hibernate.ScrollMode)
+     */
+    ScrollableResults scroll(CriteriaId criteriaId);
+
     /**
      * @return the ids of the virtual shards that are mapped to this physical shard.
      *         The returned Set is unmodifiable.
@@ -136,4 +176,15 @@ public interface Shard {
      * @see Query#uniqueResult()
      */
     Object uniqueResult(QueryId queryId);
+
+    /**
+     * @return a forward-only cursor over the results of the query on this shard
+     * @see Query#scroll(org.hibernate.ScrollMode)
+     */
+    ScrollableResults scroll(QueryId queryId);
+
+    /**
+     * @see Query#iterate()
+     */
+    Iterator<?> iterate(QueryId queryId);
 }
@@ -21,22 +21,29 @@ package org.hibernate.shards;
 import org.hibernate.Criteria;
 import org.hibernate.Interceptor;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.classic.Session;
 import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.impl.AbstractQueryImpl;
+import org.hibernate.impl.CriteriaImpl;
 import org.hibernate.shards.criteria.CriteriaEvent;
 import org.hibernate.shards.criteria.CriteriaId;
 import org.hibernate.shards.criteria.ShardedCriteria;
+import org.hibernate.shards.loadbalance.ReplicaLoadBalancer;
 import org.hibernate.shards.query.QueryEvent;
 import org.hibernate.shards.query.QueryId;
 import org.hibernate.shards.query.ShardedQuery;
 import org.hibernate.shards.query.ShardedSQLQuery;
 import org.hibernate.shards.session.OpenSessionEvent;
+import org.hibernate.shards.strategy.access.ShardAccessDeadline;
 import org.hibernate.shards.util.Lists;
 import org.hibernate.shards.util.Maps;
 import org.hibernate.shards.util.Preconditions;
 import org.hibernate.shards.util.Sets;
 
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +56,9 @@ import java.util.Set;
  */
 public class ShardImpl implements Shard {
 
+    // returned by applyDeadline() when the timeout of a statement was left alone
+    private static final int TIMEOUT_UNCHANGED = -1;
+
     // ids of virtual shards mapped to this physical shard
     private final Set<ShardId> shardIds;
 
@@ -68,6 +78,30 @@ public class ShardImpl implements Shard {
     // events that need to fire when the Session is opened
     private final LinkedList<OpenSessionEvent> openSessionEvents = Lists.newLinkedList();
 
+    // the read replicas of this physical shard, empty if all reads go to the primary
+    private final List<SessionFactoryImplementor> replicaSessionFactories;
+
+    // chooses the replica against which the read Session is opened, null if there are no replicas
+    private final ReplicaLoadBalancer replicaLoadBalancer;
+
+    // the replica the read Session was opened against
+    private SessionFactoryImplementor readSessionFactory;
+
+    // the Session used for reads that can be served by a replica.  Will be null
+    // until someone calls establishReadSession()
+    private Session readSession;
+
+    // events that need to fire when the read Session is opened
+    private final LinkedList<OpenSessionEvent> readSessionEvents = Lists.newLinkedList();
+
+    // ids of the Criteria and Queries that were established on the read Session
+    private final Set<CriteriaId> readCriteriaIds = Sets.newHashSet();
+    private final Set<QueryId> readQueryIds = Sets.newHashSet();
+
+    // true while a transaction spanning the shards is active, in which case all
+    // reads go to the primary
+    private boolean transactionActive;
+
     // maps criteria ids to Criteria objects for quick lookup
     private Map<CriteriaId, Criteria> criteriaMap = Maps.newHashMap();
 
@@ -117,11 +151,35 @@ public class ShardImpl implements Shard {
                      final SessionFactoryImplementor sessionFactory,
                      final /*@Nullable*/ Interceptor interceptor) {
 
+        this(shardIds, sessionFactory, interceptor, Collections.<SessionFactoryImplementor>emptyList(), null);
+    }
+
+    /**
+     * Construct a ShardImpl
+     *
+     * @param shardIds                the logical shardIds that are mapped to this physical shard
+     * @param sessionFactory          the SessionFactory of the primary database of the shard
+     * @param interceptor             the interceptor that we'll pass in when we create
+     *                                Sessions (if and when we create them).  Can be null.
+     * @param replicaSessionFactories the SessionFactories of the read replicas
+     *                                of the shard.  Can be empty.
+     * @param replicaLoadBalancer     chooses the replica that serves reads.
+     *                                Can only be null if there are no replicas.
+     */
+    public ShardImpl(final Set<ShardId> shardIds,
+                     final SessionFactoryImplementor sessionFactory,
+                     final /*@Nullable*/ Interceptor interceptor,
+                     final List<SessionFactoryImplementor> replicaSessionFactories,
+                     final /*@Nullable*/ ReplicaLoadBalancer replicaLoadBalancer) {
+
+        Preconditions.checkArgument(replicaSessionFactories.isEmpty() || replicaLoadBalancer != null);
         // make a copy to be safe
         this.shardIds = Collections.unmodifiableSet(Sets.newHashSet(shardIds));
         this.hashCode = shardIds.hashCode();
         this.sessionFactory = sessionFactory;
         this.interceptor = interceptor;
+        this.replicaSessionFactories = Collections.unmodifiableList(Lists.newArrayList(replicaSessionFactories));
+        this.replicaLoadBalancer = replicaLoadBalancer;
     }
 
     @Override
@@ -163,6 +221,65 @@ public class ShardImpl implements Shard {
         return session;
     }
 
+    @Override
+    public Session getReadSession() {
+        return replicaSessionFactories.isEmpty() ? session : readSession;
+    }
+
+    @Override
+    public void addReadSessionEvent(final OpenSessionEvent event) {
+        Preconditions.checkNotNull(event);
+        if (replicaSessionFactories.isEmpty()) {
+            // reads are served by the primary Session, which gets its own events
+            return;
+        }
+        if (readSession != null) {
+            event.onOpenSession(readSession);
+        } else {
+            readSessionEvents.addLast(event);
+        }
+    }
+
+    @Override
+    public Session establishReadSession() {
+        if (!canReadFromReplica()) {
+            return establishSession();
+        }
+        if (readSession == null) {
+            readSessionFactory = replicaLoadBalancer.getNextReplica(replicaSessionFactories);
+            if (interceptor == null) {
+                readSession = readSessionFactory.openSession();
+            } else {
+                readSession = readSessionFactory.openSession(interceptor);
+            }
+            // nothing read through this Session is ever written back
+            readSession.setDefaultReadOnly(true);
+            for (final OpenSessionEvent event : readSessionEvents) {
+                event.onOpenSession(readSession);
+            }
+            // clear the list so they can't get fired again
+            readSessionEvents.clear();
+        }
+        return readSession;
+    }
+
+    @Override
+    public void setTransactionActive(final boolean active) {
+        transactionActive = active;
+    }
+
+    @Override
+    public boolean isTransactionActive() {
+        return transactionActive;
+    }
+
+    /**
+     * @return true if reads that asked to be read-only are served by a replica
+     */
+    private boolean canReadFromReplica() {
+        return !replicaSessionFactories.isEmpty() && !transactionActive;
+    }
+
     @Override
     public Criteria getCriteriaById(final CriteriaId id) {
         return criteriaMap.get(id);
@@ -180,7 +297,12 @@ public class ShardImpl implements Shard {
         // if the Criteria has already been established we just return it
         if (crit == null) {
             // Criteria does not yet exist so need to create it
-            crit = shardedCriteria.getCriteriaFactory().createCriteria(establishSession());
+            final boolean onReplica = canReadFromReplica() && shardedCriteria.isReadOnlyRequested();
+            crit = shardedCriteria.getCriteriaFactory().createCriteria(
+                    onReplica ? establishReadSession() : establishSession());
+            if (onReplica) {
+                readCriteriaIds.add(critId);
+            }
             // add it to the map right away in case some of our events require it
             criteriaMap.put(critId, crit);
             // see if we have events that we need to apply to the Criteria
@@ -213,10 +335,15 @@ public class ShardImpl implements Shard {
         Query query = queryMap.get(queryId);
         if (query == null) {
             // Criteria does not yet exist so need to create it
+            final boolean onReplica = canReadFromReplica() && shardedQuery.isReadOnlyRequested();
+            final Session querySession = onReplica ? establishReadSession() : establishSession();
             if (shardedQuery instanceof ShardedSQLQuery) {
-                query = shardedQuery.getQueryFactory().createSQLQuery(establishSession());
+                query = shardedQuery.getQueryFactory().createSQLQuery(querySession);
             } else {
-                query = shardedQuery.getQueryFactory().createQuery(establishSession());
+                query = shardedQuery.getQueryFactory().createQuery(querySession);
+            }
+            if (onReplica) {
+                readQueryIds.add(queryId);
             }
             // add it to the map right away in case some of our events require it
             queryMap.put(queryId, query);
@@ -263,28 +390,107 @@ public class ShardImpl implements Shard {
 
     @SuppressWarnings("unchecked")
     public List<Object> list(final CriteriaId criteriaId) {
-        return criteriaMap.get(criteriaId).list();
+        final long start = System.nanoTime();
+        final Criteria crit = criteriaMap.get(criteriaId);
+        final int timeout = applyDeadline(crit);
+        final List<Object> results;
+        try {
+            results = crit.list();
+        } finally {
+            restoreTimeout(crit, timeout);
+        }
+        recordReadLatency(readCriteriaIds.contains(criteriaId), start);
+        return results;
     }
 
     @Override
     public Object uniqueResult(final CriteriaId criteriaId) {
-        return criteriaMap.get(criteriaId).uniqueResult();
+        final long start = System.nanoTime();
+        final Criteria crit = criteriaMap.get(criteriaId);
+        final int timeout = applyDeadline(crit);
+        final Object result;
+        try {
+            result = crit.uniqueResult();
+        } finally {
+            restoreTimeout(crit, timeout);
+        }
+        recordReadLatency(readCriteriaIds.contains(criteriaId), start);
+        return result;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public List<Object> list(final QueryId queryId) {
-        return queryMap.get(queryId).list();
+        final long start = System.nanoTime();
+        final Query query = queryMap.get(queryId);
+        final int timeout = applyDeadline(query);
+        final List<Object> results;
+        try {
+            results = query.list();
+        } finally {
+            restoreTimeout(query, timeout);
+        }
+        recordReadLatency(readQueryIds.contains(queryId), start);
+        return results;
     }
 
     @Override
     public int executeUpdate(final QueryId queryId) {
-        return queryMap.get(queryId).executeUpdate();
+        final Query query = queryMap.get(queryId);
+        final int timeout = applyDeadline(query);
+        try {
+            return query.executeUpdate();
+        } finally {
+            restoreTimeout(query, timeout);
+        }
     }
 
     @Override
     public Object uniqueResult(final QueryId queryId) {
-        return queryMap.get(queryId).uniqueResult();
+        final long start = System.nanoTime();
+        final Query query = queryMap.get(queryId);
+        final int timeout = applyDeadline(query);
+        final Object result;
+        try {
+            result = query.uniqueResult();
+        } finally {
+            restoreTimeout(query, timeout);
+        }
+        recordReadLatency(readQueryIds.contains(queryId), start);
+        return result;
+    }
+
+    @Override
+    public ScrollableResults scroll(final CriteriaId criteriaId) {
+        final Criteria crit = criteriaMap.get(criteriaId);
+        final int timeout = applyDeadline(crit);
+        try {
+            return crit.scroll(ScrollMode.FORWARD_ONLY);
+        } finally {
+            restoreTimeout(crit, timeout);
+        }
+    }
+
+    @Override
+    public ScrollableResults scroll(final QueryId queryId) {
+        final Query query = queryMap.get(queryId);
+        final int timeout = applyDeadline(query);
+        try {
+            return query.scroll(ScrollMode.FORWARD_ONLY);
+        } finally {
+            restoreTimeout(query, timeout);
+        }
+    }
+
+    @Override
+    public Iterator<?> iterate(final QueryId queryId) {
+        final Query query = queryMap.get(queryId);
+        final int timeout = applyDeadline(query);
+        try {
+            return query.iterate();
+        } finally {
+            restoreTimeout(query, timeout);
+        }
     }
 
     @Override
@@ -340,6 +546,87 @@ public class ShardImpl implements Shard {
         return interceptor;
     }
 
+    /**
+     * Let the load balancer know how long a read against our replica took.
+     */
+    private void recordReadLatency(final boolean onReplica, final long start) {
+        if (onReplica) {
+            replicaLoadBalancer.recordLatency(readSessionFactory, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * If the current thread is executing an operation that has a deadline,
+     * limit the Criteria to whatever is left of its time budget, unless the
+     * timeout the user gave it is smaller still.
+     *
+     * @return the timeout to restore once the Criteria has executed, or
+     *         {@link #TIMEOUT_UNCHANGED} if the timeout was left alone
+     */
+    private static int applyDeadline(final Criteria crit) {
+        final int budget = getShardTimeoutSeconds();
+        if (budget == 0) {
+            return TIMEOUT_UNCHANGED;
+        }
+        final Integer userTimeout = crit instanceof CriteriaImpl ? ((CriteriaImpl) crit).getTimeout() : null;
+        if (userTimeout != null && userTimeout > 0 && userTimeout <= budget) {
+            return TIMEOUT_UNCHANGED;
+        }
+        crit.setTimeout(budget);
+        return userTimeout == null ? 0 : userTimeout;
+    }
+
+    /**
+     * If the current thread is executing an operation that has a deadline,
+     * limit the Query to whatever is left of its time budget, unless the
+     * timeout the user gave it is smaller still.
+     *
+     * @return the timeout to restore once the Query has executed, or
+     *         {@link #TIMEOUT_UNCHANGED} if the timeout was left alone
+     */
+    private static int applyDeadline(final Query query) {
+        final int budget = getShardTimeoutSeconds();
+        if (budget == 0) {
+            return TIMEOUT_UNCHANGED;
+        }
+        final Integer userTimeout =
+                query instanceof AbstractQueryImpl ? ((AbstractQueryImpl) query).getSelection().getTimeout() : null;
+        if (userTimeout != null && userTimeout > 0 && userTimeout <= budget) {
+            return TIMEOUT_UNCHANGED;
+        }
+        query.setTimeout(budget);
+        return userTimeout == null ? 0 : userTimeout;
+    }
+
+    /**
+     * @return the timeout in seconds the deadline of the current thread
+     *         allows for a single statement, 0 if there is no deadline
+     */
+    private static int getShardTimeoutSeconds() {
+        final ShardAccessDeadline deadline = ShardAccessDeadline.getCurrentDeadline();
+        return deadline == null ? 0 : deadline.getShardTimeoutSeconds();
+    }
+
+    /**
+     * Give the Criteria back the timeout it had before applyDeadline().
+     * A timeout of 0 means no limit.
+     */
+    private static void restoreTimeout(final Criteria crit, final int timeout) {
+        if (timeout != TIMEOUT_UNCHANGED) {
+            crit.setTimeout(timeout);
+        }
+    }
+
+    /**
+     * Give the Query back the timeout it had before applyDeadline().
+     * A timeout of 0 means no limit.
+     */
+    private static void restoreTimeout(final Query query, final int timeout) {
+        if (timeout != TIMEOUT_UNCHANGED) {
+            query.setTimeout(timeout);
+        }
+    }
+
     /**
      * Utility function for adding events to maps where the key is an id and the
      * value is a linked list of events.
@@ -25,11 +25,13 @@ import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.mapping.OneToOne;
 import org.hibernate.mapping.PersistentClass;
 import org.hibernate.mapping.Property;
+import org.hibernate.shards.cfg.ReplicatedShardConfiguration;
 import org.hibernate.shards.cfg.ShardConfiguration;
 import org.hibernate.shards.cfg.ShardedEnvironment;
 import org.hibernate.shards.session.ShardedSessionFactory;
 import org.hibernate.shards.session.ShardedSessionFactoryImpl;
 import org.hibernate.shards.strategy.ShardStrategyFactory;
+import org.hibernate.shards.util.Lists;
 import org.hibernate.shards.util.Maps;
 import org.hibernate.shards.util.Preconditions;
 import org.hibernate.shards.util.Sets;
@@ -147,6 +149,7 @@ public class ShardedConfiguration {
      */
     public ShardedSessionFactory buildShardedSessionFactory() {
         final Map<SessionFactoryImplementor, Set<ShardId>> sessionFactories = Maps.newHashMap();
+        final Map<SessionFactoryImplementor, List<SessionFactoryImplementor>> replicaSessionFactories = Maps.newHashMap();
         // since all configs get their mappings from the prototype config, and we
         // get the set of classes that don't support top-level saves from the mappings,
         // we can get the set from the prototype and then just reuse it.
@@ -172,7 +175,12 @@ public class ShardedConfiguration {
                 // described by this config
                 virtualShardIds = shardToVirtualShardIdMap.get(shardId);
             }
-            sessionFactories.put(buildSessionFactory(), virtualShardIds);
+            final SessionFactoryImplementor sessionFactory = buildSessionFactory();
+            sessionFactories.put(sessionFactory, virtualShardIds);
+            if (config instanceof ReplicatedShardConfiguration) {
+                replicaSessionFactories.put(sessionFactory,
+                        buildReplicaSessionFactories((ReplicatedShardConfiguration) config));
+            }
         }
 
         final boolean doFullCrossShardRelationshipChecking =
@@ -183,6 +191,7 @@ public class ShardedConfiguration {
 
         return new ShardedSessionFactoryImpl(
                 sessionFactories,
+                replicaSessionFactories,
                 shardStrategyFactory,
                 classesWithoutTopLevelSaveSupport,
                 doFullCrossShardRelationshipChecking);
@@ -224,13 +233,30 @@ public class ShardedConfiguration {
      * in the prototype config.
      */
     void populatePrototypeWithVariableProperties(final ShardConfiguration config) {
+        populatePrototypeWithVariableProperties(config, config.getShardId());
+    }
+
+    private void populatePrototypeWithVariableProperties(final ShardConfiguration config, final Integer shardId) {
         safeSet(prototypeConfiguration, Environment.USER, config.getShardUser());
         safeSet(prototypeConfiguration, Environment.PASS, config.getShardPassword());
         safeSet(prototypeConfiguration, Environment.URL, config.getShardUrl());
         safeSet(prototypeConfiguration, Environment.DATASOURCE, config.getShardDatasource());
         safeSet(prototypeConfiguration, Environment.CACHE_REGION_PREFIX, config.getShardCacheRegionPrefix());
         safeSet(prototypeConfiguration, Environment.SESSION_FACTORY_NAME, config.getShardSessionFactoryName());
-        safeSet(prototypeConfiguration, ShardedEnvironment.SHARD_ID_PROPERTY, config.getShardId().toString());
+        safeSet(prototypeConfiguration, ShardedEnvironment.SHARD_ID_PROPERTY, shardId.toString());
+    }
+
+    /**
+     * Builds a SessionFactory for each replica of the given shard.  Replicas
+     * report the shard id of their primary.
+     */
+    private List<SessionFactoryImplementor> buildReplicaSessionFactories(final ReplicatedShardConfiguration config) {
+        final List<SessionFactoryImplementor> replicas = Lists.newArrayList();
+        for (final ShardConfiguration replicaConfig : config.getReplicaConfigurations()) {
+            populatePrototypeWithVariableProperties(replicaConfig, config.getShardId());
+            replicas.add(buildSessionFactory());
+        }
+        return replicas;
     }
 
     /**
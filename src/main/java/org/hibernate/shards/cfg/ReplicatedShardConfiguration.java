@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package org.hibernate.shards.cfg;
+
+import java.util.List;
+
+/**
+ * A {@link ShardConfiguration} for a shard that has read replicas.  The
+ * properties of the ShardConfiguration itself describe the primary database of
+ * the shard.  Each replica gets its own {@link org.hibernate.SessionFactory},
+ * built from the same prototype configuration as the primary, and is used for
+ * reads that are marked read-only.  Writes, flushes and transactions always
+ * go to the primary.
+ *
+ * @see org.hibernate.shards.loadbalance.ReplicaLoadBalancer
+ */
+public interface ReplicatedShardConfiguration extends ShardConfiguration {
+
+    /**
+     * The shard id of a replica configuration is ignored; replicas always
+     * belong to the shard of the primary.
+     *
+     * @return the configurations of the read replicas of the shard, never null
+     */
+    List<ShardConfiguration> getReplicaConfigurations();
+}
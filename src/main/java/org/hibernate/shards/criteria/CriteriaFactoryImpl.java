@@ -131,4 +131,18 @@ public class CriteriaFactoryImpl implements CriteriaFactory {
             "Unknown constructor type for criteria creation: " + methodSig);
     }
   }
+
+  /**
+   * @return the name of the entity the {@link Criteria} we create is for
+   */
+  String getEntityName() {
+    return persistentClass != null ? persistentClass.getName() : entityName;
+  }
+
+  /**
+   * @return the alias of the entity the {@link Criteria} we create is for, if any
+   */
+  /*@Nullable*/ String getAlias() {
+    return alias;
+  }
 }
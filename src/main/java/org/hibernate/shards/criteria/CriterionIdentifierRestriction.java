@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.IdentifierEqExpression;
+import org.hibernate.criterion.InExpression;
+import org.hibernate.criterion.Junction;
+import org.hibernate.criterion.LogicalExpression;
+import org.hibernate.criterion.SimpleExpression;
+import org.hibernate.shards.ShardId;
+import org.hibernate.shards.strategy.resolution.IdentifierShardResolver;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Works out which shards the restrictions of a criteria confine it to.  The
+ * restrictions that compare the identifier of the entity with
+ * {@link org.hibernate.criterion.Restrictions#idEq},
+ * {@link org.hibernate.criterion.Restrictions#eq} or
+ * {@link org.hibernate.criterion.Restrictions#in}, through any combination of
+ * and and or, only match entities on the shards those identifiers resolve to.
+ * <p/>
+ * Hibernate doesn't expose what a Criterion compares, so like
+ * {@link ProjectionUtils#getWrappedProjection} we have to dig it out.  A
+ * Criterion we can't inspect may match entities on any shard.
+ */
+final class CriterionIdentifierRestriction {
+
+    private static final Logger log = LoggerFactory.getLogger(CriterionIdentifierRestriction.class);
+
+    private CriterionIdentifierRestriction() {
+    }
+
+    /**
+     * @param criteria             the restrictions of a criteria, all of which
+     *                             its results satisfy
+     * @param identifierProperties the names by which the restrictions can
+     *                             refer to the identifier of the entity
+     * @param identifierShards     resolves the shards of an identifier of the entity
+     * @return the ids of the shards on which the criteria may find entities,
+     *         or null if it has to be executed on every shard
+     */
+    static /*@Nullable*/ Set<ShardId> selectShardIds(final List<Criterion> criteria,
+                                                    final Set<String> identifierProperties,
+                                                    final IdentifierShardResolver identifierShards) {
+        try {
+            return combine(criteria, true, identifierProperties, identifierShards);
+        } catch (NoSuchFieldException e) {
+            log.debug("Unable to inspect criteria " + criteria, e);
+            return null;
+        } catch (IllegalAccessException e) {
+            log.debug("Unable to inspect criteria " + criteria, e);
+            return null;
+        }
+    }
+
+    private static /*@Nullable*/ Set<ShardId> selectShardIds(final Criterion criterion,
+                                                            final Set<String> identifierProperties,
+                                                            final IdentifierShardResolver identifierShards)
+            throws NoSuchFieldException, IllegalAccessException {
+        // subclasses may compare something else entirely
+        final Class<?> type = criterion.getClass();
+        if (type == IdentifierEqExpression.class) {
+            return resolve(Collections.singletonList(getField(IdentifierEqExpression.class, criterion, "value")),
+                    identifierShards);
+        }
+        if (type == SimpleExpression.class) {
+            if (!"=".equals(getField(SimpleExpression.class, criterion, "op"))
+                    || Boolean.TRUE.equals(getField(SimpleExpression.class, criterion, "ignoreCase"))
+                    || !identifierProperties.contains(getField(SimpleExpression.class, criterion, "propertyName"))) {
+                return null;
+            }
+            return resolve(Collections.singletonList(getField(SimpleExpression.class, criterion, "value")),
+                    identifierShards);
+        }
+        if (type == InExpression.class) {
+            if (!identifierProperties.contains(getField(InExpression.class, criterion, "propertyName"))) {
+                return null;
+            }
+            return resolve(Arrays.asList((Object[]) getField(InExpression.class, criterion, "values")),
+                    identifierShards);
+        }
+        if (type == LogicalExpression.class) {
+            final List<Criterion> operands = Lists.newArrayList(
+                    (Criterion) getField(LogicalExpression.class, criterion, "lhs"),
+                    (Criterion) getField(LogicalExpression.class, criterion, "rhs"));
+            return combine(operands, "and".equalsIgnoreCase(((LogicalExpression) criterion).getOp()),
+                    identifierProperties, identifierShards);
+        }
+        if (type == Conjunction.class || type == Disjunction.class) {
+            @SuppressWarnings("unchecked")
+            final List<Criterion> operands = (List<Criterion>) getField(Junction.class, criterion, "criteria");
+            return combine(operands, type == Conjunction.class, identifierProperties, identifierShards);
+        }
+        return null;
+    }
+
+    private static /*@Nullable*/ Set<ShardId> combine(final List<Criterion> operands, final boolean conjunction,
+                                                     final Set<String> identifierProperties,
+                                                     final IdentifierShardResolver identifierShards)
+            throws NoSuchFieldException, IllegalAccessException {
+        Set<ShardId> shardIds = null;
+        for (final Criterion operand : operands) {
+            final Set<ShardId> operandShardIds = selectShardIds(operand, identifierProperties, identifierShards);
+            if (conjunction) {
+                if (shardIds == null) {
+                    shardIds = operandShardIds;
+                } else if (operandShardIds != null) {
+                    shardIds.retainAll(operandShardIds);
+                }
+            } else if (operandShardIds == null) {
+                // this operand may match entities on any shard
+                return null;
+            } else if (shardIds == null) {
+                shardIds = operandShardIds;
+            } else {
+                shardIds.addAll(operandShardIds);
+            }
+        }
+        return shardIds;
+    }
+
+    private static /*@Nullable*/ Set<ShardId> resolve(final List<?> identifiers,
+                                                     final IdentifierShardResolver identifierShards) {
+        final Set<ShardId> shardIds = Sets.newHashSet();
+        for (final Object identifier : identifiers) {
+            final List<ShardId> identifierShardIds = identifier == null ? null : identifierShards.getShardIds(identifier);
+            if (identifierShardIds == null) {
+                return null;
+            }
+            shardIds.addAll(identifierShardIds);
+        }
+        return shardIds;
+    }
+
+    private static Object getField(final Class<?> declaringClass, final Object target, final String name)
+            throws NoSuchFieldException, IllegalAccessException {
+        final Field field = declaringClass.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.criterion.AggregateProjection;
+import org.hibernate.criterion.AliasedProjection;
+import org.hibernate.criterion.CountProjection;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.PropertyProjection;
+import org.hibernate.criterion.RowCountProjection;
+import org.hibernate.shards.strategy.exit.PartialAggregate;
+import org.hibernate.shards.strategy.exit.PartialAggregates;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.type.Type;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A ProjectionList of aggregates taken apart so that all of them can be
+ * computed with a single query per shard: every shard computes partial
+ * aggregates, which are then combined column by column.  Most aggregates are
+ * their own partial aggregates, but an average is computed by the shards as a
+ * sum and a count.  Group columns are computed by the shards as they are, so
+ * that every shard returns a row of partial aggregates per group.
+ */
+class DecomposedProjectionList {
+
+    // the projection the client asked for
+    private final ProjectionList projectionList;
+
+    // the projection we execute against every shard
+    private final ProjectionList shardProjection = Projections.projectionList();
+
+    private final List<PartialAggregate> aggregates = Lists.newArrayList();
+
+    private boolean grouped;
+
+    private final SumTypeResolver sumTypeResolver;
+
+    /**
+     * @param projectionList the projection the client asked for
+     * @throws UnsupportedOperationException if the list contains a projection
+     *                                       that can't be computed across shards
+     */
+    DecomposedProjectionList(final ProjectionList projectionList) {
+        this(projectionList, null);
+    }
+
+    /**
+     * @param projectionList  the projection the client asked for
+     * @param sumTypeResolver works out the types of the sums the shards return,
+     *                        or null if they aren't known
+     * @throws UnsupportedOperationException if the list contains a projection
+     *                                       that can't be computed across shards
+     */
+    DecomposedProjectionList(final ProjectionList projectionList,
+                             final /*@Nullable*/ SumTypeResolver sumTypeResolver) {
+        this.projectionList = projectionList;
+        this.sumTypeResolver = sumTypeResolver;
+        for (int i = 0; i < projectionList.getLength(); i++) {
+            add(projectionList.getProjection(i), null);
+        }
+    }
+
+    private void add(final Projection projection, final /*@Nullable*/ String alias) {
+        if (projection instanceof AliasedProjection) {
+            // keep the alias on the shards so orders that refer to it still resolve there
+            add(ProjectionUtils.getWrappedProjection(projection), projection.getAliases()[0]);
+        } else if (projection instanceof PropertyProjection) {
+            if (!((PropertyProjection) projection).isGrouped()) {
+                // only a group column has the same value in every row it stands for
+                throw unsupported(projection);
+            }
+            addShardColumn(projection, alias);
+            aggregates.add(PartialAggregates.group());
+            grouped = true;
+        } else if (projection instanceof RowCountProjection) {
+            addShardColumn(projection, alias);
+            aggregates.add(PartialAggregates.count());
+        } else if (projection instanceof CountProjection) {
+            if (projection.toString().startsWith("distinct")) {
+                // the same value may be counted by several shards
+                throw unsupported(projection);
+            }
+            addShardColumn(projection, alias);
+            aggregates.add(PartialAggregates.count());
+        } else if (projection instanceof AggregateProjection) {
+            final AggregateProjection aggregate = (AggregateProjection) projection;
+            final String function = aggregate.getFunctionName();
+            if ("sum".equals(function)) {
+                addShardColumn(projection, alias);
+                aggregates.add(PartialAggregates.sum(getSumType(aggregate.getPropertyName())));
+            } else if ("min".equals(function)) {
+                addShardColumn(projection, alias);
+                aggregates.add(PartialAggregates.min());
+            } else if ("max".equals(function)) {
+                addShardColumn(projection, alias);
+                aggregates.add(PartialAggregates.max());
+            } else if ("avg".equals(function)) {
+                // an order on the average only has to resolve on the shards,
+                // the merged rows are sorted again in memory
+                addShardColumn(Projections.sum(aggregate.getPropertyName()), alias);
+                addShardColumn(Projections.count(aggregate.getPropertyName()), null);
+                aggregates.add(PartialAggregates.avg(getSumType(aggregate.getPropertyName())));
+            } else {
+                throw unsupported(projection);
+            }
+        } else {
+            throw unsupported(projection);
+        }
+    }
+
+    private /*@Nullable*/ Type getSumType(final String propertyName) {
+        return sumTypeResolver == null ? null : sumTypeResolver.getSumType(propertyName);
+    }
+
+    private void addShardColumn(final Projection projection, final /*@Nullable*/ String alias) {
+        if (alias == null) {
+            shardProjection.add(projection);
+        } else {
+            shardProjection.add(projection, alias);
+        }
+    }
+
+    private static UnsupportedOperationException unsupported(final Projection projection) {
+        return new UnsupportedOperationException("Projection cannot be computed across shards: " + projection);
+    }
+
+    ProjectionList getProjectionList() {
+        return projectionList;
+    }
+
+    /**
+     * @return the projection to execute against every shard
+     */
+    ProjectionList getShardProjection() {
+        return shardProjection;
+    }
+
+    /**
+     * @return true if the projection groups its results by at least one property
+     */
+    boolean isGrouped() {
+        return grouped;
+    }
+
+    /**
+     * @return the partial aggregate of every column of the projection the client asked for
+     */
+    List<PartialAggregate> getAggregates() {
+        return Collections.unmodifiableList(aggregates);
+    }
+}
@@ -30,12 +30,14 @@ import org.hibernate.shards.strategy.exit.ExitOperationsCollector;
 import org.hibernate.shards.strategy.exit.FirstResultExitOperation;
 import org.hibernate.shards.strategy.exit.MaxResultsExitOperation;
 import org.hibernate.shards.strategy.exit.OrderExitOperation;
+import org.hibernate.shards.strategy.exit.PartialAggregateExitOperation;
 import org.hibernate.shards.strategy.exit.ProjectionExitOperationFactory;
 import org.hibernate.shards.util.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Implements the ExitOperationsCollector interface for {@link org.hibernate.Criteria}s
@@ -62,6 +64,12 @@ public class ExitOperationsCriteriaCollector implements ExitOperationsCollector
     // Row Count Projection operation applied to the Criteria
     private RowCountProjection rowCountProjection;
 
+    // ProjectionList applied to the Criteria, computed by the shards as partial aggregates
+    private DecomposedProjectionList decomposedProjectionList;
+
+    // Restrictions on the groups of the ProjectionList, evaluated once they are combined
+    private final List<Having> havings = Lists.newArrayList();
+
     // The Session Factory Implementor with which the Criteria is associated
     private SessionFactoryImplementor sessionFactoryImplementor;
 
@@ -102,9 +110,6 @@ public class ExitOperationsCriteriaCollector implements ExitOperationsCollector
     public ExitOperationsCollector addProjection(final Projection projection) {
         if (projection instanceof Distinct) {
             this.distinct = (Distinct) projection;
-            // TODO(maulik) Distinct doesn't work yet
-            log.error("Distinct is not ready yet");
-            throw new UnsupportedOperationException();
         } else if (projection instanceof RowCountProjection) {
             this.rowCountProjection = (RowCountProjection) projection;
         } else if (projection instanceof AggregateProjection) {
@@ -120,6 +125,28 @@ public class ExitOperationsCriteriaCollector implements ExitOperationsCollector
         return this;
     }
 
+    /**
+     * Sets a ProjectionList whose partial aggregates are computed by the shards.
+     *
+     * @param decomposedProjectionList the ProjectionList
+     * @return this
+     */
+    ExitOperationsCollector setDecomposedProjectionList(final DecomposedProjectionList decomposedProjectionList) {
+        this.decomposedProjectionList = decomposedProjectionList;
+        return this;
+    }
+
+    /**
+     * Adds a restriction on the groups of the ProjectionList.
+     *
+     * @param having the restriction to add
+     * @return this
+     */
+    ExitOperationsCollector addHaving(final Having having) {
+        havings.add(having);
+        return this;
+    }
+
     /**
      * Add the given Order
      *
@@ -143,6 +170,8 @@ public class ExitOperationsCriteriaCollector implements ExitOperationsCollector
          * the rest in memory.
          *
          * The hierarchy of operations is this so far:
+         * Partial aggregates of a ProjectionList
+         * Having
          * Distinct
          * Order
          * FirstResult
@@ -153,6 +182,17 @@ public class ExitOperationsCriteriaCollector implements ExitOperationsCollector
          */
 
         // ordering of the following operations *really* matters!
+
+        // the shards return partial aggregates, everything else applies to the
+        // rows we get by combining them
+        if (decomposedProjectionList != null) {
+            result = new PartialAggregateExitOperation(decomposedProjectionList.getAggregates()).apply(result);
+        }
+
+        if (!havings.isEmpty()) {
+            result = applyHavings(result);
+        }
+
         if (distinct != null) {
             result = new DistinctExitOperation(distinct).apply(result);
         }
@@ -160,7 +200,8 @@ public class ExitOperationsCriteriaCollector implements ExitOperationsCollector
         // not clear to me why we need to create an OrderExitOperation
         // are we even taking advantage of the fact that it implements the
         // ExitOperation interface?
-        result = new OrderExitOperation(orders).apply(result);
+        // If only a page of results is wanted we only need to sort that page.
+        result = new OrderExitOperation(getOrders(), getPageEnd()).apply(result);
 
         if (firstResult != null) {
             result = new FirstResultExitOperation(firstResult).apply(result);
@@ -187,6 +228,46 @@ public class ExitOperationsCriteriaCollector implements ExitOperationsCollector
         return result;
     }
 
+    private List<Object> applyHavings(final List<Object> groups) {
+        if (decomposedProjectionList == null) {
+            final String msg = "A having requires a ProjectionList";
+            log.error(msg);
+            throw new UnsupportedOperationException(msg);
+        }
+        final List<Set<String>> columns = ProjectionUtils.getColumnNames(decomposedProjectionList.getProjectionList());
+        final int[] havingColumns = new int[havings.size()];
+        for (int i = 0; i < havingColumns.length; i++) {
+            havingColumns[i] = getColumn(columns, havings.get(i).getColumn());
+            if (havingColumns[i] < 0) {
+                final String msg = "Cannot restrict groups by " + havings.get(i).getColumn()
+                        + " because it is not projected";
+                log.error(msg);
+                throw new UnsupportedOperationException(msg);
+            }
+        }
+        final List<Object> kept = Lists.newArrayListWithCapacity(groups.size());
+        for (final Object group : groups) {
+            boolean satisfied = true;
+            for (int i = 0; i < havingColumns.length && satisfied; i++) {
+                final Object value = group instanceof Object[] ? ((Object[]) group)[havingColumns[i]] : group;
+                satisfied = havings.get(i).isSatisfiedBy(value);
+            }
+            if (satisfied) {
+                kept.add(group);
+            }
+        }
+        return kept;
+    }
+
+    private static int getColumn(final List<Set<String>> columns, final String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).contains(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Sets the session factory implementor
      *
@@ -196,6 +277,16 @@ public class ExitOperationsCriteriaCollector implements ExitOperationsCollector
         this.sessionFactoryImplementor = sessionFactoryImplementor;
     }
 
+    /**
+     * @return firstResult + maxResults, or -1 if all results are wanted
+     */
+    private int getPageEnd() {
+        if (maxResults == null) {
+            return -1;
+        }
+        return (firstResult == null ? 0 : firstResult) + maxResults;
+    }
+
     Integer getMaxResults() {
         return maxResults;
     }
@@ -203,4 +294,60 @@ public class ExitOperationsCriteriaCollector implements ExitOperationsCollector
     Integer getFirstResult() {
         return firstResult;
     }
+
+    /**
+     * @return the orders to apply in memory.  The results of a distinct
+     *         projection or a ProjectionList are not entities, so orders of
+     *         those refer to columns.
+     */
+    List<InMemoryOrderBy> getOrders() {
+        final Projection projection = distinct != null ? distinct
+                : decomposedProjectionList != null ? decomposedProjectionList.getProjectionList() : null;
+        if (projection == null || orders.isEmpty()) {
+            return orders;
+        }
+        final List<Set<String>> columns = ProjectionUtils.getColumnNames(projection);
+        final List<InMemoryOrderBy> columnOrders = Lists.newArrayListWithCapacity(orders.size());
+        for (final InMemoryOrderBy order : orders) {
+            final int column = getColumn(columns, order.getExpression());
+            if (column < 0) {
+                final String msg = "Cannot order projected results by " + order.getExpression()
+                        + " because it is not projected";
+                log.error(msg);
+                throw new UnsupportedOperationException(msg);
+            }
+            columnOrders.add(order.onProjectionColumn(column));
+        }
+        return columnOrders;
+    }
+
+    /**
+     * @return true if a projection has to be computed across the results of all shards
+     */
+    boolean hasProjection() {
+        return distinct != null || hasAggregateProjection();
+    }
+
+    /**
+     * @return true if the results have to be aggregated across shards
+     */
+    boolean hasAggregateProjection() {
+        return rowCountProjection != null || avgProjection != null || aggregateProjection != null
+                || decomposedProjectionList != null;
+    }
+
+    /**
+     * @return true if the results are grouped, in which case every shard has
+     *         to return all of its groups
+     */
+    boolean isGrouped() {
+        return decomposedProjectionList != null && decomposedProjectionList.isGrouped();
+    }
+
+    /**
+     * @return true if duplicate results have to be removed across shards
+     */
+    boolean isDistinct() {
+        return distinct != null;
+    }
 }
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.shards.util.Preconditions;
+
+import java.math.BigDecimal;
+
+/**
+ * A restriction on the groups of a grouped ProjectionList.  Hibernate criteria
+ * have no HAVING clause, and a shard couldn't evaluate one anyway: a group
+ * only has its final aggregates once the partial aggregates of every shard
+ * are combined.  Havings are therefore evaluated in memory, after the merge
+ * and before the results are ordered and paged.
+ * <p/>
+ * A having refers to a column of the projection by its alias or, for a group
+ * column, by the name of its property.
+ *
+ * @see ShardedCriteria#addHaving(Having)
+ */
+public final class Having {
+
+    private enum Operator {
+        EQ("=") {
+            @Override
+            boolean accept(final int comparison) {
+                return comparison == 0;
+            }
+        },
+        NE("<>") {
+            @Override
+            boolean accept(final int comparison) {
+                return comparison != 0;
+            }
+        },
+        GT(">") {
+            @Override
+            boolean accept(final int comparison) {
+                return comparison > 0;
+            }
+        },
+        GE(">=") {
+            @Override
+            boolean accept(final int comparison) {
+                return comparison >= 0;
+            }
+        },
+        LT("<") {
+            @Override
+            boolean accept(final int comparison) {
+                return comparison < 0;
+            }
+        },
+        LE("<=") {
+            @Override
+            boolean accept(final int comparison) {
+                return comparison <= 0;
+            }
+        };
+
+        private final String symbol;
+
+        Operator(final String symbol) {
+            this.symbol = symbol;
+        }
+
+        abstract boolean accept(int comparison);
+    }
+
+    private final String column;
+
+    private final Operator operator;
+
+    private final Object value;
+
+    private Having(final String column, final Operator operator, final Object value) {
+        Preconditions.checkNotNull(column);
+        Preconditions.checkNotNull(value);
+        this.column = column;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    public static Having eq(final String column, final Object value) {
+        return new Having(column, Operator.EQ, value);
+    }
+
+    public static Having ne(final String column, final Object value) {
+        return new Having(column, Operator.NE, value);
+    }
+
+    public static Having gt(final String column, final Object value) {
+        return new Having(column, Operator.GT, value);
+    }
+
+    public static Having ge(final String column, final Object value) {
+        return new Having(column, Operator.GE, value);
+    }
+
+    public static Having lt(final String column, final Object value) {
+        return new Having(column, Operator.LT, value);
+    }
+
+    public static Having le(final String column, final Object value) {
+        return new Having(column, Operator.LE, value);
+    }
+
+    /**
+     * @return the alias or property name of the column the having applies to
+     */
+    String getColumn() {
+        return column;
+    }
+
+    /**
+     * Like in SQL, a null aggregate satisfies no restriction.  Numbers are
+     * compared by value, whatever their type, since the type of an aggregate
+     * depends on the database.
+     *
+     * @param aggregate the value of the column of a group
+     * @return true if the group is to be kept
+     */
+    @SuppressWarnings("unchecked")
+    boolean isSatisfiedBy(final /*@Nullable*/ Object aggregate) {
+        if (aggregate == null) {
+            return false;
+        }
+        final int comparison;
+        if (aggregate instanceof Number && value instanceof Number) {
+            comparison = toBigDecimal((Number) aggregate).compareTo(toBigDecimal((Number) value));
+        } else if (aggregate instanceof Comparable) {
+            comparison = ((Comparable<Object>) aggregate).compareTo(value);
+        } else {
+            throw new UnsupportedOperationException("Cannot compare " + aggregate + " to " + value);
+        }
+        return operator.accept(comparison);
+    }
+
+    private static BigDecimal toBigDecimal(final Number number) {
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+
+    @Override
+    public String toString() {
+        return column + operator.symbol + value;
+    }
+}
@@ -34,6 +34,10 @@ public class InMemoryOrderBy {
     private final String expression;
     private final boolean isAscending;
 
+    // index of the projected column holding the value we're sorting by, or -1
+    // if the results are entities and the value is read from the expression
+    private final int projectionColumn;
+
     /**
      * Constructs an InMemoryOrderBy instance
      *
@@ -45,6 +49,22 @@ public class InMemoryOrderBy {
     public InMemoryOrderBy(final String associationPath, final Order order) {
         this.expression = getAssociationPrefix(associationPath) + getSortingProperty(order);
         this.isAscending = isAscending(order);
+        this.projectionColumn = -1;
+    }
+
+    private InMemoryOrderBy(final String expression, final boolean isAscending, final int projectionColumn) {
+        this.expression = expression;
+        this.isAscending = isAscending;
+        this.projectionColumn = projectionColumn;
+    }
+
+    /**
+     * @param column index of the column of a projected result that holds the
+     *               value this order applies to
+     * @return an InMemoryOrderBy that sorts projected results rather than entities
+     */
+    public InMemoryOrderBy onProjectionColumn(final int column) {
+        return new InMemoryOrderBy(expression, isAscending, column);
     }
 
     private static String getAssociationPrefix(final String associationPath) {
@@ -63,6 +83,14 @@ public class InMemoryOrderBy {
         return isAscending;
     }
 
+    /**
+     * @return index of the projected column to sort by, or -1 if the results
+     *         are sorted by the property the expression leads to
+     */
+    public int getProjectionColumn() {
+        return projectionColumn;
+    }
+
     private static String getSortingProperty(final Order order) {
         /**
          * This method relies on the format that Order is using:
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.criterion.AliasedProjection;
+import org.hibernate.criterion.Distinct;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.PropertyProjection;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Sets;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Helpers for taking apart the projections of a criteria, whose results we
+ * have to post-process in memory.
+ */
+final class ProjectionUtils {
+
+    private ProjectionUtils() {
+    }
+
+    /**
+     * @param projection a projection
+     * @return for each column of the results of the projection, the names an
+     *         order may refer to it by: its alias and, for a property
+     *         projection, the name of the property
+     */
+    static List<Set<String>> getColumnNames(final Projection projection) {
+        final List<Set<String>> columns = Lists.newArrayList();
+        addColumnNames(projection, columns);
+        return columns;
+    }
+
+    private static void addColumnNames(final Projection projection, final List<Set<String>> columns) {
+        if (projection instanceof ProjectionList) {
+            final ProjectionList list = (ProjectionList) projection;
+            for (int i = 0; i < list.getLength(); i++) {
+                addColumnNames(list.getProjection(i), columns);
+            }
+        } else if (projection instanceof Distinct) {
+            addColumnNames(getWrappedProjection(projection), columns);
+        } else if (projection instanceof AliasedProjection) {
+            final int first = columns.size();
+            addColumnNames(getWrappedProjection(projection), columns);
+            final String[] aliases = projection.getAliases();
+            for (int i = 0; i < aliases.length && first + i < columns.size(); i++) {
+                if (aliases[i] != null) {
+                    columns.get(first + i).add(aliases[i]);
+                }
+            }
+        } else {
+            final String[] aliases = projection.getAliases();
+            for (final String alias : aliases) {
+                final Set<String> names = Sets.newHashSet();
+                if (alias != null) {
+                    names.add(alias);
+                }
+                if (projection instanceof PropertyProjection) {
+                    names.add(((PropertyProjection) projection).getPropertyName());
+                }
+                columns.add(names);
+            }
+        }
+    }
+
+    /**
+     * Hibernate doesn't expose the projection that a {@link Distinct} or an
+     * {@link AliasedProjection} decorates, so we have to dig it out.
+     */
+    static Projection getWrappedProjection(final Projection projection) {
+        try {
+            final Field field = projection.getClass().getDeclaredField("projection");
+            field.setAccessible(true);
+            return (Projection) field.get(projection);
+        } catch (NoSuchFieldException e) {
+            throw new UnsupportedOperationException("Unable to inspect projection " + projection, e);
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedOperationException("Unable to inspect projection " + projection, e);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.shards.strategy.exit.PropertyPathAccessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The position of a page of results in keyset pagination: the values of the
+ * sort keys of the last result of the page.  The next page is made of the
+ * results whose keys come after these, which every shard can find on its own.
+ * <p/>
+ * A cursor is handed to clients as an opaque token.  Tokens are decoded from
+ * a fixed set of value types, so a client can't make us instantiate anything
+ * else.
+ */
+final class SeekCursor {
+
+    private static final int VERSION = 1;
+
+    // bounds on the numbers a token can carry, so that a forged token can't
+    // make the comparisons against it arbitrarily expensive
+    private static final int MAX_NUMBER_LENGTH = 1024;
+    private static final int MAX_SCALE = 1024;
+
+    private final Object[] keys;
+
+    private SeekCursor(final Object[] keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * @param orders the orders of the results, the last of which is on the identifier
+     * @param result the last result of a page
+     * @return the cursor of the page that ends with the result
+     */
+    static SeekCursor after(final List<InMemoryOrderBy> orders, final Object result) {
+        return new SeekCursor(getKeys(orders, result));
+    }
+
+    /**
+     * @param orders the orders of the results, the last of which is on the identifier
+     * @param result a result
+     * @return the values of the sort keys of the result
+     */
+    static Object[] getKeys(final List<InMemoryOrderBy> orders, final Object result) {
+        final Object[] keys = new Object[orders.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = PropertyPathAccessor.forPath(orders.get(i).getExpression()).getValue(result);
+            if (keys[i] == null) {
+                // there is no portable way to seek past a null
+                throw new UnsupportedOperationException(
+                        "Cannot seek past a null " + orders.get(i).getExpression());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @param orders the orders of the results, the last of which is on the identifier
+     * @return a restriction to the results that come after the cursor:
+     *         (k1 > v1) or (k1 = v1 and k2 > v2) or ... with < for descending keys
+     */
+    Criterion toCriterion(final List<InMemoryOrderBy> orders) {
+        if (orders.size() != keys.length) {
+            throw new HibernateException("The cursor doesn't match the orders of the criteria");
+        }
+        return compare(orders, keys, true, false);
+    }
+
+    /**
+     * @param orders    the orders of the results
+     * @param keys      the values of the sort keys of a result
+     * @param after     true for the results that come after the keys, false
+     *                  for those that come before them
+     * @param inclusive true if the result with exactly these keys is included
+     * @return a restriction to the results on one side of the keys
+     */
+    static Criterion compare(final List<InMemoryOrderBy> orders, final Object[] keys, final boolean after,
+                             final boolean inclusive) {
+        final Disjunction disjunction = Restrictions.disjunction();
+        for (int i = 0; i < keys.length; i++) {
+            final Conjunction conjunction = Restrictions.conjunction();
+            for (int j = 0; j < i; j++) {
+                conjunction.add(Restrictions.eq(orders.get(j).getExpression(), keys[j]));
+            }
+            final String expression = orders.get(i).getExpression();
+            conjunction.add(orders.get(i).isAscending() == after
+                    ? Restrictions.gt(expression, keys[i]) : Restrictions.lt(expression, keys[i]));
+            disjunction.add(conjunction);
+        }
+        if (inclusive) {
+            final Conjunction equal = Restrictions.conjunction();
+            for (int i = 0; i < keys.length; i++) {
+                equal.add(Restrictions.eq(orders.get(i).getExpression(), keys[i]));
+            }
+            disjunction.add(equal);
+        }
+        return disjunction;
+    }
+
+    String toToken() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeShort(keys.length);
+            for (final Object key : keys) {
+                writeKey(out, key);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // can't happen with a ByteArrayOutputStream
+            throw new HibernateException(e);
+        }
+        final StringBuilder token = new StringBuilder();
+        for (final byte b : bytes.toByteArray()) {
+            token.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return token.toString();
+    }
+
+    static SeekCursor fromToken(final String token) {
+        if (token.length() % 2 != 0) {
+            throw invalid(token);
+        }
+        final byte[] bytes = new byte[token.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(token.charAt(2 * i), 16);
+            final int low = Character.digit(token.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw invalid(token);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            if (in.readByte() != VERSION) {
+                throw invalid(token);
+            }
+            final Object[] keys = new Object[in.readUnsignedShort()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = readKey(in, token);
+            }
+            if (in.available() > 0) {
+                throw invalid(token);
+            }
+            return new SeekCursor(keys);
+        } catch (IOException e) {
+            throw invalid(token);
+        } catch (IllegalArgumentException e) {
+            // a malformed number or out of range nanos, NumberFormatException included
+            throw invalid(token);
+        }
+    }
+
+    private static void writeKey(final DataOutputStream out, final Object key) throws IOException {
+        if (key instanceof String) {
+            out.writeByte('S');
+            out.writeUTF((String) key);
+        } else if (key instanceof Long) {
+            out.writeByte('J');
+            out.writeLong((Long) key);
+        } else if (key instanceof Integer) {
+            out.writeByte('I');
+            out.writeInt((Integer) key);
+        } else if (key instanceof Short) {
+            out.writeByte('H');
+            out.writeShort((Short) key);
+        } else if (key instanceof Byte) {
+            out.writeByte('B');
+            out.writeByte((Byte) key);
+        } else if (key instanceof Double) {
+            out.writeByte('D');
+            out.writeDouble((Double) key);
+        } else if (key instanceof Float) {
+            out.writeByte('F');
+            out.writeFloat((Float) key);
+        } else if (key instanceof Boolean) {
+            out.writeByte('Z');
+            out.writeBoolean((Boolean) key);
+        } else if (key instanceof Character) {
+            out.writeByte('C');
+            out.writeChar((Character) key);
+        } else if (key instanceof BigDecimal) {
+            out.writeByte('M');
+            out.writeUTF(key.toString());
+        } else if (key instanceof BigInteger) {
+            out.writeByte('G');
+            out.writeUTF(key.toString());
+        } else if (key instanceof Timestamp) {
+            out.writeByte('T');
+            out.writeLong(((Timestamp) key).getTime());
+            out.writeInt(((Timestamp) key).getNanos());
+        } else if (key instanceof java.sql.Date) {
+            out.writeByte('Q');
+            out.writeLong(((Date) key).getTime());
+        } else if (key instanceof Time) {
+            out.writeByte('h');
+            out.writeLong(((Date) key).getTime());
+        } else if (key instanceof Date) {
+            out.writeByte('d');
+            out.writeLong(((Date) key).getTime());
+        } else {
+            throw new UnsupportedOperationException("Cannot seek past a sort key of " + key.getClass());
+        }
+    }
+
+    private static Object readKey(final DataInputStream in, final String token) throws IOException {
+        final int tag = in.readByte();
+        switch (tag) {
+            case 'S':
+                return in.readUTF();
+            case 'J':
+                return in.readLong();
+            case 'I':
+                return in.readInt();
+            case 'H':
+                return in.readShort();
+            case 'B':
+                return in.readByte();
+            case 'D':
+                return in.readDouble();
+            case 'F':
+                return in.readFloat();
+            case 'Z':
+                return in.readBoolean();
+            case 'C':
+                return in.readChar();
+            case 'M':
+                final BigDecimal decimal = new BigDecimal(readNumber(in, token));
+                if (Math.abs(decimal.scale()) > MAX_SCALE) {
+                    throw invalid(token);
+                }
+                return decimal;
+            case 'G':
+                return new BigInteger(readNumber(in, token));
+            case 'T':
+                final Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case 'Q':
+                return new java.sql.Date(in.readLong());
+            case 'h':
+                return new Time(in.readLong());
+            case 'd':
+                return new Date(in.readLong());
+            default:
+                throw invalid(token);
+        }
+    }
+
+    private static String readNumber(final DataInputStream in, final String token) throws IOException {
+        final String number = in.readUTF();
+        if (number.length() > MAX_NUMBER_LENGTH) {
+            throw invalid(token);
+        }
+        return number;
+    }
+
+    private static HibernateException invalid(final String token) {
+        return new HibernateException("Invalid seek cursor: " + token);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of results of keyset pagination, along with the cursor of the page
+ * that follows it.
+ *
+ * @see ShardedCriteria#seekPage(int, String)
+ */
+public final class SeekPage {
+
+    private final List<Object> results;
+
+    private final String nextCursor;
+
+    SeekPage(final List<Object> results, final /*@Nullable*/ String nextCursor) {
+        this.results = Collections.unmodifiableList(results);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Object> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the cursor to pass to {@link ShardedCriteria#seekPage(int, String)}
+     *         to get the next page, or null if this is the last page
+     */
+    public /*@Nullable*/ String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.engine.TypedValue;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A criterion that restricts each shard to its own range of results, which
+ * may change from one execution of the shard's Criteria to the next.  Once a
+ * criterion is added to a Criteria it can't be taken back, so this one is
+ * added once and told what to render for each Criteria before it executes.
+ * Until then it doesn't restrict anything.
+ * <p/>
+ * The ranges only matter while the shards execute, so they aren't serialized
+ * with the Criteria; a deserialized criterion doesn't restrict anything.
+ */
+class ShardRangeCriterion implements Criterion {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final TypedValue[] NO_VALUES = new TypedValue[0];
+
+    // keyed by identity, since shards execute their Criteria concurrently
+    private transient Map<Criteria, Criterion> ranges = newRanges();
+
+    /**
+     * @param criteria the Criteria of a shard
+     * @param range    the restriction to render the next time it executes,
+     *                 or null for none
+     */
+    void setRange(final Criteria criteria, final /*@Nullable*/ Criterion range) {
+        if (range == null) {
+            ranges.remove(criteria);
+        } else {
+            ranges.put(criteria, range);
+        }
+    }
+
+    /**
+     * @param criteria the Criteria of a shard
+     * @return the restriction rendered the next time it executes, or null for none
+     */
+    /*@Nullable*/ Criterion getRange(final Criteria criteria) {
+        return ranges.get(criteria);
+    }
+
+    @Override
+    public String toSqlString(final Criteria criteria, final CriteriaQuery criteriaQuery) throws HibernateException {
+        final Criterion range = getRange(criteria);
+        return range == null ? "1=1" : range.toSqlString(criteria, criteriaQuery);
+    }
+
+    @Override
+    public TypedValue[] getTypedValues(final Criteria criteria, final CriteriaQuery criteriaQuery)
+            throws HibernateException {
+        final Criterion range = getRange(criteria);
+        return range == null ? NO_VALUES : range.getTypedValues(criteria, criteriaQuery);
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ranges = newRanges();
+    }
+
+    private static Map<Criteria, Criterion> newRanges() {
+        return Collections.synchronizedMap(new IdentityHashMap<Criteria, Criterion>());
+    }
+
+    @Override
+    public String toString() {
+        return "shard range";
+    }
+}
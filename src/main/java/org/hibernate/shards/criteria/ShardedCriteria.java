@@ -19,6 +19,11 @@
 package org.hibernate.shards.criteria;
 
 import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Interface for a shard-aware {@link Criteria} implementation.
@@ -38,4 +43,100 @@ public interface ShardedCriteria extends Criteria {
    * @return the CriteriaFactory of this ShardedCriteria instance.
    */
   CriteriaFactory getCriteriaFactory();
+
+  /**
+   * @return true if the criteria was marked read-only, in which case it may be
+   *         executed against a read replica of each shard
+   */
+  boolean isReadOnlyRequested();
+
+  /**
+   * Same as {@link #list()}, but does not wait for the shards to answer.  The
+   * results are merged by the thread that completes the last shard.  The
+   * Session must not be used until the returned Future is done.
+   */
+  Future<List<Object>> listAsync() throws HibernateException;
+
+  /**
+   * Same as {@link #uniqueResult()}, but does not wait for the shards to
+   * answer.  The Session must not be used until the returned Future is done.
+   */
+  Future<Object> uniqueResultAsync() throws HibernateException;
+
+  /**
+   * Same as {@link #list()}, for results that may not fit in memory.  The
+   * results of every shard are read through a forward-only cursor, and once
+   * more than maxResultsInMemory of them have been read the rest are written
+   * to temporary files, in sorted runs, and evicted from the Session.  The
+   * runs are merged while iterating.  Results that come back from disk are
+   * copies that are not associated with the Session, and they must be
+   * Serializable: their lazy associations can't be initialized unless they
+   * are reattached, with {@link org.hibernate.Session#lock(Object, org.hibernate.LockMode)}
+   * for instance, so fetch the associations you need eagerly.
+   * <p/>
+   * The temporary files are deleted when the iterator is exhausted or closed
+   * with {@link org.hibernate.Hibernate#close(java.util.Iterator)}, which
+   * every iterator returned by this method supports.  Criteria with
+   * projections are not supported.
+   *
+   * @param maxResultsInMemory the number of results to keep in memory at most
+   */
+  Iterator<Object> iterate(int maxResultsInMemory) throws HibernateException;
+
+  /**
+   * Restricts the groups of a grouped ProjectionList, like a HAVING clause.
+   * The restriction is evaluated once the partial aggregates of every shard
+   * have been combined, before the results are ordered and paged.
+   *
+   * @param having the restriction to add
+   * @return this
+   */
+  ShardedCriteria addHaving(Having having);
+
+  /**
+   * Keyset pagination: returns the page of at most pageSize results that
+   * follows the given cursor, in the order of the criteria, with ties broken
+   * by identifier.  Rather than skipping the results of the previous pages,
+   * every shard is restricted to the results whose sort keys come after those
+   * of the last result of the previous page, so a page costs the same however
+   * deep it is.
+   * <p/>
+   * The criteria is executed by this call, so every page needs a new criteria
+   * with the same restrictions and orders.  The orders must be on properties
+   * of the criteria's entity that aren't null.  Projections and firstResult
+   * are not supported.
+   * <p/>
+   * Each shard finds the results after the cursor by comparing sort keys in
+   * the database, while the pages are merged and the cursor taken from the
+   * last result by comparing them in Java.  String keys must therefore sort
+   * the same way in the database's collation as with String.compareTo, or
+   * pages will skip or repeat results; a binary collation is safe.
+   *
+   * @param pageSize the maximum number of results of the page
+   * @param cursor   the cursor returned with the previous page, or null for
+   *                 the first page
+   * @return the page
+   */
+  SeekPage seekPage(int pageSize, /*@Nullable*/ String cursor) throws HibernateException;
+
+  /**
+   * For clients that can't use {@link #seekPage(int, String)}: when enabled,
+   * a page of {@link #list()} with a firstResult of at least the number of
+   * shards is fetched in up to three rounds rather than by asking every
+   * shard for firstResult + maxResults results.  When results are spread
+   * evenly across shards, a page then costs about firstResult + maxResults
+   * times the number of shards results overall.  Ties are broken by
+   * identifier, and the orders must be on properties of the criteria's
+   * entity that aren't null.  Projections are not supported.
+   * <p/>
+   * The shards compare sort keys in the collation of the database, but the
+   * results of the rounds are combined using the keys' natural ordering in
+   * Java.  Keys on which the two disagree, such as strings compared
+   * case-insensitively by the database, can make a page skip or repeat
+   * results.
+   *
+   * @param distributedOffset whether to fetch deep pages in several rounds
+   * @return this
+   */
+  ShardedCriteria setDistributedOffset(boolean distributedOffset);
 }
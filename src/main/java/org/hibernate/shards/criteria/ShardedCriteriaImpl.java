@@ -28,20 +28,54 @@ import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.criterion.AvgProjection;
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Distinct;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projection;
 import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.HibernateIterator;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardId;
 import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.scroll.ConcatenatedScrollableResults;
+import org.hibernate.shards.scroll.OrderedMergeScrollableResults;
 import org.hibernate.shards.strategy.access.ShardAccessStrategy;
 import org.hibernate.shards.strategy.exit.ConcatenateListsExitStrategy;
+import org.hibernate.shards.strategy.exit.DistinctExitStrategy;
+import org.hibernate.shards.strategy.exit.ExitOperationsCollector;
+import org.hibernate.shards.strategy.exit.ExitStrategy;
+import org.hibernate.shards.strategy.exit.ExternalMergeExitStrategy;
 import org.hibernate.shards.strategy.exit.FirstNonNullResultExitStrategy;
+import org.hibernate.shards.strategy.exit.LimitedConcatenateListsExitStrategy;
+import org.hibernate.shards.strategy.exit.OrderExitOperation;
+import org.hibernate.shards.strategy.exit.OrderedMergeExitStrategy;
+import org.hibernate.shards.strategy.exit.SpilledResults;
+import org.hibernate.shards.strategy.exit.TopNExitStrategy;
+import org.hibernate.shards.strategy.exit.UniqueResultExitStrategy;
+import org.hibernate.shards.strategy.resolution.IdentifierShardResolver;
+import org.hibernate.shards.strategy.resolution.ShardResolutionStrategy;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Maps;
+import org.hibernate.shards.util.Preconditions;
+import org.hibernate.shards.util.Sets;
 import org.hibernate.transform.ResultTransformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 /**
  * Concrete implementation of the {@link ShardedCriteria} interface.
@@ -76,6 +110,23 @@ public class ShardedCriteriaImpl implements ShardedCriteria {
     // the last value with which maxResults was called
     private Integer maxResults;
 
+    // whether the client marked this criteria read-only
+    private boolean readOnlyRequested;
+
+    // whether deep pages are fetched in several rounds rather than in one
+    private boolean distributedOffset;
+
+    // restricts each shard to its range of results in those rounds
+    private ShardRangeCriterion shardRange;
+
+    // resolves the shards of the entities the criteria is restricted to, or null to use every shard
+    private final ShardResolutionStrategy shardResolutionStrategy;
+
+    // the restrictions added to the criteria
+    private final List<Criterion> restrictions = Lists.newArrayList();
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
     /**
      * Construct a ShardedCriteriaImpl
      *
@@ -89,11 +140,31 @@ public class ShardedCriteriaImpl implements ShardedCriteria {
                                final List<Shard> shards,
                                final CriteriaFactory criteriaFactory,
                                final ShardAccessStrategy shardAccessStrategy) {
+        this(criteriaId, shards, criteriaFactory, shardAccessStrategy, null);
+    }
+
+    /**
+     * Construct a ShardedCriteriaImpl that is only executed on the shards of
+     * the entities its restrictions confine it to, if any.
+     *
+     * @param criteriaId              unique id for this ShardedCriteria
+     * @param shards                  the shards that this ShardedCriteria is aware of
+     * @param criteriaFactory         factory that knows how to create concrete {@link Criteria} objects
+     * @param shardAccessStrategy     the access strategy we use when we execute this
+     *                                ShardedCriteria across multiple shards.
+     * @param shardResolutionStrategy resolves the shards on which an entity may live
+     */
+    public ShardedCriteriaImpl(final CriteriaId criteriaId,
+                               final List<Shard> shards,
+                               final CriteriaFactory criteriaFactory,
+                               final ShardAccessStrategy shardAccessStrategy,
+                               final /*@Nullable*/ ShardResolutionStrategy shardResolutionStrategy) {
 
         this.criteriaId = criteriaId;
         this.shards = shards;
         this.criteriaFactory = criteriaFactory;
         this.shardAccessStrategy = shardAccessStrategy;
+        this.shardResolutionStrategy = shardResolutionStrategy;
         this.criteriaCollector = new ExitOperationsCriteriaCollector();
         this.criteriaCollector.setSessionFactory(shards.get(0).getSessionFactoryImplementor());
     }
@@ -108,6 +179,11 @@ public class ShardedCriteriaImpl implements ShardedCriteria {
         return criteriaFactory;
     }
 
+    @Override
+    public boolean isReadOnlyRequested() {
+        return readOnlyRequested;
+    }
+
     @Override
     public String getAlias() {
         return getOrEstablishSomeCriteria().getAlias();
@@ -115,17 +191,34 @@ public class ShardedCriteriaImpl implements ShardedCriteria {
 
     @Override
     public Criteria setProjection(final Projection projection) {
+        if (projection instanceof ProjectionList || projection instanceof AvgProjection) {
+            // one query per shard computes all the aggregates of the list.  An
+            // average on its own is a list of one, so the shards compute it as
+            // a sum and a count, which combine into the exact average
+            final ProjectionList projectionList = projection instanceof ProjectionList
+                    ? (ProjectionList) projection : Projections.projectionList().add(projection);
+            final DecomposedProjectionList decomposed =
+                    new DecomposedProjectionList(projectionList, getSumTypeResolver());
+            criteriaCollector.setDecomposedProjectionList(decomposed);
+            if (decomposed.isGrouped() && maxResults != null) {
+                // a limit that was already applied or queued can't be taken
+                // back, so we lift it instead
+                setCriteriaEvent(new SetMaxResultsEvent(Integer.MAX_VALUE));
+            }
+            return setCriteriaEvent(new SetProjectionEvent(decomposed.getShardProjection()));
+        }
         criteriaCollector.addProjection(projection);
-        if (projection instanceof AvgProjection) {
-            setAvgProjection(projection);
+        if (projection instanceof Distinct) {
+            // each shard removes its own duplicates, we remove the ones across shards
+            setCriteriaEvent(new SetProjectionEvent(projection));
         }
 
-        // TODO - handle ProjectionList
         return this;
     }
 
     @Override
     public Criteria add(final Criterion criterion) {
+        restrictions.add(criterion);
         return setCriteriaEvent(new AddCriterionEvent(criterion));
     }
 
@@ -218,6 +311,11 @@ public class ShardedCriteriaImpl implements ShardedCriteria {
         // the criteriaCollector will use the maxResult value that was passed in
         criteriaCollector.setMaxResults(maxResults);
         this.maxResults = maxResults;
+        if (criteriaCollector.isGrouped()) {
+            // the first groups are only known once the partial aggregates of
+            // every shard are combined, so every shard returns all of them
+            return this;
+        }
         int adjustedMaxResults = maxResults + firstResult;
         // the query executed against each shard will use maxResult + firstResult
         return setCriteriaEvent(new SetMaxResultsEvent(adjustedMaxResults));
@@ -266,6 +364,7 @@ public class ShardedCriteriaImpl implements ShardedCriteria {
 
     @Override
     public Criteria setReadOnly(final boolean readOnly) {
+        this.readOnlyRequested = readOnly;
         return setCriteriaEvent(new SetReadOnlyEvent(readOnly));
     }
 
@@ -305,27 +404,488 @@ public class ShardedCriteriaImpl implements ShardedCriteria {
     }
 
     /**
-     * Unsupported.  This is a scope decision, not a technical decision.
+     * Scrolls through the results of all shards with one forward-only cursor
+     * per shard.  If the criteria has orders, every shard already returns its
+     * rows in that order, so the cursors are merged into a single ordered
+     * stream without holding the results in memory.  Projections that have to
+     * be computed across shards are not supported.
      */
     @Override
     public ScrollableResults scroll() throws HibernateException {
-        throw new UnsupportedOperationException();
+        return scroll(ScrollMode.FORWARD_ONLY);
     }
 
     /**
-     * Unsupported.  This is a scope decision, not a technical decision.
+     * Only {@link ScrollMode#FORWARD_ONLY} is supported.
+     *
+     * @see #scroll()
      */
     @Override
     public ScrollableResults scroll(final ScrollMode scrollMode) throws HibernateException {
-        throw new UnsupportedOperationException();
+        if (scrollMode != ScrollMode.FORWARD_ONLY) {
+            throw new UnsupportedOperationException("Sharded criteria can only be scrolled forward.");
+        }
+        if (criteriaCollector.hasProjection()) {
+            throw new UnsupportedOperationException("Cannot scroll a sharded criteria with projections.");
+        }
+        final ShardOperation<ScrollableResults> shardOp = new ShardOperation<ScrollableResults>() {
+
+            @Override
+            public ScrollableResults execute(final Shard shard) {
+                shard.establishCriteria(ShardedCriteriaImpl.this);
+                return shard.scroll(criteriaId);
+            }
+
+            @Override
+            public String getOperationName() {
+                return "scroll()";
+            }
+        };
+        final Integer firstResult = criteriaCollector.getFirstResult();
+        final Integer maxResults = criteriaCollector.getMaxResults();
+        if (criteriaCollector.getOrders().isEmpty()) {
+            return new ConcatenatedScrollableResults(
+                    getTargetShards(),
+                    shardOp,
+                    firstResult == null ? 0 : firstResult,
+                    maxResults == null ? -1 : maxResults);
+        }
+        return new OrderedMergeScrollableResults(
+                getTargetShards(),
+                shardOp,
+                new OrderExitOperation(criteriaCollector.getOrders()).getComparator(),
+                firstResult == null ? 0 : firstResult,
+                maxResults == null ? -1 : maxResults);
+    }
+
+    @Override
+    public ShardedCriteria setDistributedOffset(final boolean distributedOffset) {
+        this.distributedOffset = distributedOffset;
+        return this;
     }
 
     @Override
     public List list() throws HibernateException {
+        final List<Shard> targetShards = getTargetShards();
+        if (distributedOffset && maxResults != null && targetShards.size() > 1 && firstResult >= targetShards.size()
+                && !criteriaCollector.hasProjection()) {
+            final List<Object> page = listWithDistributedOffset(targetShards);
+            if (page != null) {
+                return page;
+            }
+        }
+        /**
+         * We're going to concatenate all our results and then use our
+         * criteria collector to do post processing.
+         */
+        return shardAccessStrategy.apply(
+                targetShards,
+                buildListOperation(),
+                buildListExitStrategy(),
+                criteriaCollector);
+    }
+
+    @Override
+    public Future<List<Object>> listAsync() throws HibernateException {
+        return shardAccessStrategy.applyAsync(
+                getTargetShards(),
+                buildListOperation(),
+                buildListExitStrategy(),
+                criteriaCollector);
+    }
+
+    @Override
+    public ShardedCriteria addHaving(final Having having) {
+        criteriaCollector.addHaving(having);
+        return this;
+    }
+
+    @Override
+    public SeekPage seekPage(final int pageSize, final /*@Nullable*/ String cursor) throws HibernateException {
+        Preconditions.checkArgument(pageSize > 0);
+        if (criteriaCollector.hasProjection()) {
+            throw new UnsupportedOperationException("Cannot seek through a sharded criteria with projections.");
+        }
+        final Integer firstResult = criteriaCollector.getFirstResult();
+        if (firstResult != null && firstResult != 0) {
+            throw new UnsupportedOperationException("Cannot seek through a sharded criteria with a firstResult.");
+        }
+        final List<InMemoryOrderBy> orders = getOrdersWithIdentifier();
+        if (cursor != null) {
+            add(SeekCursor.fromToken(cursor).toCriterion(orders));
+        }
+        setMaxResults(pageSize);
+        @SuppressWarnings("unchecked")
+        final List<Object> results = list();
+        final String nextCursor = results.size() < pageSize
+                ? null : SeekCursor.after(orders, results.get(results.size() - 1)).toToken();
+        return new SeekPage(results, nextCursor);
+    }
+
+    /**
+     * @return the orders of the criteria, the last of which is on the
+     *         identifier, so that no two results have the same sort keys
+     */
+    private List<InMemoryOrderBy> getOrdersWithIdentifier() {
+        final String idProperty = getIdentifierPropertyName();
+        boolean orderedById = false;
+        for (final InMemoryOrderBy order : criteriaCollector.getOrders()) {
+            orderedById |= idProperty.equals(order.getExpression());
+        }
+        if (!orderedById) {
+            addOrder(Order.asc(idProperty));
+        }
+        return criteriaCollector.getOrders();
+    }
+
+    private String getIdentifierPropertyName() {
+        final SessionFactoryImplementor sessionFactory = shards.get(0).getSessionFactoryImplementor();
+        ClassMetadata metadata = null;
+        if (sessionFactory != null && criteriaFactory instanceof CriteriaFactoryImpl) {
+            metadata = sessionFactory.getClassMetadata(((CriteriaFactoryImpl) criteriaFactory).getEntityName());
+        }
+        if (metadata == null || metadata.getIdentifierPropertyName() == null) {
+            throw new UnsupportedOperationException(
+                    "Cannot seek through results that don't have an identifier property.");
+        }
+        return metadata.getIdentifierPropertyName();
+    }
+
+    /**
+     * @return the shards on which the entities whose identifiers the
+     *         restrictions confine the criteria to may live, or every shard
+     *         if the criteria isn't confined to particular identifiers
+     */
+    List<Shard> getTargetShards() {
+        if (shardResolutionStrategy == null || shards.size() == 1 || restrictions.isEmpty()
+                || !(criteriaFactory instanceof CriteriaFactoryImpl)) {
+            return shards;
+        }
+        final SessionFactoryImplementor sessionFactory = shards.get(0).getSessionFactoryImplementor();
+        final CriteriaFactoryImpl factory = (CriteriaFactoryImpl) criteriaFactory;
+        final ClassMetadata metadata = sessionFactory == null ? null : sessionFactory.getClassMetadata(factory.getEntityName());
+        if (metadata == null || metadata.getIdentifierPropertyName() == null) {
+            return shards;
+        }
+        final Set<String> identifierProperties = Sets.newHashSet(metadata.getIdentifierPropertyName());
+        if (!Arrays.asList(metadata.getPropertyNames()).contains("id")) {
+            // id refers to the identifier unless the entity has another property by that name
+            identifierProperties.add("id");
+        }
+        if (factory.getAlias() != null) {
+            for (final String property : Lists.newArrayList(identifierProperties)) {
+                identifierProperties.add(factory.getAlias() + "." + property);
+            }
+        }
+        final Set<ShardId> shardIds = CriterionIdentifierRestriction.selectShardIds(restrictions, identifierProperties,
+                new IdentifierShardResolver(metadata.getEntityName(),
+                        metadata.getIdentifierType().getReturnedClass(), shardResolutionStrategy));
+        if (shardIds == null) {
+            return shards;
+        }
+        final List<Shard> targetShards = Lists.newArrayList();
+        for (final Shard shard : shards) {
+            if (!Collections.disjoint(shard.getShardIds(), shardIds)) {
+                targetShards.add(shard);
+            }
+        }
+        if (targetShards.isEmpty()) {
+            // no entity matches, so any shard returns what the criteria returns
+            return Collections.singletonList(shards.get(0));
+        }
+        return targetShards;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<Object> iterate(final int maxResultsInMemory) throws HibernateException {
+        if (criteriaCollector.hasProjection()) {
+            throw new UnsupportedOperationException("Cannot iterate over a sharded criteria with projections.");
+        }
+        if (criteriaCollector.getMaxResults() != null) {
+            // we only hold on to a page of results anyway
+            return new InMemoryIterator(list().iterator());
+        }
+        final ExternalMergeExitStrategy exitStrategy =
+                new ExternalMergeExitStrategy(criteriaCollector.getOrders(), maxResultsInMemory, null);
+        final ShardOperation<List<Object>> shardOp = new ShardOperation<List<Object>>() {
+
+            @Override
+            public List<Object> execute(final Shard shard) {
+                shard.establishCriteria(ShardedCriteriaImpl.this);
+                // the results are handed to the exit strategy as they are read
+                final boolean onReplica = readOnlyRequested && !shard.isTransactionActive();
+                exitStrategy.addResults(shard.scroll(criteriaId),
+                        onReplica ? shard.getReadSession() : shard.getSession());
+                return Collections.emptyList();
+            }
+
+            @Override
+            public String getOperationName() {
+                return "iterate(int maxResultsInMemory)";
+            }
+        };
+        final List<Object> results = shardAccessStrategy.apply(getTargetShards(), shardOp, exitStrategy,
+                criteriaCollector);
+        final Iterator<Object> it = results instanceof SpilledResults
+                ? (Iterator<Object>) ((SpilledResults) results).iterateOnce()
+                : new InMemoryIterator(results.iterator());
+        // the results were merged but nothing else was applied to them
+        final Integer firstResult = criteriaCollector.getFirstResult();
+        for (int i = 0; firstResult != null && i < firstResult && it.hasNext(); i++) {
+            it.next();
+        }
+        return it;
+    }
+
+    /**
+     * Lets results that are all in memory be closed like any other iterator
+     * returned by {@link #iterate(int)}.
+     */
+    private static final class InMemoryIterator implements HibernateIterator {
+
+        private final Iterator<?> delegate;
+
+        private boolean closed;
+
+        private InMemoryIterator(final Iterator<?> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !closed && delegate.hasNext();
+        }
+
+        @Override
+        public Object next() {
+            if (closed) {
+                throw new NoSuchElementException();
+            }
+            return delegate.next();
+        }
 
-        // build a shard operation and apply it across all shards
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Fetches a page deep into the results in up to three rounds, none of
+     * which asks a shard for firstResult + maxResults results unless the
+     * results are very unevenly spread across shards.  With n shards and an
+     * offset of o:
+     * <ol>
+     * <li>Every shard returns maxResults results starting at o / n.  The
+     * smallest of their first results is the boundary: no shard has more than
+     * o / n results before it, so at most o results come before it overall.</li>
+     * <li>Every shard returns its results from the boundary up to the last
+     * result it returned in the first round.  Those that come before the
+     * first result it returned in the first round tell us how many of its
+     * results come before the boundary, and so the global offset of the
+     * boundary.</li>
+     * <li>The page is read from the merged results of the second round,
+     * starting at the difference between o and the offset of the boundary.
+     * If the page reaches past the results every shard is known to have
+     * returned, every shard instead returns the results from the boundary on,
+     * as many as the page needs.</li>
+     * </ol>
+     * If a shard returns nothing in the first round we don't know how many of
+     * its results come before the boundary, so we fall back to asking every
+     * shard for firstResult + maxResults results.  We do the same if a shard
+     * doesn't answer a round at all, say because the access strategy gave up
+     * waiting for it.
+     * <p/>
+     * The shards compare the ranges with the collation of the database, while
+     * the boundary and the merge use the natural ordering of the keys in Java.
+     * Sort keys on which the two disagree, such as strings in a
+     * case-insensitive collation, can make the page skip or repeat results.
+     *
+     * @return the page, or null if it has to be fetched the regular way
+     */
+    private /*@Nullable*/ List<Object> listWithDistributedOffset(final List<Shard> targetShards) {
+        final List<InMemoryOrderBy> orders = getOrdersWithIdentifier();
+        if (shardRange == null) {
+            shardRange = new ShardRangeCriterion();
+            add(shardRange);
+        }
+        final int pageSize = maxResults;
+        final int shardOffset = firstResult / targetShards.size();
+        final OrderExitOperation orderOp = new OrderExitOperation(orders);
+        final Comparator<Object> comparator = orderOp.getComparator();
+        try {
+            final Map<Shard, List<Object>> slices = listEveryShard(targetShards, shardOffset, pageSize,
+                    Collections.<Shard, Criterion>emptyMap());
+            if (slices == null) {
+                return null;
+            }
+            Object boundary = null;
+            for (final List<Object> slice : slices.values()) {
+                if (slice.isEmpty()) {
+                    return null;
+                }
+                if (boundary == null || comparator.compare(slice.get(0), boundary) < 0) {
+                    boundary = slice.get(0);
+                }
+            }
+
+            final Criterion fromBoundary =
+                    SeekCursor.compare(orders, SeekCursor.getKeys(orders, boundary), true, true);
+            final Map<Shard, Criterion> ranges = Maps.newHashMap();
+            // the last result up to which every shard returned all of its results
+            Object completeUpTo = null;
+            for (final Map.Entry<Shard, List<Object>> entry : slices.entrySet()) {
+                final List<Object> slice = entry.getValue();
+                if (slice.size() < pageSize) {
+                    // the shard has no more results than these
+                    ranges.put(entry.getKey(), fromBoundary);
+                    continue;
+                }
+                final Object last = slice.get(slice.size() - 1);
+                final Criterion upToLast = SeekCursor.compare(orders, SeekCursor.getKeys(orders, last), false, true);
+                ranges.put(entry.getKey(), Restrictions.and(fromBoundary, upToLast));
+                if (completeUpTo == null || comparator.compare(last, completeUpTo) < 0) {
+                    completeUpTo = last;
+                }
+            }
+            final Map<Shard, List<Object>> windows = listEveryShard(targetShards, 0, Integer.MAX_VALUE, ranges);
+            if (windows == null) {
+                return null;
+            }
+            long boundaryOffset = 0;
+            final List<Object> merged = Lists.newArrayList();
+            for (final Map.Entry<Shard, List<Object>> entry : windows.entrySet()) {
+                final int beforeSlice = entry.getValue().size() - slices.get(entry.getKey()).size();
+                boundaryOffset += shardOffset - beforeSlice;
+                merged.addAll(entry.getValue());
+            }
+            final int skip = (int) (firstResult - boundaryOffset);
+            List<Object> sorted = orderOp.apply(merged);
+            final int pageEnd = skip + pageSize;
+            final boolean complete = completeUpTo == null
+                    || (pageEnd <= sorted.size() && comparator.compare(sorted.get(pageEnd - 1), completeUpTo) <= 0);
+            if (!complete) {
+                final Map<Shard, Criterion> fromBoundaryOnly = Maps.newHashMap();
+                for (final Shard shard : targetShards) {
+                    fromBoundaryOnly.put(shard, fromBoundary);
+                }
+                final Map<Shard, List<Object>> tails = listEveryShard(targetShards, 0, pageEnd, fromBoundaryOnly);
+                if (tails == null) {
+                    return null;
+                }
+                final List<Object> rest = Lists.newArrayList();
+                for (final List<Object> results : tails.values()) {
+                    rest.addAll(results);
+                }
+                sorted = new OrderExitOperation(orders, pageEnd).apply(rest);
+            }
+            if (skip >= sorted.size()) {
+                return Lists.newArrayList();
+            }
+            return Lists.newArrayList(sorted.subList(skip, Math.min(sorted.size(), pageEnd)));
+        } finally {
+            // leave the shards' Criteria as the regular path expects them
+            for (final Shard shard : targetShards) {
+                final Criteria criteria = shard.getCriteriaById(criteriaId);
+                if (criteria != null) {
+                    shardRange.setRange(criteria, null);
+                    criteria.setFirstResult(0);
+                    criteria.setMaxResults(firstResult + maxResults);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes the Criteria of every target shard once, each restricted to its range.
+     *
+     * @return the results of every shard, or null if some shard didn't answer
+     */
+    private /*@Nullable*/ Map<Shard, List<Object>> listEveryShard(final List<Shard> targetShards, final int shardFirstResult, final int shardMaxResults,
+                                                    final Map<Shard, Criterion> ranges) {
+        final Map<Shard, List<Object>> results = Collections.synchronizedMap(new LinkedHashMap<Shard, List<Object>>());
         final ShardOperation<List<Object>> shardOp = new ShardOperation<List<Object>>() {
 
+            @Override
+            public List<Object> execute(final Shard shard) {
+                final Criteria criteria = shard.establishCriteria(ShardedCriteriaImpl.this);
+                shardRange.setRange(criteria, ranges.get(shard));
+                criteria.setFirstResult(shardFirstResult);
+                criteria.setMaxResults(shardMaxResults);
+                return shard.list(criteriaId);
+            }
+
+            @Override
+            public String getOperationName() {
+                return "list()";
+            }
+        };
+        final ExitStrategy<List<Object>> exitStrategy = new ExitStrategy<List<Object>>() {
+
+            @Override
+            public boolean addResult(final List<Object> result, final Shard shard) {
+                results.put(shard, result);
+                return false;
+            }
+
+            @Override
+            public List<Object> compileResults(final ExitOperationsCollector exitOperationsCollector) {
+                return Collections.emptyList();
+            }
+        };
+        shardAccessStrategy.apply(targetShards, shardOp, exitStrategy, criteriaCollector);
+        if (results.size() < targetShards.size()) {
+            log.warn(String.format("Only %d of %d shards answered, fetching the page the regular way",
+                    results.size(), targetShards.size()));
+            return null;
+        }
+        return results;
+    }
+
+    /**
+     * If the results don't have to be ordered or aggregated across shards, any
+     * firstResult + maxResults of them will do, so we can stop asking shards
+     * for results as soon as we have that many.  If they have to be ordered
+     * we still need to hear from every shard, but we only hold on to the
+     * results that can still make it into the requested page.  Without a page
+     * the shards' results are merged, since each of them is sorted already.
+     * Duplicates of distinct results are removed as the results arrive.
+     */
+    private ExitStrategy<List<Object>> buildListExitStrategy() {
+        final Integer maxResults = criteriaCollector.getMaxResults();
+        if (criteriaCollector.hasAggregateProjection()) {
+            return new ConcatenateListsExitStrategy();
+        }
+        final boolean distinct = criteriaCollector.isDistinct();
+        if (maxResults == null) {
+            if (criteriaCollector.getOrders().isEmpty()) {
+                return withDistinct(new ConcatenateListsExitStrategy(), distinct);
+            }
+            return withDistinct(new OrderedMergeExitStrategy(criteriaCollector.getOrders()), distinct);
+        }
+        final Integer firstResult = criteriaCollector.getFirstResult();
+        final int pageEnd = (firstResult == null ? 0 : firstResult) + maxResults;
+        if (criteriaCollector.getOrders().isEmpty()) {
+            return withDistinct(new LimitedConcatenateListsExitStrategy(pageEnd), distinct);
+        }
+        // the buffer removes duplicates itself, remembering only the results it holds
+        return new TopNExitStrategy(criteriaCollector.getOrders(), pageEnd, distinct);
+    }
+
+    private static ExitStrategy<List<Object>> withDistinct(final ExitStrategy<List<Object>> exitStrategy,
+                                                           final boolean distinct) {
+        return distinct ? new DistinctExitStrategy(exitStrategy) : exitStrategy;
+    }
+
+    private ShardOperation<List<Object>> buildListOperation() {
+        return new ShardOperation<List<Object>>() {
+
             @Override
             public List<Object> execute(final Shard shard) {
                 shard.establishCriteria(ShardedCriteriaImpl.this);
@@ -337,30 +897,47 @@ public class ShardedCriteriaImpl implements ShardedCriteria {
                 return "list()";
             }
         };
+    }
 
-        /**
-         * We don't support shard selection for criteria queries.  If you want
-         * custom shards, create a ShardedSession with only the shards you want.
-         * We're going to concatenate all our results and then use our
-         * criteria collector to do post processing.
-         */
+    @Override
+    public Object uniqueResult() throws HibernateException {
         return shardAccessStrategy.apply(
-                shards,
-                shardOp,
-                new ConcatenateListsExitStrategy(),
+                getTargetShards(),
+                buildUniqueResultOperation(),
+                buildUniqueResultExitStrategy(),
                 criteriaCollector);
     }
 
     @Override
-    public Object uniqueResult() throws HibernateException {
+    public Future<Object> uniqueResultAsync() throws HibernateException {
+        return shardAccessStrategy.applyAsync(
+                getTargetShards(),
+                buildUniqueResultOperation(),
+                buildUniqueResultExitStrategy(),
+                criteriaCollector);
+    }
 
-        // build a shard operation and apply it across all shards
-        final ShardOperation<Object> shardOp = new ShardOperation<Object>() {
+    /**
+     * Without aggregates we're going to return the first non-null result we
+     * get from a shard.  The partial aggregates of the shards have to be
+     * combined first.
+     */
+    private ExitStrategy<Object> buildUniqueResultExitStrategy() {
+        if (criteriaCollector.hasAggregateProjection()) {
+            return new UniqueResultExitStrategy();
+        }
+        return new FirstNonNullResultExitStrategy<Object>();
+    }
+
+    private ShardOperation<Object> buildUniqueResultOperation() {
+        final boolean aggregated = criteriaCollector.hasAggregateProjection();
+        return new ShardOperation<Object>() {
 
             @Override
             public Object execute(Shard shard) {
                 shard.establishCriteria(ShardedCriteriaImpl.this);
-                return shard.uniqueResult(criteriaId);
+                // the partial aggregates of a shard are combined with those of the others
+                return aggregated ? shard.list(criteriaId) : shard.uniqueResult(criteriaId);
             }
 
             @Override
@@ -368,17 +945,6 @@ public class ShardedCriteriaImpl implements ShardedCriteria {
                 return "uniqueResult()";
             }
         };
-
-        /**
-         * We don't support shard selection for criteria queries.  If you want
-         * custom shards, create a ShardedSession with only the shards you want.
-         * We're going to return the first non-null result we get from a shard.
-         */
-        return shardAccessStrategy.apply(
-                shards,
-                shardOp,
-                new FirstNonNullResultExitStrategy<Object>(),
-                criteriaCollector);
     }
 
     ExitOperationsCriteriaCollector getCriteriaCollector() {
@@ -411,16 +977,15 @@ public class ShardedCriteriaImpl implements ShardedCriteria {
         return criteria;
     }
 
-    private void setAvgProjection(final Projection projection) {
-
-        // We need to modify the query to pull back not just the average but also
-        // the count.  We'll do this by creating a ProjectionList with both the
-        // average and the row count.
-        final ProjectionList projectionList = Projections.projectionList()
-                .add(projection)
-                .add(Projections.rowCount());
-
-        setCriteriaEvent(new SetProjectionEvent(projectionList));
+    private /*@Nullable*/ SumTypeResolver getSumTypeResolver() {
+        if (!(criteriaFactory instanceof CriteriaFactoryImpl)) {
+            return null;
+        }
+        final SessionFactoryImplementor sessionFactory = shards.get(0).getSessionFactoryImplementor();
+        if (sessionFactory == null) {
+            return null;
+        }
+        return new SumTypeResolver(sessionFactory, ((CriteriaFactoryImpl) criteriaFactory).getEntityName());
     }
 
     /**
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.HibernateException;
+import org.hibernate.dialect.function.SQLFunction;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.type.Type;
+
+/**
+ * Works out the type of the sum of a property of an entity the way Hibernate
+ * does when it executes a sum projection, so the sums returned by the shards
+ * can be added up in the matching representation.
+ */
+class SumTypeResolver {
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    private final String entityName;
+
+    SumTypeResolver(final SessionFactoryImplementor sessionFactory, final String entityName) {
+        this.sessionFactory = sessionFactory;
+        this.entityName = entityName;
+    }
+
+    /**
+     * @param propertyName the property that is summed
+     * @return the type of the sum, or null if it can't be worked out, for
+     *         instance because the property belongs to an associated entity
+     */
+    /*@Nullable*/ Type getSumType(final String propertyName) {
+        try {
+            final ClassMetadata metadata = sessionFactory.getClassMetadata(entityName);
+            final SQLFunction sum = sessionFactory.getSqlFunctionRegistry().findSQLFunction("sum");
+            if (metadata == null || sum == null) {
+                return null;
+            }
+            return sum.getReturnType(metadata.getPropertyType(propertyName), sessionFactory);
+        } catch (HibernateException e) {
+            return null;
+        }
+    }
+}
@@ -20,8 +20,10 @@ package org.hibernate.shards.engine;
 
 import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.shards.ShardId;
+import org.hibernate.shards.loadbalance.ReplicaLoadBalancer;
 import org.hibernate.shards.session.ShardedSessionFactory;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -35,4 +37,15 @@ public interface ShardedSessionFactoryImplementor extends ShardedSessionFactory,
     Map<SessionFactoryImplementor, Set<ShardId>> getSessionFactoryShardIdMap();
 
     boolean containsFactory(SessionFactoryImplementor factory);
+
+    /**
+     * @param factory the SessionFactory of the primary database of a shard
+     * @return the SessionFactories of the read replicas of that shard, empty if it has none
+     */
+    List<SessionFactoryImplementor> getReplicaSessionFactories(SessionFactoryImplementor factory);
+
+    /**
+     * @return the load balancer that chooses which replica serves the reads of a session
+     */
+    ReplicaLoadBalancer getReplicaLoadBalancer();
 }
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.loadbalance;
+
+import org.hibernate.engine.SessionFactoryImplementor;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends reads to replicas with a low observed latency.  Latency is tracked
+ * as an exponentially weighted moving average of the reported reads.  Each
+ * read session compares two replicas, one picked by rotation and one at
+ * random, and goes to the faster of the two, so the fastest replica gets most
+ * of the load without getting all of it.  Every {@value #PROBE_INTERVAL}th
+ * read session goes to the next replica in turn whatever its latency, so a
+ * replica that was slow keeps getting measured and wins its traffic back
+ * once it recovers.  Replicas that haven't been measured yet are preferred
+ * so that every replica gets sampled.
+ * <p>
+ * The latency of a read is the time the whole query took, so the average
+ * depends on the queries a replica happened to serve as well as on the
+ * replica itself.  A single expensive query makes a replica look slow until
+ * later reads pull its average back down.
+ */
+public class LatencyAwareReplicaLoadBalancer implements ReplicaLoadBalancer {
+
+    // weight of a new sample is 1 / SMOOTHING_FACTOR
+    private static final int SMOOTHING_FACTOR = 5;
+
+    // one read session in PROBE_INTERVAL ignores the latencies
+    static final int PROBE_INTERVAL = 20;
+
+    private static final long UNMEASURED = -1;
+
+    private final ConcurrentMap<SessionFactoryImplementor, AtomicLong> averageLatencies =
+            new ConcurrentHashMap<SessionFactoryImplementor, AtomicLong>();
+
+    // Can be shared by multiple threads so access to the counters
+    // needs to be threadsafe.
+    private final AtomicInteger nextOffset = new AtomicInteger();
+    private final AtomicInteger nextProbe = new AtomicInteger();
+
+    private final Random random = new Random();
+
+    @Override
+    public SessionFactoryImplementor getNextReplica(final List<SessionFactoryImplementor> replicas) {
+        final int size = replicas.size();
+        final int read = nextOffset.getAndIncrement() & Integer.MAX_VALUE;
+        if (size == 1) {
+            return replicas.get(0);
+        }
+        for (final SessionFactoryImplementor replica : replicas) {
+            if (getAverageLatency(replica) == UNMEASURED) {
+                return replica;
+            }
+        }
+        if (read % PROBE_INTERVAL == PROBE_INTERVAL - 1) {
+            return replicas.get((nextProbe.getAndIncrement() & Integer.MAX_VALUE) % size);
+        }
+        final SessionFactoryImplementor first = replicas.get(read % size);
+        final SessionFactoryImplementor second = replicas.get((read + 1 + random.nextInt(size - 1)) % size);
+        // ties go to the rotating pick so that equally fast replicas share the load
+        return getAverageLatency(second) < getAverageLatency(first) ? second : first;
+    }
+
+    @Override
+    public void recordLatency(final SessionFactoryImplementor replica, final long elapsedNanos) {
+        AtomicLong average = averageLatencies.get(replica);
+        if (average == null) {
+            final AtomicLong newAverage = new AtomicLong(elapsedNanos);
+            average = averageLatencies.putIfAbsent(replica, newAverage);
+            if (average == null) {
+                return;
+            }
+        }
+        long current;
+        do {
+            current = average.get();
+        } while (!average.compareAndSet(current, current + (elapsedNanos - current) / SMOOTHING_FACTOR));
+    }
+
+    /**
+     * @return the average latency of the replica in nanoseconds, or -1 if it
+     *         hasn't been measured yet
+     */
+    long getAverageLatency(final SessionFactoryImplementor replica) {
+        final AtomicLong average = averageLatencies.get(replica);
+        return average == null ? UNMEASURED : average.get();
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.loadbalance;
+
+import org.hibernate.engine.SessionFactoryImplementor;
+
+import java.util.List;
+
+/**
+ * Chooses which read replica of a shard serves the reads of a session.
+ * Implementations are expected to be threadsafe.
+ *
+ * @see org.hibernate.shards.cfg.ReplicatedShardConfiguration
+ */
+public interface ReplicaLoadBalancer {
+
+    /**
+     * @param replicas the replicas of a single shard, never empty
+     * @return the replica that should serve the next read session
+     */
+    SessionFactoryImplementor getNextReplica(List<SessionFactoryImplementor> replicas);
+
+    /**
+     * Report how long a read took on a replica.
+     *
+     * @param replica      the replica the read was executed against
+     * @param elapsedNanos how long the read took
+     */
+    void recordLatency(SessionFactoryImplementor replica, long elapsedNanos);
+}
@@ -21,6 +21,7 @@ package org.hibernate.shards.query;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 import org.hibernate.Session;
+import org.hibernate.engine.SessionFactoryImplementor;
 
 /**
  * @author Maulik Shah
@@ -42,4 +43,9 @@ public class AdHocQueryFactoryImpl implements QueryFactory {
     public SQLQuery createSQLQuery(final Session session) {
         return session.createSQLQuery(queryString);
     }
+
+    @Override
+    public String getQueryString(final SessionFactoryImplementor sessionFactory) {
+        return queryString;
+    }
 }
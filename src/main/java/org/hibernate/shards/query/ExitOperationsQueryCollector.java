@@ -19,19 +19,23 @@
 package org.hibernate.shards.query;
 
 import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.strategy.exit.DistinctExitOperation;
 import org.hibernate.shards.strategy.exit.ExitOperationsCollector;
 import org.hibernate.shards.strategy.exit.FirstResultExitOperation;
 import org.hibernate.shards.strategy.exit.MaxResultsExitOperation;
+import org.hibernate.shards.strategy.exit.OrderExitOperation;
+import org.hibernate.shards.strategy.exit.PartialAggregate;
+import org.hibernate.shards.strategy.exit.PartialAggregateExitOperation;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Exit operations for queries is essentially not implemented. Its intended use
- * is to record a set of aggregation type operations to be executed on the
- * combined results for a query executed on each shard.
- *
- * We do implement setMaxResults and setFirstResult as these operations do not
- * require parsing the query string.
+ * Records the operations to be executed on the combined results of a query
+ * executed on each shard.  setMaxResults and setFirstResult don't require
+ * parsing the query string, the aggregates, distinct and orders come from the
+ * select and order by clauses of an HQL query.
  *
  * {@inheritDoc}
  *
@@ -45,7 +49,24 @@ public class ExitOperationsQueryCollector implements ExitOperationsCollector {
   // index of the first result requested by the client
   private Integer firstResult = null;
 
+  // partial aggregate of every selected column, if the query aggregates
+  private List<PartialAggregate> aggregates = null;
+
+  private boolean distinct;
+
+  private List<InMemoryOrderBy> orders = Collections.emptyList();
+
   public List<Object> apply(List<Object> result) {
+    // same hierarchy as for criteria, see ExitOperationsCriteriaCollector
+    if (aggregates != null) {
+      result = new PartialAggregateExitOperation(aggregates).apply(result);
+    }
+    if (distinct) {
+      result = new DistinctExitOperation().apply(result);
+    }
+    if (!orders.isEmpty()) {
+      result = new OrderExitOperation(orders, getPageEnd()).apply(result);
+    }
     if (firstResult != null) {
       result = new FirstResultExitOperation(firstResult).apply(result);
     }
@@ -70,4 +91,48 @@ public class ExitOperationsQueryCollector implements ExitOperationsCollector {
     return this;
   }
 
+  /**
+   * @param aggregates the partial aggregate of every selected column, or null
+   *                   if the query doesn't aggregate
+   * @return this
+   */
+  ExitOperationsCollector setAggregates(/*@Nullable*/ List<PartialAggregate> aggregates) {
+    this.aggregates = aggregates;
+    return this;
+  }
+
+  ExitOperationsCollector setDistinct(boolean distinct) {
+    this.distinct = distinct;
+    return this;
+  }
+
+  ExitOperationsCollector setOrders(List<InMemoryOrderBy> orders) {
+    this.orders = orders;
+    return this;
+  }
+
+  /**
+   * @return firstResult + maxResults, or -1 if all results are wanted
+   */
+  private int getPageEnd() {
+    if (maxResults == null) {
+      return -1;
+    }
+    return (firstResult == null ? 0 : firstResult) + maxResults;
+  }
+
+  /**
+   * @return the index of the first result requested by the client, or null
+   */
+  public Integer getFirstResult() {
+    return firstResult;
+  }
+
+  /**
+   * @return the maximum number of results requested by the client, or null
+   */
+  public Integer getMaxResults() {
+    return maxResults;
+  }
+
 }
@@ -0,0 +1,468 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.query;
+
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+import antlr.collections.AST;
+import org.hibernate.hql.antlr.HqlTokenTypes;
+import org.hibernate.hql.ast.HqlParser;
+import org.hibernate.shards.ShardId;
+import org.hibernate.shards.strategy.resolution.IdentifierShardResolver;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the where clause of an HQL query tells us about the identifiers of the
+ * entities it can return or modify.  A query whose where clause compares the
+ * identifier of its entity to parameters or literals with = or in, through
+ * any combination of and and or, only has to be executed on the shards on
+ * which the entities with those identifiers may live.
+ * <p/>
+ * Like {@link HqlQueryAnalysis}, the query is parsed without the mappings, so
+ * the analysis only records which properties are compared to which values.
+ * Whether a property is the identifier, and which shards an identifier lives
+ * on, is decided once the parameters are bound and the query is executed.
+ */
+final class HqlIdentifierRestriction {
+
+    /**
+     * The restriction of a query that has to be executed on every shard.
+     */
+    static final HqlIdentifierRestriction NONE =
+            new HqlIdentifierRestriction(null, null, Collections.<String>emptySet());
+
+    private final String entityName;
+
+    private final Condition condition;
+
+    // the named parameters that appear only once in the query
+    private final Set<String> singleUseParameters;
+
+    private HqlIdentifierRestriction(final /*@Nullable*/ String entityName, final /*@Nullable*/ Condition condition,
+                                     final Set<String> singleUseParameters) {
+        this.entityName = entityName;
+        this.condition = condition;
+        this.singleUseParameters = singleUseParameters;
+    }
+
+    /**
+     * @param hql an HQL query, update or delete
+     * @return the restriction of the query, {@link #NONE} if the where clause
+     *         doesn't compare any property to parameters or literals
+     */
+    static HqlIdentifierRestriction analyze(final String hql) {
+        final AST statement;
+        try {
+            final HqlParser parser = HqlParser.getInstance(hql);
+            parser.statement();
+            if (parser.getParseErrorHandler().getErrorCount() > 0) {
+                return NONE;
+            }
+            statement = parser.getAST();
+        } catch (RecognitionException e) {
+            return NONE;
+        } catch (TokenStreamException e) {
+            return NONE;
+        }
+        if (statement == null) {
+            return NONE;
+        }
+        final AST from;
+        if (statement.getType() == HqlTokenTypes.QUERY) {
+            from = getChild(getChild(statement, HqlTokenTypes.SELECT_FROM), HqlTokenTypes.FROM);
+        } else if (statement.getType() == HqlTokenTypes.UPDATE || statement.getType() == HqlTokenTypes.DELETE) {
+            from = getChild(statement, HqlTokenTypes.FROM);
+        } else {
+            return NONE;
+        }
+        final AST where = getChild(statement, HqlTokenTypes.WHERE);
+        final AST range = from == null ? null : from.getFirstChild();
+        if (where == null || range == null || range.getType() != HqlTokenTypes.RANGE) {
+            return NONE;
+        }
+        final AST aliasNode = getChild(range, HqlTokenTypes.ALIAS);
+
+        // positional parameters are numbered in the order they appear in
+        int position = 0;
+        for (AST clause = statement.getFirstChild(); clause != where; clause = clause.getNextSibling()) {
+            position = countPositionalParameters(clause, position);
+        }
+        final Map<AST, Integer> positions = new IdentityHashMap<AST, Integer>();
+        numberPositionalParameters(where.getFirstChild(), position, positions);
+
+        final Condition condition = new Parser(aliasNode == null ? null : aliasNode.getText(),
+                range.getNextSibling() == null, positions).parse(where.getFirstChild());
+        if (condition == null) {
+            return NONE;
+        }
+        final Set<String> seen = Sets.newHashSet();
+        final Set<String> singleUseParameters = Sets.newHashSet();
+        collectNamedParameters(statement.getFirstChild(), seen, singleUseParameters);
+        return new HqlIdentifierRestriction(HqlQueryAnalysis.render(range.getFirstChild()), condition,
+                singleUseParameters);
+    }
+
+    /**
+     * @return the name of the entity the query is about, as it appears in the
+     *         query, or null if the query isn't restricted
+     */
+    /*@Nullable*/ String getEntityName() {
+        return entityName;
+    }
+
+    /**
+     * @param identifierProperties the names by which the query can refer to
+     *                             the identifier of its entity
+     * @param parameterValues      the values bound to the parameters of the
+     *                             query, by name or by position.  Collections
+     *                             are the values of parameter lists.
+     * @param identifierShards     resolves the shards of an identifier of the entity
+     * @return the ids of the shards on which the query may find entities, or
+     *         null if it has to be executed on every shard
+     */
+    /*@Nullable*/ Set<ShardId> selectShardIds(final Set<String> identifierProperties,
+                                             final Map<Object, Object> parameterValues,
+                                             final IdentifierShardResolver identifierShards) {
+        if (condition == null) {
+            return null;
+        }
+        return condition.selectShardIds(identifierProperties, parameterValues, identifierShards);
+    }
+
+    /**
+     * @return the name of a parameter list the identifier is restricted to
+     *         the values of, whatever the rest of the where clause, and that
+     *         is used nowhere else in the query.  Each shard can then be
+     *         given only the values that resolve to it.  Null if there is none.
+     */
+    /*@Nullable*/ String getPartitionableParameterList(final Set<String> identifierProperties) {
+        if (condition == null) {
+            return null;
+        }
+        for (final Condition conjunct : condition.getConjuncts()) {
+            if (conjunct.property != null && identifierProperties.contains(conjunct.property)
+                    && conjunct.values.size() == 1 && conjunct.values.get(0) instanceof Parameter) {
+                final Object key = ((Parameter) conjunct.values.get(0)).key;
+                if (singleUseParameters.contains(key)) {
+                    return (String) key;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void collectNamedParameters(final /*@Nullable*/ AST node, final Set<String> seen,
+                                               final Set<String> singleUse) {
+        for (AST sibling = node; sibling != null; sibling = sibling.getNextSibling()) {
+            if (sibling.getType() == HqlTokenTypes.COLON
+                    || (sibling.getType() == HqlTokenTypes.PARAM && sibling.getFirstChild() != null)) {
+                final String name = sibling.getFirstChild().getText();
+                if (seen.add(name)) {
+                    singleUse.add(name);
+                } else {
+                    singleUse.remove(name);
+                }
+            }
+            collectNamedParameters(sibling.getFirstChild(), seen, singleUse);
+        }
+    }
+
+    private static int countPositionalParameters(final AST node, final int position) {
+        int count = position;
+        if (isPositionalParameter(node)) {
+            count++;
+        }
+        for (AST child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            count = countPositionalParameters(child, count);
+        }
+        return count;
+    }
+
+    private static int numberPositionalParameters(final /*@Nullable*/ AST node, final int position,
+                                                  final Map<AST, Integer> positions) {
+        int next = position;
+        for (AST sibling = node; sibling != null; sibling = sibling.getNextSibling()) {
+            if (isPositionalParameter(sibling)) {
+                positions.put(sibling, next++);
+            }
+            next = numberPositionalParameters(sibling.getFirstChild(), next, positions);
+        }
+        return next;
+    }
+
+    private static boolean isPositionalParameter(final AST node) {
+        // ?1 is a named parameter
+        return node.getType() == HqlTokenTypes.PARAM && node.getFirstChild() == null;
+    }
+
+    private static /*@Nullable*/ AST getChild(final /*@Nullable*/ AST parent, final int type) {
+        if (parent == null) {
+            return null;
+        }
+        for (AST child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getType() == type) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Turns the expression of a where clause into the conditions we know how
+     * to resolve to shards.
+     */
+    private static final class Parser {
+
+        private final String alias;
+
+        private final boolean singleEntity;
+
+        private final Map<AST, Integer> positions;
+
+        Parser(final /*@Nullable*/ String alias, final boolean singleEntity, final Map<AST, Integer> positions) {
+            this.alias = alias;
+            this.singleEntity = singleEntity;
+            this.positions = positions;
+        }
+
+        /*@Nullable*/ Condition parse(final AST expression) {
+            switch (expression.getType()) {
+                case HqlTokenTypes.AND:
+                case HqlTokenTypes.OR:
+                    final List<Condition> operands = Lists.newArrayList();
+                    for (AST operand = expression.getFirstChild(); operand != null; operand = operand.getNextSibling()) {
+                        final Condition condition = parse(operand);
+                        if (condition != null) {
+                            operands.add(condition);
+                        } else if (expression.getType() == HqlTokenTypes.OR) {
+                            // the other side may match entities on any shard
+                            return null;
+                        }
+                    }
+                    return operands.isEmpty() ? null : new Condition(expression.getType() == HqlTokenTypes.AND, operands);
+                case HqlTokenTypes.EQ:
+                    final AST left = expression.getFirstChild();
+                    final AST right = left.getNextSibling();
+                    Condition condition = compare(left, Collections.singletonList(right));
+                    if (condition == null) {
+                        condition = compare(right, Collections.singletonList(left));
+                    }
+                    return condition;
+                case HqlTokenTypes.IN:
+                    final AST list = expression.getFirstChild().getNextSibling();
+                    if (list == null || list.getType() != HqlTokenTypes.IN_LIST) {
+                        return null;
+                    }
+                    final List<AST> values = Lists.newArrayList();
+                    for (AST value = list.getFirstChild(); value != null; value = value.getNextSibling()) {
+                        values.add(value);
+                    }
+                    return compare(expression.getFirstChild(), values);
+                default:
+                    return null;
+            }
+        }
+
+        private /*@Nullable*/ Condition compare(final AST path, final List<AST> valueNodes) {
+            final String property = getProperty(path);
+            if (property == null || valueNodes.isEmpty()) {
+                return null;
+            }
+            final List<Object> values = Lists.newArrayListWithCapacity(valueNodes.size());
+            for (final AST node : valueNodes) {
+                final Object value = getValue(node);
+                if (value == null) {
+                    return null;
+                }
+                values.add(value);
+            }
+            return new Condition(property, values);
+        }
+
+        /**
+         * @return the property of the entity the path leads to, or null if
+         *         it doesn't lead to a property of the entity
+         */
+        private /*@Nullable*/ String getProperty(final AST path) {
+            if (path.getType() == HqlTokenTypes.IDENT) {
+                // an unqualified property can only be that of the entity if there is no other
+                return singleEntity && !path.getText().equals(alias) ? path.getText() : null;
+            }
+            if (path.getType() == HqlTokenTypes.DOT && alias != null) {
+                final AST qualifier = path.getFirstChild();
+                final AST property = qualifier.getNextSibling();
+                if (qualifier.getType() == HqlTokenTypes.IDENT && qualifier.getText().equals(alias)
+                        && property.getType() == HqlTokenTypes.IDENT) {
+                    return property.getText();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the {@link Parameter} or the literal the node stands for,
+         *         or null if it's neither
+         */
+        private /*@Nullable*/ Object getValue(final AST node) {
+            final String text = node.getText();
+            switch (node.getType()) {
+                case HqlTokenTypes.COLON:
+                    return new Parameter(node.getFirstChild().getText());
+                case HqlTokenTypes.PARAM:
+                    if (node.getFirstChild() != null) {
+                        return new Parameter(node.getFirstChild().getText());
+                    }
+                    return new Parameter(positions.get(node));
+                case HqlTokenTypes.NUM_INT:
+                case HqlTokenTypes.NUM_LONG:
+                    try {
+                        return Long.valueOf(text.endsWith("l") || text.endsWith("L")
+                                ? text.substring(0, text.length() - 1) : text);
+                    } catch (NumberFormatException e) {
+                        // hexadecimal and octal literals
+                        return null;
+                    }
+                case HqlTokenTypes.QUOTED_STRING:
+                    return text.substring(1, text.length() - 1).replace("''", "'");
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * A parameter, by name or by position.
+     */
+    private static final class Parameter {
+
+        private final Object key;
+
+        Parameter(final Object key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Either the conjunction or disjunction of other conditions, or the
+     * comparison of a property to a list of values any of which it may equal.
+     */
+    private static final class Condition {
+
+        private final boolean conjunction;
+
+        private final List<Condition> operands;
+
+        private final String property;
+
+        private final List<Object> values;
+
+        Condition(final boolean conjunction, final List<Condition> operands) {
+            this.conjunction = conjunction;
+            this.operands = operands;
+            this.property = null;
+            this.values = null;
+        }
+
+        Condition(final String property, final List<Object> values) {
+            this.conjunction = false;
+            this.operands = null;
+            this.property = property;
+            this.values = values;
+        }
+
+        /**
+         * @return the conditions all of which this one requires
+         */
+        List<Condition> getConjuncts() {
+            if (operands == null || !conjunction) {
+                return Collections.singletonList(this);
+            }
+            final List<Condition> conjuncts = Lists.newArrayList();
+            for (final Condition operand : operands) {
+                conjuncts.addAll(operand.getConjuncts());
+            }
+            return conjuncts;
+        }
+
+        /*@Nullable*/ Set<ShardId> selectShardIds(final Set<String> identifierProperties,
+                                                 final Map<Object, Object> parameterValues,
+                                                 final IdentifierShardResolver identifierShards) {
+            if (operands == null) {
+                return resolve(identifierProperties, parameterValues, identifierShards);
+            }
+            Set<ShardId> shardIds = null;
+            for (final Condition operand : operands) {
+                final Set<ShardId> operandShardIds =
+                        operand.selectShardIds(identifierProperties, parameterValues, identifierShards);
+                if (conjunction) {
+                    if (shardIds == null) {
+                        shardIds = operandShardIds;
+                    } else if (operandShardIds != null) {
+                        shardIds.retainAll(operandShardIds);
+                    }
+                } else if (operandShardIds == null) {
+                    return null;
+                } else if (shardIds == null) {
+                    shardIds = operandShardIds;
+                } else {
+                    shardIds.addAll(operandShardIds);
+                }
+            }
+            return shardIds;
+        }
+
+        private /*@Nullable*/ Set<ShardId> resolve(final Set<String> identifierProperties,
+                                                  final Map<Object, Object> parameterValues,
+                                                  final IdentifierShardResolver identifierShards) {
+            if (!identifierProperties.contains(property)) {
+                return null;
+            }
+            final Set<ShardId> shardIds = Sets.newHashSet();
+            for (final Object value : values) {
+                Object bound = value;
+                if (value instanceof Parameter) {
+                    bound = parameterValues.get(((Parameter) value).key);
+                    if (bound == null) {
+                        // not bound yet, or bound in a way we can't follow
+                        return null;
+                    }
+                }
+                final Collection<?> identifiers =
+                        bound instanceof Collection ? (Collection<?>) bound : Collections.singletonList(bound);
+                for (final Object identifier : identifiers) {
+                    final Collection<ShardId> identifierShardIds =
+                            identifier == null ? null : identifierShards.getShardIds(identifier);
+                    if (identifierShardIds == null) {
+                        return null;
+                    }
+                    shardIds.addAll(identifierShardIds);
+                }
+            }
+            return shardIds;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.query;
+
+import antlr.RecognitionException;
+import antlr.Token;
+import antlr.TokenStreamException;
+import antlr.collections.AST;
+import org.hibernate.criterion.Order;
+import org.hibernate.hql.antlr.HqlTokenTypes;
+import org.hibernate.hql.ast.HqlParser;
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.strategy.exit.PartialAggregate;
+import org.hibernate.shards.strategy.exit.PartialAggregates;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What the select and order by clauses of an HQL query tell us about merging
+ * the results of the shards: whether they are aggregates to combine, whether
+ * duplicates have to be removed, and how they are ordered.  The query is
+ * parsed with Hibernate's HQL parser, which doesn't need the mappings, so
+ * expressions are matched by their shape rather than by what they resolve to.
+ * <p/>
+ * Queries the parser doesn't accept are left to the shards to reject, and
+ * queries that aren't selects have nothing to merge.  The results of a query
+ * without aggregates whose shape we can't merge, such as one that orders by
+ * an expression it doesn't select, are concatenated as they always were, and
+ * a warning is logged.  A query with aggregates we can't combine, such as an
+ * average, is rejected, since the result of any one shard would be wrong.
+ */
+final class HqlQueryAnalysis {
+
+    /**
+     * The analysis of a query whose results are simply concatenated.
+     */
+    static final HqlQueryAnalysis CONCATENATE = new HqlQueryAnalysis(null, false, Collections.<InMemoryOrderBy>emptyList());
+
+    private static final Logger log = LoggerFactory.getLogger(HqlQueryAnalysis.class);
+
+    private final List<PartialAggregate> aggregates;
+
+    private final boolean distinct;
+
+    private final List<InMemoryOrderBy> orders;
+
+    private HqlQueryAnalysis(final /*@Nullable*/ List<PartialAggregate> aggregates, final boolean distinct,
+                             final List<InMemoryOrderBy> orders) {
+        this.aggregates = aggregates;
+        this.distinct = distinct;
+        this.orders = orders;
+    }
+
+    /**
+     * @param hql an HQL query
+     * @return the analysis of the query, {@link #CONCATENATE} if its results
+     *         can't be merged
+     * @throws UnsupportedOperationException if the query has aggregates that
+     *                                       can't be combined across shards
+     */
+    static HqlQueryAnalysis analyze(final String hql) {
+        final AST query;
+        try {
+            final HqlParser parser = HqlParser.getInstance(hql);
+            parser.statement();
+            if (parser.getParseErrorHandler().getErrorCount() > 0) {
+                return unanalysable(hql, "it could not be parsed");
+            }
+            if (parser.LA(1) != Token.EOF_TYPE) {
+                // the parser stops at what it doesn't know, such as nulls first or nulls last
+                return unanalysable(hql, "it could not be parsed past " + parser.LT(1).getText());
+            }
+            query = parser.getAST();
+        } catch (RecognitionException e) {
+            return unanalysable(hql, "it could not be parsed");
+        } catch (TokenStreamException e) {
+            return unanalysable(hql, "it could not be parsed");
+        }
+        if (query == null || query.getType() != HqlTokenTypes.QUERY) {
+            return CONCATENATE;
+        }
+        try {
+            return analyze(query);
+        } catch (UnanalysableQueryException e) {
+            if (e.isAggregated()) {
+                throw new UnsupportedOperationException(
+                        String.format("%s cannot be computed across shards: %s", hql, e.getMessage()));
+            }
+            return unanalysable(hql, e.getMessage());
+        }
+    }
+
+    private static HqlQueryAnalysis analyze(final AST query) throws UnanalysableQueryException {
+        final AST selectFrom = getChild(query, HqlTokenTypes.SELECT_FROM);
+        final AST select = getChild(selectFrom, HqlTokenTypes.SELECT);
+        final AST group = getChild(query, HqlTokenTypes.GROUP);
+        final AST order = getChild(query, HqlTokenTypes.ORDER);
+
+        final List<AST> columns = Lists.newArrayList();
+        final List<String> aliases = Lists.newArrayList();
+        boolean distinct = false;
+        boolean aggregated = group != null;
+        if (select != null) {
+            for (AST item = select.getFirstChild(); item != null; item = item.getNextSibling()) {
+                if (item.getType() == HqlTokenTypes.DISTINCT) {
+                    distinct = true;
+                } else if (item.getType() == HqlTokenTypes.ALL) {
+                    continue;
+                } else if (item.getType() == HqlTokenTypes.CONSTRUCTOR) {
+                    // the columns end up in objects we know nothing about
+                    if (group != null || containsAggregate(item)) {
+                        throw new UnanalysableQueryException("a select new can't be merged across shards", true);
+                    }
+                    if (order != null) {
+                        throw new UnanalysableQueryException("a select new can't be merged across shards", false);
+                    }
+                    return CONCATENATE;
+                } else if (item.getType() == HqlTokenTypes.AS) {
+                    columns.add(item.getFirstChild());
+                    aliases.add(item.getFirstChild().getNextSibling().getText());
+                } else {
+                    columns.add(item);
+                    aliases.add(null);
+                }
+            }
+            for (final AST column : columns) {
+                aggregated |= containsAggregate(column);
+            }
+        }
+
+        List<PartialAggregate> aggregates = null;
+        if (aggregated) {
+            if (select == null) {
+                throw new UnanalysableQueryException("the grouped entities can't be merged across shards", true);
+            }
+            if (getChild(group, HqlTokenTypes.HAVING) != null) {
+                throw new UnanalysableQueryException("having is evaluated by each shard on its own groups", true);
+            }
+            aggregates = getAggregates(columns, group);
+        }
+
+        final List<InMemoryOrderBy> orders = Lists.newArrayList();
+        if (order != null) {
+            final String entityAlias = getEntityAlias(selectFrom.getFirstChild(), columns);
+            AST expression = order.getFirstChild();
+            while (expression != null) {
+                // the direction of an expression, if any, is its next sibling
+                AST next = expression.getNextSibling();
+                boolean ascending = true;
+                if (next != null && (next.getType() == HqlTokenTypes.ASCENDING
+                        || next.getType() == HqlTokenTypes.DESCENDING)) {
+                    ascending = next.getType() == HqlTokenTypes.ASCENDING;
+                    next = next.getNextSibling();
+                }
+                orders.add(getOrder(expression, ascending, entityAlias, columns, aliases, aggregated));
+                expression = next;
+            }
+        }
+        return new HqlQueryAnalysis(aggregates, distinct, orders);
+    }
+
+    private static List<PartialAggregate> getAggregates(final List<AST> columns, final /*@Nullable*/ AST group)
+            throws UnanalysableQueryException {
+        final Set<String> groupExpressions = Sets.newHashSet();
+        if (group != null) {
+            for (AST expression = group.getFirstChild(); expression != null; expression = expression.getNextSibling()) {
+                if (expression.getType() != HqlTokenTypes.HAVING) {
+                    groupExpressions.add(render(expression));
+                }
+            }
+        }
+        final List<PartialAggregate> aggregates = Lists.newArrayListWithCapacity(columns.size());
+        for (final AST column : columns) {
+            if (column.getType() == HqlTokenTypes.COUNT) {
+                if (column.getFirstChild() != null && column.getFirstChild().getType() == HqlTokenTypes.DISTINCT) {
+                    throw new UnanalysableQueryException("the same value may be counted by several shards", true);
+                }
+                aggregates.add(PartialAggregates.count());
+            } else if (column.getType() == HqlTokenTypes.AGGREGATE) {
+                final String function = column.getText().toLowerCase();
+                if ("sum".equals(function)) {
+                    aggregates.add(PartialAggregates.sum());
+                } else if ("min".equals(function)) {
+                    aggregates.add(PartialAggregates.min());
+                } else if ("max".equals(function)) {
+                    aggregates.add(PartialAggregates.max());
+                } else if ("avg".equals(function)) {
+                    // we can't add the count the average needs to the query
+                    throw new UnanalysableQueryException("select the sum and the count instead of the average", true);
+                } else {
+                    throw new UnanalysableQueryException("unknown aggregate " + function, true);
+                }
+            } else if (groupExpressions.contains(render(column))) {
+                aggregates.add(PartialAggregates.group());
+            } else {
+                throw new UnanalysableQueryException(render(column) + " is neither an aggregate nor grouped by", true);
+            }
+        }
+        return aggregates;
+    }
+
+    /**
+     * @return the alias of the entity the results are made of, the empty
+     *         string if it has none, or null if the results aren't entities
+     */
+    private static /*@Nullable*/ String getEntityAlias(final /*@Nullable*/ AST from, final List<AST> columns) {
+        if (from == null || from.getType() != HqlTokenTypes.FROM) {
+            return null;
+        }
+        final AST range = from.getFirstChild();
+        if (range == null || range.getType() != HqlTokenTypes.RANGE) {
+            return null;
+        }
+        final AST aliasNode = getChild(range, HqlTokenTypes.ALIAS);
+        final String alias = aliasNode == null ? "" : aliasNode.getText();
+        if (columns.isEmpty()) {
+            // without a select every entity of the from clause is in the results
+            return range.getNextSibling() == null ? alias : null;
+        }
+        if (columns.size() == 1 && columns.get(0).getType() == HqlTokenTypes.IDENT
+                && columns.get(0).getText().equals(alias)) {
+            return alias;
+        }
+        return null;
+    }
+
+    private static InMemoryOrderBy getOrder(final AST expression, final boolean ascending,
+                                            final /*@Nullable*/ String entityAlias, final List<AST> columns,
+                                            final List<String> aliases, final boolean aggregated)
+            throws UnanalysableQueryException {
+        final String rendered = render(expression);
+        if (entityAlias != null) {
+            // the results are entities, so we sort by the property the expression leads to
+            if (expression.getType() != HqlTokenTypes.DOT && expression.getType() != HqlTokenTypes.IDENT) {
+                throw new UnanalysableQueryException("cannot order entities by " + rendered, aggregated);
+            }
+            final String path = entityAlias.length() > 0 && rendered.startsWith(entityAlias + ".")
+                    ? rendered.substring(entityAlias.length() + 1) : rendered;
+            return new InMemoryOrderBy(null, ascending ? Order.asc(path) : Order.desc(path));
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            if ((expression.getType() == HqlTokenTypes.IDENT && expression.getText().equals(aliases.get(i)))
+                    || rendered.equals(render(columns.get(i)))) {
+                return new InMemoryOrderBy(null, ascending ? Order.asc(rendered) : Order.desc(rendered))
+                        .onProjectionColumn(i);
+            }
+        }
+        throw new UnanalysableQueryException("cannot order by " + rendered + " because it is not selected",
+                aggregated);
+    }
+
+    /**
+     * @return true if the expression aggregates, such as sum(x) or max(x) + 1.
+     *         An aggregate in a subquery is computed for every row, so it
+     *         doesn't count.
+     */
+    private static boolean containsAggregate(final AST node) {
+        if (node.getType() == HqlTokenTypes.COUNT || node.getType() == HqlTokenTypes.AGGREGATE) {
+            return true;
+        }
+        if (node.getType() == HqlTokenTypes.QUERY) {
+            return false;
+        }
+        for (AST child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (containsAggregate(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static /*@Nullable*/ AST getChild(final /*@Nullable*/ AST parent, final int type) {
+        if (parent == null) {
+            return null;
+        }
+        for (AST child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getType() == type) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a canonical rendering of an expression, without whitespace, so
+     *         that the same expression in two clauses renders the same
+     */
+    static String render(final AST node) {
+        final AST first = node.getFirstChild();
+        if (node.getType() == HqlTokenTypes.DOT) {
+            return render(first) + "." + render(first.getNextSibling());
+        }
+        // keywords are case insensitive, identifiers aren't
+        final StringBuilder sb = new StringBuilder(
+                node.getType() == HqlTokenTypes.IDENT ? node.getText() : node.getText().toLowerCase());
+        if (first != null) {
+            sb.append('(');
+            for (AST child = first; child != null; child = child.getNextSibling()) {
+                if (child != first) {
+                    sb.append(',');
+                }
+                sb.append(render(child));
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    private static HqlQueryAnalysis unanalysable(final String hql, final String reason) {
+        log.warn(String.format("The results of %s are concatenated rather than merged across shards: %s",
+                hql, reason));
+        return CONCATENATE;
+    }
+
+    /**
+     * Thrown when the query has a shape whose results we don't know how to
+     * merge.
+     */
+    private static class UnanalysableQueryException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean aggregated;
+
+        /**
+         * @param aggregated true if the query aggregates, in which case its
+         *                   results can't be concatenated either
+         */
+        UnanalysableQueryException(final String reason, final boolean aggregated) {
+            super(reason);
+            this.aggregated = aggregated;
+        }
+
+        boolean isAggregated() {
+            return aggregated;
+        }
+    }
+
+    /**
+     * @return the partial aggregate of every selected column if the query
+     *         aggregates, null otherwise
+     */
+    /*@Nullable*/ List<PartialAggregate> getAggregates() {
+        return aggregates;
+    }
+
+    boolean isDistinct() {
+        return distinct;
+    }
+
+    /**
+     * @return the orders to apply in memory
+     */
+    List<InMemoryOrderBy> getOrders() {
+        return orders;
+    }
+}
@@ -18,9 +18,13 @@
 
 package org.hibernate.shards.query;
 
+import org.hibernate.MappingException;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 import org.hibernate.Session;
+import org.hibernate.engine.NamedQueryDefinition;
+import org.hibernate.engine.NamedSQLQueryDefinition;
+import org.hibernate.engine.SessionFactoryImplementor;
 
 /**
  * Facilitates use of named queries when using ShardedQuery.
@@ -44,4 +48,17 @@ public class NamedQueryFactoryImpl implements QueryFactory {
     public SQLQuery createSQLQuery(final Session session) {
         throw new UnsupportedOperationException("no such thing as named SQLQuery");
     }
+
+    @Override
+    public String getQueryString(final SessionFactoryImplementor sessionFactory) {
+        final NamedQueryDefinition query = sessionFactory.getNamedQuery(queryName);
+        if (query != null) {
+            return query.getQueryString();
+        }
+        final NamedSQLQueryDefinition sqlQuery = sessionFactory.getNamedSQLQuery(queryName);
+        if (sqlQuery != null) {
+            return sqlQuery.getQueryString();
+        }
+        throw new MappingException("Named query not known: " + queryName);
+    }
 }
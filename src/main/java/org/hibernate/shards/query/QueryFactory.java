@@ -21,6 +21,7 @@ package org.hibernate.shards.query;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 import org.hibernate.Session;
+import org.hibernate.engine.SessionFactoryImplementor;
 
 /**
  * @author Maulik Shah
@@ -30,4 +31,11 @@ public interface QueryFactory {
     Query createQuery(Session session);
 
     SQLQuery createSQLQuery(Session session);
+
+    /**
+     * @param sessionFactory the SessionFactory the query will be created against
+     * @return the query string of the queries this factory creates, without
+     *         opening a Session
+     */
+    String getQueryString(SessionFactoryImplementor sessionFactory);
 }
\ No newline at end of file
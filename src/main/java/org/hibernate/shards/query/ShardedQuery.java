@@ -18,8 +18,12 @@
 
 package org.hibernate.shards.query;
 
+import org.hibernate.HibernateException;
 import org.hibernate.Query;
 
+import java.util.List;
+import java.util.concurrent.Future;
+
 /**
  * ShardedQuery extends the Query interface to provide the ability to query
  * across shards.
@@ -33,4 +37,23 @@ public interface ShardedQuery extends Query {
     QueryId getQueryId();
 
     QueryFactory getQueryFactory();
+
+    /**
+     * @return true if the query was marked read-only, in which case it may be
+     *         executed against a read replica of each shard
+     */
+    boolean isReadOnlyRequested();
+
+    /**
+     * Same as {@link #list()}, but does not wait for the shards to answer.  The
+     * results are merged by the thread that completes the last shard.  The
+     * Session must not be used until the returned Future is done.
+     */
+    Future<List<Object>> listAsync() throws HibernateException;
+
+    /**
+     * Same as {@link #uniqueResult()}, but does not wait for the shards to
+     * answer.  The Session must not be used until the returned Future is done.
+     */
+    Future<Object> uniqueResultAsync() throws HibernateException;
 }
@@ -26,18 +26,39 @@ import org.hibernate.LockOptions;
 import org.hibernate.Query;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardId;
 import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.scroll.ConcatenatedIterator;
+import org.hibernate.shards.scroll.ConcatenatedScrollableResults;
+import org.hibernate.shards.scroll.OrderedMergeIterator;
+import org.hibernate.shards.scroll.OrderedMergeScrollableResults;
 import org.hibernate.shards.strategy.access.ShardAccessStrategy;
+import org.hibernate.shards.criteria.InMemoryOrderBy;
 import org.hibernate.shards.strategy.exit.ConcatenateListsExitStrategy;
+import org.hibernate.shards.strategy.exit.DistinctExitStrategy;
+import org.hibernate.shards.strategy.exit.ExitStrategy;
 import org.hibernate.shards.strategy.exit.FirstNonNullResultExitStrategy;
+import org.hibernate.shards.strategy.exit.LimitedConcatenateListsExitStrategy;
+import org.hibernate.shards.strategy.exit.OrderExitOperation;
+import org.hibernate.shards.strategy.exit.OrderedMergeExitStrategy;
+import org.hibernate.shards.strategy.exit.TopNExitStrategy;
+import org.hibernate.shards.strategy.exit.UniqueResultExitStrategy;
+import org.hibernate.shards.strategy.resolution.IdentifierShardResolver;
+import org.hibernate.shards.strategy.resolution.ShardResolutionStrategy;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Maps;
 import org.hibernate.shards.util.Preconditions;
+import org.hibernate.shards.util.Sets;
 import org.hibernate.transform.ResultTransformer;
 import org.hibernate.type.Type;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -46,13 +67,19 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 /**
  * Concrete implementation of ShardedQuery provided by Hibernate Shards. This
  * implementation introduces limits to the HQL language; mostly around
- * limits and aggregation. Its approach is simply to execute the query on
- * each shard and compile the results in a list, or if a unique result is
- * desired, the fist non-null result is returned.
+ * limits and aggregation. Its approach is to execute the query on each shard
+ * and compile the results in a list, or if a unique result is desired, the
+ * fist non-null result is returned.  The select and order by clauses of the
+ * query are analysed so that aggregates of count, sum, min and max, distinct
+ * and order by are merged across shards the same way they are for criteria.
+ * A query whose where clause restricts the identifier of its entity to bound
+ * parameters or literals is only executed on the shards of those entities.
  * <p/>
  * The setFoo methods are implemented using a set of classes that implement
  * the QueryEvent interface and are called SetFooEvent. These query events
@@ -66,19 +93,41 @@ import java.util.Map;
  */
 public class ShardedQueryImpl implements ShardedQuery {
 
+    // the largest fetch size we set for the client, to get a page in one round trip
+    private static final int MAX_FETCH_SIZE_HINT = 1000;
+
     private final QueryId queryId;
     private final List<Shard> shards;
     private final QueryFactory queryFactory;
     private final ShardAccessStrategy shardAccessStrategy;
 
-    /**
-     * The queryCollector is not used in ShardedQueryImpl as it would require
-     * this implementation to parse the query string and extract which exit
-     * operations would be appropriate. This member is a place holder for
-     * future development.
-     */
     private final ExitOperationsQueryCollector queryCollector;
 
+    // whether the client chose the fetch size, in which case we don't set one
+    private boolean fetchSizeRequested;
+
+    // the query string, read from the query factory the first time it's needed
+    // so that analysing it doesn't open a Session on any of the shards
+    private String queryString;
+
+    // how to merge the results, worked out from the query string the first time it's needed
+    private HqlQueryAnalysis queryAnalysis;
+
+    // whether the client marked this query read-only
+    private boolean readOnlyRequested;
+
+    // resolves the shards of the entities the query is restricted to, or null to use every shard
+    private final ShardResolutionStrategy shardResolutionStrategy;
+
+    // the identifiers the query may be restricted to, worked out from the query string the first time it's needed
+    private HqlIdentifierRestriction identifierRestriction;
+
+    // the values bound to the parameters, by name or position, null for those that can't be identifiers
+    private final Map<Object, Object> parameterValues = Maps.newHashMap();
+
+    // the types the parameter lists were bound with, if the client gave one
+    private final Map<String, Type> parameterListTypes = Maps.newHashMap();
+
     /**
      * Constructor for ShardedQueryImpl
      *
@@ -91,11 +140,30 @@ public class ShardedQueryImpl implements ShardedQuery {
                             final List<Shard> shards,
                             final QueryFactory queryFactory,
                             final ShardAccessStrategy shardAccessStrategy) {
+        this(queryId, shards, queryFactory, shardAccessStrategy, null);
+    }
+
+    /**
+     * Constructor for a ShardedQueryImpl that is only executed on the shards
+     * of the entities its where clause restricts it to, if any.
+     *
+     * @param queryId                 the id of the query
+     * @param shards                  list of shards on which this query may be executed
+     * @param queryFactory            factory that knows how to create the actual query we'll execute
+     * @param shardAccessStrategy     the shard strategy for this query
+     * @param shardResolutionStrategy resolves the shards on which an entity may live
+     */
+    public ShardedQueryImpl(final QueryId queryId,
+                            final List<Shard> shards,
+                            final QueryFactory queryFactory,
+                            final ShardAccessStrategy shardAccessStrategy,
+                            final /*@Nullable*/ ShardResolutionStrategy shardResolutionStrategy) {
 
         this.queryId = queryId;
         this.shards = shards;
         this.queryFactory = queryFactory;
         this.shardAccessStrategy = shardAccessStrategy;
+        this.shardResolutionStrategy = shardResolutionStrategy;
         this.queryCollector = new ExitOperationsQueryCollector();
 
         Preconditions.checkState(!shards.isEmpty());
@@ -114,9 +182,17 @@ public class ShardedQueryImpl implements ShardedQuery {
         return queryFactory;
     }
 
+    @Override
+    public boolean isReadOnlyRequested() {
+        return readOnlyRequested;
+    }
+
     @Override
     public String getQueryString() {
-        return getOrEstablishSomeQuery().getQueryString();
+        if (queryString == null) {
+            queryString = queryFactory.getQueryString(shards.get(0).getSessionFactoryImplementor());
+        }
+        return queryString;
     }
 
     @Override
@@ -135,7 +211,14 @@ public class ShardedQueryImpl implements ShardedQuery {
     }
 
     /**
-     * This method currently wraps list().
+     * Iterates over the results of one shard after the other.  The query is
+     * only iterated on a shard once the shards before it are exhausted, and
+     * the iterator of a shard is closed as soon as we move past it or the
+     * returned iterator is closed with {@link org.hibernate.Hibernate#close(Iterator)}.
+     * If the query has an order by, the iterators of the shards are instead
+     * all opened at once and merged in order.  The results of a query that
+     * aggregates or selects distinct results can't be merged without holding
+     * on to them, so they are listed and we iterate over the list.
      * <p/>
      * {@inheritDoc}
      *
@@ -144,36 +227,121 @@ public class ShardedQueryImpl implements ShardedQuery {
      */
     @Override
     public Iterator iterate() throws HibernateException {
-        /**
-         * TODO(maulik) Hibernate in Action says these two methods are equivalent
-         * in what the content that they return but are implemented differently.
-         * We should figure out the difference and implement correctly.
-         */
-        return list().iterator();
+        if (!isStreamable()) {
+            return list().iterator();
+        }
+        final List<InMemoryOrderBy> orders = getQueryAnalysis().getOrders();
+        pushPageEndToShards();
+        final ShardOperation<Iterator<?>> shardOp = new ShardOperation<Iterator<?>>() {
+
+            @Override
+            public Iterator<?> execute(final Shard shard) {
+                shard.establishQuery(ShardedQueryImpl.this);
+                return shard.iterate(queryId);
+            }
+
+            @Override
+            public String getOperationName() {
+                return "iterate()";
+            }
+        };
+        final Integer firstResult = queryCollector.getFirstResult();
+        final Integer maxResults = queryCollector.getMaxResults();
+        if (orders.isEmpty()) {
+            return new ConcatenatedIterator(
+                    getTargetShards(),
+                    shardOp,
+                    firstResult == null ? 0 : firstResult,
+                    maxResults == null ? -1 : maxResults);
+        }
+        return new OrderedMergeIterator(
+                getTargetShards(),
+                shardOp,
+                new OrderExitOperation(orders).getComparator(),
+                firstResult == null ? 0 : firstResult,
+                maxResults == null ? -1 : maxResults);
     }
 
     /**
-     * Scrolling is unsupported. Current implementation throws an
-     * UnsupportedOperationException. A dumb implementation of scroll might be
-     * possible; however it would provide no performance benefit. An intelligent
-     * implementation would require re-querying shards frequently and a
-     * deterministic way to compile results.
+     * Streams the results of the query from one shard after the other, through
+     * a forward-only cursor per shard.  If the query has an order by, the
+     * cursors of the shards are instead all opened at once and merged in
+     * order.  firstResult and maxResults are applied as the rows go by, so the
+     * results are never held in memory.
+     *
+     * @throws UnsupportedOperationException if the query aggregates or selects
+     *                                       distinct results, which can't be
+     *                                       merged without holding on to them
      */
     @Override
     public ScrollableResults scroll() throws HibernateException {
-        throw new UnsupportedOperationException();
+        return scroll(ScrollMode.FORWARD_ONLY);
     }
 
     /**
-     * Scrolling is unsupported. Current implementation throws an
-     * UnsupportedOperationException. A dumb implementation of scroll might be
-     * possible; however it would provide no performance benefit. An intelligent
-     * implementation would require re-querying shards frequently and a
-     * deterministic way to compile results.
+     * Only {@link ScrollMode#FORWARD_ONLY} is supported.  Scrolling backwards
+     * would require re-querying shards or holding on to the results.
+     *
+     * @see #scroll()
      */
     @Override
     public ScrollableResults scroll(final ScrollMode scrollMode) throws HibernateException {
-        throw new UnsupportedOperationException();
+        if (scrollMode != ScrollMode.FORWARD_ONLY) {
+            throw new UnsupportedOperationException("Sharded queries can only be scrolled forward.");
+        }
+        final List<InMemoryOrderBy> orders = getStreamableOrders("scroll");
+        pushPageEndToShards();
+        final ShardOperation<ScrollableResults> shardOp = new ShardOperation<ScrollableResults>() {
+
+            @Override
+            public ScrollableResults execute(final Shard shard) {
+                shard.establishQuery(ShardedQueryImpl.this);
+                return shard.scroll(queryId);
+            }
+
+            @Override
+            public String getOperationName() {
+                return "scroll()";
+            }
+        };
+        final Integer firstResult = queryCollector.getFirstResult();
+        final Integer maxResults = queryCollector.getMaxResults();
+        if (orders.isEmpty()) {
+            return new ConcatenatedScrollableResults(
+                    getTargetShards(),
+                    shardOp,
+                    firstResult == null ? 0 : firstResult,
+                    maxResults == null ? -1 : maxResults);
+        }
+        return new OrderedMergeScrollableResults(
+                getTargetShards(),
+                shardOp,
+                new OrderExitOperation(orders).getComparator(),
+                firstResult == null ? 0 : firstResult,
+                maxResults == null ? -1 : maxResults);
+    }
+
+    /**
+     * @param operation what the client is doing, for the exception message
+     * @return the orders by which to merge the results of the shards as they
+     *         are streamed
+     * @throws UnsupportedOperationException if the results can't be streamed
+     */
+    private List<InMemoryOrderBy> getStreamableOrders(final String operation) {
+        if (!isStreamable()) {
+            throw new UnsupportedOperationException(String.format(
+                    "Cannot %s a sharded query that aggregates or selects distinct results; use list() instead.",
+                    operation));
+        }
+        return getQueryAnalysis().getOrders();
+    }
+
+    /**
+     * @return true if the results of the shards can be merged as they are read
+     */
+    private boolean isStreamable() {
+        final HqlQueryAnalysis analysis = getQueryAnalysis();
+        return analysis.getAggregates() == null && !analysis.isDistinct();
     }
 
     /**
@@ -186,7 +354,178 @@ public class ShardedQueryImpl implements ShardedQuery {
      */
     @Override
     public List list() throws HibernateException {
-        final ShardOperation<List<Object>> shardOp = new ShardOperation<List<Object>>() {
+        return shardAccessStrategy.apply(
+                getTargetShards(),
+                buildListOperation(),
+                buildListExitStrategy(),
+                queryCollector);
+    }
+
+    @Override
+    public Future<List<Object>> listAsync() throws HibernateException {
+        return shardAccessStrategy.applyAsync(
+                getTargetShards(),
+                buildListOperation(),
+                buildListExitStrategy(),
+                queryCollector);
+    }
+
+    /**
+     * Unordered results are concatenated, so if the client only wants a page
+     * of results we can stop as soon as we have enough of them.  Ordered
+     * results are merged, keeping only the page if there is one.  The rows of
+     * a query that aggregates are all kept for the collector to combine.
+     */
+    private ExitStrategy<List<Object>> buildListExitStrategy() {
+        final HqlQueryAnalysis analysis = getQueryAnalysis();
+        if (analysis.getAggregates() != null) {
+            return new ConcatenateListsExitStrategy();
+        }
+        final List<InMemoryOrderBy> orders = analysis.getOrders();
+        final Integer maxResults = queryCollector.getMaxResults();
+        if (maxResults == null) {
+            // every shard orders its own results, so they only need to be merged
+            return withDistinct(orders.isEmpty() ? new ConcatenateListsExitStrategy()
+                    : new OrderedMergeExitStrategy(orders), analysis.isDistinct());
+        }
+        final Integer firstResult = queryCollector.getFirstResult();
+        final int pageEnd = (firstResult == null ? 0 : firstResult) + maxResults;
+        if (orders.isEmpty()) {
+            return withDistinct(new LimitedConcatenateListsExitStrategy(pageEnd), analysis.isDistinct());
+        }
+        return new TopNExitStrategy(orders, pageEnd, analysis.isDistinct());
+    }
+
+    private static ExitStrategy<List<Object>> withDistinct(final ExitStrategy<List<Object>> exitStrategy,
+                                                           final boolean distinct) {
+        return distinct ? new DistinctExitStrategy(exitStrategy) : exitStrategy;
+    }
+
+    /**
+     * @return how to merge the results of the shards.  The collector is set up
+     *         accordingly the first time this is called.
+     */
+    HqlQueryAnalysis getQueryAnalysis() {
+        if (queryAnalysis == null) {
+            queryAnalysis = analyzeQuery();
+            queryCollector.setAggregates(queryAnalysis.getAggregates());
+            queryCollector.setDistinct(queryAnalysis.isDistinct());
+            queryCollector.setOrders(queryAnalysis.getOrders());
+        }
+        return queryAnalysis;
+    }
+
+    HqlQueryAnalysis analyzeQuery() {
+        return HqlQueryAnalysis.analyze(getQueryString());
+    }
+
+    HqlIdentifierRestriction analyzeIdentifierRestriction() {
+        return HqlIdentifierRestriction.analyze(getQueryString());
+    }
+
+    /**
+     * @return the shards on which the entities whose identifiers the where
+     *         clause restricts the query to may live, given the parameters
+     *         bound so far, or every shard if the query isn't restricted to
+     *         particular identifiers
+     */
+    List<Shard> getTargetShards() {
+        if (shardResolutionStrategy == null || shards.size() == 1) {
+            return shards;
+        }
+        if (identifierRestriction == null) {
+            identifierRestriction = analyzeIdentifierRestriction();
+        }
+        if (identifierRestriction.getEntityName() == null) {
+            return shards;
+        }
+        final SessionFactoryImplementor sessionFactory = shards.get(0).getSessionFactoryImplementor();
+        if (sessionFactory == null) {
+            return shards;
+        }
+        final String entityName = sessionFactory.getImportedClassName(identifierRestriction.getEntityName());
+        final ClassMetadata metadata = sessionFactory.getClassMetadata(entityName);
+        if (metadata == null || metadata.getIdentifierPropertyName() == null) {
+            return shards;
+        }
+        final Set<String> identifierProperties = Sets.newHashSet(metadata.getIdentifierPropertyName());
+        if (!Arrays.asList(metadata.getPropertyNames()).contains("id")) {
+            // id refers to the identifier unless the entity has another property by that name
+            identifierProperties.add("id");
+        }
+        final IdentifierShardResolver resolver = new IdentifierShardResolver(metadata.getEntityName(),
+                metadata.getIdentifierType().getReturnedClass(), shardResolutionStrategy);
+        final Set<ShardId> shardIds =
+                identifierRestriction.selectShardIds(identifierProperties, parameterValues, resolver);
+        if (shardIds == null) {
+            return shards;
+        }
+        final List<Shard> targetShards = Lists.newArrayList();
+        for (final Shard shard : shards) {
+            if (!Collections.disjoint(shard.getShardIds(), shardIds)) {
+                targetShards.add(shard);
+            }
+        }
+        if (targetShards.isEmpty()) {
+            // no entity matches, so any shard returns what the query returns
+            return Collections.singletonList(shards.get(0));
+        }
+        final String parameterList = identifierRestriction.getPartitionableParameterList(identifierProperties);
+        if (parameterList != null && parameterValues.get(parameterList) instanceof Collection) {
+            return partitionParameterList(parameterList, targetShards, resolver);
+        }
+        return targetShards;
+    }
+
+    /**
+     * Binds the parameter list the identifier is restricted to on each shard
+     * to only the values that resolve to that shard, so that no shard
+     * evaluates identifiers it doesn't own.  The binding is redone before
+     * every execution, after any the client made.
+     *
+     * @return the shards at least one of the values resolves to
+     */
+    private List<Shard> partitionParameterList(final String name, final List<Shard> targetShards,
+                                               final IdentifierShardResolver resolver) {
+        final Map<Shard, List<Object>> partitions = Maps.newLinkedHashMap();
+        for (final Shard shard : targetShards) {
+            partitions.put(shard, Lists.newArrayList());
+        }
+        for (final Object value : (Collection<?>) parameterValues.get(name)) {
+            final List<ShardId> valueShardIds = value == null ? null : resolver.getShardIds(value);
+            if (valueShardIds == null) {
+                // another restriction confined the query to its shards
+                return targetShards;
+            }
+            for (final Map.Entry<Shard, List<Object>> entry : partitions.entrySet()) {
+                if (!Collections.disjoint(entry.getKey().getShardIds(), valueShardIds)) {
+                    entry.getValue().add(value);
+                }
+            }
+        }
+        final Type type = parameterListTypes.get(name);
+        final List<Shard> partitionedShards = Lists.newArrayList();
+        for (final Map.Entry<Shard, List<Object>> entry : partitions.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            final Shard shard = entry.getKey();
+            final QueryEvent event = type == null
+                    ? new SetParameterListEvent(name, entry.getValue())
+                    : new SetParameterListEvent(name, entry.getValue(), type);
+            if (shard.getQueryById(queryId) != null) {
+                event.onEvent(shard.getQueryById(queryId));
+            } else {
+                shard.addQueryEvent(queryId, event);
+            }
+            partitionedShards.add(shard);
+        }
+        return partitionedShards.isEmpty() ? targetShards : partitionedShards;
+    }
+
+    private ShardOperation<List<Object>> buildListOperation() {
+        pushPageEndToShards();
+        return new ShardOperation<List<Object>>() {
 
             @Override
             public List<Object> execute(final Shard shard) {
@@ -199,21 +538,12 @@ public class ShardedQueryImpl implements ShardedQuery {
                 return "list()";
             }
         };
-
-        /**
-         * We don't support shard selection for HQL queries.  If you want
-         * custom shards, create a ShardedSession with only the shards you want.
-         */
-        return shardAccessStrategy.apply(
-                shards,
-                shardOp,
-                new ConcatenateListsExitStrategy(),
-                queryCollector);
     }
 
     /**
      * The implementation executes the query on each shard and returns the first
-     * non-null result.
+     * non-null result.  If the query aggregates, the results of every shard
+     * are combined instead.
      * <p/>
      * {@inheritDoc}
      *
@@ -222,12 +552,38 @@ public class ShardedQueryImpl implements ShardedQuery {
      */
     @Override
     public Object uniqueResult() throws HibernateException {
-        final ShardOperation<Object> shardOp = new ShardOperation<Object>() {
+        return shardAccessStrategy.apply(
+                getTargetShards(),
+                buildUniqueResultOperation(),
+                buildUniqueResultExitStrategy(),
+                queryCollector);
+    }
+
+    @Override
+    public Future<Object> uniqueResultAsync() throws HibernateException {
+        return shardAccessStrategy.applyAsync(
+                getTargetShards(),
+                buildUniqueResultOperation(),
+                buildUniqueResultExitStrategy(),
+                queryCollector);
+    }
+
+    private ExitStrategy<Object> buildUniqueResultExitStrategy() {
+        if (getQueryAnalysis().getAggregates() != null) {
+            return new UniqueResultExitStrategy();
+        }
+        return new FirstNonNullResultExitStrategy<Object>();
+    }
+
+    private ShardOperation<Object> buildUniqueResultOperation() {
+        final boolean aggregated = getQueryAnalysis().getAggregates() != null;
+        return new ShardOperation<Object>() {
 
             @Override
             public Object execute(final Shard shard) {
                 shard.establishQuery(ShardedQueryImpl.this);
-                return shard.uniqueResult(queryId);
+                // the partial aggregates of a shard are combined with those of the others
+                return aggregated ? shard.list(queryId) : shard.uniqueResult(queryId);
             }
 
             @Override
@@ -235,16 +591,6 @@ public class ShardedQueryImpl implements ShardedQuery {
                 return "uniqueResult()";
             }
         };
-
-        /**
-         * We don't support shard selection for HQL queries.  If you want
-         * custom shards, create a ShardedSession with only the shards you want.
-         */
-        return shardAccessStrategy.apply(
-                shards,
-                shardOp,
-                new FirstNonNullResultExitStrategy<Object>(),
-                queryCollector);
     }
 
     /**
@@ -268,7 +614,7 @@ public class ShardedQueryImpl implements ShardedQuery {
             }
         };
 
-        final List<Object> rets = shardAccessStrategy.apply(shards, shardOp, new ConcatenateListsExitStrategy(),
+        final List<Object> rets = shardAccessStrategy.apply(getTargetShards(), shardOp, new ConcatenateListsExitStrategy(),
                 queryCollector);
 
         int sum = 0;
@@ -280,6 +626,11 @@ public class ShardedQueryImpl implements ShardedQuery {
         return sum;
     }
 
+    /**
+     * Like for criteria, a maxResult can't be applied to the query of a shard
+     * as it is if a firstResult is specified, but maxResult + firstResult can.
+     * That happens when the query executes.
+     */
     @Override
     public Query setMaxResults(final int maxResults) {
         queryCollector.setMaxResults(maxResults);
@@ -288,10 +639,34 @@ public class ShardedQueryImpl implements ShardedQuery {
 
     @Override
     public Query setFirstResult(final int firstResult) {
+        // firstResult cannot be safely applied to the Query that will be
+        // executed against the Shard
         queryCollector.setFirstResult(firstResult);
         return this;
     }
 
+    /**
+     * No shard needs to return more than firstResult + maxResults results,
+     * and unless the client asked for a fetch size of its own, a shard may as
+     * well send them in a single round trip.  The rows of a query that
+     * aggregates are partial aggregates, which all have to be combined.
+     * <p/>
+     * Called right before the query executes, because analysing the query
+     * establishes it on a shard, and so opens a Session.
+     */
+    private void pushPageEndToShards() {
+        final Integer maxResults = queryCollector.getMaxResults();
+        if (maxResults == null || getQueryAnalysis().getAggregates() != null) {
+            return;
+        }
+        final Integer firstResult = queryCollector.getFirstResult();
+        final int pageEnd = (int) Math.min(Integer.MAX_VALUE, (firstResult == null ? 0L : firstResult) + maxResults);
+        setQueryEvent(new SetMaxResultsEvent(pageEnd));
+        if (!fetchSizeRequested && pageEnd > 0) {
+            setQueryEvent(new SetFetchSizeEvent(Math.min(pageEnd, MAX_FETCH_SIZE_HINT)));
+        }
+    }
+
     @Override
     public boolean isReadOnly() {
         for (final Shard shard : shards) {
@@ -307,6 +682,7 @@ public class ShardedQueryImpl implements ShardedQuery {
 
     @Override
     public Query setReadOnly(final boolean readOnly) {
+        this.readOnlyRequested = readOnly;
         return setQueryEvent(new SetReadOnlyEvent(readOnly));
     }
 
@@ -327,6 +703,7 @@ public class ShardedQueryImpl implements ShardedQuery {
 
     @Override
     public Query setFetchSize(final int fetchSize) {
+        fetchSizeRequested = true;
         return setQueryEvent(new SetFetchSizeEvent(fetchSize));
     }
 
@@ -357,263 +734,278 @@ public class ShardedQueryImpl implements ShardedQuery {
 
     @Override
     public Query setParameter(final int position, final Object val, final Type type) {
-        return setQueryEvent(new SetParameterEvent(position, val, type));
+        return setParameterEvent(position, val, new SetParameterEvent(position, val, type));
     }
 
     @Override
     public Query setParameter(final String name, final Object val, final Type type) {
-        return setQueryEvent(new SetParameterEvent(name, val, type));
+        return setParameterEvent(name, val, new SetParameterEvent(name, val, type));
     }
 
     @Override
     public Query setParameter(final int position, final Object val) throws HibernateException {
-        return setQueryEvent(new SetParameterEvent(position, val));
+        return setParameterEvent(position, val, new SetParameterEvent(position, val));
     }
 
     @Override
     public Query setParameter(final String name, final Object val) throws HibernateException {
-        return setQueryEvent(new SetParameterEvent(name, val));
+        return setParameterEvent(name, val, new SetParameterEvent(name, val));
     }
 
     @Override
     public Query setParameters(final Object[] values, final Type[] types) throws HibernateException {
+        for (int i = 0; i < values.length; i++) {
+            parameterValues.put(i, values[i]);
+        }
         return setQueryEvent(new SetParametersEvent(values, types));
     }
 
     @Override
     public Query setParameterList(final String name, final Collection vals, final Type type) throws HibernateException {
-        return setQueryEvent(new SetParameterListEvent(name, vals, type));
+        parameterListTypes.put(name, type);
+        return setParameterEvent(name, toList(vals), new SetParameterListEvent(name, vals, type));
     }
 
     @Override
     public Query setParameterList(final String name, final Collection vals) throws HibernateException {
-        return setQueryEvent(new SetParameterListEvent(name, vals));
+        parameterListTypes.remove(name);
+        return setParameterEvent(name, toList(vals), new SetParameterListEvent(name, vals));
     }
 
     @Override
     public Query setParameterList(final String name, final Object[] vals, final Type type) throws HibernateException {
-        return setQueryEvent(new SetParameterListEvent(name, vals, type));
+        parameterListTypes.put(name, type);
+        return setParameterEvent(name, toList(vals), new SetParameterListEvent(name, vals, type));
     }
 
     @Override
     public Query setParameterList(final String name, final Object[] vals) throws HibernateException {
-        return setQueryEvent(new SetParameterListEvent(name, vals));
+        parameterListTypes.remove(name);
+        return setParameterEvent(name, toList(vals), new SetParameterListEvent(name, vals));
     }
 
     @Override
     public Query setProperties(final Object bean) throws HibernateException {
+        // we don't know which of the named parameters the bean binds
+        final Iterator<Object> parameters = parameterValues.keySet().iterator();
+        while (parameters.hasNext()) {
+            if (parameters.next() instanceof String) {
+                parameters.remove();
+            }
+        }
+        parameterListTypes.clear();
         return setQueryEvent(new SetPropertiesEvent(bean));
     }
 
     @Override
     public Query setString(final int position, final String val) {
-        return setQueryEvent(new SetStringEvent(position, val));
+        return setParameterEvent(position, val, new SetStringEvent(position, val));
     }
 
     @Override
     public Query setCharacter(final int position, final char val) {
-        return setQueryEvent(new SetCharacterEvent(position, val));
+        return setParameterEvent(position, null, new SetCharacterEvent(position, val));
     }
 
     @Override
     public Query setBoolean(final int position, final boolean val) {
-        return setQueryEvent(new SetBooleanEvent(position, val));
+        return setParameterEvent(position, null, new SetBooleanEvent(position, val));
     }
 
     @Override
     public Query setByte(int position, byte val) {
-        return setQueryEvent(new SetByteEvent(position, val));
+        return setParameterEvent(position, null, new SetByteEvent(position, val));
     }
 
     @Override
     public Query setShort(final int position, final short val) {
-        return setQueryEvent(new SetShortEvent(position, val));
+        return setParameterEvent(position, val, new SetShortEvent(position, val));
     }
 
     @Override
     public Query setInteger(final int position, final int val) {
-        return setQueryEvent(new SetIntegerEvent(position, val));
+        return setParameterEvent(position, val, new SetIntegerEvent(position, val));
     }
 
     @Override
     public Query setLong(final int position, final long val) {
-        return setQueryEvent(new SetLongEvent(position, val));
+        return setParameterEvent(position, val, new SetLongEvent(position, val));
     }
 
     @Override
     public Query setFloat(final int position, final float val) {
-        return setQueryEvent(new SetFloatEvent(position, val));
+        return setParameterEvent(position, null, new SetFloatEvent(position, val));
     }
 
     @Override
     public Query setDouble(final int position, final double val) {
-        return setQueryEvent(new SetDoubleEvent(position, val));
+        return setParameterEvent(position, null, new SetDoubleEvent(position, val));
     }
 
     @Override
     public Query setBinary(final int position, final byte[] val) {
-        return setQueryEvent(new SetBinaryEvent(position, val));
+        return setParameterEvent(position, null, new SetBinaryEvent(position, val));
     }
 
     @Override
     public Query setText(final int position, final String val) {
         final QueryEvent event = new SetTextEvent(position, val);
-        return setQueryEvent(event);
+        return setParameterEvent(position, null, event);
     }
 
     @Override
     public Query setSerializable(final int position, final Serializable val) {
-        return setQueryEvent(new SetSerializableEvent(position, val));
+        return setParameterEvent(position, val, new SetSerializableEvent(position, val));
     }
 
     @Override
     public Query setLocale(final int position, final Locale locale) {
-        return setQueryEvent(new SetLocaleEvent(position, locale));
+        return setParameterEvent(position, null, new SetLocaleEvent(position, locale));
     }
 
     @Override
     public Query setBigDecimal(final int position, final BigDecimal number) {
-        return setQueryEvent(new SetBigDecimalEvent(position, number));
+        return setParameterEvent(position, number, new SetBigDecimalEvent(position, number));
     }
 
     @Override
     public Query setBigInteger(final int position, final BigInteger number) {
-        return setQueryEvent(new SetBigIntegerEvent(position, number));
+        return setParameterEvent(position, number, new SetBigIntegerEvent(position, number));
     }
 
     @Override
     public Query setDate(final int position, final Date date) {
-        return setQueryEvent(new SetDateEvent(position, date));
+        return setParameterEvent(position, null, new SetDateEvent(position, date));
     }
 
     @Override
     public Query setTime(final int position, final Date date) {
-        return setQueryEvent(new SetTimeEvent(position, date));
+        return setParameterEvent(position, null, new SetTimeEvent(position, date));
     }
 
     @Override
     public Query setTimestamp(final int position, final Date date) {
-        return setQueryEvent(new SetTimestampEvent(position, date));
+        return setParameterEvent(position, null, new SetTimestampEvent(position, date));
     }
 
     @Override
     public Query setCalendar(final int position, final Calendar calendar) {
-        return setQueryEvent(new SetCalendarEvent(position, calendar));
+        return setParameterEvent(position, null, new SetCalendarEvent(position, calendar));
     }
 
     @Override
     public Query setCalendarDate(final int position, final Calendar calendar) {
-        return setQueryEvent(new SetCalendarDateEvent(position, calendar));
+        return setParameterEvent(position, null, new SetCalendarDateEvent(position, calendar));
     }
 
     @Override
     public Query setString(final String name, final String val) {
-        return setQueryEvent(new SetStringEvent(name, val));
+        return setParameterEvent(name, val, new SetStringEvent(name, val));
     }
 
     @Override
     public Query setCharacter(final String name, final char val) {
-        return setQueryEvent(new SetCharacterEvent(name, val));
+        return setParameterEvent(name, null, new SetCharacterEvent(name, val));
     }
 
     @Override
     public Query setBoolean(final String name, final boolean val) {
-        return setQueryEvent(new SetBooleanEvent(name, val));
+        return setParameterEvent(name, null, new SetBooleanEvent(name, val));
     }
 
     @Override
     public Query setByte(final String name, final byte val) {
-        return setQueryEvent(new SetByteEvent(name, val));
+        return setParameterEvent(name, null, new SetByteEvent(name, val));
     }
 
     @Override
     public Query setShort(final String name, final short val) {
-        return setQueryEvent(new SetShortEvent(name, val));
+        return setParameterEvent(name, val, new SetShortEvent(name, val));
     }
 
     @Override
     public Query setInteger(final String name, final int val) {
-        return setQueryEvent(new SetIntegerEvent(name, val));
+        return setParameterEvent(name, val, new SetIntegerEvent(name, val));
     }
 
     @Override
     public Query setLong(final String name, final long val) {
-        return setQueryEvent(new SetLongEvent(name, val));
+        return setParameterEvent(name, val, new SetLongEvent(name, val));
     }
 
     @Override
     public Query setFloat(final String name, final float val) {
-        return setQueryEvent(new SetFloatEvent(name, val));
+        return setParameterEvent(name, null, new SetFloatEvent(name, val));
     }
 
     @Override
     public Query setDouble(final String name, final double val) {
-        return setQueryEvent(new SetDoubleEvent(name, val));
+        return setParameterEvent(name, null, new SetDoubleEvent(name, val));
     }
 
     @Override
     public Query setBinary(final String name, final byte[] val) {
-        return setQueryEvent(new SetBinaryEvent(name, val));
+        return setParameterEvent(name, null, new SetBinaryEvent(name, val));
     }
 
     @Override
     public Query setText(final String name, final String val) {
-        return setQueryEvent(new SetTextEvent(name, val));
+        return setParameterEvent(name, null, new SetTextEvent(name, val));
     }
 
     @Override
     public Query setSerializable(final String name, final Serializable val) {
-        return setQueryEvent(new SetSerializableEvent(name, val));
+        return setParameterEvent(name, val, new SetSerializableEvent(name, val));
     }
 
     @Override
     public Query setLocale(final String name, final Locale locale) {
-        return setQueryEvent(new SetLocaleEvent(name, locale));
+        return setParameterEvent(name, null, new SetLocaleEvent(name, locale));
     }
 
     @Override
     public Query setBigDecimal(final String name, final BigDecimal number) {
-        return setQueryEvent(new SetBigDecimalEvent(name, number));
+        return setParameterEvent(name, number, new SetBigDecimalEvent(name, number));
     }
 
     @Override
     public Query setBigInteger(final String name, final BigInteger number) {
-        return setQueryEvent(new SetBigIntegerEvent(name, number));
+        return setParameterEvent(name, number, new SetBigIntegerEvent(name, number));
     }
 
     @Override
     public Query setDate(final String name, final Date date) {
-        return setQueryEvent(new SetDateEvent(name, date));
+        return setParameterEvent(name, null, new SetDateEvent(name, date));
     }
 
     @Override
     public Query setTime(final String name, final Date date) {
-        return setQueryEvent(new SetTimeEvent(name, date));
+        return setParameterEvent(name, null, new SetTimeEvent(name, date));
     }
 
     @Override
     public Query setTimestamp(final String name, final Date date) {
-        return setQueryEvent(new SetTimestampEvent(name, date));
+        return setParameterEvent(name, null, new SetTimestampEvent(name, date));
     }
 
     @Override
     public Query setCalendar(final String name, final Calendar calendar) {
-        return setQueryEvent(new SetCalendarEvent(name, calendar));
+        return setParameterEvent(name, null, new SetCalendarEvent(name, calendar));
     }
 
     @Override
     public Query setCalendarDate(final String name, final Calendar calendar) {
-        return setQueryEvent(new SetCalendarDateEvent(name, calendar));
+        return setParameterEvent(name, null, new SetCalendarDateEvent(name, calendar));
     }
 
     @Override
     public Query setEntity(final int position, final Object val) {
-        return setQueryEvent(new SetEntityEvent(position, val));
+        return setParameterEvent(position, null, new SetEntityEvent(position, val));
     }
 
     @Override
     public Query setEntity(final String name, final Object val) {
-        return setQueryEvent(new SetEntityEvent(name, val));
+        return setParameterEvent(name, null, new SetEntityEvent(name, val));
     }
 
     @Override
@@ -622,6 +1014,12 @@ public class ShardedQueryImpl implements ShardedQuery {
     }
 
     public Query setProperties(Map map) throws HibernateException {
+        for (final Object entry : map.entrySet()) {
+            final Map.Entry<?, ?> parameter = (Map.Entry<?, ?>) entry;
+            final Object value = parameter.getValue();
+            parameterValues.put(parameter.getKey(), value instanceof Object[] ? toList(value) : value);
+            parameterListTypes.remove(parameter.getKey());
+        }
         return setQueryEvent(new SetPropertiesEvent(map));
     }
 
@@ -644,6 +1042,26 @@ public class ShardedQueryImpl implements ShardedQuery {
         return query;
     }
 
+    /**
+     * Remembers the value bound to a parameter, so that the query can be
+     * executed only on the shards of the entities whose identifiers it is
+     * restricted to.
+     *
+     * @param value the value, or null if it isn't a value an identifier can have
+     */
+    private Query setParameterEvent(final Object parameter, final /*@Nullable*/ Object value,
+                                    final QueryEvent queryEvent) {
+        parameterValues.put(parameter, value);
+        return setQueryEvent(queryEvent);
+    }
+
+    private static List<Object> toList(final Object values) {
+        if (values instanceof Object[]) {
+            return Arrays.asList((Object[]) values);
+        }
+        return Lists.<Object>newArrayList((Collection<?>) values);
+    }
+
     private Query setQueryEvent(final QueryEvent queryEvent) throws HibernateException {
         for (final Shard shard : shards) {
             if (shard.getQueryById(queryId) != null) {
@@ -19,6 +19,22 @@ public class ShardedSQLQueryImpl extends ShardedQueryImpl implements ShardedSQLQ
         super(queryId, shards, queryFactory, shardAccessStrategy);
     }
 
+    /**
+     * We don't parse SQL, so the results of the shards are simply concatenated.
+     */
+    @Override
+    HqlQueryAnalysis analyzeQuery() {
+        return HqlQueryAnalysis.CONCATENATE;
+    }
+
+    /**
+     * Nor do we know which shards the SQL is restricted to, so it is executed on every shard.
+     */
+    @Override
+    HqlIdentifierRestriction analyzeIdentifierRestriction() {
+        return HqlIdentifierRestriction.NONE;
+    }
+
     @Override
     public SQLQuery addEntity(final String entityName) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.scroll;
+
+import org.hibernate.Hibernate;
+import org.hibernate.JDBCException;
+import org.hibernate.engine.HibernateIterator;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the results of one shard after the other.  The iterator of a
+ * shard is only requested once the iterator of the previous shard is
+ * exhausted, and it is closed as soon as it is exhausted or this iterator is
+ * closed with {@link Hibernate#close(Iterator)}.  firstResult and maxResults
+ * are applied as the results go by.
+ */
+public class ConcatenatedIterator implements HibernateIterator {
+
+    private final Iterator<Shard> shardIterator;
+
+    private final ShardOperation<Iterator<?>> openIteratorOperation;
+
+    private final int firstResult;
+
+    // the most results to return, or -1 for no limit
+    private final int maxResults;
+
+    private Iterator<?> currentIterator;
+
+    private int returned;
+
+    private boolean skipped;
+
+    private boolean closed;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param shards                the shards to read from, in order
+     * @param openIteratorOperation returns an iterator over the results of a shard
+     * @param firstResult           the number of results to skip
+     * @param maxResults            the most results to return, or -1 for no limit
+     */
+    public ConcatenatedIterator(final List<Shard> shards,
+                                final ShardOperation<Iterator<?>> openIteratorOperation,
+                                final int firstResult,
+                                final int maxResults) {
+
+        this.shardIterator = Lists.newArrayList(shards).iterator();
+        this.openIteratorOperation = Preconditions.checkNotNull(openIteratorOperation);
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!skipped) {
+            skipped = true;
+            for (int i = 0; i < firstResult && positionOnNextResult(); i++) {
+                currentIterator.next();
+            }
+        }
+        if ((maxResults >= 0 && returned >= maxResults) || !positionOnNextResult()) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        returned++;
+        return currentIterator.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws JDBCException {
+        if (!closed) {
+            closed = true;
+            closeCurrentIterator();
+        }
+    }
+
+    /**
+     * Moves on to the next shard until we find one with results left.
+     *
+     * @return false if no shard has results left
+     */
+    private boolean positionOnNextResult() {
+        while (currentIterator == null || !currentIterator.hasNext()) {
+            closeCurrentIterator();
+            if (!shardIterator.hasNext()) {
+                return false;
+            }
+            final Shard shard = shardIterator.next();
+            log.debug(String.format("Opening iterator for %s on shard %s", openIteratorOperation.getOperationName(), shard));
+            currentIterator = openIteratorOperation.execute(shard);
+        }
+        return true;
+    }
+
+    private void closeCurrentIterator() {
+        if (currentIterator != null) {
+            // releases the JDBC resources of iterators that weren't exhausted
+            if (currentIterator instanceof HibernateIterator) {
+                ((HibernateIterator) currentIterator).close();
+            }
+            currentIterator = null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.scroll;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streams the rows of one shard after the other.  The cursor of a shard is
+ * only opened once the cursor of the previous shard is exhausted, so at most
+ * one cursor is open at any time.
+ */
+public class ConcatenatedScrollableResults extends ShardedScrollableResults {
+
+    private final Iterator<Shard> shardIterator;
+
+    private final ShardOperation<ScrollableResults> openCursorOperation;
+
+    private ScrollableResults currentCursor;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param shards              the shards to read from, in order
+     * @param openCursorOperation opens a forward-only cursor on a shard
+     * @param firstResult         the number of rows to skip
+     * @param maxResults          the most rows to return, or -1 for no limit
+     */
+    public ConcatenatedScrollableResults(final List<Shard> shards,
+                                         final ShardOperation<ScrollableResults> openCursorOperation,
+                                         final int firstResult,
+                                         final int maxResults) {
+
+        super(firstResult, maxResults);
+        this.shardIterator = Lists.newArrayList(shards).iterator();
+        this.openCursorOperation = Preconditions.checkNotNull(openCursorOperation);
+    }
+
+    @Override
+    protected boolean advance() {
+        while (true) {
+            if (currentCursor != null) {
+                if (currentCursor.next()) {
+                    return true;
+                }
+                currentCursor.close();
+                currentCursor = null;
+            }
+            if (!shardIterator.hasNext()) {
+                return false;
+            }
+            final Shard shard = shardIterator.next();
+            log.debug(String.format("Opening cursor for %s on shard %s", openCursorOperation.getOperationName(), shard));
+            currentCursor = openCursorOperation.execute(shard);
+        }
+    }
+
+    @Override
+    protected ScrollableResults getCurrentCursor() {
+        return currentCursor;
+    }
+
+    @Override
+    protected void closeCursors() {
+        if (currentCursor != null) {
+            currentCursor.close();
+            currentCursor = null;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package org.hibernate.shards.scroll;
+
+import org.hibernate.Hibernate;
+import org.hibernate.JDBCException;
+import org.hibernate.engine.HibernateIterator;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the iterators of shards that each return their results in the same
+ * order into a single, globally ordered iterator.  The iterators of all the
+ * shards are requested the first time a result is asked for, and they are all
+ * closed as soon as this iterator is exhausted or closed with
+ * {@link Hibernate#close(Iterator)}.  firstResult and maxResults are applied
+ * as the results go by.  Null results are skipped.
+ */
+public class OrderedMergeIterator implements HibernateIterator {
+
+    private final List<Shard> shards;
+
+    private final ShardOperation<Iterator<?>> openIteratorOperation;
+
+    private final PriorityQueue<ShardIterator> heap;
+
+    private final int firstResult;
+
+    // the most results to return, or -1 for no limit
+    private final int maxResults;
+
+    private int returned;
+
+    private boolean opened;
+
+    private boolean closed;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param shards                the shards to read from
+     * @param openIteratorOperation returns an iterator over the results of a
+     *                              shard, ordered according to resultComparator
+     * @param resultComparator      compares two results
+     * @param firstResult           the number of results to skip
+     * @param maxResults            the most results to return, or -1 for no limit
+     */
+    public OrderedMergeIterator(final List<Shard> shards,
+                                final ShardOperation<Iterator<?>> openIteratorOperation,
+                                final Comparator<Object> resultComparator,
+                                final int firstResult,
+                                final int maxResults) {
+
+        Preconditions.checkNotNull(resultComparator);
+        this.shards = shards;
+        this.openIteratorOperation = Preconditions.checkNotNull(openIteratorOperation);
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
+        this.heap = new PriorityQueue<ShardIterator>(Math.max(1, shards.size()), new Comparator<ShardIterator>() {
+            public int compare(final ShardIterator i1, final ShardIterator i2) {
+                return resultComparator.compare(i1.head, i2.head);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!opened) {
+            opened = true;
+            for (final Shard shard : shards) {
+                log.debug(String.format("Opening iterator for %s on shard %s", openIteratorOperation.getOperationName(), shard));
+                offer(new ShardIterator(openIteratorOperation.execute(shard)));
+            }
+            for (int i = 0; i < firstResult && !heap.isEmpty(); i++) {
+                poll();
+            }
+        }
+        if ((maxResults >= 0 && returned >= maxResults) || heap.isEmpty()) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        returned++;
+        return poll();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws JDBCException {
+        if (!closed) {
+            closed = true;
+            for (final ShardIterator iterator : heap) {
+                iterator.close();
+            }
+            heap.clear();
+        }
+    }
+
+    private Object poll() {
+        final ShardIterator iterator = heap.poll();
+        final Object result = iterator.head;
+        offer(iterator);
+        return result;
+    }
+
+    /**
+     * Move the iterator to its next result and put it back in the heap, or
+     * close it if it has no more results.
+     */
+    private void offer(final ShardIterator iterator) {
+        if (iterator.advance()) {
+            heap.add(iterator);
+        } else {
+            iterator.close();
+        }
+    }
+
+    private static final class ShardIterator {
+
+        private final Iterator<?> iterator;
+
+        // the next result of the iterator
+        private Object head;
+
+        private ShardIterator(final Iterator<?> iterator) {
+            this.iterator = iterator;
+        }
+
+        boolean advance() {
+            while (iterator.hasNext()) {
+                head = iterator.next();
+                if (head != null) {
+                    return true;
+                }
+            }
+            head = null;
+            return false;
+        }
+
+        void close() {
+            // releases the JDBC resources of iterators that weren't exhausted
+            if (iterator instanceof HibernateIterator) {
+                ((HibernateIterator) iterator).close();
+            }
+        }
+    }
+}
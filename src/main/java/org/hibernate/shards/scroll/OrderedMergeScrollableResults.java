@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.scroll;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the cursors of shards that each return their rows in the same order
+ * into a single, globally ordered stream of rows.  One cursor is kept open per
+ * shard and the shards are kept in a heap keyed on their current row, so
+ * memory use depends only on the number of shards.  A row of a single column
+ * is compared as that column and a row of several as an array, which is how
+ * list() would have returned it.
+ * <p/>
+ * Like {@link org.hibernate.shards.strategy.exit.OrderExitOperation}, null
+ * rows are skipped.
+ */
+public class OrderedMergeScrollableResults extends ShardedScrollableResults {
+
+    private final List<Shard> shards;
+
+    private final ShardOperation<ScrollableResults> openCursorOperation;
+
+    private final PriorityQueue<ShardCursor> heap;
+
+    // the cursor positioned on the current row, null before the first row
+    private ShardCursor current;
+
+    private boolean opened;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param shards              the shards to read from
+     * @param openCursorOperation opens a forward-only cursor on a shard, the
+     *                            rows of which are ordered according to rowComparator
+     * @param rowComparator       compares two rows
+     * @param firstResult         the number of rows to skip
+     * @param maxResults          the most rows to return, or -1 for no limit
+     */
+    public OrderedMergeScrollableResults(final List<Shard> shards,
+                                         final ShardOperation<ScrollableResults> openCursorOperation,
+                                         final Comparator<Object> rowComparator,
+                                         final int firstResult,
+                                         final int maxResults) {
+
+        super(firstResult, maxResults);
+        Preconditions.checkNotNull(rowComparator);
+        this.shards = shards;
+        this.openCursorOperation = Preconditions.checkNotNull(openCursorOperation);
+        this.heap = new PriorityQueue<ShardCursor>(Math.max(1, shards.size()), new Comparator<ShardCursor>() {
+            public int compare(final ShardCursor c1, final ShardCursor c2) {
+                return rowComparator.compare(c1.head, c2.head);
+            }
+        });
+    }
+
+    @Override
+    protected boolean advance() {
+        if (!opened) {
+            opened = true;
+            for (final Shard shard : shards) {
+                log.debug(String.format("Opening cursor for %s on shard %s", openCursorOperation.getOperationName(), shard));
+                offer(new ShardCursor(openCursorOperation.execute(shard)));
+            }
+        } else if (current != null) {
+            offer(current);
+        }
+        current = heap.poll();
+        return current != null;
+    }
+
+    /**
+     * Move the cursor to its next row and put it back in the heap, or close it
+     * if it has no more rows.
+     */
+    private void offer(final ShardCursor cursor) {
+        if (cursor.advance()) {
+            heap.add(cursor);
+        } else {
+            cursor.cursor.close();
+        }
+    }
+
+    @Override
+    protected ScrollableResults getCurrentCursor() {
+        return current == null ? null : current.cursor;
+    }
+
+    @Override
+    protected void closeCursors() {
+        if (current != null) {
+            current.cursor.close();
+            current = null;
+        }
+        for (final ShardCursor cursor : heap) {
+            cursor.cursor.close();
+        }
+        heap.clear();
+    }
+
+    private static final class ShardCursor {
+
+        private final ScrollableResults cursor;
+
+        // the row the cursor is positioned on
+        private Object head;
+
+        private ShardCursor(final ScrollableResults cursor) {
+            this.cursor = cursor;
+        }
+
+        boolean advance() {
+            while (cursor.next()) {
+                final Object[] row = cursor.get();
+                head = row.length == 1 ? row[0] : row;
+                if (head != null) {
+                    return true;
+                }
+            }
+            head = null;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.scroll;
+
+import org.hibernate.HibernateException;
+import org.hibernate.ScrollableResults;
+import org.hibernate.type.Type;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Base class for forward-only {@link ScrollableResults} that read from one
+ * cursor per shard.  The current row always belongs to exactly one of those
+ * cursors, so all the accessors delegate to it.  Subclasses decide which cursor
+ * provides the next row; this class applies firstResult and maxResults as the
+ * rows go by, so that nothing but the open cursors is ever held in memory.
+ * <p/>
+ * Positioning methods other than {@link #next()} are not supported.
+ */
+public abstract class ShardedScrollableResults implements ScrollableResults {
+
+    private final int firstResult;
+
+    // the most rows to return, or -1 for no limit
+    private final int maxResults;
+
+    private int rowNumber = -1;
+
+    private boolean closed;
+
+    /**
+     * @param firstResult the number of rows to skip
+     * @param maxResults  the most rows to return, or -1 for no limit
+     */
+    protected ShardedScrollableResults(final int firstResult, final int maxResults) {
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Move to the next row.
+     *
+     * @return false if there are no more rows
+     */
+    protected abstract boolean advance();
+
+    /**
+     * @return the cursor that is positioned on the current row, or null if
+     *         there is no current row
+     */
+    protected abstract /*@Nullable*/ ScrollableResults getCurrentCursor();
+
+    /**
+     * Close all the cursors that are still open.
+     */
+    protected abstract void closeCursors();
+
+    @Override
+    public boolean next() throws HibernateException {
+        if (closed) {
+            return false;
+        }
+        if (rowNumber < 0) {
+            for (int i = 0; i < firstResult; i++) {
+                if (!advance()) {
+                    close();
+                    return false;
+                }
+            }
+        }
+        if ((maxResults >= 0 && rowNumber + 1 >= maxResults) || !advance()) {
+            // release the cursors as soon as we know we won't need them anymore
+            close();
+            return false;
+        }
+        rowNumber++;
+        return true;
+    }
+
+    @Override
+    public void close() throws HibernateException {
+        if (!closed) {
+            closed = true;
+            closeCursors();
+        }
+    }
+
+    @Override
+    public int getRowNumber() throws HibernateException {
+        return rowNumber;
+    }
+
+    @Override
+    public boolean isFirst() throws HibernateException {
+        return rowNumber == 0 && !closed;
+    }
+
+    private ScrollableResults currentCursor() {
+        final ScrollableResults cursor = closed ? null : getCurrentCursor();
+        if (cursor == null) {
+            throw new HibernateException("No current row.");
+        }
+        return cursor;
+    }
+
+    @Override
+    public Object[] get() throws HibernateException {
+        return currentCursor().get();
+    }
+
+    @Override
+    public Object get(final int col) throws HibernateException {
+        return currentCursor().get(col);
+    }
+
+    @Override
+    public Type getType(final int i) {
+        return currentCursor().getType(i);
+    }
+
+    @Override
+    public Integer getInteger(final int col) throws HibernateException {
+        return currentCursor().getInteger(col);
+    }
+
+    @Override
+    public Long getLong(final int col) throws HibernateException {
+        return currentCursor().getLong(col);
+    }
+
+    @Override
+    public Float getFloat(final int col) throws HibernateException {
+        return currentCursor().getFloat(col);
+    }
+
+    @Override
+    public Boolean getBoolean(final int col) throws HibernateException {
+        return currentCursor().getBoolean(col);
+    }
+
+    @Override
+    public Double getDouble(final int col) throws HibernateException {
+        return currentCursor().getDouble(col);
+    }
+
+    @Override
+    public Short getShort(final int col) throws HibernateException {
+        return currentCursor().getShort(col);
+    }
+
+    @Override
+    public Byte getByte(final int col) throws HibernateException {
+        return currentCursor().getByte(col);
+    }
+
+    @Override
+    public Character getCharacter(final int col) throws HibernateException {
+        return currentCursor().getCharacter(col);
+    }
+
+    @Override
+    public byte[] getBinary(final int col) throws HibernateException {
+        return currentCursor().getBinary(col);
+    }
+
+    @Override
+    public String getText(final int col) throws HibernateException {
+        return currentCursor().getText(col);
+    }
+
+    @Override
+    public Blob getBlob(final int col) throws HibernateException {
+        return currentCursor().getBlob(col);
+    }
+
+    @Override
+    public Clob getClob(final int col) throws HibernateException {
+        return currentCursor().getClob(col);
+    }
+
+    @Override
+    public String getString(final int col) throws HibernateException {
+        return currentCursor().getString(col);
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(final int col) throws HibernateException {
+        return currentCursor().getBigDecimal(col);
+    }
+
+    @Override
+    public BigInteger getBigInteger(final int col) throws HibernateException {
+        return currentCursor().getBigInteger(col);
+    }
+
+    @Override
+    public Date getDate(final int col) throws HibernateException {
+        return currentCursor().getDate(col);
+    }
+
+    @Override
+    public Locale getLocale(final int col) throws HibernateException {
+        return currentCursor().getLocale(col);
+    }
+
+    @Override
+    public Calendar getCalendar(final int col) throws HibernateException {
+        return currentCursor().getCalendar(col);
+    }
+
+    @Override
+    public TimeZone getTimeZone(final int col) throws HibernateException {
+        return currentCursor().getTimeZone(col);
+    }
+
+    @Override
+    public boolean previous() throws HibernateException {
+        throw new UnsupportedOperationException("Sharded scrolling is forward-only.");
+    }
+
+    @Override
+    public boolean scroll(final int i) throws HibernateException {
+        throw new UnsupportedOperationException("Sharded scrolling is forward-only.");
+    }
+
+    @Override
+    public boolean last() throws HibernateException {
+        throw new UnsupportedOperationException("Sharded scrolling is forward-only.");
+    }
+
+    @Override
+    public boolean first() throws HibernateException {
+        throw new UnsupportedOperationException("Sharded scrolling is forward-only.");
+    }
+
+    @Override
+    public void beforeFirst() throws HibernateException {
+        throw new UnsupportedOperationException("Sharded scrolling is forward-only.");
+    }
+
+    @Override
+    public void afterLast() throws HibernateException {
+        throw new UnsupportedOperationException("Sharded scrolling is forward-only.");
+    }
+
+    /**
+     * Unsupported.  Knowing that the current row is the last one would
+     * require reading ahead on every shard.
+     */
+    @Override
+    public boolean isLast() throws HibernateException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean setRowNumber(final int rowNumber) throws HibernateException {
+        throw new UnsupportedOperationException("Sharded scrolling is forward-only.");
+    }
+}
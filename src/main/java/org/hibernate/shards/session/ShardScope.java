@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.session;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+
+/**
+ * Creates queries and criteria that are only executed on some of the shards
+ * of a {@link ShardedSession}.  The queries and criteria use the shards, and
+ * the sessions already open on them, of the ShardedSession the scope was
+ * obtained from, so a scope costs nothing to create and can be thrown away
+ * after a single call.
+ *
+ * @see ShardedSession#onShards(java.util.Collection)
+ */
+public interface ShardScope {
+
+    /**
+     * @see org.hibernate.Session#createCriteria(Class)
+     */
+    Criteria createCriteria(Class persistentClass);
+
+    /**
+     * @see org.hibernate.Session#createCriteria(Class, String)
+     */
+    Criteria createCriteria(Class persistentClass, String alias);
+
+    /**
+     * @see org.hibernate.Session#createCriteria(String)
+     */
+    Criteria createCriteria(String entityName);
+
+    /**
+     * @see org.hibernate.Session#createCriteria(String, String)
+     */
+    Criteria createCriteria(String entityName, String alias);
+
+    /**
+     * @see org.hibernate.Session#createQuery(String)
+     */
+    Query createQuery(String queryString) throws HibernateException;
+
+    /**
+     * @see org.hibernate.Session#createSQLQuery(String)
+     */
+    SQLQuery createSQLQuery(String queryString) throws HibernateException;
+
+    /**
+     * @see org.hibernate.Session#getNamedQuery(String)
+     */
+    Query getNamedQuery(String queryName) throws HibernateException;
+}
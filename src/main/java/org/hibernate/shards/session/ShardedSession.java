@@ -19,8 +19,13 @@
 package org.hibernate.shards.session;
 
 import org.hibernate.classic.Session;
+import org.hibernate.HibernateException;
 import org.hibernate.shards.ShardId;
 
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * The main runtime inteface between Java application and Hibernate Shards.<br>
@@ -59,4 +64,48 @@ public interface ShardedSession extends Session {
      * be unlocked.
      */
     void lockShard();
+
+    /**
+     * Same as {@link #get(Class, Serializable)}, but does not wait for the
+     * shards to answer.  The ShardedSession must not be used until the
+     * returned Future is done.
+     */
+    Future<Object> getAsync(Class clazz, Serializable id) throws HibernateException;
+
+    /**
+     * Same as {@link #get(String, Serializable)}, but does not wait for the
+     * shards to answer.  The ShardedSession must not be used until the
+     * returned Future is done.
+     */
+    Future<Object> getAsync(String entityName, Serializable id) throws HibernateException;
+
+    /**
+     * Return the persistent instances of the given entity class with the given
+     * identifiers.  The identifiers are resolved to their shards up front and
+     * each shard is asked for all of its instances with a single query, so the
+     * cost is one round trip per shard rather than one per identifier.
+     * Instances the shard sessions already hold are not loaded again.
+     *
+     * @param clazz a persistent class
+     * @param ids   the identifiers of the instances to return
+     * @return the instances in the order of their identifiers, with null for an
+     *         identifier that has no persistent instance, just as get() would
+     *         return
+     * @throws org.hibernate.TypeMismatchException if an identifier is not of the
+     *         identifier type of the class, just as get() would throw
+     */
+    List<Object> getAll(Class clazz, Collection<? extends Serializable> ids) throws HibernateException;
+
+    /**
+     * Restricts the queries and criteria created through the returned scope
+     * to the shards with the given ids, for when the caller knows where the
+     * data lives.  A query restricted to one virtual shard is executed on the
+     * physical shard that hosts it, and so also sees the data of the other
+     * virtual shards hosted there.
+     *
+     * @param shardIds the ids of the shards to restrict queries and criteria to
+     * @return a scope that creates queries and criteria for those shards
+     * @throws HibernateException if a shard id is not one of this session's
+     */
+    ShardScope onShards(Collection<ShardId> shardIds) throws HibernateException;
 }
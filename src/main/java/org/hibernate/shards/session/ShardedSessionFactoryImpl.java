@@ -54,6 +54,8 @@ import org.hibernate.proxy.EntityNotFoundDelegate;
 import org.hibernate.shards.ShardId;
 import org.hibernate.shards.engine.ShardedSessionFactoryImplementor;
 import org.hibernate.shards.id.GeneratorRequiringControlSessionProvider;
+import org.hibernate.shards.loadbalance.LatencyAwareReplicaLoadBalancer;
+import org.hibernate.shards.loadbalance.ReplicaLoadBalancer;
 import org.hibernate.shards.strategy.ShardStrategy;
 import org.hibernate.shards.strategy.ShardStrategyFactory;
 import org.hibernate.shards.util.Iterables;
@@ -102,6 +104,12 @@ public class ShardedSessionFactoryImpl implements ShardedSessionFactoryImplement
     // map of all existing SessionFactories, used when creating a new ShardedSessionFactory for some subset of shards
     private final Map<SessionFactoryImplementor, Set<ShardId>> fullSessionFactoryShardIdMap;
 
+    // maps the SessionFactory of each primary to the SessionFactories of its read replicas
+    private final Map<SessionFactoryImplementor, List<SessionFactoryImplementor>> replicaSessionFactoryMap;
+
+    // chooses the replica that serves the reads of a session
+    private final ReplicaLoadBalancer replicaLoadBalancer;
+
     // The strategy we use for all shard-related operations
     private final ShardStrategy shardStrategy;
 
@@ -143,7 +151,46 @@ public class ShardedSessionFactoryImpl implements ShardedSessionFactoryImplement
                                      final Set<Class<?>> classesWithoutTopLevelSaveSupport,
                                      final boolean checkAllAssociatedObjectsForDifferentShards) {
 
+        this(shardIds,
+                sessionFactoryShardIdMap,
+                Collections.<SessionFactoryImplementor, List<SessionFactoryImplementor>>emptyMap(),
+                new LatencyAwareReplicaLoadBalancer(),
+                shardStrategyFactory,
+                classesWithoutTopLevelSaveSupport,
+                checkAllAssociatedObjectsForDifferentShards);
+    }
+
+    /**
+     * Constructs a ShardedSessionFactoryImpl whose shards have read replicas
+     *
+     * @param shardIds                 The ids of the shards with which this SessionFactory
+     *                                 should be associated.
+     * @param sessionFactoryShardIdMap Mapping of SessionFactories to shard ids.
+     *                                 Same constraints as for the other constructors.
+     * @param replicaSessionFactoryMap Mapping of the SessionFactories in sessionFactoryShardIdMap
+     *                                 to the SessionFactories of their read replicas.  SessionFactories
+     *                                 without replicas may be absent.
+     * @param replicaLoadBalancer      chooses the replica that serves the reads of a session
+     * @param shardStrategyFactory     factory that knows how to create the {@link ShardStrategy}
+     *                                 that will be used for all shard-related operations
+     * @param classesWithoutTopLevelSaveSupport
+     *                                 All classes that cannot be saved
+     *                                 as top-level objects
+     * @param checkAllAssociatedObjectsForDifferentShards
+     *                                 Flag that controls
+     *                                 whether or not we do full cross-shard relationshp checking (very slow)
+     */
+    public ShardedSessionFactoryImpl(final List<ShardId> shardIds,
+                                     final Map<SessionFactoryImplementor, Set<ShardId>> sessionFactoryShardIdMap,
+                                     final Map<SessionFactoryImplementor, List<SessionFactoryImplementor>> replicaSessionFactoryMap,
+                                     final ReplicaLoadBalancer replicaLoadBalancer,
+                                     final ShardStrategyFactory shardStrategyFactory,
+                                     final Set<Class<?>> classesWithoutTopLevelSaveSupport,
+                                     final boolean checkAllAssociatedObjectsForDifferentShards) {
+
         Preconditions.checkNotNull(sessionFactoryShardIdMap);
+        Preconditions.checkNotNull(replicaSessionFactoryMap);
+        Preconditions.checkNotNull(replicaLoadBalancer);
         Preconditions.checkArgument(!sessionFactoryShardIdMap.isEmpty());
         Preconditions.checkNotNull(shardStrategyFactory);
         Preconditions.checkNotNull(classesWithoutTopLevelSaveSupport);
@@ -151,6 +198,8 @@ public class ShardedSessionFactoryImpl implements ShardedSessionFactoryImplement
         this.sessionFactories = Lists.newArrayList(sessionFactoryShardIdMap.keySet());
         this.sessionFactoryShardIdMap = Maps.newHashMap();
         this.fullSessionFactoryShardIdMap = sessionFactoryShardIdMap;
+        this.replicaSessionFactoryMap = replicaSessionFactoryMap;
+        this.replicaLoadBalancer = replicaLoadBalancer;
         this.classesWithoutTopLevelSaveSupport = Sets.newHashSet(classesWithoutTopLevelSaveSupport);
         this.checkAllAssociatedObjectsForDifferentShards = checkAllAssociatedObjectsForDifferentShards;
 
@@ -219,6 +268,37 @@ public class ShardedSessionFactoryImpl implements ShardedSessionFactoryImplement
                 checkAllAssociatedObjectsForDifferentShards);
     }
 
+    /**
+     * Constructs a ShardedSessionFactoryImpl whose shards have read replicas
+     *
+     * @param sessionFactoryShardIdMap Mapping of SessionFactories to shard ids.
+     *                                 Same constraints as for the other constructors.
+     * @param replicaSessionFactoryMap Mapping of the SessionFactories in sessionFactoryShardIdMap
+     *                                 to the SessionFactories of their read replicas.
+     * @param shardStrategyFactory     factory that knows how to create the {@link ShardStrategy}
+     *                                 that will be used for all shard-related operations
+     * @param classesWithoutTopLevelSaveSupport
+     *                                 All classes that cannot be saved
+     *                                 as top-level objects
+     * @param checkAllAssociatedObjectsForDifferentShards
+     *                                 Flag that controls
+     *                                 whether or not we do full cross-shard relationshp checking (very slow)
+     */
+    public ShardedSessionFactoryImpl(
+            Map<SessionFactoryImplementor, Set<ShardId>> sessionFactoryShardIdMap,
+            Map<SessionFactoryImplementor, List<SessionFactoryImplementor>> replicaSessionFactoryMap,
+            ShardStrategyFactory shardStrategyFactory,
+            Set<Class<?>> classesWithoutTopLevelSaveSupport,
+            boolean checkAllAssociatedObjectsForDifferentShards) {
+        this(Lists.newArrayList(Iterables.concat(sessionFactoryShardIdMap.values())),
+                sessionFactoryShardIdMap,
+                replicaSessionFactoryMap,
+                new LatencyAwareReplicaLoadBalancer(),
+                shardStrategyFactory,
+                classesWithoutTopLevelSaveSupport,
+                checkAllAssociatedObjectsForDifferentShards);
+    }
+
     /**
      * Sets the {@link ControlSessionProvider} on id generators that implement the
      * {@link GeneratorRequiringControlSessionProvider} interface
@@ -357,6 +437,11 @@ public class ShardedSessionFactoryImpl implements ShardedSessionFactoryImplement
             sf.close();
         }
         sessionFactories.clear();
+        for (final List<SessionFactoryImplementor> replicas : replicaSessionFactoryMap.values()) {
+            for (final SessionFactory sf : replicas) {
+                sf.close();
+            }
+        }
         if (classesWithoutTopLevelSaveSupport != null) {
             classesWithoutTopLevelSaveSupport.clear();
         }
@@ -508,6 +593,20 @@ public class ShardedSessionFactoryImpl implements ShardedSessionFactoryImplement
         return sessionFactories.contains(factory);
     }
 
+    @Override
+    public List<SessionFactoryImplementor> getReplicaSessionFactories(final SessionFactoryImplementor factory) {
+        final List<SessionFactoryImplementor> replicas = replicaSessionFactoryMap.get(factory);
+        if (replicas == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(replicas);
+    }
+
+    @Override
+    public ReplicaLoadBalancer getReplicaLoadBalancer() {
+        return replicaLoadBalancer;
+    }
+
     private SessionFactoryImplementor getAnyFactory() {
         return sessionFactories.get(0);
     }
@@ -534,6 +633,8 @@ public class ShardedSessionFactoryImpl implements ShardedSessionFactoryImplement
         return new SubsetShardedSessionFactoryImpl(
                 shardIds,
                 fullSessionFactoryShardIdMap,
+                replicaSessionFactoryMap,
+                replicaLoadBalancer,
                 shardStrategyFactory,
                 classesWithoutTopLevelSaveSupport,
                 checkAllAssociatedObjectsForDifferentShards);
@@ -35,14 +35,21 @@ import org.hibernate.SessionException;
 import org.hibernate.Transaction;
 import org.hibernate.TransientObjectException;
 import org.hibernate.TypeHelper;
+import org.hibernate.TypeMismatchException;
 import org.hibernate.UnknownProfileException;
 import org.hibernate.UnresolvableObjectException;
 import org.hibernate.classic.Session;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.EntityEntry;
+import org.hibernate.engine.EntityKey;
+import org.hibernate.engine.PersistenceContext;
 import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.engine.SessionImplementor;
+import org.hibernate.engine.Status;
 import org.hibernate.id.IdentifierGenerator;
 import org.hibernate.jdbc.Work;
 import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.proxy.HibernateProxy;
 import org.hibernate.shards.CrossShardAssociationException;
 import org.hibernate.shards.Shard;
@@ -50,6 +57,7 @@ import org.hibernate.shards.ShardId;
 import org.hibernate.shards.ShardImpl;
 import org.hibernate.shards.ShardOperation;
 import org.hibernate.shards.ShardedTransaction;
+import org.hibernate.shards.criteria.CriteriaFactory;
 import org.hibernate.shards.criteria.CriteriaFactoryImpl;
 import org.hibernate.shards.criteria.CriteriaId;
 import org.hibernate.shards.criteria.ShardedCriteriaImpl;
@@ -59,12 +67,15 @@ import org.hibernate.shards.id.ShardEncodingIdentifierGenerator;
 import org.hibernate.shards.query.AdHocQueryFactoryImpl;
 import org.hibernate.shards.query.ExitOperationsQueryCollector;
 import org.hibernate.shards.query.NamedQueryFactoryImpl;
+import org.hibernate.shards.query.QueryFactory;
 import org.hibernate.shards.query.QueryId;
 import org.hibernate.shards.query.ShardedQueryImpl;
 import org.hibernate.shards.query.ShardedSQLQueryImpl;
 import org.hibernate.shards.stat.ShardedSessionStatistics;
 import org.hibernate.shards.strategy.ShardStrategy;
+import org.hibernate.shards.strategy.exit.ConcatenateListsExitStrategy;
 import org.hibernate.shards.strategy.exit.FirstNonNullResultExitStrategy;
+import org.hibernate.shards.strategy.resolution.ShardResolutionStrategy;
 import org.hibernate.shards.strategy.selection.ShardResolutionStrategyData;
 import org.hibernate.shards.strategy.selection.ShardResolutionStrategyDataImpl;
 import org.hibernate.shards.transaction.ShardedTransactionImpl;
@@ -88,6 +99,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 /**
  * Concrete implementation of a ShardedSession, and also the central component of
@@ -100,6 +112,9 @@ import java.util.Set;
  */
 public class ShardedSessionImpl implements ShardedSession, ShardedSessionImplementor, ShardIdResolver {
 
+    // most databases cap the number of values of an in-list, Oracle at 1000
+    static final int MAX_IDS_PER_QUERY = 1000;
+
     private static ThreadLocal<ShardId> currentSubgraphShardId = new ThreadLocal<ShardId>();
 
     private final ShardedSessionFactoryImplementor shardedSessionFactory;
@@ -110,6 +125,15 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
 
     private final ShardStrategy shardStrategy;
 
+    // resolves the shards of the entities a query or criteria is restricted to the same way get() does
+    private final ShardResolutionStrategy queryShardResolutionStrategy = new ShardResolutionStrategy() {
+
+        @Override
+        public List<ShardId> selectShardIdsFromShardResolutionStrategyData(final ShardResolutionStrategyData srsd) {
+            return ShardedSessionImpl.this.selectShardIdsFromShardResolutionStrategyData(srsd);
+        }
+    };
+
     private final Set<Class<?>> classesWithoutTopLevelSaveSupport;
 
     private final boolean checkAllAssociatedObjectsForDifferentShards;
@@ -118,6 +142,9 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
 
     private boolean closed = false;
 
+    // true if reads should be served by the read replicas of the shards
+    private boolean defaultReadOnly = false;
+
     private boolean lockedShard = false;
 
     private ShardId lockedShardId;
@@ -170,7 +197,8 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
                 shardedSessionFactory.getSessionFactoryShardIdMap(),
                 checkAllAssociatedObjectsForDifferentShards,
                 this,
-                interceptor);
+                interceptor,
+                shardedSessionFactory);
 
         this.shardIdsToShards = buildShardIdsToShardsMap();
         this.shardStrategy = shardStrategy;
@@ -194,13 +222,41 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
             final ShardIdResolver shardIdResolver,
             final /*@Nullable*/ Interceptor interceptor) {
 
+        return buildShardListFromSessionFactoryShardIdMap(
+                sessionFactoryShardIdMap,
+                checkAllAssociatedObjectsForDifferentShards,
+                shardIdResolver,
+                interceptor,
+                null);
+    }
+
+    /**
+     * @param replicaSource knows the read replicas of each SessionFactory, null
+     *                      if the shards should not use replicas
+     */
+    static List<Shard> buildShardListFromSessionFactoryShardIdMap(
+            final Map<SessionFactoryImplementor, Set<ShardId>> sessionFactoryShardIdMap,
+            final boolean checkAllAssociatedObjectsForDifferentShards,
+            final ShardIdResolver shardIdResolver,
+            final /*@Nullable*/ Interceptor interceptor,
+            final /*@Nullable*/ ShardedSessionFactoryImplementor replicaSource) {
+
         final List<Shard> shardList = Lists.newArrayList();
         for (final Map.Entry<SessionFactoryImplementor, Set<ShardId>> entry : sessionFactoryShardIdMap.entrySet()) {
             final Pair<InterceptorList, SetSessionOnRequiresSessionEvent> pair = buildInterceptorList(
                     interceptor,
                     shardIdResolver,
                     checkAllAssociatedObjectsForDifferentShards);
-            final Shard shard = new ShardImpl(entry.getValue(), entry.getKey(), pair.first);
+            final List<SessionFactoryImplementor> replicas = replicaSource == null
+                    ? Collections.<SessionFactoryImplementor>emptyList()
+                    : replicaSource.getReplicaSessionFactories(entry.getKey());
+            final Shard shard;
+            if (replicas.isEmpty()) {
+                shard = new ShardImpl(entry.getValue(), entry.getKey(), pair.first);
+            } else {
+                shard = new ShardImpl(entry.getValue(), entry.getKey(), pair.first, replicas,
+                        replicaSource.getReplicaLoadBalancer());
+            }
             shardList.add(shard);
             if (pair.second != null) {
                 shard.addOpenSessionEvent(pair.second);
@@ -259,6 +315,16 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
                 new ExitOperationsQueryCollector());
     }
 
+    private Future<Object> applyGetOperationAsync(final ShardOperation<Object> shardOp,
+                                                  final ShardResolutionStrategyData srsd) {
+        final List<ShardId> shardIds = selectShardIdsFromShardResolutionStrategyData(srsd);
+        return shardStrategy.getShardAccessStrategy().applyAsync(
+                shardIdListToShardList(shardIds),
+                shardOp,
+                new FirstNonNullResultExitStrategy<Object>(),
+                new ExitOperationsQueryCollector());
+    }
+
     private List<Shard> shardIdListToShardList(final List<ShardId> shardIds) {
         final Set<Shard> shards = Sets.newHashSet();
         for (final ShardId shardId : shardIds) {
@@ -274,17 +340,144 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
 
     @Override
     public Object get(final Class clazz, final Serializable id) throws HibernateException {
-        final ShardOperation<Object> shardOp = new ShardOperation<Object>() {
+        return applyGetOperation(buildGetOperation(clazz, id), new ShardResolutionStrategyDataImpl(clazz, id));
+    }
+
+    @Override
+    public Future<Object> getAsync(final Class clazz, final Serializable id) throws HibernateException {
+        return applyGetOperationAsync(buildGetOperation(clazz, id), new ShardResolutionStrategyDataImpl(clazz, id));
+    }
+
+    private ShardOperation<Object> buildGetOperation(final Class clazz, final Serializable id) {
+        return new ShardOperation<Object>() {
             public Object execute(Shard shard) {
-                return shard.establishSession().get(clazz, id);
+                return establishSessionForRead(shard).get(clazz, id);
             }
 
             public String getOperationName() {
                 return "get(Class class, Serializable id)";
             }
         };
+    }
 
-        return applyGetOperation(shardOp, new ShardResolutionStrategyDataImpl(clazz, id));
+    @Override
+    public List<Object> getAll(final Class clazz, final Collection<? extends Serializable> ids)
+            throws HibernateException {
+        final ClassMetadata metadata = shardedSessionFactory.getClassMetadata(clazz);
+        final String idProperty = metadata == null ? null : metadata.getIdentifierPropertyName();
+        final List<Object> results = Lists.newArrayListWithCapacity(ids.size());
+        if (idProperty == null) {
+            // composite identifiers can't be put in an in-list
+            for (final Serializable id : ids) {
+                results.add(get(clazz, id));
+            }
+            return results;
+        }
+        final Class<?> idClass = metadata.getIdentifierType().getReturnedClass();
+        for (final Serializable id : ids) {
+            // get() rejects an id of the wrong type too, rather than finding nothing
+            if (id != null && !idClass.isInstance(id)) {
+                throw new TypeMismatchException("Provided id of the wrong type for class " + clazz.getName()
+                        + ". Expected: " + idClass + ", got " + id.getClass());
+            }
+        }
+
+        final Map<Shard, List<Serializable>> idsByShard = groupIdsByShard(clazz, ids);
+        final List<Object> entities = shardStrategy.getShardAccessStrategy().apply(
+                Lists.newArrayList(idsByShard.keySet()),
+                new ShardOperation<List<Object>>() {
+                    @Override
+                    public List<Object> execute(final Shard shard) {
+                        return getAll(establishSessionForRead(shard), clazz, idProperty, idsByShard.get(shard));
+                    }
+
+                    @Override
+                    public String getOperationName() {
+                        return "getAll(Class clazz, Collection ids)";
+                    }
+                },
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+
+        final Map<Serializable, Object> entitiesById = Maps.newHashMap();
+        for (final Object entity : entities) {
+            final Serializable id = metadata.getIdentifier(entity, EntityMode.POJO);
+            if (!entitiesById.containsKey(id)) {
+                entitiesById.put(id, entity);
+            }
+        }
+        for (final Serializable id : ids) {
+            results.add(entitiesById.get(id));
+        }
+        return results;
+    }
+
+    /**
+     * @return the distinct ids, grouped by the shards that may hold them.  An
+     *         id that resolves to more than one shard is listed for each of them.
+     */
+    Map<Shard, List<Serializable>> groupIdsByShard(final Class clazz, final Collection<? extends Serializable> ids) {
+        final Map<Shard, List<Serializable>> idsByShard = Maps.newLinkedHashMap();
+        final Set<Serializable> seen = Sets.newHashSet();
+        for (final Serializable id : ids) {
+            if (id == null || !seen.add(id)) {
+                continue;
+            }
+            final List<ShardId> shardIds = selectShardIdsFromShardResolutionStrategyData(
+                    new ShardResolutionStrategyDataImpl(clazz, id));
+            for (final Shard shard : shardIdListToShardList(shardIds)) {
+                List<Serializable> shardIdsToLoad = idsByShard.get(shard);
+                if (shardIdsToLoad == null) {
+                    shardIdsToLoad = Lists.newArrayList();
+                    idsByShard.put(shard, shardIdsToLoad);
+                }
+                shardIdsToLoad.add(id);
+            }
+        }
+        return idsByShard;
+    }
+
+    /**
+     * Loads the entities with the given ids from a single shard.  Entities the
+     * session already holds are taken from its persistence context, just as
+     * get() would, and the rest are loaded with one in-list query per
+     * {@link #MAX_IDS_PER_QUERY} ids.  Like get(), the load does not flush the
+     * session.
+     */
+    private static List<Object> getAll(final Session session, final Class clazz, final String idProperty,
+                                       final List<Serializable> ids) {
+        final List<Object> entities = Lists.newArrayList();
+        final List<Serializable> idsToQuery = Lists.newArrayList();
+        if (session instanceof SessionImplementor) {
+            final SessionImplementor sessionImpl = (SessionImplementor) session;
+            final PersistenceContext persistenceContext = sessionImpl.getPersistenceContext();
+            final EntityPersister persister = sessionImpl.getFactory().getEntityPersister(clazz.getName());
+            for (final Serializable id : ids) {
+                final Object entity = persistenceContext.getEntity(new EntityKey(id, persister, EntityMode.POJO));
+                if (entity == null) {
+                    idsToQuery.add(id);
+                } else if (!isRemoved(persistenceContext.getEntry(entity))) {
+                    entities.add(entity);
+                }
+            }
+        } else {
+            idsToQuery.addAll(ids);
+        }
+
+        for (int i = 0; i < idsToQuery.size(); i += MAX_IDS_PER_QUERY) {
+            final List<Serializable> chunk = idsToQuery.subList(i, Math.min(idsToQuery.size(), i + MAX_IDS_PER_QUERY));
+            @SuppressWarnings("unchecked")
+            final List<Object> loaded = session.createCriteria(clazz)
+                    .add(Restrictions.in(idProperty, chunk))
+                    .setFlushMode(FlushMode.MANUAL)
+                    .list();
+            entities.addAll(loaded);
+        }
+        return entities;
+    }
+
+    private static boolean isRemoved(final /*@Nullable*/ EntityEntry entry) {
+        return entry != null && (entry.getStatus() == Status.DELETED || entry.getStatus() == Status.GONE);
     }
 
     @Deprecated
@@ -314,12 +507,21 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
 
     @Override
     public Object get(final String entityName, final Serializable id) throws HibernateException {
+        return applyGetOperation(buildGetOperation(entityName, id), new ShardResolutionStrategyDataImpl(entityName, id));
+    }
 
-        final ShardOperation<Object> shardOp = new ShardOperation<Object>() {
+    @Override
+    public Future<Object> getAsync(final String entityName, final Serializable id) throws HibernateException {
+        return applyGetOperationAsync(buildGetOperation(entityName, id),
+                new ShardResolutionStrategyDataImpl(entityName, id));
+    }
+
+    private ShardOperation<Object> buildGetOperation(final String entityName, final Serializable id) {
+        return new ShardOperation<Object>() {
 
             @Override
             public Object execute(Shard shard) {
-                return shard.establishSession().get(entityName, id);
+                return establishSessionForRead(shard).get(entityName, id);
             }
 
             @Override
@@ -327,8 +529,6 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
                 return "get(String entityName, Serializable id)";
             }
         };
-
-        return applyGetOperation(shardOp, new ShardResolutionStrategyDataImpl(entityName, id));
     }
 
     @Deprecated
@@ -457,6 +657,17 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
                     // opened
                 }
             }
+            final Session replicaSession = getReplicaSession(shard);
+            if (replicaSession != null) {
+                try {
+                    replicaSession.close();
+                } catch (Throwable t) {
+                    if (thrown == null) {
+                        thrown = Lists.newArrayList();
+                    }
+                    thrown.add(t);
+                }
+            }
         }
 
         shards.clear();
@@ -528,6 +739,7 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
     @Override
     public void setDefaultReadOnly(final boolean readOnly) {
         setOpenSessionEvent(new SetDefaultReadOnlyOpenSessionEvent(readOnly));
+        defaultReadOnly = readOnly;
     }
 
     @Override
@@ -1206,49 +1418,65 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
 
     @Override
     public Criteria createCriteria(final Class persistentClass) {
-        return new ShardedCriteriaImpl(
-                new CriteriaId(nextCriteriaId++),
-                shards,
-                new CriteriaFactoryImpl(persistentClass),
-                shardStrategy.getShardAccessStrategy());
+        return createCriteria(shards, new CriteriaFactoryImpl(persistentClass));
     }
 
     @Override
     public Criteria createCriteria(final Class persistentClass, final String alias) {
-        return new ShardedCriteriaImpl(
-                new CriteriaId(nextCriteriaId++),
-                shards,
-                new CriteriaFactoryImpl(persistentClass, alias),
-                shardStrategy.getShardAccessStrategy());
+        return createCriteria(shards, new CriteriaFactoryImpl(persistentClass, alias));
     }
 
     @Override
     public Criteria createCriteria(final String entityName) {
-        return new ShardedCriteriaImpl(
-                new CriteriaId(nextCriteriaId++),
-                shards,
-                new CriteriaFactoryImpl(entityName),
-                shardStrategy.getShardAccessStrategy());
+        return createCriteria(shards, new CriteriaFactoryImpl(entityName));
     }
 
     public Criteria createCriteria(final String entityName, final String alias) {
-        return new ShardedCriteriaImpl(
+        return createCriteria(shards, new CriteriaFactoryImpl(entityName, alias));
+    }
+
+    private Criteria createCriteria(final List<Shard> shards, final CriteriaFactory criteriaFactory) {
+        return applyDefaultReadOnly(new ShardedCriteriaImpl(
                 new CriteriaId(nextCriteriaId++),
                 shards,
-                new CriteriaFactoryImpl(entityName, alias),
-                shardStrategy.getShardAccessStrategy());
+                criteriaFactory,
+                shardStrategy.getShardAccessStrategy(),
+                queryShardResolutionStrategy));
     }
 
     @Override
     public Query createQuery(String queryString) throws HibernateException {
-        return new ShardedQueryImpl(new QueryId(nextQueryId++),
+        return createQuery(shards, new AdHocQueryFactoryImpl(queryString));
+    }
+
+    private Query createQuery(final List<Shard> shards, final QueryFactory queryFactory) {
+        return applyDefaultReadOnly(new ShardedQueryImpl(new QueryId(nextQueryId++),
                 shards,
-                new AdHocQueryFactoryImpl(queryString),
-                shardStrategy.getShardAccessStrategy());
+                queryFactory,
+                shardStrategy.getShardAccessStrategy(),
+                queryShardResolutionStrategy));
+    }
+
+    private Criteria applyDefaultReadOnly(final Criteria criteria) {
+        if (defaultReadOnly) {
+            criteria.setReadOnly(true);
+        }
+        return criteria;
+    }
+
+    private Query applyDefaultReadOnly(final Query query) {
+        if (defaultReadOnly) {
+            query.setReadOnly(true);
+        }
+        return query;
     }
 
     @Override
     public SQLQuery createSQLQuery(final String queryString) throws HibernateException {
+        return createSQLQuery(shards, queryString);
+    }
+
+    private SQLQuery createSQLQuery(final List<Shard> shards, final String queryString) {
         return new ShardedSQLQueryImpl(new QueryId(nextQueryId++),
                 shards,
                 new AdHocQueryFactoryImpl(queryString),
@@ -1283,10 +1511,79 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
 
     @Override
     public Query getNamedQuery(final String queryName) throws HibernateException {
-        return new ShardedQueryImpl(new QueryId(nextQueryId++),
-                shards,
-                new NamedQueryFactoryImpl(queryName),
-                shardStrategy.getShardAccessStrategy());
+        return createQuery(shards, new NamedQueryFactoryImpl(queryName));
+    }
+
+    @Override
+    public ShardScope onShards(final Collection<ShardId> shardIds) throws HibernateException {
+        return new ShardScopeImpl(getShardsById(shardIds));
+    }
+
+    /**
+     * @return the shards with the given ids, in the order of the session's shards
+     * @throws HibernateException if a shard id is not one of this session's
+     */
+    List<Shard> getShardsById(final Collection<ShardId> shardIds) throws HibernateException {
+        Preconditions.checkArgument(!shardIds.isEmpty());
+        for (final ShardId shardId : shardIds) {
+            if (!shardIdsToShards.containsKey(shardId)) {
+                throw new HibernateException("Shard " + shardId + " is not one of the shards of this session");
+            }
+        }
+        final List<Shard> selected = Lists.newArrayList();
+        for (final Shard shard : shards) {
+            if (!Collections.disjoint(shard.getShardIds(), shardIds)) {
+                selected.add(shard);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Creates queries and criteria over some of the session's shards.
+     */
+    private final class ShardScopeImpl implements ShardScope {
+
+        private final List<Shard> scopeShards;
+
+        ShardScopeImpl(final List<Shard> scopeShards) {
+            this.scopeShards = scopeShards;
+        }
+
+        @Override
+        public Criteria createCriteria(final Class persistentClass) {
+            return ShardedSessionImpl.this.createCriteria(scopeShards, new CriteriaFactoryImpl(persistentClass));
+        }
+
+        @Override
+        public Criteria createCriteria(final Class persistentClass, final String alias) {
+            return ShardedSessionImpl.this.createCriteria(scopeShards, new CriteriaFactoryImpl(persistentClass, alias));
+        }
+
+        @Override
+        public Criteria createCriteria(final String entityName) {
+            return ShardedSessionImpl.this.createCriteria(scopeShards, new CriteriaFactoryImpl(entityName));
+        }
+
+        @Override
+        public Criteria createCriteria(final String entityName, final String alias) {
+            return ShardedSessionImpl.this.createCriteria(scopeShards, new CriteriaFactoryImpl(entityName, alias));
+        }
+
+        @Override
+        public Query createQuery(final String queryString) throws HibernateException {
+            return ShardedSessionImpl.this.createQuery(scopeShards, new AdHocQueryFactoryImpl(queryString));
+        }
+
+        @Override
+        public SQLQuery createSQLQuery(final String queryString) throws HibernateException {
+            return ShardedSessionImpl.this.createSQLQuery(scopeShards, queryString);
+        }
+
+        @Override
+        public Query getNamedQuery(final String queryName) throws HibernateException {
+            return ShardedSessionImpl.this.createQuery(scopeShards, new NamedQueryFactoryImpl(queryName));
+        }
     }
 
     @Override
@@ -1295,6 +1592,10 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
             if (shard.getSession() != null) {
                 shard.getSession().clear();
             }
+            final Session replicaSession = getReplicaSession(shard);
+            if (replicaSession != null) {
+                replicaSession.clear();
+            }
         }
     }
 
@@ -1679,10 +1980,35 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
             if (shard.getSession() != null && shard.getSession().contains(obj)) {
                 return shard;
             }
+            final Session replicaSession = getReplicaSession(shard);
+            if (replicaSession != null && replicaSession.contains(obj)) {
+                return shard;
+            }
         }
         return null;
     }
 
+    /**
+     * @return the open Session the shard uses to read from a replica, or null if
+     *         the shard has no replicas or has not read from one yet
+     */
+    private static Session getReplicaSession(final Shard shard) {
+        final Session readSession = shard.getReadSession();
+        return readSession == shard.getSession() ? null : readSession;
+    }
+
+    /**
+     * Reads of a read-only session are served by a replica of the shard, if it has one,
+     * unless a transaction is active.  Reads inside a transaction stay on the primary.
+     */
+    private Session establishSessionForRead(final Shard shard) {
+        return defaultReadOnly && !isTransactionActive() ? shard.establishReadSession() : shard.establishSession();
+    }
+
+    private boolean isTransactionActive() {
+        return transaction != null && transaction.isActive();
+    }
+
     private Session getSessionForObject(final Object obj, final List<Shard> shardsToConsider) {
         final Shard shard = getShardForObject(obj, shardsToConsider);
         if (shard == null) {
@@ -1789,6 +2115,12 @@ public class ShardedSessionImpl implements ShardedSession, ShardedSessionImpleme
             } else {
                 shard.addOpenSessionEvent(sessionEvent);
             }
+            // replica Sessions are always read-only and never hold the entities
+            // of the primary, so read-only settings are not forwarded to them
+            if (!(sessionEvent instanceof SetDefaultReadOnlyOpenSessionEvent)
+                    && !(sessionEvent instanceof SetReadOnlyOpenSessionEvent)) {
+                shard.addReadSessionEvent(sessionEvent);
+            }
         }
     }
 
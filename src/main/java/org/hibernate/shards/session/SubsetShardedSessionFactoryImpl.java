@@ -21,6 +21,7 @@ package org.hibernate.shards.session;
 import org.hibernate.HibernateException;
 import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.shards.ShardId;
+import org.hibernate.shards.loadbalance.ReplicaLoadBalancer;
 import org.hibernate.shards.strategy.ShardStrategyFactory;
 
 import java.util.List;
@@ -48,6 +49,18 @@ public class SubsetShardedSessionFactoryImpl extends ShardedSessionFactoryImpl {
                 checkAllAssociatedObjectsForDifferentShards);
     }
 
+    public SubsetShardedSessionFactoryImpl(final List<ShardId> shardIds,
+                                           final Map<SessionFactoryImplementor, Set<ShardId>> sessionFactoryShardIdMap,
+                                           final Map<SessionFactoryImplementor, List<SessionFactoryImplementor>> replicaSessionFactoryMap,
+                                           final ReplicaLoadBalancer replicaLoadBalancer,
+                                           final ShardStrategyFactory shardStrategyFactory,
+                                           final Set<Class<?>> classesWithoutTopLevelSaveSupport,
+                                           final boolean checkAllAssociatedObjectsForDifferentShards) {
+
+        super(shardIds, sessionFactoryShardIdMap, replicaSessionFactoryMap, replicaLoadBalancer, shardStrategyFactory,
+                classesWithoutTopLevelSaveSupport, checkAllAssociatedObjectsForDifferentShards);
+    }
+
     protected SubsetShardedSessionFactoryImpl(
             final Map<SessionFactoryImplementor, Set<ShardId>> sessionFactoryShardIdMap,
             final ShardStrategyFactory shardStrategyFactory,
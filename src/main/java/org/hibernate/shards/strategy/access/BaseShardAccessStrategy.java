@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.access;
+
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.strategy.exit.ExitOperationsCollector;
+import org.hibernate.shards.strategy.exit.ExitStrategy;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Base class for {@link ShardAccessStrategy} implementations that access the
+ * shards on the calling thread.  {@link #applyAsync} runs {@link #apply}
+ * before it returns, so strategies written before applyAsync existed only
+ * need to extend this class.
+ */
+public abstract class BaseShardAccessStrategy implements ShardAccessStrategy {
+
+    /**
+     * Shards are accessed on the calling thread, so the returned Future is
+     * already done.
+     */
+    public <T> Future<T> applyAsync(final List<Shard> shards, final ShardOperation<T> operation,
+                                    final ExitStrategy<T> exitStrategy,
+                                    final ExitOperationsCollector exitOperationsCollector) {
+
+        final FutureTask<T> future = new FutureTask<T>(new Callable<T>() {
+            public T call() {
+                return apply(shards, operation, exitStrategy, exitOperationsCollector);
+            }
+        });
+        future.run();
+        return future;
+    }
+}
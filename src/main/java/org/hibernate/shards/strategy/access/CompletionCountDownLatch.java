@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.access;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CountDownLatch that runs a callback on the thread that brings the count
+ * to zero.  Lets an asynchronous operation finish on the thread of the last
+ * shard to answer instead of parking a thread on {@link #await()}.
+ */
+class CompletionCountDownLatch extends CountDownLatch {
+
+    private final AtomicLong remaining;
+
+    private final Runnable onCompletion;
+
+    CompletionCountDownLatch(final int count, final Runnable onCompletion) {
+        super(count);
+        this.remaining = new AtomicLong(count);
+        this.onCompletion = onCompletion;
+    }
+
+    @Override
+    public void countDown() {
+        super.countDown();
+        // only the thread that takes the count from one to zero runs the callback
+        if (remaining.decrementAndGet() == 0) {
+            onCompletion.run();
+        }
+    }
+}
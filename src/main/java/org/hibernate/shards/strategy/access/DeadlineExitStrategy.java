@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.access;
+
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.strategy.exit.ExitOperationsCollector;
+import org.hibernate.shards.strategy.exit.ExitStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ExitStrategy decorator that stops accepting results once it has been closed.
+ * Shards that answer after the deadline of an operation has passed must not
+ * modify the results we are in the middle of compiling.
+ */
+class DeadlineExitStrategy<T> implements ExitStrategy<T> {
+
+    private final ExitStrategy<T> delegate;
+
+    private boolean closed;
+
+    // number of shards whose results were accepted
+    private int answers;
+
+    // whether the decorated ExitStrategy needs no further results
+    private boolean satisfied;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    DeadlineExitStrategy(final ExitStrategy<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized boolean addResult(final T result, final Shard shard) {
+        if (closed) {
+            log.debug(String.format("Discarding result from shard %s that arrived after the deadline", shard));
+            return true;
+        }
+        answers++;
+        final boolean done = delegate.addResult(result, shard);
+        satisfied |= done;
+        return done;
+    }
+
+    /**
+     * Stop accepting results.  Once this method returns no other thread
+     * can add a result to the decorated ExitStrategy.
+     */
+    synchronized void close() {
+        closed = true;
+    }
+
+    /**
+     * @param shards the number of shards the operation was executed against
+     * @return the number of shards whose results are missing, 0 if every shard
+     *         answered or the results that were accepted are all that is needed
+     */
+    synchronized int countMissingResults(final int shards) {
+        return satisfied ? 0 : Math.max(0, shards - answers);
+    }
+
+    @Override
+    public T compileResults(final ExitOperationsCollector exitOperationsCollector) {
+        return delegate.compileResults(exitOperationsCollector);
+    }
+}
@@ -18,34 +18,133 @@
 
 package org.hibernate.shards.strategy.access;
 
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
 import org.hibernate.shards.Shard;
 import org.hibernate.shards.ShardOperation;
 import org.hibernate.shards.strategy.exit.ExitOperationsCollector;
 import org.hibernate.shards.strategy.exit.ExitStrategy;
+import org.hibernate.shards.strategy.exit.ParallelMergeSort;
 import org.hibernate.shards.util.Lists;
 import org.hibernate.shards.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Invokes the given operation on the given shards in parallel.
+ * <p/>
+ * An operation can be given a deadline.  The overall timeout bounds how long
+ * the calling thread waits for the shards to answer, and the per-shard timeout
+ * bounds how long a single shard may take.  Both are handed to the Query or
+ * Criteria that executes against the shard as a statement timeout (see
+ * {@link ShardAccessDeadline}).  What happens when the overall timeout expires
+ * is decided by the {@link ShardAccessTimeoutPolicy}.  Either way the statements
+ * of the shards that haven't answered are cancelled, and the operation only
+ * returns once their shard operations have returned, so that nothing uses the
+ * Sessions of the shards any more by the time the caller gets them back.
+ * <p/>
+ * {@link #applyAsync} does not wait at all.  The results are compiled by the
+ * thread that completes the last shard operation.  If the overall timeout
+ * expires first, the returned Future completes at the deadline according to
+ * the timeout policy, and if a shard fails it completes with the failure of
+ * that shard.
+ * <p/>
+ * Ordered results that are too large to sort on a single thread in good time
+ * can be sorted by the threads of the executor once the shards have answered
+ * (see {@link ParallelMergeSort}).
  * TODO(maxr) Add support for rejected tasks
  *
  * @author maxr@google.com (Max Ross)
  */
 public class ParallelShardAccessStrategy implements ShardAccessStrategy {
 
+    private static final boolean INTERRUPT_IF_RUNNING = false;
+
     private final ThreadPoolExecutor executor;
 
+    // overall time budget of an operation in milliseconds, 0 for none
+    private final long operationTimeoutMillis;
+
+    // time budget of a single shard in milliseconds, 0 for none
+    private final long perShardTimeoutMillis;
+
+    private final ShardAccessTimeoutPolicy timeoutPolicy;
+
+    // sorts large results while they are compiled, null to sort them on a single thread
+    private final /*@Nullable*/ ParallelMergeSort mergeSort;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     public ParallelShardAccessStrategy(ThreadPoolExecutor executor) {
+        this(executor, 0, 0, TimeUnit.MILLISECONDS, ShardAccessTimeoutPolicy.FAIL);
+    }
+
+    /**
+     * Construct a ParallelShardAccessStrategy whose operations have a deadline.
+     *
+     * @param executor         the executor that runs the shard operations
+     * @param operationTimeout the overall time budget of an operation, 0 for none
+     * @param perShardTimeout  the time budget of a single shard, 0 for none
+     * @param unit             the unit of both timeouts
+     * @param timeoutPolicy    what to do when the overall time budget runs out
+     */
+    public ParallelShardAccessStrategy(final ThreadPoolExecutor executor,
+                                       final long operationTimeout,
+                                       final long perShardTimeout,
+                                       final TimeUnit unit,
+                                       final ShardAccessTimeoutPolicy timeoutPolicy) {
+        this(executor, operationTimeout, perShardTimeout, unit, timeoutPolicy, 0);
+    }
+
+    /**
+     * Construct a ParallelShardAccessStrategy whose operations have a deadline
+     * and that uses the threads of the executor to sort large results.
+     *
+     * @param executor               the executor that runs the shard operations
+     * @param operationTimeout       the overall time budget of an operation, 0 for none
+     * @param perShardTimeout        the time budget of a single shard, 0 for none
+     * @param unit                   the unit of both timeouts
+     * @param timeoutPolicy          what to do when the overall time budget runs out
+     * @param parallelMergeThreshold the number of results from which on they
+     *                               are sorted in parallel, 0 to always sort on a single thread
+     * @see ParallelMergeSort#DEFAULT_THRESHOLD
+     */
+    public ParallelShardAccessStrategy(final ThreadPoolExecutor executor,
+                                       final long operationTimeout,
+                                       final long perShardTimeout,
+                                       final TimeUnit unit,
+                                       final ShardAccessTimeoutPolicy timeoutPolicy,
+                                       final int parallelMergeThreshold) {
+
         Preconditions.checkNotNull(executor);
+        Preconditions.checkArgument(parallelMergeThreshold >= 0);
+        Preconditions.checkArgument(operationTimeout >= 0);
+        Preconditions.checkArgument(perShardTimeout >= 0);
         this.executor = executor;
+        this.operationTimeoutMillis = unit.toMillis(operationTimeout);
+        this.perShardTimeoutMillis = unit.toMillis(perShardTimeout);
+        this.timeoutPolicy = Preconditions.checkNotNull(timeoutPolicy);
+        if (parallelMergeThreshold == 0) {
+            this.mergeSort = null;
+        } else {
+            // the thread compiling the results takes part in the sort as well
+            final int parallelism = (int) Math.min(
+                    (long) executor.getMaximumPoolSize() + 1, Runtime.getRuntime().availableProcessors());
+            this.mergeSort = new ParallelMergeSort(executor, parallelism, parallelMergeThreshold);
+        }
     }
 
     public <T> T apply(final List<Shard> shards,
@@ -53,7 +152,143 @@ public class ParallelShardAccessStrategy implements ShardAccessStrategy {
                        final ExitStrategy<T> exitStrategy,
                        final ExitOperationsCollector exitOperationsCollector) {
 
+        final ShardAccessDeadline deadline = buildDeadline();
+        final DeadlineExitStrategy<T> deadlineExitStrategy = new DeadlineExitStrategy<T>(exitStrategy);
+
+        final List<StartAwareFutureTask> tasks = Lists.newArrayListWithCapacity(shards.size());
+
+        /**
+         * Used to signal this thread that all processing is complete
+         */
+        final CountDownLatch doneSignal = new CountDownLatch(shards.size());
+        submitTasks(shards, operation, deadlineExitStrategy, deadline, doneSignal, tasks);
+        try {
+            log.debug("Waiting for threads to complete processing before proceeding.");
+            if (deadline == null || !deadline.isBounded()) {
+                // now we wait until all threads finish
+                doneSignal.await();
+            } else if (!doneSignal.await(deadline.getRemainingNanos(), TimeUnit.NANOSECONDS)) {
+                // late arrivals must not modify the results
+                deadlineExitStrategy.close();
+                stopShards(shards, tasks, doneSignal);
+                doneSignal.await();
+                handleTimeout(operation, deadlineExitStrategy, shards.size());
+            }
+        } catch (InterruptedException e) {
+            // not sure why this would happen or what we should do if it does
+            log.error("Received unexpected exception while waiting for done signal.", e);
+        }
+
+        // late arrivals must not modify the results while we compile them
+        deadlineExitStrategy.close();
+        log.debug("Compiling results.");
+        return compileResults(exitStrategy, exitOperationsCollector);
+    }
+
+    public <T> Future<T> applyAsync(final List<Shard> shards,
+                                    final ShardOperation<T> operation,
+                                    final ExitStrategy<T> exitStrategy,
+                                    final ExitOperationsCollector exitOperationsCollector) {
+
+        final ShardAccessDeadline deadline = buildDeadline();
+        final DeadlineExitStrategy<T> deadlineExitStrategy = new DeadlineExitStrategy<T>(exitStrategy);
         final List<StartAwareFutureTask> tasks = Lists.newArrayListWithCapacity(shards.size());
+        final AtomicBoolean expired = new AtomicBoolean();
+
+        final ShardOperationFuture<T> result = new ShardOperationFuture<T>(new Callable<T>() {
+            public T call() {
+                deadlineExitStrategy.close();
+                if (expired.get()) {
+                    handleTimeout(operation, deadlineExitStrategy, shards.size());
+                }
+                log.debug("Compiling results.");
+                return compileResults(exitStrategy, exitOperationsCollector);
+            }
+        }, deadlineExitStrategy, tasks, expired);
+
+        if (shards.isEmpty()) {
+            result.run();
+            return result;
+        }
+
+        /**
+         * Whichever task counts down last compiles the results, unless a shard
+         * fails first.  If the deadline passes, the tasks that haven't started
+         * are counted down on their behalf, so the results are compiled once
+         * the running ones have returned.
+         */
+        final CountDownLatch doneSignal = new CompletionCountDownLatch(shards.size(), result);
+        submitTasks(shards, new FailureReportingShardOperation<T>(operation, result),
+                deadlineExitStrategy, deadline, doneSignal, tasks);
+        if (deadline != null && deadline.isBounded()) {
+            result.setTimer(DeadlineTimer.INSTANCE.schedule(new Runnable() {
+                public void run() {
+                    expire(result, shards, tasks, deadlineExitStrategy, doneSignal, expired);
+                }
+            }, deadline.getRemainingNanos(), TimeUnit.NANOSECONDS));
+        }
+        return result;
+    }
+
+    /**
+     * Stops the shards of an asynchronous operation whose deadline passed.  The
+     * operation completes according to the timeout policy once the shard
+     * operations that were running have returned.
+     */
+    private <T> void expire(final ShardOperationFuture<T> result,
+                            final List<Shard> shards,
+                            final List<StartAwareFutureTask> tasks,
+                            final DeadlineExitStrategy<T> deadlineExitStrategy,
+                            final CountDownLatch doneSignal,
+                            final AtomicBoolean expired) {
+        if (result.isDone()) {
+            return;
+        }
+        expired.set(true);
+        // late arrivals must not modify the results
+        deadlineExitStrategy.close();
+        stopShards(shards, tasks, doneSignal);
+    }
+
+    /**
+     * Cancels the tasks that haven't started, counting down on their behalf,
+     * and the statements of the shards whose tasks are still running.
+     */
+    private void stopShards(final List<Shard> shards,
+                            final List<StartAwareFutureTask> tasks,
+                            final CountDownLatch doneSignal) {
+        // the task of a shard has the position of the shard
+        for (int i = 0; i < tasks.size(); i++) {
+            final StartAwareFutureTask ft = tasks.get(i);
+            if (ft.cancel(INTERRUPT_IF_RUNNING)) {
+                doneSignal.countDown();
+            } else if (!ft.isDone()) {
+                cancelQueries(shards.get(i));
+            }
+        }
+    }
+
+    private void cancelQueries(final Shard shard) {
+        final Session session = shard.getSession();
+        final Session readSession = shard.getReadSession();
+        try {
+            if (session != null) {
+                session.cancelQuery();
+            }
+            if (readSession != null && readSession != session) {
+                readSession.cancelQuery();
+            }
+        } catch (HibernateException e) {
+            log.warn(String.format("Could not cancel the statement running against shard %s", shard), e);
+        }
+    }
+
+    private <T> void submitTasks(final List<Shard> shards,
+                                 final ShardOperation<T> operation,
+                                 final ExitStrategy<T> exitStrategy,
+                                 final /*@Nullable*/ ShardAccessDeadline deadline,
+                                 final CountDownLatch doneSignal,
+                                 final List<StartAwareFutureTask> tasks) {
 
         int taskId = 0;
 
@@ -64,10 +299,6 @@ public class ParallelShardAccessStrategy implements ShardAccessStrategy {
          */
         final CountDownLatch startSignal = new CountDownLatch(1);
 
-        /**
-         * Used to signal this thread that all processing is complete
-         */
-        final CountDownLatch doneSignal = new CountDownLatch(shards.size());
         for (final Shard shard : shards) {
             // create a task for each shard
             ParallelShardOperationCallable<T> callable =
@@ -77,7 +308,8 @@ public class ParallelShardAccessStrategy implements ShardAccessStrategy {
                             exitStrategy,
                             operation,
                             shard,
-                            tasks);
+                            tasks,
+                            deadline);
 
             // wrap the task in a StartAwareFutureTask so that the task can be cancelled
             final StartAwareFutureTask ft = new StartAwareFutureTask(callable, taskId++);
@@ -89,25 +321,191 @@ public class ParallelShardAccessStrategy implements ShardAccessStrategy {
 
         // the tasks List is populated, release the threads!
         startSignal.countDown();
+    }
+
+    private <T> T compileResults(final ExitStrategy<T> exitStrategy,
+                                 final ExitOperationsCollector exitOperationsCollector) {
+        if (mergeSort == null) {
+            return exitStrategy.compileResults(exitOperationsCollector);
+        }
+        final ParallelMergeSort previous = ParallelMergeSort.getCurrent();
+        ParallelMergeSort.setCurrent(mergeSort);
         try {
-            log.debug("Waiting for threads to complete processing before proceeding.");
-            //TODO(maxr) let users customize timeout behavior
-              /*
-              if(!doneSignal.await(10, TimeUnit.SECONDS)) {
-                final String msg = "Parallel operations timed out.";
-                log.error(msg);
-                throw new HibernateException(msg);
-              }
-              */
-
-            // now we wait until all threads finish
-            doneSignal.await();
-        } catch (InterruptedException e) {
-            // not sure why this would happen or what we should do if it does
-            log.error("Received unexpected exception while waiting for done signal.", e);
+            return exitStrategy.compileResults(exitOperationsCollector);
+        } finally {
+            ParallelMergeSort.setCurrent(previous);
         }
+    }
 
-        log.debug("Compiling results.");
-        return exitStrategy.compileResults(exitOperationsCollector);
+    private /*@Nullable*/ ShardAccessDeadline buildDeadline() {
+        if (operationTimeoutMillis == 0 && perShardTimeoutMillis == 0) {
+            return null;
+        }
+        return new ShardAccessDeadline(operationTimeoutMillis, perShardTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Applies the timeout policy to the shards that haven't answered by the
+     * deadline.  Nothing happens if every shard answered after all.
+     */
+    private void handleTimeout(final ShardOperation<?> operation,
+                               final DeadlineExitStrategy<?> deadlineExitStrategy,
+                               final int shards) {
+
+        final int missing = deadlineExitStrategy.countMissingResults(shards);
+        if (missing == 0) {
+            log.debug(String.format("Every shard answered %s just in time.", operation.getOperationName()));
+            return;
+        }
+        final String msg = String.format("Parallel execution of %s timed out after %d ms, %d of %d shards did not answer.",
+                operation.getOperationName(), operationTimeoutMillis, missing, shards);
+        if (timeoutPolicy == ShardAccessTimeoutPolicy.FAIL) {
+            log.error(msg);
+            throw new HibernateException(msg);
+        }
+        log.warn(msg + " Returning the results that are available.");
+    }
+
+    /**
+     * The result of an asynchronous operation.  Cancelling it also cancels the
+     * shard operations that haven't started yet.
+     */
+    private static class ShardOperationFuture<T> extends FutureTask<T> {
+
+        private final DeadlineExitStrategy<T> exitStrategy;
+
+        private final List<StartAwareFutureTask> tasks;
+
+        // set once the deadline has passed
+        private final AtomicBoolean expired;
+
+        // wakes the operation up when its deadline passes, null if it has none
+        private volatile ScheduledFuture<?> timer;
+
+        ShardOperationFuture(final Callable<T> callable,
+                             final DeadlineExitStrategy<T> exitStrategy,
+                             final List<StartAwareFutureTask> tasks,
+                             final AtomicBoolean expired) {
+            super(callable);
+            this.exitStrategy = exitStrategy;
+            this.tasks = tasks;
+            this.expired = expired;
+        }
+
+        void setTimer(final ScheduledFuture<?> timer) {
+            this.timer = timer;
+            if (isDone()) {
+                DeadlineTimer.cancel(timer);
+            }
+        }
+
+        /**
+         * Completes the operation with the given failure and stops the shard
+         * operations that haven't started yet.  Once the deadline has passed,
+         * a failing shard, such as one whose statement we cancelled, is just
+         * a shard that didn't answer.
+         */
+        void fail(final Throwable t) {
+            if (expired.get()) {
+                return;
+            }
+            exitStrategy.close();
+            setException(t);
+            cancelTasks();
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean result = super.cancel(mayInterruptIfRunning);
+            if (result) {
+                cancelTasks();
+            }
+            return result;
+        }
+
+        @Override
+        protected void done() {
+            final ScheduledFuture<?> timer = this.timer;
+            if (timer != null) {
+                DeadlineTimer.cancel(timer);
+            }
+        }
+
+        private void cancelTasks() {
+            for (final StartAwareFutureTask ft : tasks) {
+                ft.cancel(INTERRUPT_IF_RUNNING);
+            }
+        }
+    }
+
+    /**
+     * Hands the failure of a shard to the Future of the operation.  The task
+     * that executes the shard would otherwise swallow it.
+     */
+    private static final class FailureReportingShardOperation<T> implements ShardOperation<T> {
+
+        private final ShardOperation<T> operation;
+
+        private final ShardOperationFuture<T> result;
+
+        FailureReportingShardOperation(final ShardOperation<T> operation, final ShardOperationFuture<T> result) {
+            this.operation = operation;
+            this.result = result;
+        }
+
+        public T execute(final Shard shard) {
+            try {
+                return operation.execute(shard);
+            } catch (RuntimeException e) {
+                result.fail(e);
+                throw e;
+            } catch (Error e) {
+                result.fail(e);
+                throw e;
+            }
+        }
+
+        public String getOperationName() {
+            return operation.getOperationName();
+        }
+    }
+
+    /**
+     * Wakes up the asynchronous operations whose deadline passed.  The results
+     * of an operation that timed out are compiled on this thread if none of
+     * its shard operations was running, and otherwise by the last of them to
+     * return.
+     */
+    private static final class DeadlineTimer {
+
+        // cancelled wake-up calls are purged from the queue once per this many
+        private static final int PURGE_INTERVAL = 100;
+
+        static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+        private static final AtomicInteger cancellations = new AtomicInteger();
+
+        private static ScheduledThreadPoolExecutor create() {
+            return new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "shard-access-deadline");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        /**
+         * Cancel the wake-up call of an operation that finished in time.  A
+         * cancelled task stays in the queue of the timer until its deadline,
+         * so the queue is purged every now and then to keep operations with
+         * long deadlines from piling up there.
+         */
+        static void cancel(final ScheduledFuture<?> timer) {
+            if (timer.cancel(false)
+                    && (cancellations.incrementAndGet() & Integer.MAX_VALUE) % PURGE_INTERVAL == 0) {
+                INSTANCE.purge();
+            }
+        }
     }
 }
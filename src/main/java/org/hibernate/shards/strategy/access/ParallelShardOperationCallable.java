@@ -56,6 +56,9 @@ class ParallelShardOperationCallable<T> implements Callable<Void> {
 
     private final List<StartAwareFutureTask> futureTasks;
 
+    // the time budget of the operation, null if it is unbounded
+    private final ShardAccessDeadline deadline;
+
     public ParallelShardOperationCallable(final CountDownLatch startSignal,
                                           final CountDownLatch doneSignal,
                                           final ExitStrategy<T> exitStrategy,
@@ -63,23 +66,40 @@ class ParallelShardOperationCallable<T> implements Callable<Void> {
                                           final Shard shard,
                                           final List<StartAwareFutureTask> futureTasks) {
 
+        this(startSignal, doneSignal, exitStrategy, operation, shard, futureTasks, null);
+    }
+
+    public ParallelShardOperationCallable(final CountDownLatch startSignal,
+                                          final CountDownLatch doneSignal,
+                                          final ExitStrategy<T> exitStrategy,
+                                          final ShardOperation<T> operation,
+                                          final Shard shard,
+                                          final List<StartAwareFutureTask> futureTasks,
+                                          final /*@Nullable*/ ShardAccessDeadline deadline) {
+
         this.startSignal = startSignal;
         this.doneSignal = doneSignal;
         this.exitStrategy = exitStrategy;
         this.operation = operation;
         this.shard = shard;
         this.futureTasks = futureTasks;
+        this.deadline = deadline;
     }
 
     public Void call() throws Exception {
         try {
             waitForStartSignal();
+            if (deadline != null && deadline.isExpired()) {
+                // nobody is waiting for this result anymore so don't bother the shard
+                log.debug(String.format("Deadline passed before execution of %s against shard %s", operation.getOperationName(), shard));
+                return null;
+            }
             log.debug(String.format("Starting execution of %s against shard %s", operation.getOperationName(), shard));
             /**
              * If addResult() returns true it means there is no more work to be
              * performed.  Cancel all the outstanding tasks.
              */
-            if (exitStrategy.addResult(operation.execute(shard), shard)) {
+            if (exitStrategy.addResult(execute(), shard)) {
                 log.debug(
                         String.format(
                                 "Short-circuiting execution of %s on other threads after execution against shard %s",
@@ -122,6 +142,16 @@ class ParallelShardOperationCallable<T> implements Callable<Void> {
         return null;
     }
 
+    private T execute() {
+        // expose the deadline so the Query or Criteria we execute can pick it up
+        ShardAccessDeadline.setCurrentDeadline(deadline);
+        try {
+            return operation.execute(shard);
+        } finally {
+            ShardAccessDeadline.setCurrentDeadline(null);
+        }
+    }
+
     private void waitForStartSignal() {
         try {
             startSignal.await();
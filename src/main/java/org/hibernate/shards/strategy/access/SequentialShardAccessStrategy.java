@@ -30,7 +30,7 @@ import java.util.List;
 /**
  * @author maxr@google.com (Max Ross)
  */
-public class SequentialShardAccessStrategy implements ShardAccessStrategy {
+public class SequentialShardAccessStrategy extends BaseShardAccessStrategy {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.access;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time budget of a single operation executed across shards.  A deadline
+ * has an overall limit, measured from the moment the operation starts, and an
+ * optional per-shard budget.  The deadline of the operation a thread is
+ * currently executing against a shard is available through
+ * {@link #getCurrentDeadline()} so that the Query or Criteria being executed
+ * can be given a matching timeout.
+ */
+public final class ShardAccessDeadline {
+
+    private static final ThreadLocal<ShardAccessDeadline> currentDeadline = new ThreadLocal<ShardAccessDeadline>();
+
+    // absolute deadline in terms of System.nanoTime(), or 0 if there is no overall limit
+    private final long deadlineNanos;
+
+    // the most time a single shard may take, or 0 if there is no per-shard limit
+    private final long perShardTimeoutNanos;
+
+    /**
+     * Construct a ShardAccessDeadline that starts now.
+     *
+     * @param operationTimeout the overall time budget of the operation, 0 for none
+     * @param perShardTimeout  the time budget of each shard, 0 for none
+     * @param unit             the unit of both timeouts
+     */
+    public ShardAccessDeadline(final long operationTimeout, final long perShardTimeout, final TimeUnit unit) {
+        this.deadlineNanos = operationTimeout > 0 ? System.nanoTime() + unit.toNanos(operationTimeout) : 0;
+        this.perShardTimeoutNanos = perShardTimeout > 0 ? unit.toNanos(perShardTimeout) : 0;
+    }
+
+    /**
+     * @return true if the operation has an overall limit
+     */
+    public boolean isBounded() {
+        return deadlineNanos != 0;
+    }
+
+    /**
+     * @return the time left before the overall deadline passes, in nanoseconds.
+     *         Long.MAX_VALUE if the operation has no overall limit.
+     */
+    public long getRemainingNanos() {
+        if (!isBounded()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * @return true if the overall deadline has passed
+     */
+    public boolean isExpired() {
+        return getRemainingNanos() == 0;
+    }
+
+    /**
+     * JDBC timeouts are expressed in whole seconds, so the budget of a shard is
+     * the smaller of the per-shard budget and the time left on the overall
+     * deadline, rounded up to the next second.
+     *
+     * @return the timeout in seconds to apply to a statement that is about to
+     *         execute against a shard, or 0 if the statement should not be limited
+     */
+    public int getShardTimeoutSeconds() {
+        long budget = getRemainingNanos();
+        if (perShardTimeoutNanos != 0) {
+            budget = Math.min(budget, perShardTimeoutNanos);
+        }
+        if (budget == Long.MAX_VALUE) {
+            return 0;
+        }
+        final long seconds = TimeUnit.NANOSECONDS.toSeconds(budget + TimeUnit.SECONDS.toNanos(1) - 1);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, seconds));
+    }
+
+    /**
+     * @return the deadline of the shard operation the current thread is
+     *         executing, or null if the thread is not executing one
+     */
+    public static /*@Nullable*/ ShardAccessDeadline getCurrentDeadline() {
+        return currentDeadline.get();
+    }
+
+    static void setCurrentDeadline(final /*@Nullable*/ ShardAccessDeadline deadline) {
+        if (deadline == null) {
+            currentDeadline.remove();
+        } else {
+            currentDeadline.set(deadline);
+        }
+    }
+}
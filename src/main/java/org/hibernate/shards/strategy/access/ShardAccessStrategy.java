@@ -24,7 +24,20 @@ import org.hibernate.shards.strategy.exit.ExitOperationsCollector;
 import org.hibernate.shards.strategy.exit.ExitStrategy;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 public interface ShardAccessStrategy {
     <T> T apply(List<Shard> shards, ShardOperation<T> operation, ExitStrategy<T> exitStrategy, ExitOperationsCollector exitOperationsCollector);
+
+    /**
+     * Same as {@link #apply}, but returns without waiting for the shards to
+     * answer.  Strategies that do not have threads of their own complete the
+     * operation before returning.  Failures are reported by the returned Future
+     * as an {@link java.util.concurrent.ExecutionException}.
+     * <p/>
+     * This method was added after the interface was first published.
+     * Implementations that access the shards on the calling thread can extend
+     * {@link BaseShardAccessStrategy} instead of implementing it.
+     */
+    <T> Future<T> applyAsync(List<Shard> shards, ShardOperation<T> operation, ExitStrategy<T> exitStrategy, ExitOperationsCollector exitOperationsCollector);
 }
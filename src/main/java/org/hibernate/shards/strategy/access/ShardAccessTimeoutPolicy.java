@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.access;
+
+/**
+ * Describes what a {@link ParallelShardAccessStrategy} does when the overall
+ * deadline of an operation passes before every shard has answered.
+ * <p/>
+ * With either policy the statements still running against the shards that
+ * didn't answer are cancelled with {@link org.hibernate.Session#cancelQuery()},
+ * and the operation doesn't complete before their shard operations have
+ * returned, because the Session of a shard can't be used by two threads at
+ * once.  A shard whose driver ignores the cancellation therefore still holds
+ * up the operation until its statement timeout, which is the deadline of the
+ * shard.  After a timeout the ShardedSession should be discarded, since the
+ * Sessions of the cancelled shards may be left in an inconsistent state.
+ *
+ * @see ShardAccessDeadline
+ */
+public enum ShardAccessTimeoutPolicy {
+
+    /**
+     * Abandon the operation and throw a {@link org.hibernate.HibernateException}.
+     */
+    FAIL,
+
+    /**
+     * Compile and return the results of the shards that answered in time.
+     * Results that arrive after the deadline are discarded.
+     */
+    RETURN_AVAILABLE_RESULTS
+}
@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * @author Maulik Shah
@@ -33,7 +34,7 @@ public class AggregateExitOperation implements ProjectionExitOperation {
 
     private final SupportedAggregations aggregate;
 
-    private final String fieldName;
+    private final PropertyPathAccessor fieldAccessor;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -63,7 +64,8 @@ public class AggregateExitOperation implements ProjectionExitOperation {
          */
         final String projectionAsString = projection.toString();
         final String aggregateName = projectionAsString.substring(0, projectionAsString.indexOf("("));
-        this.fieldName = projectionAsString.substring(projectionAsString.indexOf("(") + 1, projectionAsString.indexOf(")"));
+        final String fieldName = projectionAsString.substring(projectionAsString.indexOf("(") + 1, projectionAsString.indexOf(")"));
+        this.fieldAccessor = PropertyPathAccessor.forPath(fieldName);
         try {
             this.aggregate = SupportedAggregations.valueOf(aggregateName.toUpperCase());
         } catch (IllegalArgumentException e) {
@@ -74,37 +76,52 @@ public class AggregateExitOperation implements ProjectionExitOperation {
 
     @Override
     public List<Object> apply(final List<Object> results) {
-
-        final List<Object> nonNullResults = ExitOperationUtils.getNonNullList(results);
-
         switch (aggregate) {
             case MAX:
-                return Collections.singletonList((Object) Collections.max(ExitOperationUtils.getComparableList(nonNullResults)));
+                return Collections.singletonList(getExtreme(results, 1));
             case MIN:
-                return Collections.singletonList((Object) Collections.min(ExitOperationUtils.getComparableList(nonNullResults)));
+                return Collections.singletonList(getExtreme(results, -1));
             case SUM:
-                return Collections.<Object>singletonList(getSum(nonNullResults, fieldName));
+                return Collections.<Object>singletonList(getSum(results));
             default:
                 log.error("Aggregation Projection is unsupported: " + aggregate);
                 throw new UnsupportedOperationException("Aggregation Projection is unsupported: " + aggregate);
         }
     }
 
-    private BigDecimal getSum(final List<Object> results, final String fieldName) {
-        BigDecimal sum = BigDecimal.ZERO;
+    @SuppressWarnings("unchecked")
+    private static Object getExtreme(final List<Object> results, final int sign) {
+        Comparable<Object> extreme = null;
+        for (final Object obj : results) {
+            if (obj != null) {
+                final Comparable<Object> value = (Comparable<Object>) obj;
+                if (extreme == null || Integer.signum(value.compareTo(extreme)) == sign) {
+                    extreme = value;
+                }
+            }
+        }
+        if (extreme == null) {
+            // same as Collections.max() of nothing
+            throw new NoSuchElementException();
+        }
+        return extreme;
+    }
+
+    private BigDecimal getSum(final List<Object> results) {
+        // the results are entities, so the type of the sum is whatever the property holds
+        final NumericSum sum = NumericSum.forType(null);
         for (final Object obj : results) {
             if (obj instanceof Number) {
-                final Number num = (Number)obj;
-                sum = sum.add(new BigDecimal(num.toString()));
-            } else {
-                final Number num = getNumber(obj, fieldName);
-                sum = sum.add(new BigDecimal(num.toString()));
+                sum.add((Number) obj);
+            } else if (obj != null) {
+                sum.add(getNumber(obj));
             }
         }
-        return sum;
+        final Number result = sum.getResult();
+        return result == null ? BigDecimal.ZERO : NumericSum.toBigDecimal(result);
     }
 
-    private Number getNumber(final Object obj, final String fieldName) {
-        return (Number) ExitOperationUtils.getPropertyValue(obj, fieldName);
+    private Number getNumber(final Object obj) {
+        return (Number) fieldAccessor.getValue(obj);
     }
 }
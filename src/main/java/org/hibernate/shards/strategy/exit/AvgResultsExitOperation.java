@@ -35,6 +35,9 @@ import java.util.List;
  * average of the values in that column, you get the floor of the result.
  * On MySQL, if you have a column of the same type, you get a result back with
  * the expected precision.  So, um, just be careful.
+ * <p/>
+ * Sharded criteria no longer need this: they have the shards compute a sum and
+ * a count instead, see {@link PartialAggregates#avg(org.hibernate.type.Type)}.
  *
  * @author maxr@google.com (Max Ross)
  */
@@ -42,60 +45,40 @@ public class AvgResultsExitOperation implements ExitOperation {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    public List<Object> apply(List<Object> results) {
-
-        final List<Object> nonNullResults = ExitOperationUtils.getNonNullList(results);
-        Double total = null;
-        int numResults = 0;
-        Boolean shardAvgIsDouble = null;
-
-        for (final Object result : nonNullResults) {
+    @Override
+    public List<Object> apply(final List<Object> results) {
+        double total = 0;
+        long numResults = 0;
 
-            // TODO: (ammachado) there must be a better way to discover the results type from the avg operation.
+        for (final Object result : results) {
+            if (result == null) {
+                continue;
+            }
             /**
              * We expect all entries to be Object arrays.
              * the first entry in the array is the average and
              * the second entry in the array is the number of rows that were examined
              * to arrive at the average.
              *
-             * for properties mapped as Long, Short, Integer, or primitive integer types, a Long value is returned;
-             * for properties mapped as Float, Double, or primitive floating point types, a Double value is returned.
+             * Hibernate returns the average as a Double whatever the type of the property.
              */
             final Pair<Object, Object> pair = getResultPair(result);
-            final String shardAvgStringValue = String.valueOf(pair.first);
-            final String shardResultsStringValue = String.valueOf(pair.second);
-            final boolean shardAvgStringValueIsNull = "null".equals(shardAvgStringValue);
-
-            if (!shardAvgStringValueIsNull && shardAvgIsDouble == null) {
-                shardAvgIsDouble = pair.first instanceof Double;
-            }
-
-            final Double shardAvg = shardAvgStringValueIsNull ? null : Double.valueOf(shardAvgStringValue);
-            if (shardAvg == null) {
+            if (pair.first == null) {
                 // if there's no result from this shard it doesn't go into the
                 // calculation.  This is consistent with how avg is implemented
                 // in the database
                 continue;
             }
 
-            final Long shardResults = Long.valueOf(shardResultsStringValue);
-            final Double shardTotal = shardAvg * shardResults;
-            if (total == null) {
-                total = shardTotal;
-            } else {
-                total += shardTotal;
-            }
+            final long shardResults = ((Number) pair.second).longValue();
+            total += ((Number) pair.first).doubleValue() * shardResults;
             numResults += shardResults;
         }
 
-        if (numResults == 0 || total == null) {
+        if (numResults == 0) {
             return Collections.singletonList(null);
         }
-
-        final Object result = shardAvgIsDouble ? Double.valueOf(String.valueOf(total / numResults))
-                : Long.valueOf(String.valueOf(total / numResults));
-
-        return Collections.singletonList(result);
+        return Collections.<Object>singletonList(total / numResults);
     }
 
     private Pair<Object, Object> getResultPair(final Object result) {
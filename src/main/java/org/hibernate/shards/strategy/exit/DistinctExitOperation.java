@@ -22,10 +22,15 @@ import org.hibernate.criterion.Projection;
 import org.hibernate.shards.util.Lists;
 import org.hibernate.shards.util.Sets;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
 /**
+ * Removes duplicate results, keeping the first occurrence of each so that the
+ * order of the results is preserved.  Results of a projection of several
+ * columns are Object arrays, which are compared element by element.
+ *
  * @author Maulik Shah
  */
 public class DistinctExitOperation implements ExitOperation {
@@ -34,13 +39,35 @@ public class DistinctExitOperation implements ExitOperation {
 
     public DistinctExitOperation(Projection distinct) {
         this.distinct = distinct;
-        //TODO (maulik) Make Distinct Work
-        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * For results that don't come from a criteria projection, such as those
+     * of an HQL select distinct.
+     */
+    public DistinctExitOperation() {
+        this(null);
     }
 
     public List<Object> apply(List<Object> results) {
         final Set<Object> uniqueSet = Sets.newHashSet();
-        uniqueSet.addAll(ExitOperationUtils.getNonNullList(results));
-        return Lists.newArrayList(uniqueSet);
+        final List<Object> uniqueResults = Lists.newArrayList();
+        for (final Object obj : results) {
+            if (obj != null && uniqueSet.add(distinctKey(obj))) {
+                uniqueResults.add(obj);
+            }
+        }
+        return uniqueResults;
+    }
+
+    /**
+     * @param result a non-null result
+     * @return an object whose equals() and hashCode() tell whether two results are the same
+     */
+    static Object distinctKey(final Object result) {
+        if (result instanceof Object[]) {
+            return Arrays.asList((Object[]) result);
+        }
+        return result;
     }
 }
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Preconditions;
+import org.hibernate.shards.util.Sets;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Threadsafe ExitStrategy decorator for distinct results.  Duplicates are
+ * dropped as the results of each shard arrive, so the decorated strategy only
+ * ever sees results it hasn't seen before.  A strategy that stops once it
+ * has enough results therefore stops once it has enough distinct results.
+ *
+ * @see DistinctExitOperation
+ */
+public class DistinctExitStrategy implements ExitStrategy<List<Object>> {
+
+    private final ExitStrategy<List<Object>> delegate;
+
+    private final Set<Object> seen = Sets.newHashSet();
+
+    public DistinctExitStrategy(final ExitStrategy<List<Object>> delegate) {
+        this.delegate = Preconditions.checkNotNull(delegate);
+    }
+
+    @Override
+    public synchronized boolean addResult(final List<Object> oneResult, final Shard shard) {
+        final List<Object> unique = Lists.newArrayListWithCapacity(oneResult.size());
+        for (final Object obj : oneResult) {
+            if (obj != null && seen.add(DistinctExitOperation.distinctKey(obj))) {
+                unique.add(obj);
+            }
+        }
+        return delegate.addResult(unique, shard);
+    }
+
+    @Override
+    public List<Object> compileResults(final ExitOperationsCollector exitOperationsCollector) {
+        return delegate.compileResults(exitOperationsCollector);
+    }
+}
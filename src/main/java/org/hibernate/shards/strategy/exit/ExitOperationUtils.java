@@ -19,10 +19,7 @@
 package org.hibernate.shards.strategy.exit;
 
 import org.hibernate.shards.util.Lists;
-import org.hibernate.shards.util.StringUtil;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.List;
 
 /**
@@ -45,70 +42,14 @@ public class ExitOperationUtils {
         return (List<Comparable<Object>>) (List) results;
     }
 
+    /**
+     * @param obj          the object to read the property from
+     * @param propertyName a property name, or a dot-separated path of property names
+     * @return the value of the property, or null if any value along the path is null
+     * @see PropertyPathAccessor
+     */
     @SuppressWarnings("unchecked")
     public static Comparable<Object> getPropertyValue(final Object obj, final String propertyName) {
-        /**
-         * TODO(maulik) respect the client's choice in how Hibernate accesses
-         * property values.  Also need to implement some caching - this gets called
-         * from a Comparator!
-         *
-         * Currently this method access members of an object using getters only,
-         * event of the client has specifed to use direct field access. Ideally,
-         * we could get an EntityPersister from the SessionFactoryImplementor and
-         * use that. However, hibernate's EntityPersister expects all properties
-         * to be a ComponentType. In pratice, these objects are interconnected in
-         * the mapping and Hibernate instantiates them as BagType or ManyToOneType,
-         * i.e. as they are specified in the mappings. Hence, we cannot use
-         * Hibernate's EntityPersister.
-         */
-        try {
-            final StringBuilder propertyPath = new StringBuilder();
-            for (int i = 0; i < propertyName.length(); i++) {
-                final String s = propertyName.substring(i, i + 1);
-                if (i == 0 || propertyName.charAt(i - 1) == '.') {
-                    propertyPath.append(StringUtil.capitalize(s));
-                } else {
-                    propertyPath.append(s);
-                }
-            }
-
-            final String[] methods = ("get" + propertyPath.toString().replaceAll("\\.", ".get")).split("\\.");
-            Object root = obj;
-            for (final String method : methods) {
-                final Method m = findPotentiallyPrivateMethod(root.getClass(), method);
-                m.setAccessible(true);
-                root = m.invoke(root);
-                if (root == null) {
-                    break;
-                }
-            }
-            return (Comparable<Object>) root;
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-        } catch (InvocationTargetException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    static Method findPotentiallyPrivateMethod(Class clazz, String methodName) throws NoSuchMethodException {
-        try {
-            return clazz.getMethod(methodName);
-        } catch (NoSuchMethodException nsme) {
-            // that's ok, we'll try the slower approach
-        }
-
-        // we need to make sure we can access private methods on subclasses, and
-        // the only way to do that is to work our way up the class hierarchy
-        while (clazz != null) {
-            try {
-                return clazz.getDeclaredMethod(methodName);
-            } catch (NoSuchMethodException e) {
-                clazz = (Class) clazz.getGenericSuperclass();
-            }
-        }
-        throw new NoSuchMethodException(methodName);
+        return (Comparable<Object>) PropertyPathAccessor.forPath(propertyName).getValue(obj);
     }
 }
@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Threadsafe ExitStrategy that merges sorted shard results like
+ * {@link OrderedMergeExitStrategy}, but holds on to no more than a given
+ * number of results at a time.  Once the results in memory exceed that budget
+ * the results of a shard are written to temporary files as sorted runs, and
+ * the runs are merged as the compiled results are read (see
+ * {@link SpilledResults}).
+ * <p/>
+ * To keep a shard's results from piling up before they reach us, a shard
+ * operation should pass them in through
+ * {@link #addResults(ScrollableResults, Session)} as it reads them, rather
+ * than as a list.  The results it spills are then evicted from its Session,
+ * which would otherwise keep every one of them reachable.
+ * <p/>
+ * The results are only merged, the ExitOperationsCollector is never applied,
+ * so this strategy is only suited to results that need nothing more than
+ * ordering.  Results that are spilled must be Serializable.
+ */
+public class ExternalMergeExitStrategy implements ExitStrategy<List<Object>> {
+
+    private final SortKeyExtractor sortKeyExtractor;
+
+    private final int maxResultsInMemory;
+
+    private final /*@Nullable*/ File directory;
+
+    private final List<List<Object>> memoryRuns = Lists.newArrayList();
+
+    private final List<SpilledRun> spilledRuns = Lists.newArrayList();
+
+    // results in memory, including those a shard has read but not yet handed over
+    private int resultsInMemory;
+
+    // whether the results have been compiled, after which we don't take any more
+    private boolean compiled;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param orderByList        the orders of the results, possibly none
+     * @param maxResultsInMemory the number of results from which on they are spilled to disk
+     * @param directory          the directory of the temporary files, null for the default
+     */
+    public ExternalMergeExitStrategy(final List<InMemoryOrderBy> orderByList,
+                                     final int maxResultsInMemory,
+                                     final /*@Nullable*/ File directory) {
+        Preconditions.checkArgument(maxResultsInMemory >= 0);
+        this.sortKeyExtractor = new SortKeyExtractor(orderByList);
+        this.maxResultsInMemory = maxResultsInMemory;
+        this.directory = directory;
+    }
+
+    @Override
+    public boolean addResult(final List<Object> oneResult, final Shard shard) {
+        addResults(oneResult.iterator(), null);
+        return false;
+    }
+
+    /**
+     * Reads the results of a shard from a cursor and closes it.  The results
+     * are kept in memory as long as the budget allows.  Past it the results of
+     * the shard are written to disk as they are read, and each one is evicted
+     * from the Session once it has been written.  This must be called by the
+     * thread that uses the Session, and the shard operation should then return
+     * an empty list.
+     *
+     * @param cursor  the results of the shard, in order
+     * @param session the Session that loaded the results, if they are entities
+     */
+    public void addResults(final ScrollableResults cursor, final /*@Nullable*/ Session session) {
+        try {
+            addResults(new Iterator<Object>() {
+
+                private Boolean hasNext;
+
+                @Override
+                public boolean hasNext() {
+                    if (hasNext == null) {
+                        hasNext = cursor.next();
+                    }
+                    return hasNext;
+                }
+
+                @Override
+                public Object next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    hasNext = null;
+                    final Object[] row = cursor.get();
+                    return row.length == 1 ? row[0] : row;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            }, session);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void addResults(final Iterator<Object> results, final /*@Nullable*/ Session session) {
+        final List<Object> buffer = Lists.newArrayList();
+        RunWriter runWriter = null;
+        try {
+            while (results.hasNext()) {
+                final Object result = results.next();
+                if (result == null) {
+                    continue;
+                }
+                if (runWriter != null) {
+                    runWriter.write(result);
+                    evict(session, result);
+                } else if (reserve()) {
+                    buffer.add(result);
+                } else {
+                    log.debug(String.format("Spilling the results of a shard to disk, "
+                            + "the budget of %d results in memory is used up", maxResultsInMemory));
+                    runWriter = new RunWriter();
+                    release(buffer.size());
+                    buffer.add(result);
+                    for (final Object buffered : sort(buffer)) {
+                        runWriter.write(buffered);
+                        evict(session, buffered);
+                    }
+                    buffer.clear();
+                }
+            }
+            final List<SpilledRun> runs = runWriter == null ? Collections.<SpilledRun>emptyList() : runWriter.finish();
+            runWriter = null;
+            synchronized (this) {
+                if (compiled) {
+                    // too late, nobody is going to read them
+                    for (final SpilledRun run : runs) {
+                        run.delete();
+                    }
+                    return;
+                }
+                if (!buffer.isEmpty()) {
+                    memoryRuns.add(sort(buffer));
+                }
+                spilledRuns.addAll(runs);
+            }
+        } finally {
+            if (runWriter != null) {
+                runWriter.abort();
+            }
+        }
+    }
+
+    /**
+     * Makes room in the budget for one more result.
+     *
+     * @return false if the budget is exhausted, in which case no room was made
+     */
+    private synchronized boolean reserve() {
+        if (resultsInMemory >= maxResultsInMemory) {
+            return false;
+        }
+        resultsInMemory++;
+        return true;
+    }
+
+    private synchronized void release(final int results) {
+        resultsInMemory -= results;
+    }
+
+    /**
+     * Runs have to be sorted the way we compare them, whatever the database thinks.
+     */
+    private List<Object> sort(final List<Object> results) {
+        final List<SortKeyExtractor.KeyedRow> keyedRows = sortKeyExtractor.toKeyedRows(results);
+        if (!sortKeyExtractor.isSorted(keyedRows)) {
+            Collections.sort(keyedRows, sortKeyExtractor.getKeyedRowComparator());
+        }
+        return SortKeyExtractor.toRows(keyedRows);
+    }
+
+    private static void evict(final /*@Nullable*/ Session session, final Object result) {
+        if (session != null && session.contains(result)) {
+            session.evict(result);
+        }
+    }
+
+    /**
+     * @return the merged results.  If any of them were spilled to disk the
+     *         list is a {@link SpilledResults} that must be closed.
+     */
+    @Override
+    public synchronized List<Object> compileResults(final ExitOperationsCollector exitOperationsCollector) {
+        compiled = true;
+        final SpilledResults results = new SpilledResults(
+                sortKeyExtractor, Lists.newArrayList(memoryRuns), Lists.newArrayList(spilledRuns));
+        if (!spilledRuns.isEmpty()) {
+            return results;
+        }
+        final List<Object> merged = Lists.newArrayListWithCapacity(results.size());
+        merged.addAll(results);
+        return merged;
+    }
+
+    /**
+     * Writes the results of a shard to as many sorted runs as it takes: a
+     * result that sorts before the one written last starts a new run.
+     */
+    private final class RunWriter {
+
+        private final List<SpilledRun> runs = Lists.newArrayList();
+
+        private SpilledRun.Writer writer;
+
+        private Object[] lastKey;
+
+        void write(final Object result) {
+            final Object[] key = sortKeyExtractor.extract(result);
+            if (writer != null && sortKeyExtractor.compareKeys(lastKey, key) > 0) {
+                runs.add(writer.finish());
+                writer = null;
+            }
+            if (writer == null) {
+                writer = SpilledRun.create(directory);
+            }
+            writer.write(result);
+            lastKey = key;
+        }
+
+        List<SpilledRun> finish() {
+            if (writer != null) {
+                runs.add(writer.finish());
+                writer = null;
+            }
+            return runs;
+        }
+
+        void abort() {
+            if (writer != null) {
+                writer.abort();
+                writer = null;
+            }
+            for (final SpilledRun run : runs) {
+                run.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Preconditions;
+
+import java.util.List;
+
+/**
+ * Threadsafe ExitStrategy that concatenates the lists that are added until it
+ * has collected a given number of non-null results.  Once it has, it asks
+ * for the shards that haven't answered yet to be skipped and ignores any
+ * further results.  Only suitable when it doesn't matter which results make
+ * the cut, i.e. when the results are neither ordered nor aggregated across
+ * shards.
+ */
+public class LimitedConcatenateListsExitStrategy implements ExitStrategy<List<Object>> {
+
+  private final int limit;
+
+  private final List<Object> result = Lists.newArrayList();
+
+  private int nonNullResults;
+
+  /**
+   * @param limit the number of non-null results after which no more results
+   * are needed, typically firstResult + maxResults
+   */
+  public LimitedConcatenateListsExitStrategy(int limit) {
+    Preconditions.checkArgument(limit >= 0);
+    this.limit = limit;
+  }
+
+  public synchronized boolean addResult(List<Object> oneResult, Shard shard) {
+    if (nonNullResults >= limit) {
+      return true;
+    }
+    for (Object obj : oneResult) {
+      if (obj != null) {
+        result.add(obj);
+        if (++nonNullResults >= limit) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public List<Object> compileResults(ExitOperationsCollector exitOperationsCollector) {
+    return exitOperationsCollector.apply(result);
+  }
+}
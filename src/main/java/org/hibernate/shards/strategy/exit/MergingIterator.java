@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Lazily merges sources whose elements are sorted by the same orders.  The
+ * sources are kept in a heap keyed on the sort key of their next element, so
+ * each element costs O(log k) comparisons for k sources and its sort key is
+ * extracted once.  Null elements are skipped.
+ */
+class MergingIterator implements Iterator<Object> {
+
+    private final SortKeyExtractor sortKeyExtractor;
+
+    private final PriorityQueue<Source> heap;
+
+    /**
+     * @param sortKeyExtractor the orders the sources are sorted by
+     * @param sources          the sources to merge
+     */
+    MergingIterator(final SortKeyExtractor sortKeyExtractor, final List<? extends Iterator<?>> sources) {
+        this.sortKeyExtractor = sortKeyExtractor;
+        final Comparator<SortKeyExtractor.KeyedRow> keyComparator = sortKeyExtractor.getKeyedRowComparator();
+        this.heap = new PriorityQueue<Source>(Math.max(1, sources.size()), new Comparator<Source>() {
+            @Override
+            public int compare(final Source s1, final Source s2) {
+                return keyComparator.compare(s1.head, s2.head);
+            }
+        });
+        for (final Iterator<?> iterator : sources) {
+            final Source source = new Source(iterator);
+            if (source.advance()) {
+                heap.add(source);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heap.isEmpty();
+    }
+
+    @Override
+    public Object next() {
+        final Source source = heap.poll();
+        if (source == null) {
+            throw new NoSuchElementException();
+        }
+        final Object row = source.head.row;
+        if (source.advance()) {
+            heap.add(source);
+        }
+        return row;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Position in one of the sources.
+     */
+    private final class Source {
+
+        private final Iterator<?> iterator;
+
+        private SortKeyExtractor.KeyedRow head;
+
+        Source(final Iterator<?> iterator) {
+            this.iterator = iterator;
+        }
+
+        /**
+         * Moves to the next non-null element.
+         *
+         * @return false if there are no elements left
+         */
+        boolean advance() {
+            while (iterator.hasNext()) {
+                final Object row = iterator.next();
+                if (row != null) {
+                    head = new SortKeyExtractor.KeyedRow(row, sortKeyExtractor.extract(row));
+                    return true;
+                }
+            }
+            head = null;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.type.Type;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * Adds up numbers in the representation their type calls for: a primitive
+ * long for integral types, a primitive double for floating point types, and
+ * BigDecimal or BigInteger only for properties of those types.  Adding a
+ * number doesn't allocate unless the sum is a BigDecimal or a BigInteger.
+ * <p/>
+ * When the type of the numbers isn't known up front the representation is
+ * chosen from the first number that is added and widened if a number of a
+ * wider type comes along: long to double, long to BigInteger, and anything
+ * to BigDecimal.  Not threadsafe.
+ */
+abstract class NumericSum {
+
+    enum Kind {
+        LONG, DOUBLE, BIG_INTEGER, BIG_DECIMAL;
+
+        static /*@Nullable*/ Kind of(final Class<?> clazz) {
+            if (clazz == Long.class || clazz == Integer.class || clazz == Short.class || clazz == Byte.class
+                    || clazz == long.class || clazz == int.class || clazz == short.class || clazz == byte.class) {
+                return LONG;
+            }
+            if (clazz == Double.class || clazz == Float.class || clazz == double.class || clazz == float.class) {
+                return DOUBLE;
+            }
+            if (clazz == BigInteger.class) {
+                return BIG_INTEGER;
+            }
+            if (clazz == BigDecimal.class) {
+                return BIG_DECIMAL;
+            }
+            return null;
+        }
+
+        Kind widen(final Kind other) {
+            if (this == other) {
+                return this;
+            }
+            if (this == BIG_DECIMAL || other == BIG_DECIMAL) {
+                return BIG_DECIMAL;
+            }
+            if (this == LONG) {
+                return other;
+            }
+            if (other == LONG) {
+                return this;
+            }
+            // a double and a BigInteger
+            return BIG_DECIMAL;
+        }
+    }
+
+    /**
+     * @param type the type of the sum, or null if it isn't known
+     * @return a sum in the representation of the type, or one that picks its
+     *         representation from the numbers added to it
+     */
+    static NumericSum forType(final /*@Nullable*/ Type type) {
+        final Kind kind = type == null ? null : Kind.of(type.getReturnedClass());
+        return kind == null ? new AdaptiveSum() : create(kind);
+    }
+
+    private static NumericSum create(final Kind kind) {
+        switch (kind) {
+            case LONG:
+                return new LongSum();
+            case DOUBLE:
+                return new DoubleSum();
+            case BIG_INTEGER:
+                return new BigIntegerSum();
+            default:
+                return new BigDecimalSum();
+        }
+    }
+
+    /**
+     * @param value the number to add; nulls are ignored, like the database does
+     */
+    abstract void add(/*@Nullable*/ Number value);
+
+    /**
+     * @return the sum, or null if no number was added
+     */
+    abstract /*@Nullable*/ Number getResult();
+
+    /**
+     * Divides the exact sum by the count, so an average computed from the
+     * sums and counts of several shards is the one a single database would
+     * have computed.
+     *
+     * @param count the number of values that were added
+     * @return the average, or null if no number was added
+     */
+    /*@Nullable*/ Double average(final long count) {
+        final Number sum = getResult();
+        if (sum == null || count == 0) {
+            return null;
+        }
+        if (sum instanceof BigDecimal || sum instanceof BigInteger) {
+            return toBigDecimal(sum).divide(BigDecimal.valueOf(count), MathContext.DECIMAL64).doubleValue();
+        }
+        return sum.doubleValue() / count;
+    }
+
+    static BigDecimal toBigDecimal(final Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        if (number instanceof Double || number instanceof Float) {
+            return BigDecimal.valueOf(number.doubleValue());
+        }
+        return BigDecimal.valueOf(number.longValue());
+    }
+
+    private static final class LongSum extends NumericSum {
+
+        private long sum;
+
+        private boolean empty = true;
+
+        @Override
+        void add(final Number value) {
+            if (value != null) {
+                sum += value.longValue();
+                empty = false;
+            }
+        }
+
+        @Override
+        Number getResult() {
+            return empty ? null : sum;
+        }
+    }
+
+    private static final class DoubleSum extends NumericSum {
+
+        private double sum;
+
+        private boolean empty = true;
+
+        @Override
+        void add(final Number value) {
+            if (value != null) {
+                sum += value.doubleValue();
+                empty = false;
+            }
+        }
+
+        @Override
+        Number getResult() {
+            return empty ? null : sum;
+        }
+    }
+
+    private static final class BigIntegerSum extends NumericSum {
+
+        private BigInteger sum;
+
+        @Override
+        void add(final Number value) {
+            if (value != null) {
+                final BigInteger bigInteger = value instanceof BigInteger
+                        ? (BigInteger) value : BigInteger.valueOf(value.longValue());
+                sum = sum == null ? bigInteger : sum.add(bigInteger);
+            }
+        }
+
+        @Override
+        Number getResult() {
+            return sum;
+        }
+    }
+
+    private static final class BigDecimalSum extends NumericSum {
+
+        private BigDecimal sum;
+
+        @Override
+        void add(final Number value) {
+            if (value != null) {
+                final BigDecimal bigDecimal = toBigDecimal(value);
+                sum = sum == null ? bigDecimal : sum.add(bigDecimal);
+            }
+        }
+
+        @Override
+        Number getResult() {
+            return sum;
+        }
+    }
+
+    private static final class AdaptiveSum extends NumericSum {
+
+        private Kind kind;
+
+        private NumericSum sum;
+
+        @Override
+        void add(final Number value) {
+            if (value == null) {
+                return;
+            }
+            Kind valueKind = Kind.of(value.getClass());
+            if (valueKind == null) {
+                // AtomicLong and the like
+                valueKind = Kind.BIG_DECIMAL;
+            }
+            if (sum == null) {
+                kind = valueKind;
+                sum = create(kind);
+            } else if (kind != valueKind && kind.widen(valueKind) != kind) {
+                final Number previous = sum.getResult();
+                kind = kind.widen(valueKind);
+                sum = create(kind);
+                sum.add(previous);
+            }
+            sum.add(value);
+        }
+
+        @Override
+        Number getResult() {
+            return sum == null ? null : sum.getResult();
+        }
+    }
+}
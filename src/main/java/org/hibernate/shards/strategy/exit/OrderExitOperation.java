@@ -19,7 +19,6 @@
 package org.hibernate.shards.strategy.exit;
 
 import org.hibernate.shards.criteria.InMemoryOrderBy;
-import org.hibernate.shards.util.Lists;
 
 import java.util.Collections;
 import java.util.Comparator;
@@ -30,69 +29,58 @@ import java.util.List;
  */
 public class OrderExitOperation implements ExitOperation {
 
-    private final List<InMemoryOrderBy> orderByList;
+    private final SortKeyExtractor sortKeyExtractor;
 
-    private static final Comparator<Object> EQUALS = new Comparator<Object>() {
-        @Override
-        public int compare(Object o1, Object o2) {
-            return 0;
-        }
-    };
+    // the number of results the caller is interested in, or -1 for all of them
+    private final int maxSize;
 
     public OrderExitOperation(final List<InMemoryOrderBy> orderByList) {
-        this.orderByList = Lists.newArrayList(orderByList);
-        // need to reverse the list so we build the comparator from the inside out
-        Collections.reverse(this.orderByList);
+        this(orderByList, -1);
     }
 
-    @Override
-    public List<Object> apply(final List<Object> results) {
-        final List<Object> nonNullList = ExitOperationUtils.getNonNullList(results);
-        final Comparator<Object> comparator = buildComparator();
-        Collections.sort(nonNullList, comparator);
-
-        return nonNullList;
+    /**
+     * Constructs an OrderExitOperation that only returns the first maxSize
+     * results.  Only keeping track of those is a lot cheaper than sorting all
+     * the results when maxSize is small.
+     *
+     * @param orderByList the orders to apply
+     * @param maxSize     the number of results to return, or -1 for all of them
+     */
+    public OrderExitOperation(final List<InMemoryOrderBy> orderByList, final int maxSize) {
+        this.sortKeyExtractor = new SortKeyExtractor(orderByList);
+        this.maxSize = maxSize;
     }
 
-    private Comparator<Object> buildComparator() {
-        // the most-inner comparator is one that returns 0 for everything.
-        Comparator<Object> inner = EQUALS;
-        for (final InMemoryOrderBy order : orderByList) {
-            inner = new PropertyComparator(order.getExpression(), inner);
-            if (!order.isAscending()) {
-                inner = Collections.reverseOrder(inner);
+    @Override
+    public List<Object> apply(final List<Object> results) {
+        if (maxSize >= 0 && maxSize < results.size()) {
+            final TopNBuffer buffer = new TopNBuffer(getComparator(), maxSize);
+            for (final Object obj : results) {
+                if (obj != null) {
+                    buffer.offer(obj);
+                }
             }
+            return buffer.toSortedList();
         }
-        return inner;
-    }
-
-    private static final class PropertyComparator implements Comparator<Object> {
-
-        private final String propertyName;
-        private final Comparator<Object> tieBreaker;
-
-        public PropertyComparator(final String propertyName, final Comparator<Object> tieBreaker) {
-            this.propertyName = propertyName;
-            this.tieBreaker = tieBreaker;
-        }
-
-        public int compare(final Object o1, final Object o2) {
-            int result;
-            if (o1 == o2) {
-                result = 0;
+        // results that were merged from sorted shard results are usually in
+        // order already, in which case checking is all we need to do
+        final List<SortKeyExtractor.KeyedRow> keyedRows = sortKeyExtractor.toKeyedRows(results);
+        if (!sortKeyExtractor.isSorted(keyedRows)) {
+            final ParallelMergeSort mergeSort = ParallelMergeSort.getCurrent();
+            if (mergeSort != null) {
+                mergeSort.sort(keyedRows, sortKeyExtractor.getKeyedRowComparator());
             } else {
-                final Comparable<Object> o1Value = ExitOperationUtils.getPropertyValue(o1, propertyName);
-                final Comparable<Object> o2Value = ExitOperationUtils.getPropertyValue(o2, propertyName);
-                if (o1Value == null) {
-                    result = -1;
-                } else {
-                    result = o1Value.compareTo(o2Value);
-                }
-            }
-            if (result == 0) {
-                result = tieBreaker.compare(o1, o2);
+                Collections.sort(keyedRows, sortKeyExtractor.getKeyedRowComparator());
             }
-            return result;
         }
+        return SortKeyExtractor.toRows(keyedRows);
+    }
+
+    /**
+     * @return a comparator that orders results the same way {@link #apply} does.
+     *         Results must not be null.
+     */
+    public Comparator<Object> getComparator() {
+        return sortKeyExtractor.getRowComparator();
     }
 }
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.util.Lists;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Threadsafe ExitStrategy for results that every shard has already sorted
+ * by the same orders.  The results of each shard are kept apart and merged
+ * when the results are compiled, which takes O(n log k) comparisons for k
+ * shards instead of the O(n log n) it takes to sort their concatenation.
+ * The sort key of each result is extracted once.
+ * <p/>
+ * The shards order results according to the database, which doesn't
+ * necessarily agree with the way Java compares the same values (collations
+ * for instance).  The {@link OrderExitOperation} applied when compiling the
+ * results verifies the merged order and sorts again if it has to.
+ */
+public class OrderedMergeExitStrategy implements ExitStrategy<List<Object>> {
+
+    private final SortKeyExtractor sortKeyExtractor;
+
+    private final List<List<Object>> shardResults = Lists.newArrayList();
+
+    private int resultCount;
+
+    /**
+     * @param orderByList the orders by which the shards have sorted their results
+     */
+    public OrderedMergeExitStrategy(final List<InMemoryOrderBy> orderByList) {
+        this.sortKeyExtractor = new SortKeyExtractor(orderByList);
+    }
+
+    @Override
+    public synchronized boolean addResult(final List<Object> oneResult, final Shard shard) {
+        if (!oneResult.isEmpty()) {
+            shardResults.add(oneResult);
+            resultCount += oneResult.size();
+        }
+        return false;
+    }
+
+    @Override
+    public List<Object> compileResults(final ExitOperationsCollector exitOperationsCollector) {
+        return exitOperationsCollector.apply(merge());
+    }
+
+    private synchronized List<Object> merge() {
+        final List<Object> merged = Lists.newArrayListWithCapacity(resultCount);
+        final List<Iterator<Object>> sources = Lists.newArrayListWithCapacity(shardResults.size());
+        for (final List<Object> results : shardResults) {
+            sources.add(results.iterator());
+        }
+        final Iterator<Object> it = new MergingIterator(sortKeyExtractor, sources);
+        while (it.hasNext()) {
+            merged.add(it.next());
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.HibernateException;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Preconditions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Merge sort that spreads the work of sorting large lists over the threads of
+ * an Executor.  The list is cut into one chunk per thread, the chunks are
+ * sorted concurrently, and then merged pairwise, each round of merges
+ * running concurrently as well.  Lists smaller than the threshold are
+ * sorted on the calling thread, where handing work to other threads costs
+ * more than it saves.
+ * <p/>
+ * The calling thread takes part in the work and runs whatever tasks the
+ * executor hasn't started yet, so sorting never waits for the executor to
+ * have a free thread and can safely be done by one of the executor's own
+ * threads.
+ * <p/>
+ * An access strategy that wants the results it compiles to be sorted in
+ * parallel makes its ParallelMergeSort current for the duration of
+ * {@link ExitStrategy#compileResults} (see {@link #setCurrent}).
+ */
+public class ParallelMergeSort {
+
+    /**
+     * Number of elements below which a list is sorted on a single thread
+     * unless told otherwise.
+     */
+    public static final int DEFAULT_THRESHOLD = 50000;
+
+    private static final ThreadLocal<ParallelMergeSort> current = new ThreadLocal<ParallelMergeSort>();
+
+    private final Executor executor;
+
+    private final int parallelism;
+
+    private final int threshold;
+
+    /**
+     * @param executor    the executor that runs the chunks of work
+     * @param parallelism the number of chunks to sort concurrently
+     * @param threshold   lists with fewer elements are sorted on the calling thread
+     */
+    public ParallelMergeSort(final Executor executor, final int parallelism, final int threshold) {
+        Preconditions.checkNotNull(executor);
+        Preconditions.checkArgument(parallelism > 0);
+        Preconditions.checkArgument(threshold >= 0);
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sorts the given list.  Like {@link Collections#sort(List, Comparator)}
+     * the sort is stable.
+     *
+     * @param list       the list to sort
+     * @param comparator the order to sort in
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void sort(final List<T> list, final Comparator<? super T> comparator) {
+        final int size = list.size();
+        final int chunks = Math.min(parallelism, size);
+        if (size < threshold || chunks < 2) {
+            Collections.sort(list, comparator);
+            return;
+        }
+        final Comparator<Object> cmp = (Comparator<Object>) comparator;
+
+        int[] bounds = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            bounds[i] = (int) ((long) size * i / chunks);
+        }
+
+        Object[] src = list.toArray();
+        final List<FutureTask<Void>> sorts = Lists.newArrayListWithCapacity(chunks);
+        for (int i = 0; i < chunks; i++) {
+            sorts.add(newSortTask(src, bounds[i], bounds[i + 1], cmp));
+        }
+        runAll(sorts);
+
+        Object[] dest = new Object[size];
+        while (bounds.length > 2) {
+            final int runs = bounds.length - 1;
+            final int[] mergedBounds = new int[(runs + 1) / 2 + 1];
+            final List<FutureTask<Void>> merges = Lists.newArrayListWithCapacity(runs / 2);
+            for (int i = 0; i < runs; i += 2) {
+                mergedBounds[i / 2] = bounds[i];
+                if (i + 1 < runs) {
+                    merges.add(newMergeTask(src, bounds[i], bounds[i + 1], bounds[i + 2], dest, cmp));
+                } else {
+                    // odd one out, carry it over to the next round
+                    System.arraycopy(src, bounds[i], dest, bounds[i], bounds[i + 1] - bounds[i]);
+                }
+            }
+            mergedBounds[mergedBounds.length - 1] = size;
+            runAll(merges);
+            final Object[] tmp = src;
+            src = dest;
+            dest = tmp;
+            bounds = mergedBounds;
+        }
+
+        final ListIterator<T> it = list.listIterator();
+        for (final Object obj : src) {
+            it.next();
+            it.set((T) obj);
+        }
+    }
+
+    private static FutureTask<Void> newSortTask(final Object[] array,
+                                                final int from,
+                                                final int to,
+                                                final Comparator<Object> comparator) {
+        return new FutureTask<Void>(new Callable<Void>() {
+            public Void call() {
+                Arrays.sort(array, from, to, comparator);
+                return null;
+            }
+        });
+    }
+
+    private static FutureTask<Void> newMergeTask(final Object[] src,
+                                                 final int from,
+                                                 final int mid,
+                                                 final int to,
+                                                 final Object[] dest,
+                                                 final Comparator<Object> comparator) {
+        return new FutureTask<Void>(new Callable<Void>() {
+            public Void call() {
+                int left = from;
+                int right = mid;
+                int out = from;
+                while (left < mid && right < to) {
+                    // take from the left run on ties to keep the sort stable
+                    if (comparator.compare(src[right], src[left]) < 0) {
+                        dest[out++] = src[right++];
+                    } else {
+                        dest[out++] = src[left++];
+                    }
+                }
+                System.arraycopy(src, left, dest, out, mid - left);
+                System.arraycopy(src, right, dest, out + mid - left, to - right);
+                return null;
+            }
+        });
+    }
+
+    private void runAll(final List<FutureTask<Void>> tasks) {
+        // the calling thread always does the first task itself
+        for (int i = 1; i < tasks.size(); i++) {
+            try {
+                executor.execute(tasks.get(i));
+            } catch (RejectedExecutionException e) {
+                // we'll run it ourselves
+                break;
+            }
+        }
+        for (final FutureTask<Void> task : tasks) {
+            // does nothing if another thread has already started the task
+            task.run();
+        }
+        for (final FutureTask<Void> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HibernateException("Interrupted while sorting results", e);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new HibernateException("Failed to sort results", cause);
+            }
+        }
+    }
+
+    /**
+     * @return the ParallelMergeSort that results compiled by the current
+     *         thread should be sorted with, or null to sort them on the current thread
+     */
+    public static /*@Nullable*/ ParallelMergeSort getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * @param mergeSort the ParallelMergeSort that results compiled by the
+     *                  current thread should be sorted with, null for none
+     */
+    public static void setCurrent(final /*@Nullable*/ ParallelMergeSort mergeSort) {
+        if (mergeSort == null) {
+            current.remove();
+        } else {
+            current.set(mergeSort);
+        }
+    }
+}
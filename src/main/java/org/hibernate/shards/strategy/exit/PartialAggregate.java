@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+/**
+ * A column of an aggregate projection that is computed in two steps.  Every
+ * shard computes a partial aggregate over its own rows, which may take up more
+ * than one column of the shard's results (an average is computed from a sum
+ * and a count), and an {@link Accumulator} combines the partial aggregates of
+ * all shards into the value of the column.
+ */
+public interface PartialAggregate {
+
+    /**
+     * @return the number of columns the partial aggregate takes up in the results of a shard
+     */
+    int getWidth();
+
+    /**
+     * @return an Accumulator that has not seen any partial aggregates yet
+     */
+    Accumulator newAccumulator();
+
+    /**
+     * Combines partial aggregates.  Not threadsafe.
+     */
+    interface Accumulator {
+
+        /**
+         * @param row    a result of a shard
+         * @param column the column of the row at which the partial aggregate starts
+         */
+        void add(Object[] row, int column);
+
+        /**
+         * @return the aggregate of all the partial aggregates that were added
+         */
+        /*@Nullable*/ Object getResult();
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Maps;
+import org.hibernate.shards.util.Preconditions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines the partial aggregates returned by every shard, column by column,
+ * into the rows an aggregate projection returns.  Without group columns that
+ * is a single row.  With group columns every shard returns a row per group,
+ * and the rows of the same group are combined in a hash table, so the result
+ * has a row per group, in the order in which the groups were first seen.
+ * <p/>
+ * Like Hibernate, a result with a single column is the bare value rather than
+ * an Object array, and so is the result of a shard whose partial aggregates
+ * take up a single column.
+ */
+public class PartialAggregateExitOperation implements ExitOperation {
+
+    private final List<PartialAggregate> aggregates;
+
+    // the columns of the rows of a shard at which each partial aggregate starts
+    private final int[] offsets;
+
+    // the indexes of the group columns among the aggregates
+    private final int[] groups;
+
+    /**
+     * @param aggregates the columns of the projection
+     */
+    public PartialAggregateExitOperation(final List<PartialAggregate> aggregates) {
+        Preconditions.checkArgument(!aggregates.isEmpty());
+        this.aggregates = Lists.newArrayList(aggregates);
+        this.offsets = new int[aggregates.size()];
+        final List<Integer> groupIndexes = Lists.newArrayList();
+        int offset = 0;
+        for (int i = 0; i < aggregates.size(); i++) {
+            offsets[i] = offset;
+            offset += aggregates.get(i).getWidth();
+            if (PartialAggregates.isGroup(aggregates.get(i))) {
+                groupIndexes.add(i);
+            }
+        }
+        this.groups = new int[groupIndexes.size()];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = groupIndexes.get(i);
+        }
+    }
+
+    @Override
+    public List<Object> apply(final List<Object> results) {
+        if (groups.length == 0) {
+            final PartialAggregate.Accumulator[] accumulators = newAccumulators();
+            for (final Object result : results) {
+                if (result != null) {
+                    add(accumulators, toRow(result));
+                }
+            }
+            return Collections.singletonList(toResult(accumulators));
+        }
+
+        final Map<List<Object>, PartialAggregate.Accumulator[]> accumulatorsByGroup = Maps.newLinkedHashMap();
+        for (final Object result : results) {
+            if (result == null) {
+                continue;
+            }
+            final Object[] row = toRow(result);
+            final Object[] key = new Object[groups.length];
+            for (int i = 0; i < groups.length; i++) {
+                key[i] = row[offsets[groups[i]]];
+            }
+            final List<Object> group = Arrays.asList(key);
+            PartialAggregate.Accumulator[] accumulators = accumulatorsByGroup.get(group);
+            if (accumulators == null) {
+                accumulators = newAccumulators();
+                accumulatorsByGroup.put(group, accumulators);
+            }
+            add(accumulators, row);
+        }
+        final List<Object> merged = Lists.newArrayListWithCapacity(accumulatorsByGroup.size());
+        for (final PartialAggregate.Accumulator[] accumulators : accumulatorsByGroup.values()) {
+            merged.add(toResult(accumulators));
+        }
+        return merged;
+    }
+
+    private PartialAggregate.Accumulator[] newAccumulators() {
+        final PartialAggregate.Accumulator[] accumulators = new PartialAggregate.Accumulator[aggregates.size()];
+        for (int i = 0; i < accumulators.length; i++) {
+            accumulators[i] = aggregates.get(i).newAccumulator();
+        }
+        return accumulators;
+    }
+
+    private void add(final PartialAggregate.Accumulator[] accumulators, final Object[] row) {
+        for (int i = 0; i < accumulators.length; i++) {
+            accumulators[i].add(row, offsets[i]);
+        }
+    }
+
+    private static Object[] toRow(final Object result) {
+        return result instanceof Object[] ? (Object[]) result : new Object[]{result};
+    }
+
+    private static Object toResult(final PartialAggregate.Accumulator[] accumulators) {
+        if (accumulators.length == 1) {
+            return accumulators[0].getResult();
+        }
+        final Object[] row = new Object[accumulators.length];
+        for (int i = 0; i < accumulators.length; i++) {
+            row[i] = accumulators[i].getResult();
+        }
+        return row;
+    }
+}
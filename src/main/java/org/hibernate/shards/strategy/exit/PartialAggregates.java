@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.type.Type;
+
+/**
+ * The {@link PartialAggregate}s of the aggregate functions we know how to
+ * compute across shards.
+ */
+public final class PartialAggregates {
+
+    private PartialAggregates() {
+    }
+
+    /**
+     * @return the aggregate of counts, including row counts
+     */
+    public static PartialAggregate count() {
+        return COUNT;
+    }
+
+    /**
+     * @return the aggregate of sums, keeping the type of the sums the shards return
+     */
+    public static PartialAggregate sum() {
+        return SUM;
+    }
+
+    /**
+     * @param type the Hibernate type of the sums the shards return, or null
+     *             if it isn't known
+     * @return the aggregate of sums, added up in the representation of the type
+     */
+    public static PartialAggregate sum(final /*@Nullable*/ Type type) {
+        return type == null ? SUM : new SumAggregate(type);
+    }
+
+    /**
+     * @return the aggregate of minimums
+     */
+    public static PartialAggregate min() {
+        return MIN;
+    }
+
+    /**
+     * @return the aggregate of maximums
+     */
+    public static PartialAggregate max() {
+        return MAX;
+    }
+
+    /**
+     * @return the aggregate of averages, computed by every shard as a sum
+     *         followed by a count of the values that were summed
+     */
+    public static PartialAggregate avg() {
+        return AVG;
+    }
+
+    /**
+     * @param type the Hibernate type of the sums the shards return, or null
+     *             if it isn't known
+     * @return the aggregate of averages, whose sums are added up in the
+     *         representation of the type
+     */
+    public static PartialAggregate avg(final /*@Nullable*/ Type type) {
+        return type == null ? AVG : new AvgAggregate(type);
+    }
+
+    /**
+     * @return the column of a property the results are grouped by.  Its
+     *         value is the same for every partial aggregate of a group.
+     */
+    public static PartialAggregate group() {
+        return GROUP;
+    }
+
+    /**
+     * @param aggregate a partial aggregate
+     * @return true if the aggregate is a column the results are grouped by
+     */
+    public static boolean isGroup(final PartialAggregate aggregate) {
+        return aggregate == GROUP;
+    }
+
+    private static final PartialAggregate GROUP = new SingleColumnAggregate() {
+        @Override
+        public Accumulator newAccumulator() {
+            return new Accumulator() {
+                private Object value;
+
+                @Override
+                public void add(final Object[] row, final int column) {
+                    value = row[column];
+                }
+
+                @Override
+                public Object getResult() {
+                    return value;
+                }
+            };
+        }
+    };
+
+    private static final PartialAggregate COUNT = new SingleColumnAggregate() {
+        @Override
+        public Accumulator newAccumulator() {
+            return new Accumulator() {
+                private long count;
+
+                @Override
+                public void add(final Object[] row, final int column) {
+                    if (row[column] != null) {
+                        count += ((Number) row[column]).longValue();
+                    }
+                }
+
+                @Override
+                public Object getResult() {
+                    return count;
+                }
+            };
+        }
+    };
+
+    private static final PartialAggregate SUM = new SumAggregate(null);
+
+    private static final PartialAggregate MIN = new ExtremeAggregate(-1);
+
+    private static final PartialAggregate MAX = new ExtremeAggregate(1);
+
+    private static final PartialAggregate AVG = new AvgAggregate(null);
+
+    private abstract static class SingleColumnAggregate implements PartialAggregate {
+        @Override
+        public int getWidth() {
+            return 1;
+        }
+    }
+
+    /**
+     * Min or max, depending on the sign of the comparisons it looks for.
+     */
+    private static final class ExtremeAggregate extends SingleColumnAggregate {
+
+        private final int sign;
+
+        ExtremeAggregate(final int sign) {
+            this.sign = sign;
+        }
+
+        @Override
+        public Accumulator newAccumulator() {
+            return new Accumulator() {
+                private Comparable<Object> extreme;
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public void add(final Object[] row, final int column) {
+                    final Comparable<Object> value = (Comparable<Object>) row[column];
+                    if (value != null && (extreme == null || Integer.signum(value.compareTo(extreme)) == sign)) {
+                        extreme = value;
+                    }
+                }
+
+                @Override
+                public Object getResult() {
+                    return extreme;
+                }
+            };
+        }
+    }
+
+    private static final class SumAggregate extends SingleColumnAggregate {
+
+        private final Type type;
+
+        SumAggregate(final /*@Nullable*/ Type type) {
+            this.type = type;
+        }
+
+        @Override
+        public Accumulator newAccumulator() {
+            final NumericSum sum = NumericSum.forType(type);
+            return new Accumulator() {
+                @Override
+                public void add(final Object[] row, final int column) {
+                    sum.add((Number) row[column]);
+                }
+
+                @Override
+                public Object getResult() {
+                    return sum.getResult();
+                }
+            };
+        }
+    }
+
+    private static final class AvgAggregate implements PartialAggregate {
+
+        private final Type type;
+
+        AvgAggregate(final /*@Nullable*/ Type type) {
+            this.type = type;
+        }
+
+        @Override
+        public int getWidth() {
+            return 2;
+        }
+
+        @Override
+        public Accumulator newAccumulator() {
+            final NumericSum sum = NumericSum.forType(type);
+            return new Accumulator() {
+                private long count;
+
+                @Override
+                public void add(final Object[] row, final int column) {
+                    sum.add((Number) row[column]);
+                    if (row[column + 1] != null) {
+                        count += ((Number) row[column + 1]).longValue();
+                    }
+                }
+
+                @Override
+                public Object getResult() {
+                    return sum.average(count);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.property.BasicPropertyAccessor;
+import org.hibernate.property.ChainedPropertyAccessor;
+import org.hibernate.property.DirectPropertyAccessor;
+import org.hibernate.property.Getter;
+import org.hibernate.property.PropertyAccessor;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Preconditions;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads the value of a (possibly nested) property path from the results of a
+ * query.  Exit operations evaluate the same path against every row they sort
+ * or aggregate, so the Hibernate {@link Getter} of each element of the path is
+ * resolved once per class and reused for as long as the accessor lives.
+ * <p/>
+ * Properties are read by reflection, through a getter if one exists, public
+ * or not, and through the field otherwise.  This is Hibernate's default
+ * property access.  An access strategy declared in the mapping (field access
+ * or a custom PropertyAccessor) is not consulted, because the exit operations
+ * only see the rows and not the mapping of their classes.
+ * <p/>
+ * Instances are thread-safe.  They are not cached globally, since the
+ * getters would pin the classes they were resolved for, and the class
+ * loaders of those classes, for the life of the JVM.  Keep an accessor for as
+ * long as the same path is read from many rows, typically one query.
+ */
+public final class PropertyPathAccessor {
+
+    private static final PropertyAccessor PROPERTY_ACCESSOR = new ChainedPropertyAccessor(
+            new PropertyAccessor[]{new BasicPropertyAccessor(), new DirectPropertyAccessor()});
+
+    private final String path;
+
+    private final String[] propertyNames;
+
+    // one cache per element of the path, keyed on the class the property is read from
+    private final List<ConcurrentMap<Class<?>, Getter>> getters;
+
+    private PropertyPathAccessor(final String path) {
+        this.path = path;
+        this.propertyNames = path.split("\\.");
+        this.getters = Lists.newArrayListWithCapacity(propertyNames.length);
+        for (int i = 0; i < propertyNames.length; i++) {
+            getters.add(new ConcurrentHashMap<Class<?>, Getter>());
+        }
+    }
+
+    /**
+     * @param path a property name, or a dot-separated path of property names
+     * @return a new accessor for the given path
+     */
+    public static PropertyPathAccessor forPath(final String path) {
+        Preconditions.checkNotNull(path);
+        return new PropertyPathAccessor(path);
+    }
+
+    /**
+     * @param obj the object to read the path from
+     * @return the value at the end of the path, or null if obj or any
+     *         intermediate value is null
+     * @throws org.hibernate.PropertyNotFoundException if an element of the path
+     *         has neither a getter nor a field
+     */
+    public /*@Nullable*/ Object getValue(final /*@Nullable*/ Object obj) {
+        Object value = obj;
+        for (int i = 0; i < propertyNames.length && value != null; i++) {
+            value = getGetter(i, value.getClass()).get(value);
+        }
+        return value;
+    }
+
+    private Getter getGetter(final int index, final Class<?> clazz) {
+        final ConcurrentMap<Class<?>, Getter> cache = getters.get(index);
+        Getter getter = cache.get(clazz);
+        if (getter == null) {
+            // resolving the same getter twice is harmless, so no need to lock
+            getter = PROPERTY_ACCESSOR.getGetter(clazz, propertyNames[index]);
+            cache.put(clazz, getter);
+        }
+        return getter;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
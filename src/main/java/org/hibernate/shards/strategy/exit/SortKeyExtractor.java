@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.util.Lists;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Extracts the values a result is ordered by and compares results by them.
+ * Reading a property is far more expensive than comparing two values, so
+ * when the same result takes part in many comparisons its sort key should be
+ * extracted once, with {@link #toKeyedRows(List)}, rather than once per
+ * comparison.
+ * <p/>
+ * Null values are ordered before any other value.
+ */
+class SortKeyExtractor {
+
+    // null where the value comes from a projected column
+    private final PropertyPathAccessor[] accessors;
+
+    private final int[] columns;
+
+    private final boolean[] ascending;
+
+    private final Comparator<Object> rowComparator = new Comparator<Object>() {
+        @Override
+        public int compare(final Object o1, final Object o2) {
+            if (o1 == o2) {
+                return 0;
+            }
+            return compareKeys(extract(o1), extract(o2));
+        }
+    };
+
+    private final Comparator<KeyedRow> keyedRowComparator = new Comparator<KeyedRow>() {
+        @Override
+        public int compare(final KeyedRow r1, final KeyedRow r2) {
+            return compareKeys(r1.key, r2.key);
+        }
+    };
+
+    /**
+     * @param orderByList the orders, most significant first
+     */
+    SortKeyExtractor(final List<InMemoryOrderBy> orderByList) {
+        this.accessors = new PropertyPathAccessor[orderByList.size()];
+        this.columns = new int[orderByList.size()];
+        this.ascending = new boolean[orderByList.size()];
+        for (int i = 0; i < accessors.length; i++) {
+            final InMemoryOrderBy order = orderByList.get(i);
+            columns[i] = order.getProjectionColumn();
+            if (columns[i] < 0) {
+                accessors[i] = PropertyPathAccessor.forPath(order.getExpression());
+            }
+            ascending[i] = order.isAscending();
+        }
+    }
+
+    Object[] extract(final Object row) {
+        final Object[] key = new Object[accessors.length];
+        for (int i = 0; i < accessors.length; i++) {
+            if (accessors[i] != null) {
+                key[i] = accessors[i].getValue(row);
+            } else if (row instanceof Object[]) {
+                key[i] = ((Object[]) row)[columns[i]];
+            } else {
+                // a projection of a single column comes back as the bare value
+                key[i] = row;
+            }
+        }
+        return key;
+    }
+
+    int compareKeys(final Object[] k1, final Object[] k2) {
+        for (int i = 0; i < k1.length; i++) {
+            final int result = ascending[i] ? compareValues(k1[i], k2[i]) : compareValues(k2[i], k1[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(final Object v1, final Object v2) {
+        if (v1 == v2) {
+            return 0;
+        }
+        if (v1 == null) {
+            return -1;
+        }
+        if (v2 == null) {
+            return 1;
+        }
+        return ((Comparable<Object>) v1).compareTo(v2);
+    }
+
+    /**
+     * @return a comparator of results that extracts their keys on every comparison
+     */
+    Comparator<Object> getRowComparator() {
+        return rowComparator;
+    }
+
+    Comparator<KeyedRow> getKeyedRowComparator() {
+        return keyedRowComparator;
+    }
+
+    /**
+     * @param rows results, possibly containing nulls
+     * @return the non-null results along with their sort keys, in the same order
+     */
+    List<KeyedRow> toKeyedRows(final List<Object> rows) {
+        final List<KeyedRow> keyedRows = Lists.newArrayListWithCapacity(rows.size());
+        for (final Object row : rows) {
+            if (row != null) {
+                keyedRows.add(new KeyedRow(row, extract(row)));
+            }
+        }
+        return keyedRows;
+    }
+
+    boolean isSorted(final List<KeyedRow> keyedRows) {
+        for (int i = 1; i < keyedRows.size(); i++) {
+            if (compareKeys(keyedRows.get(i - 1).key, keyedRows.get(i).key) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static List<Object> toRows(final List<KeyedRow> keyedRows) {
+        final List<Object> rows = Lists.newArrayListWithCapacity(keyedRows.size());
+        for (final KeyedRow keyedRow : keyedRows) {
+            rows.add(keyedRow.row);
+        }
+        return rows;
+    }
+
+    /**
+     * A result along with its sort key.
+     */
+    static final class KeyedRow {
+
+        final Object row;
+
+        final Object[] key;
+
+        KeyedRow(final Object row, final Object[] key) {
+            this.row = row;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.engine.HibernateIterator;
+import org.hibernate.shards.util.Lists;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The results of an {@link ExternalMergeExitStrategy} that did not fit in
+ * memory.  Most of them live in temporary files, and they are merged as they
+ * are read, so the list is meant to be iterated over: random access costs a
+ * pass over the results unless the list is accessed in order.
+ * <p/>
+ * Results read from disk are copies of the objects the shards returned and
+ * are not associated with any Session.  The temporary files are deleted by
+ * {@link #close()}, or at the latest when the virtual machine exits.
+ */
+public class SpilledResults extends AbstractList<Object> {
+
+    private final SortKeyExtractor sortKeyExtractor;
+
+    private final List<List<Object>> memoryRuns;
+
+    private final List<SpilledRun> spilledRuns;
+
+    private final int size;
+
+    private boolean closed;
+
+    // supports reading the list with get() in order
+    private /*@Nullable*/ MergedIterator cursor;
+
+    private int cursorIndex;
+
+    SpilledResults(final SortKeyExtractor sortKeyExtractor,
+                   final List<List<Object>> memoryRuns,
+                   final List<SpilledRun> spilledRuns) {
+        this.sortKeyExtractor = sortKeyExtractor;
+        this.memoryRuns = memoryRuns;
+        this.spilledRuns = spilledRuns;
+        int count = 0;
+        for (final List<Object> run : memoryRuns) {
+            count += run.size();
+        }
+        for (final SpilledRun run : spilledRuns) {
+            count += run.size();
+        }
+        this.size = count;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized Object get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (cursor == null || index < cursorIndex) {
+            if (cursor != null) {
+                cursor.close();
+            }
+            cursor = open(false);
+            cursorIndex = 0;
+        }
+        while (cursorIndex < index) {
+            cursor.next();
+            cursorIndex++;
+        }
+        cursorIndex++;
+        return cursor.next();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<Object> iterator() {
+        return (Iterator<Object>) open(false);
+    }
+
+    /**
+     * @return an iterator over the results that deletes the temporary files
+     *         once it is exhausted or closed, after which the list can no
+     *         longer be read
+     */
+    public HibernateIterator iterateOnce() {
+        return open(true);
+    }
+
+    /**
+     * Deletes the temporary files.  The list can no longer be read afterwards.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+        for (final SpilledRun run : spilledRuns) {
+            run.delete();
+        }
+    }
+
+    private synchronized MergedIterator open(final boolean closeWhenDone) {
+        if (closed) {
+            throw new IllegalStateException("Spilled results have been closed");
+        }
+        return new MergedIterator(closeWhenDone);
+    }
+
+    private class MergedIterator implements HibernateIterator {
+
+        private final List<SpilledRun.Reader> readers = Lists.newArrayList();
+
+        private final Iterator<Object> merged;
+
+        private final boolean closeWhenDone;
+
+        private boolean done;
+
+        MergedIterator(final boolean closeWhenDone) {
+            this.closeWhenDone = closeWhenDone;
+            final List<Iterator<Object>> sources = Lists.newArrayList();
+            for (final List<Object> run : memoryRuns) {
+                sources.add(run.iterator());
+            }
+            for (final SpilledRun run : spilledRuns) {
+                final SpilledRun.Reader reader = run.open();
+                readers.add(reader);
+                sources.add(reader);
+            }
+            this.merged = new MergingIterator(sortKeyExtractor, sources);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (done) {
+                return false;
+            }
+            if (!merged.hasNext()) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Object next() {
+            final Object row = merged.next();
+            if (!merged.hasNext()) {
+                close();
+            }
+            return row;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            if (done) {
+                return;
+            }
+            done = true;
+            for (final SpilledRun.Reader reader : readers) {
+                reader.close();
+            }
+            if (closeWhenDone) {
+                SpilledResults.this.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.HibernateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted run of results that was written to a temporary file to free up
+ * memory.  The run can be read back any number of times until it is deleted.
+ * Results must be Serializable, and what is read back are copies.
+ */
+class SpilledRun {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+
+    private final int size;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private SpilledRun(final File file, final int size) {
+        this.file = file;
+        this.size = size;
+    }
+
+    /**
+     * @param directory the directory of the temporary file, null for the default
+     * @return a writer of a new run, which must be finished or aborted
+     * @throws HibernateException if the temporary file can't be created
+     */
+    static Writer create(final /*@Nullable*/ File directory) {
+        File file = null;
+        try {
+            file = File.createTempFile("shards-run", ".ser", directory);
+            return new Writer(file, new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)));
+        } catch (IOException e) {
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+            throw new HibernateException("Unable to spill results to disk", e);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return a reader of the results in the run, which must be closed once
+     *         it is no longer needed
+     */
+    Reader open() {
+        try {
+            return new Reader(new ObjectInputStream(
+                    new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)));
+        } catch (IOException e) {
+            throw new HibernateException("Unable to read spilled results from " + file, e);
+        }
+    }
+
+    void delete() {
+        if (!file.delete() && file.exists()) {
+            log.warn("Unable to delete " + file);
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Writes the results of a run to its temporary file, one at a time.
+     */
+    static class Writer {
+
+        private final File file;
+
+        private final ObjectOutputStream out;
+
+        private int size;
+
+        private Writer(final File file, final ObjectOutputStream out) {
+            this.file = file;
+            this.out = out;
+        }
+
+        /**
+         * @param row the next non-null result of the run
+         * @throws HibernateException if the result can't be written, in which
+         *                            case the run is aborted
+         */
+        void write(final Object row) {
+            try {
+                out.writeObject(row);
+                // otherwise the stream holds on to every row it has written
+                out.reset();
+                size++;
+            } catch (IOException e) {
+                abort();
+                throw new HibernateException("Unable to spill results to disk", e);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return the run of the results that were written
+         */
+        SpilledRun finish() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                abort();
+                throw new HibernateException("Unable to spill results to disk", e);
+            }
+            return new SpilledRun(file, size);
+        }
+
+        /**
+         * Closes and deletes the temporary file.
+         */
+        void abort() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // we're getting rid of the file anyway
+            }
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Reads the results of the run back, in order.
+     */
+    class Reader implements Iterator<Object> {
+
+        private final ObjectInputStream in;
+
+        private int read;
+
+        private Reader(final ObjectInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return read < size;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                final Object row = in.readObject();
+                if (++read == size) {
+                    close();
+                }
+                return row;
+            } catch (IOException e) {
+                throw new HibernateException("Unable to read spilled results from " + file, e);
+            } catch (ClassNotFoundException e) {
+                throw new HibernateException("Unable to read spilled results from " + file, e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.warn("Unable to close " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Sets;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Keeps the first maxSize elements, according to a comparator, of all the
+ * elements that are offered to it.  The elements are kept in a heap with
+ * the greatest element on top, so each offer costs O(log maxSize) and elements
+ * that can't make the cut are dropped right away.
+ * <p/>
+ * A distinct buffer ignores elements that are equal to one it holds.  It only
+ * needs to remember the elements it holds: an element that was dropped can't
+ * make the cut when it is offered again, because the cut only gets tighter.
+ */
+class TopNBuffer {
+
+    private final int maxSize;
+
+    private final Comparator<Object> comparator;
+
+    private final PriorityQueue<Object> heap;
+
+    // distinct keys of the elements in the heap, null unless the buffer is distinct
+    private final /*@Nullable*/ Set<Object> distinctKeys;
+
+    TopNBuffer(final Comparator<Object> comparator, final int maxSize) {
+        this(comparator, maxSize, false);
+    }
+
+    TopNBuffer(final Comparator<Object> comparator, final int maxSize, final boolean distinct) {
+        this.maxSize = maxSize;
+        this.distinctKeys = distinct ? Sets.newHashSet() : null;
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<Object>(Math.max(1, maxSize), Collections.reverseOrder(comparator));
+    }
+
+    void offer(final Object obj) {
+        if (distinctKeys != null && distinctKeys.contains(DistinctExitOperation.distinctKey(obj))) {
+            return;
+        }
+        if (heap.size() < maxSize) {
+            add(obj);
+        } else if (maxSize > 0 && comparator.compare(obj, heap.peek()) < 0) {
+            final Object dropped = heap.poll();
+            if (distinctKeys != null) {
+                distinctKeys.remove(DistinctExitOperation.distinctKey(dropped));
+            }
+            add(obj);
+        }
+    }
+
+    private void add(final Object obj) {
+        heap.add(obj);
+        if (distinctKeys != null) {
+            distinctKeys.add(DistinctExitOperation.distinctKey(obj));
+        }
+    }
+
+    /**
+     * @return the elements that made the cut, in order
+     */
+    List<Object> toSortedList() {
+        final List<Object> list = Lists.newArrayList(heap);
+        Collections.sort(list, comparator);
+        return list;
+    }
+}
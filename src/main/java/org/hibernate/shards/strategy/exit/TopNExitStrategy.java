@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.util.Preconditions;
+
+import java.util.List;
+
+/**
+ * Threadsafe ExitStrategy for ordered results of which only the first few are
+ * wanted.  Rather than concatenating everything the shards return and sorting
+ * it at the end, results are merged into a bounded buffer as they arrive and
+ * the ones that can't make the cut are dropped immediately.
+ */
+public class TopNExitStrategy implements ExitStrategy<List<Object>> {
+
+    private final TopNBuffer buffer;
+
+    /**
+     * @param orderByList the orders of the results
+     * @param maxSize     the number of results to keep, typically firstResult + maxResults
+     */
+    public TopNExitStrategy(final List<InMemoryOrderBy> orderByList, final int maxSize) {
+        this(orderByList, maxSize, false);
+    }
+
+    /**
+     * @param orderByList the orders of the results
+     * @param maxSize     the number of results to keep, typically firstResult + maxResults
+     * @param distinct    true if results that are equal to one that is kept should be dropped
+     */
+    public TopNExitStrategy(final List<InMemoryOrderBy> orderByList, final int maxSize, final boolean distinct) {
+        Preconditions.checkArgument(maxSize >= 0);
+        this.buffer = new TopNBuffer(new OrderExitOperation(orderByList).getComparator(), maxSize, distinct);
+    }
+
+    @Override
+    public synchronized boolean addResult(final List<Object> oneResult, final Shard shard) {
+        for (final Object obj : oneResult) {
+            if (obj != null) {
+                buffer.offer(obj);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<Object> compileResults(final ExitOperationsCollector exitOperationsCollector) {
+        return exitOperationsCollector.apply(buffer.toSortedList());
+    }
+}
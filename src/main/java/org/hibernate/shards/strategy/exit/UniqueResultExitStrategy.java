@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.NonUniqueResultException;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.util.Lists;
+
+import java.util.List;
+
+/**
+ * ExitStrategy for a unique result that is only known once the results of
+ * every shard are combined, such as an aggregate.  Each shard returns the
+ * list of its results, the lists are concatenated, and the exit operations
+ * are applied to them.  Threadsafe.
+ */
+public class UniqueResultExitStrategy implements ExitStrategy<Object> {
+
+    private final List<Object> results = Lists.newArrayList();
+
+    /**
+     * @param oneResult the List of the results of a shard
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized boolean addResult(final Object oneResult, final Shard shard) {
+        results.addAll((List<Object>) oneResult);
+        return false;
+    }
+
+    /**
+     * @return the unique result, or null if there is none
+     * @throws NonUniqueResultException if the combined results hold more than one result
+     */
+    @Override
+    public Object compileResults(final ExitOperationsCollector exitOperationsCollector) {
+        final List<Object> combined = exitOperationsCollector.apply(results);
+        if (combined.size() > 1) {
+            throw new NonUniqueResultException(combined.size());
+        }
+        return combined.isEmpty() ? null : combined.get(0);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.resolution;
+
+import org.hibernate.shards.ShardId;
+import org.hibernate.shards.strategy.selection.ShardResolutionStrategyDataImpl;
+import org.hibernate.shards.util.Preconditions;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Resolves the shards on which the entities of one class may live from the
+ * values a query or criteria compares their identifier to.
+ */
+public final class IdentifierShardResolver {
+
+    private final String entityName;
+
+    private final Class<?> identifierClass;
+
+    private final ShardResolutionStrategy shardResolutionStrategy;
+
+    /**
+     * @param entityName              the name of the entity
+     * @param identifierClass         the class of its identifier
+     * @param shardResolutionStrategy resolves the shards of an identifier
+     */
+    public IdentifierShardResolver(final String entityName, final Class<?> identifierClass,
+                                   final ShardResolutionStrategy shardResolutionStrategy) {
+        this.entityName = Preconditions.checkNotNull(entityName);
+        this.identifierClass = Preconditions.checkNotNull(identifierClass);
+        this.shardResolutionStrategy = Preconditions.checkNotNull(shardResolutionStrategy);
+    }
+
+    /**
+     * @param value the value an identifier is compared to
+     * @return the ids of the shards on which the entity with that identifier
+     *         may live, or null if the value can't be an identifier
+     */
+    public /*@Nullable*/ List<ShardId> getShardIds(final Object value) {
+        final Serializable id = toIdentifier(value, identifierClass);
+        if (id == null) {
+            return null;
+        }
+        return shardResolutionStrategy.selectShardIdsFromShardResolutionStrategyData(
+                new ShardResolutionStrategyDataImpl(entityName, id));
+    }
+
+    /**
+     * Identifiers are often bound with whichever setter or literal is at
+     * hand, so integral values are converted to the type of the identifier
+     * when they fit in it.
+     *
+     * @return the value as an identifier of the given class, or null if it
+     *         isn't one
+     */
+    static /*@Nullable*/ Serializable toIdentifier(final Object value, final Class<?> identifierClass) {
+        if (identifierClass.isInstance(value)) {
+            return value instanceof Serializable ? (Serializable) value : null;
+        }
+        if (!(value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte || value instanceof BigInteger)) {
+            return null;
+        }
+        final BigInteger integral = value instanceof BigInteger
+                ? (BigInteger) value : BigInteger.valueOf(((Number) value).longValue());
+        if (identifierClass == Long.class && integral.bitLength() < Long.SIZE) {
+            return integral.longValue();
+        }
+        if (identifierClass == Integer.class && integral.bitLength() < Integer.SIZE) {
+            return integral.intValue();
+        }
+        if (identifierClass == Short.class && integral.bitLength() < Short.SIZE) {
+            return integral.shortValue();
+        }
+        if (identifierClass == BigInteger.class) {
+            return integral;
+        }
+        return null;
+    }
+}
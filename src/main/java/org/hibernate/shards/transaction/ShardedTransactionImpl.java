@@ -46,6 +46,9 @@ public class ShardedTransactionImpl implements ShardedTransaction {
 
     private final List<Transaction> transactions;
 
+    // the shards of the session, which serve their reads from the primary while we're active
+    private final List<Shard> shards;
+
     private boolean begun;
     private boolean rolledBack;
     private boolean committed;
@@ -57,7 +60,8 @@ public class ShardedTransactionImpl implements ShardedTransaction {
     public ShardedTransactionImpl(final ShardedSessionImplementor ssi) {
         final OpenSessionEvent osEvent = new SetupTransactionOpenSessionEvent(this);
         transactions = Collections.synchronizedList(new ArrayList<Transaction>());
-        for (final Shard shard : ssi.getShards()) {
+        shards = ssi.getShards();
+        for (final Shard shard : shards) {
             if (shard.getSession() != null) {
                 transactions.add(shard.getSession().getTransaction());
             } else {
@@ -111,6 +115,7 @@ public class ShardedTransactionImpl implements ShardedTransaction {
         begun = true;
         committed = false;
         rolledBack = false;
+        setTransactionActive(true);
     }
 
     @Override
@@ -169,6 +174,7 @@ public class ShardedTransactionImpl implements ShardedTransaction {
             throw new TransactionException("Rollback failed", firstRollbackException);
         }
         rolledBack = true;
+        setTransactionActive(false);
     }
 
     @Override
@@ -220,6 +226,7 @@ public class ShardedTransactionImpl implements ShardedTransaction {
 
     private void afterTransactionCompletion(final int status) {
         begun = false;
+        setTransactionActive(false);
         if (synchronizations != null) {
             for (Synchronization sync : synchronizations) {
                 try {
@@ -230,4 +237,10 @@ public class ShardedTransactionImpl implements ShardedTransaction {
             }
         }
     }
+
+    private void setTransactionActive(final boolean active) {
+        for (final Shard shard : shards) {
+            shard.setTransactionActive(active);
+        }
+    }
 }
@@ -20,6 +20,7 @@ package org.hibernate.shards;
 
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.ScrollableResults;
 import org.hibernate.classic.Session;
 import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.shards.criteria.CriteriaEvent;
@@ -30,6 +31,7 @@ import org.hibernate.shards.query.QueryId;
 import org.hibernate.shards.query.ShardedQuery;
 import org.hibernate.shards.session.OpenSessionEvent;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -59,6 +61,31 @@ public class ShardDefaultMock implements Shard {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Session getReadSession() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addReadSessionEvent(OpenSessionEvent event) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Session establishReadSession() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setTransactionActive(boolean active) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isTransactionActive() {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public Criteria getCriteriaById(CriteriaId id) {
         throw new UnsupportedOperationException();
@@ -79,6 +106,11 @@ public class ShardDefaultMock implements Shard {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public ScrollableResults scroll(CriteriaId criteriaId) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public Object uniqueResult(CriteriaId criteriaId) {
         throw new UnsupportedOperationException();
@@ -109,6 +141,16 @@ public class ShardDefaultMock implements Shard {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public ScrollableResults scroll(QueryId queryId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<?> iterate(QueryId queryId) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public int executeUpdate(QueryId queryId) {
         throw new UnsupportedOperationException();
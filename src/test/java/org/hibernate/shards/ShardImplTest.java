@@ -24,6 +24,8 @@ import org.hibernate.HibernateException;
 import org.hibernate.Interceptor;
 import org.hibernate.Query;
 import org.hibernate.Session;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.impl.CriteriaImpl;
 import org.hibernate.shards.criteria.CriteriaEvent;
 import org.hibernate.shards.criteria.CriteriaEventDefaultMock;
 import org.hibernate.shards.criteria.CriteriaFactory;
@@ -35,6 +37,8 @@ import org.hibernate.shards.defaultmock.InterceptorDefaultMock;
 import org.hibernate.shards.defaultmock.QueryDefaultMock;
 import org.hibernate.shards.defaultmock.SessionDefaultMock;
 import org.hibernate.shards.defaultmock.SessionFactoryDefaultMock;
+import org.hibernate.shards.loadbalance.ReplicaLoadBalancer;
+import org.hibernate.shards.query.ExitOperationsQueryCollector;
 import org.hibernate.shards.query.QueryEvent;
 import org.hibernate.shards.query.QueryEventDefaultMock;
 import org.hibernate.shards.query.QueryFactory;
@@ -43,8 +47,18 @@ import org.hibernate.shards.query.QueryId;
 import org.hibernate.shards.query.ShardedQueryDefaultMock;
 import org.hibernate.shards.session.OpenSessionEvent;
 import org.hibernate.shards.session.OpenSessionEventDefaultMock;
+import org.hibernate.shards.strategy.access.ParallelShardAccessStrategy;
+import org.hibernate.shards.strategy.access.ShardAccessTimeoutPolicy;
+import org.hibernate.shards.strategy.exit.ConcatenateListsExitStrategy;
+import org.hibernate.shards.util.Lists;
 import org.hibernate.shards.util.Sets;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author maxr@google.com (Max Ross)
  */
@@ -425,6 +439,117 @@ public class ShardImplTest extends TestCase {
     }
   }
 
+  public void testReadOnlyCriteriaStayOnPrimaryWhileTransactionActive() {
+    MySessionFactory sf = new MySessionFactory();
+    MyReplicaSessionFactory replica = new MyReplicaSessionFactory();
+    ShardImpl shardImpl = new ShardImpl(Sets.newHashSet(new ShardId(1)), sf, null,
+        Collections.<SessionFactoryImplementor>singletonList(replica), new FirstReplicaLoadBalancer());
+    MyCriteriaFactory mcf = new MyCriteriaFactory(new CriteriaDefaultMock());
+
+    shardImpl.setTransactionActive(true);
+    shardImpl.establishCriteria(new MyShardedCriteria(new CriteriaId(3), mcf, true));
+    assertEquals(1, sf.numOpenSessionCalls);
+    assertEquals(0, replica.numOpenSessionCalls);
+    assertSame(shardImpl.getSession(), mcf.createCriteriaCalledWith);
+    assertSame(shardImpl.getSession(), shardImpl.establishReadSession());
+
+    shardImpl.setTransactionActive(false);
+    shardImpl.establishCriteria(new MyShardedCriteria(new CriteriaId(4), mcf, true));
+    assertEquals(1, replica.numOpenSessionCalls);
+    assertSame(shardImpl.getReadSession(), mcf.createCriteriaCalledWith);
+    assertNotSame(shardImpl.getSession(), shardImpl.getReadSession());
+  }
+
+  public void testDeadlineDoesNotOverrideSmallerUserTimeout() {
+    assertEquals(Lists.newArrayList(2), listWithDeadline(2));
+  }
+
+  public void testDeadlineLimitsUserTimeoutWhileExecuting() {
+    assertEquals(Lists.newArrayList(5, 30), listWithDeadline(30));
+  }
+
+  public void testDeadlineLimitsStatementWithoutUserTimeout() {
+    assertEquals(Lists.newArrayList(5, 0), listWithDeadline(null));
+  }
+
+  /**
+   * Lists a Criteria with the given timeout on a shard whose statements have
+   * a budget of 5 seconds.
+   *
+   * @return the timeout of the Criteria while it executed, followed by its
+   * timeout afterwards if that is different
+   */
+  private static List<Integer> listWithDeadline(final Integer userTimeout) {
+    final List<Integer> timeouts = Lists.newArrayList();
+    final CriteriaImpl crit = new CriteriaImpl("Foo", null) {
+      @Override
+      public List list() {
+        timeouts.add(getTimeout());
+        return Collections.emptyList();
+      }
+    };
+    if (userTimeout != null) {
+      crit.setTimeout(userTimeout);
+    }
+    final CriteriaId critId = new CriteriaId(3);
+    final ShardImpl shardImpl = new ShardImpl(new ShardId(1), new MySessionFactory()) {
+      @Override
+      public String toString() {
+        // the mock SessionFactory has no name
+        return "shard";
+      }
+    };
+    shardImpl.establishCriteria(new MyShardedCriteria(critId, new MyCriteriaFactory(crit)));
+
+    final ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    try {
+      new ParallelShardAccessStrategy(executor, 0, 5, TimeUnit.SECONDS, ShardAccessTimeoutPolicy.FAIL).apply(
+          Collections.<Shard>singletonList(shardImpl),
+          new ShardOperation<List<Object>>() {
+            public List<Object> execute(Shard shard) {
+              return shard.list(critId);
+            }
+
+            public String getOperationName() {
+              return "list";
+            }
+          },
+          new ConcatenateListsExitStrategy(),
+          new ExitOperationsQueryCollector());
+    } finally {
+      executor.shutdownNow();
+    }
+    final Integer after = crit.getTimeout() == null ? 0 : crit.getTimeout();
+    if (!after.equals(timeouts.get(0))) {
+      timeouts.add(after);
+    }
+    return timeouts;
+  }
+
+  private static final class MyReplicaSessionFactory extends SessionFactoryDefaultMock {
+    private int numOpenSessionCalls;
+
+    @Override
+    public org.hibernate.classic.Session openSession() throws HibernateException {
+      numOpenSessionCalls++;
+      return new SessionDefaultMock() {
+        @Override
+        public void setDefaultReadOnly(boolean readOnly) {
+        }
+      };
+    }
+  }
+
+  private static final class FirstReplicaLoadBalancer implements ReplicaLoadBalancer {
+    public SessionFactoryImplementor getNextReplica(List<SessionFactoryImplementor> replicas) {
+      return replicas.get(0);
+    }
+
+    public void recordLatency(SessionFactoryImplementor replica, long elapsedNanos) {
+    }
+  }
+
   private static final class MySessionFactory extends SessionFactoryDefaultMock {
     private int numOpenSessionCalls;
     private int numOpenSessionWithInterceptorCalls;
@@ -446,10 +571,21 @@ public class ShardImplTest extends TestCase {
   private static final class MyShardedCriteria extends ShardedCriteriaDefaultMock {
     private final CriteriaId critId;
     private final CriteriaFactory critFactory;
+    private final boolean readOnly;
 
     public MyShardedCriteria(CriteriaId critId, CriteriaFactory critFactory) {
+      this(critId, critFactory, false);
+    }
+
+    public MyShardedCriteria(CriteriaId critId, CriteriaFactory critFactory, boolean readOnly) {
       this.critId = critId;
       this.critFactory = critFactory;
+      this.readOnly = readOnly;
+    }
+
+    @Override
+    public boolean isReadOnlyRequested() {
+      return readOnly;
     }
 
     @Override
@@ -51,6 +51,7 @@ import org.hibernate.persister.collection.CollectionPersister;
 import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.proxy.EntityNotFoundDelegate;
 import org.hibernate.shards.engine.ShardedSessionFactoryImplementor;
+import org.hibernate.shards.loadbalance.ReplicaLoadBalancer;
 import org.hibernate.shards.session.ShardedSession;
 import org.hibernate.shards.session.ShardedSessionFactory;
 import org.hibernate.shards.strategy.ShardStrategyFactory;
@@ -242,6 +243,16 @@ public class ShardedSessionFactoryDefaultMock implements ShardedSessionFactoryIm
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public List<SessionFactoryImplementor> getReplicaSessionFactories(SessionFactoryImplementor factory) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ReplicaLoadBalancer getReplicaLoadBalancer() {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public List<SessionFactory> getSessionFactories() {
         throw new UnsupportedOperationException();
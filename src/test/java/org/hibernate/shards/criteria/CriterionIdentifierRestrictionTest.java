@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.shards.ShardId;
+import org.hibernate.shards.strategy.resolution.IdentifierShardResolver;
+import org.hibernate.shards.strategy.resolution.ShardResolutionStrategy;
+import org.hibernate.shards.strategy.selection.ShardResolutionStrategyData;
+import org.hibernate.shards.util.Sets;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CriterionIdentifierRestrictionTest {
+
+    private static final Set<String> ID = Sets.newHashSet("id", "b.id");
+
+    // entity n lives on shard n % 10
+    private static final IdentifierShardResolver SHARDS = new IdentifierShardResolver("Building", Long.class,
+            new ShardResolutionStrategy() {
+
+                @Override
+                public List<ShardId> selectShardIdsFromShardResolutionStrategyData(
+                        final ShardResolutionStrategyData data) {
+                    return Collections.singletonList(new ShardId((int) ((Long) data.getId() % 10)));
+                }
+            });
+
+    @Test
+    public void testIdentifierRestrictions() {
+        assertEquals(shards(3), select(Restrictions.idEq(13L)));
+        assertEquals(shards(3), select(Restrictions.eq("b.id", 13), Restrictions.eq("name", "x")));
+        assertEquals(shards(1, 2), select(Restrictions.in("id", Arrays.asList(1L, 2L, 11L))));
+        assertEquals(shards(2), select(Restrictions.in("id", new Object[]{1L, 2L}), Restrictions.idEq(2L)));
+    }
+
+    @Test
+    public void testJunctions() {
+        assertEquals(shards(1, 2), select(Restrictions.or(Restrictions.idEq(1L), Restrictions.idEq(2L))));
+        assertEquals(shards(4), select(Restrictions.and(Restrictions.idEq(4L), Restrictions.eq("name", "x"))));
+        assertEquals(shards(5, 6), select(Restrictions.disjunction()
+                .add(Restrictions.idEq(5L))
+                .add(Restrictions.conjunction().add(Restrictions.idEq(6L)).add(Restrictions.isNull("name")))));
+    }
+
+    @Test
+    public void testUnrestricted() {
+        assertNull(select(Restrictions.eq("name", "x")));
+        assertNull(select(Restrictions.or(Restrictions.idEq(1L), Restrictions.eq("name", "x"))));
+        assertNull(select(Restrictions.gt("id", 1L)));
+        assertNull(select(Restrictions.eq("id", "x")));
+        assertNull(select(Restrictions.eq("id", 1L).ignoreCase()));
+        assertNull(select(Restrictions.disjunction()));
+    }
+
+    private static Set<ShardId> select(final Criterion... criteria) {
+        return CriterionIdentifierRestriction.selectShardIds(Arrays.asList(criteria), ID, SHARDS);
+    }
+
+    private static Set<ShardId> shards(final int... ids) {
+        final Set<ShardId> shardIds = Sets.newHashSet();
+        for (final int id : ids) {
+            shardIds.add(new ShardId(id));
+        }
+        return shardIds;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.hibernate.shards.strategy.exit.PartialAggregates;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DecomposedProjectionListTest {
+
+    @Test
+    public void testDecompose() {
+        final DecomposedProjectionList decomposed = new DecomposedProjectionList(Projections.projectionList()
+                .add(Projections.rowCount())
+                .add(Projections.sum("x"), "total")
+                .add(Projections.max("y"))
+                .add(Projections.avg("z")));
+        assertEquals(
+                Arrays.asList(PartialAggregates.count(), PartialAggregates.sum(),
+                        PartialAggregates.max(), PartialAggregates.avg()),
+                decomposed.getAggregates());
+        final ProjectionList shardProjection = decomposed.getShardProjection();
+        assertEquals(5, shardProjection.getLength());
+        assertEquals("sum(z)", shardProjection.getProjection(3).toString());
+        assertEquals("count(z)", shardProjection.getProjection(4).toString());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCountDistinct() {
+        new DecomposedProjectionList(Projections.projectionList().add(Projections.countDistinct("x")));
+    }
+
+    @Test
+    public void testGroups() {
+        final DecomposedProjectionList decomposed = new DecomposedProjectionList(Projections.projectionList()
+                .add(Projections.groupProperty("x"))
+                .add(Projections.avg("y"), "average"));
+        assertTrue(decomposed.isGrouped());
+        assertEquals(Arrays.asList(PartialAggregates.group(), PartialAggregates.avg()), decomposed.getAggregates());
+        // the alias of the average stays on its sum, so orders on it resolve on the shards
+        final ProjectionList shardProjection = decomposed.getShardProjection();
+        assertEquals(3, shardProjection.getLength());
+        assertEquals("average", shardProjection.getProjection(1).getAliases()[0]);
+        assertFalse(new DecomposedProjectionList(Projections.projectionList().add(Projections.rowCount())).isGrouped());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testProperty() {
+        final Projection property = Projections.property("x");
+        new DecomposedProjectionList(Projections.projectionList().add(property).add(Projections.rowCount()));
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HavingTest {
+
+    @Test
+    public void testComparesNumbersByValue() {
+        assertTrue(Having.gt("c", 2).isSatisfiedBy(3L));
+        assertTrue(Having.eq("c", new BigDecimal("2.50")).isSatisfiedBy(2.5));
+        assertTrue(Having.le("c", 2L).isSatisfiedBy(new BigDecimal("1.9")));
+        assertFalse(Having.ne("c", 2).isSatisfiedBy(2L));
+        assertFalse(Having.lt("c", 2).isSatisfiedBy(null));
+        assertTrue(Having.ge("c", "b").isSatisfiedBy("b"));
+    }
+
+    @Test
+    public void testFiltersMergedGroups() {
+        final ExitOperationsCriteriaCollector collector = new ExitOperationsCriteriaCollector();
+        collector.setDecomposedProjectionList(new DecomposedProjectionList(Projections.projectionList()
+                .add(Projections.groupProperty("name"))
+                .add(Projections.rowCount(), "total")));
+        collector.addHaving(Having.ge("total", 2));
+        collector.addOrder(null, Order.desc("name"));
+        // no shard has two rows of a group, but two shards together do
+        final List<Object> results = collector.apply(Arrays.<Object>asList(
+                new Object[]{"a", 1L},
+                new Object[]{"b", 1L},
+                new Object[]{"c", 1L},
+                new Object[]{"a", 1L},
+                new Object[]{"c", 1L}));
+        assertEquals(2, results.size());
+        assertArrayEquals(new Object[]{"c", 2L}, (Object[]) results.get(0));
+        assertArrayEquals(new Object[]{"a", 2L}, (Object[]) results.get(1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnknownColumn() {
+        final ExitOperationsCriteriaCollector collector = new ExitOperationsCriteriaCollector();
+        collector.setDecomposedProjectionList(new DecomposedProjectionList(Projections.projectionList()
+                .add(Projections.groupProperty("name"))
+                .add(Projections.rowCount())));
+        collector.addHaving(Having.ge("total", 2));
+        collector.apply(Collections.<Object>singletonList(new Object[]{"a", 1L}));
+    }
+}
@@ -0,0 +1,349 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.Criteria;
+import org.hibernate.ScrollableResults;
+import org.hibernate.classic.Session;
+import org.hibernate.criterion.AggregateProjection;
+import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.CountProjection;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Junction;
+import org.hibernate.criterion.LogicalExpression;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.RowCountProjection;
+import org.hibernate.criterion.SimpleExpression;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.defaultmock.ClassMetadataDefaultMock;
+import org.hibernate.shards.defaultmock.CriteriaDefaultMock;
+import org.hibernate.shards.defaultmock.SessionDefaultMock;
+import org.hibernate.shards.defaultmock.SessionFactoryDefaultMock;
+import org.hibernate.shards.scroll.ListScrollableResults;
+import org.hibernate.shards.strategy.exit.OrderExitOperation;
+import org.hibernate.shards.strategy.exit.PropertyPathAccessor;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Maps;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A shard whose Criteria are executed against rows held in memory.  The
+ * Criteria support orders, firstResult, maxResults, restrictions built
+ * from comparisons, conjunctions and disjunctions, and lists of counts and
+ * sums.
+ */
+class InMemoryShard extends ShardDefaultMock {
+
+    private final List<Row> rows;
+
+    final List<Object> evicted = Lists.newArrayList();
+
+    final List<ListScrollableResults> cursors = Lists.newArrayList();
+
+    private final Map<CriteriaId, List<CriteriaEvent>> events = Maps.newHashMap();
+
+    private final Map<CriteriaId, InMemoryCriteria> criteria = Maps.newHashMap();
+
+    private final Session session = new SessionDefaultMock() {
+
+        @Override
+        public boolean contains(final Object object) {
+            return !evicted.contains(object);
+        }
+
+        @Override
+        public void evict(final Object object) {
+            evicted.add(object);
+        }
+    };
+
+    InMemoryShard(final Row... rows) {
+        this.rows = Arrays.asList(rows);
+    }
+
+    /**
+     * @return a shard holding a row for each of the given values, with ids
+     *         starting at firstId
+     */
+    static InMemoryShard withValues(final long firstId, final int... values) {
+        final Row[] rows = new Row[values.length];
+        for (int i = 0; i < values.length; i++) {
+            rows[i] = new Row(firstId + i, values[i]);
+        }
+        return new InMemoryShard(rows);
+    }
+
+    @Override
+    public SessionFactoryImplementor getSessionFactoryImplementor() {
+        return new SessionFactoryDefaultMock() {
+
+            @Override
+            public ClassMetadata getClassMetadata(final String entityName) {
+                return Row.class.getName().equals(entityName) ? new RowMetadata() : null;
+            }
+        };
+    }
+
+    @Override
+    public Session getSession() {
+        return session;
+    }
+
+    @Override
+    public Criteria getCriteriaById(final CriteriaId id) {
+        return criteria.get(id);
+    }
+
+    @Override
+    public void addCriteriaEvent(final CriteriaId id, final CriteriaEvent event) {
+        if (!events.containsKey(id)) {
+            events.put(id, Lists.<CriteriaEvent>newArrayList());
+        }
+        events.get(id).add(event);
+    }
+
+    @Override
+    public Criteria establishCriteria(final ShardedCriteria shardedCriteria) {
+        final CriteriaId id = shardedCriteria.getCriteriaId();
+        if (!criteria.containsKey(id)) {
+            final InMemoryCriteria crit = new InMemoryCriteria();
+            criteria.put(id, crit);
+            if (events.containsKey(id)) {
+                for (final CriteriaEvent event : events.remove(id)) {
+                    event.onEvent(crit);
+                }
+            }
+        }
+        return criteria.get(id);
+    }
+
+    @Override
+    public List<Object> list(final CriteriaId criteriaId) {
+        return criteria.get(criteriaId).list();
+    }
+
+    @Override
+    public ScrollableResults scroll(final CriteriaId criteriaId) {
+        final ListScrollableResults cursor = new ListScrollableResults(criteria.get(criteriaId).list());
+        cursors.add(cursor);
+        return cursor;
+    }
+
+    private class InMemoryCriteria extends CriteriaDefaultMock {
+
+        private final List<Criterion> restrictions = Lists.newArrayList();
+
+        private final List<InMemoryOrderBy> orders = Lists.newArrayList();
+
+        private int firstResult;
+
+        private int maxResults = Integer.MAX_VALUE;
+
+        private ProjectionList projection;
+
+        @Override
+        public Criteria setProjection(final Projection projection) {
+            this.projection = (ProjectionList) projection;
+            return this;
+        }
+
+        @Override
+        public Criteria add(final Criterion criterion) {
+            restrictions.add(criterion);
+            return this;
+        }
+
+        @Override
+        public Criteria addOrder(final Order order) {
+            orders.add(new InMemoryOrderBy(null, order));
+            return this;
+        }
+
+        @Override
+        public Criteria setFirstResult(final int firstResult) {
+            this.firstResult = firstResult;
+            return this;
+        }
+
+        @Override
+        public Criteria setMaxResults(final int maxResults) {
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        @Override
+        public List<Object> list() {
+            final List<Object> matches = Lists.newArrayList();
+            for (final Row row : rows) {
+                if (matchesAll(restrictions, row)) {
+                    matches.add(row);
+                }
+            }
+            if (projection != null) {
+                final List<Object> results = Lists.newArrayList();
+                results.add(project(matches));
+                return results;
+            }
+            final List<Object> results = new OrderExitOperation(orders).apply(matches);
+            final int end = (int) Math.min(results.size(), (long) firstResult + maxResults);
+            return firstResult >= end ? Lists.newArrayList() : Lists.newArrayList(results.subList(firstResult, end));
+        }
+
+        /**
+         * @return the single row of aggregates of the given rows, with counts
+         *         and sums of the value property
+         */
+        private Object[] project(final List<Object> matches) {
+            final Object[] result = new Object[projection.getLength()];
+            for (int i = 0; i < result.length; i++) {
+                final Projection column = projection.getProjection(i);
+                if (column instanceof RowCountProjection) {
+                    result[i] = (long) matches.size();
+                } else if (column instanceof CountProjection) {
+                    result[i] = (long) matches.size();
+                } else if (column instanceof AggregateProjection
+                        && "sum".equals(((AggregateProjection) column).getFunctionName())) {
+                    long sum = 0;
+                    for (final Object row : matches) {
+                        sum += ((Row) row).getValue();
+                    }
+                    result[i] = matches.isEmpty() ? null : sum;
+                } else {
+                    throw new UnsupportedOperationException("Cannot evaluate " + column);
+                }
+            }
+            return result;
+        }
+
+        private boolean matchesAll(final List<Criterion> criteria, final Row row) {
+            for (final Criterion criterion : criteria) {
+                if (!matches(criterion, row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean matches(final Criterion criterion, final Row row) {
+            if (criterion instanceof ShardRangeCriterion) {
+                final Criterion range = ((ShardRangeCriterion) criterion).getRange(this);
+                return range == null || matches(range, row);
+            }
+            if (criterion instanceof Conjunction) {
+                return matchesAll((List<Criterion>) getField(Junction.class, criterion, "criteria"), row);
+            }
+            if (criterion instanceof Disjunction) {
+                for (final Criterion operand : (List<Criterion>) getField(Junction.class, criterion, "criteria")) {
+                    if (matches(operand, row)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (criterion instanceof LogicalExpression) {
+                final boolean lhs = matches((Criterion) getField(LogicalExpression.class, criterion, "lhs"), row);
+                final boolean rhs = matches((Criterion) getField(LogicalExpression.class, criterion, "rhs"), row);
+                return "and".equalsIgnoreCase(((LogicalExpression) criterion).getOp()) ? lhs && rhs : lhs || rhs;
+            }
+            if (criterion instanceof SimpleExpression) {
+                final String property = (String) getField(SimpleExpression.class, criterion, "propertyName");
+                final Comparable<Object> value =
+                        (Comparable<Object>) PropertyPathAccessor.forPath(property).getValue(row);
+                final int comparison = value.compareTo(getField(SimpleExpression.class, criterion, "value"));
+                final String op = (String) getField(SimpleExpression.class, criterion, "op");
+                if ("=".equals(op)) {
+                    return comparison == 0;
+                } else if (">".equals(op)) {
+                    return comparison > 0;
+                } else if ("<".equals(op)) {
+                    return comparison < 0;
+                } else if (">=".equals(op)) {
+                    return comparison >= 0;
+                } else if ("<=".equals(op)) {
+                    return comparison <= 0;
+                }
+            }
+            throw new UnsupportedOperationException("Cannot evaluate " + criterion);
+        }
+    }
+
+    private static Object getField(final Class<?> declaringClass, final Object target, final String name) {
+        try {
+            final Field field = declaringClass.getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(target);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class RowMetadata extends ClassMetadataDefaultMock {
+
+        @Override
+        public String getIdentifierPropertyName() {
+            return "id";
+        }
+    }
+
+    public static final class Row implements Serializable {
+
+        private final long id;
+
+        private final int value;
+
+        Row(final long id, final int value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Integer getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Row && ((Row) obj).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) id;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + value;
+        }
+    }
+}
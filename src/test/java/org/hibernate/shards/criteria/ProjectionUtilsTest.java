@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.shards.util.Sets;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProjectionUtilsTest {
+
+    @Test
+    public void testGetColumnNames() {
+        final List<Set<String>> columns = ProjectionUtils.getColumnNames(Projections.distinct(
+                Projections.projectionList()
+                        .add(Projections.property("name"))
+                        .add(Projections.property("number"), "num")
+                        .add(Projections.max("squareFeet").as("biggest"))));
+        assertEquals(3, columns.size());
+        assertEquals(Sets.newHashSet("name"), columns.get(0));
+        assertEquals(Sets.newHashSet("number", "num"), columns.get(1));
+        assertEquals(Sets.newHashSet("biggest"), columns.get(2));
+    }
+
+    @Test
+    public void testDistinctOrdersReferToColumns() {
+        final ExitOperationsCriteriaCollector collector = new ExitOperationsCriteriaCollector();
+        collector.addProjection(Projections.distinct(Projections.projectionList()
+                .add(Projections.property("name"))
+                .add(Projections.property("number"), "num")));
+        collector.addOrder(null, Order.asc("num"));
+        collector.addOrder(null, Order.desc("name"));
+        final List<InMemoryOrderBy> orders = collector.getOrders();
+        assertEquals(1, orders.get(0).getProjectionColumn());
+        assertEquals(0, orders.get(1).getProjectionColumn());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDistinctOrderByPropertyThatIsNotProjected() {
+        final ExitOperationsCriteriaCollector collector = new ExitOperationsCriteriaCollector();
+        collector.addProjection(Projections.distinct(Projections.property("name")));
+        collector.addOrder(null, Order.asc("number"));
+        collector.getOrders();
+    }
+}
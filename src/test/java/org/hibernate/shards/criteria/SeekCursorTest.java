@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.criteria;
+
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.Order;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SeekCursorTest {
+
+    private static final List<InMemoryOrderBy> ORDERS = Arrays.asList(
+            new InMemoryOrderBy(null, Order.desc("name")),
+            new InMemoryOrderBy(null, Order.asc("id")));
+
+    public static class Row {
+        private final String name;
+        private final Long id;
+
+        Row(final String name, final Long id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Long getId() {
+            return id;
+        }
+    }
+
+    @Test
+    public void testRestrictsToResultsAfterTheLastOne() {
+        final String token = SeekCursor.after(ORDERS, new Row("b", 7L)).toToken();
+        assertEquals("((name<b) or (name=b and id>7))",
+                SeekCursor.fromToken(token).toCriterion(ORDERS).toString());
+    }
+
+    @Test
+    public void testInclusiveRanges() {
+        final Object[] keys = SeekCursor.getKeys(ORDERS, new Row("b", 7L));
+        assertEquals("((name<b) or (name=b and id>7) or (name=b and id=7))",
+                SeekCursor.compare(ORDERS, keys, true, true).toString());
+        assertEquals("((name>b) or (name=b and id<7) or (name=b and id=7))",
+                SeekCursor.compare(ORDERS, keys, false, true).toString());
+    }
+
+    @Test
+    public void testTokenRoundTrip() throws Exception {
+        final Timestamp timestamp = new Timestamp(1234567L);
+        timestamp.setNanos(89);
+        final List<InMemoryOrderBy> orders = Arrays.asList(
+                new InMemoryOrderBy(null, Order.asc("amount")),
+                new InMemoryOrderBy(null, Order.asc("created")));
+        final Object row = new Object() {
+            public BigDecimal getAmount() {
+                return new BigDecimal("12.50");
+            }
+
+            public Timestamp getCreated() {
+                return timestamp;
+            }
+        };
+        final String token = SeekCursor.after(orders, row).toToken();
+        assertEquals("((amount>12.50) or (amount=12.50 and created>" + timestamp + "))",
+                SeekCursor.fromToken(token).toCriterion(orders).toString());
+    }
+
+    @Test(expected = HibernateException.class)
+    public void testInvalidToken() {
+        SeekCursor.fromToken("01zz");
+    }
+
+    @Test(expected = HibernateException.class)
+    public void testMalformedNumberToken() throws Exception {
+        SeekCursor.fromToken(numberToken('M', "12.x"));
+    }
+
+    @Test(expected = HibernateException.class)
+    public void testMalformedIntegerToken() throws Exception {
+        SeekCursor.fromToken(numberToken('G', ""));
+    }
+
+    @Test(expected = HibernateException.class)
+    public void testNumberWithHugeScaleToken() throws Exception {
+        SeekCursor.fromToken(numberToken('M', "1E-999999999"));
+    }
+
+    @Test(expected = HibernateException.class)
+    public void testInvalidNanosToken() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeShort(1);
+        out.writeByte('T');
+        out.writeLong(0L);
+        out.writeInt(-1);
+        SeekCursor.fromToken(toHex(bytes.toByteArray()));
+    }
+
+    @Test(expected = HibernateException.class)
+    public void testTokenOfOtherOrders() {
+        final String token = SeekCursor.after(ORDERS, new Row("b", 7L)).toToken();
+        SeekCursor.fromToken(token).toCriterion(ORDERS.subList(1, 2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNullKey() {
+        SeekCursor.after(ORDERS, new Row(null, 7L));
+    }
+
+    private static String numberToken(final char tag, final String number) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeShort(1);
+        out.writeByte(tag);
+        out.writeUTF(number);
+        return toHex(bytes.toByteArray());
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
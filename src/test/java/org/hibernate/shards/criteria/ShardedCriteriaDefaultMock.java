@@ -31,7 +31,9 @@ import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projection;
 import org.hibernate.transform.ResultTransformer;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * @author maxr@google.com (Max Ross)
@@ -48,6 +50,41 @@ public class ShardedCriteriaDefaultMock implements ShardedCriteria {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public boolean isReadOnlyRequested() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Future<List<Object>> listAsync() throws HibernateException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Future<Object> uniqueResultAsync() throws HibernateException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<Object> iterate(int maxResultsInMemory) throws HibernateException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ShardedCriteria addHaving(Having having) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SeekPage seekPage(int pageSize, String cursor) throws HibernateException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ShardedCriteria setDistributedOffset(boolean distributedOffset) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public String getAlias() {
         throw new UnsupportedOperationException();
@@ -19,13 +19,20 @@ package org.hibernate.shards.criteria;
 
 import junit.framework.TestCase;
 import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.shards.Shard;
 import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.criteria.InMemoryShard.Row;
+import org.hibernate.shards.strategy.access.SequentialShardAccessStrategy;
 import org.hibernate.shards.strategy.access.ShardAccessStrategy;
 import org.hibernate.shards.strategy.access.ShardAccessStrategyDefaultMock;
 import org.hibernate.shards.util.Lists;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -33,6 +40,8 @@ import java.util.List;
  */
 public class ShardedCriteriaImplTest extends TestCase {
 
+    private int nextCriteriaId;
+
     public void testSetFirstResultAfterMaxResult() {
         CriteriaId id = new CriteriaId(0);
         final List<CriteriaEvent> events = Lists.newArrayList();
@@ -149,4 +158,181 @@ public class ShardedCriteriaImplTest extends TestCase {
         assertEquals(7, ((SetMaxResultsEvent) events.get(0)).getMaxResults());
         assertEquals(8, ((SetMaxResultsEvent) events.get(1)).getMaxResults());
     }
+
+    public void testIterateSpillsAndEvicts() {
+        final InMemoryShard shard1 = new InMemoryShard(new Row(1, 10), new Row(3, 30), new Row(5, 50));
+        final InMemoryShard shard2 = new InMemoryShard(new Row(2, 20), new Row(4, 40), new Row(6, 60));
+        final ShardedCriteriaImpl crit = newCriteria(shard1, shard2);
+        crit.addOrder(Order.asc("value"));
+
+        final Iterator<Object> it = crit.iterate(2);
+        assertEquals(Lists.<Object>newArrayList(new Row(1, 10), new Row(3, 30), new Row(5, 50)), shard1.evicted);
+        assertEquals(Lists.<Object>newArrayList(new Row(2, 20), new Row(4, 40), new Row(6, 60)), shard2.evicted);
+        assertTrue(shard1.cursors.get(0).isClosed());
+        assertTrue(shard2.cursors.get(0).isClosed());
+        assertEquals(new Row(1, 10), it.next());
+        assertEquals(new Row(2, 20), it.next());
+        Hibernate.close(it);
+        assertFalse(it.hasNext());
+    }
+
+    public void testIterateKeepsResultsWithinBudgetInSession() {
+        final InMemoryShard shard1 = new InMemoryShard(new Row(1, 10), new Row(3, 30));
+        final InMemoryShard shard2 = new InMemoryShard(new Row(2, 20));
+        final ShardedCriteriaImpl crit = newCriteria(shard1, shard2);
+        crit.addOrder(Order.desc("value"));
+        crit.setFirstResult(1);
+
+        final Iterator<Object> it = crit.iterate(10);
+        assertTrue(shard1.evicted.isEmpty());
+        assertTrue(shard2.evicted.isEmpty());
+        assertEquals(new Row(2, 20), it.next());
+        Hibernate.close(it);
+        assertFalse(it.hasNext());
+    }
+
+    public void testIteratePageCanBeClosed() {
+        final ShardedCriteriaImpl crit = newCriteria(new InMemoryShard(new Row(1, 10), new Row(2, 20)));
+        crit.setMaxResults(1);
+        final Iterator<Object> it = crit.iterate(10);
+        assertEquals(new Row(1, 10), it.next());
+        Hibernate.close(it);
+        assertFalse(it.hasNext());
+    }
+
+    public void testUniqueResultCombinesAggregatesOfShards() {
+        final ShardedCriteriaImpl crit = newCriteria(
+                InMemoryShard.withValues(1, 1, 2, 3),
+                InMemoryShard.withValues(100, 10, 20));
+        crit.setProjection(Projections.projectionList()
+                .add(Projections.rowCount())
+                .add(Projections.avg("value")));
+        final Object[] result = (Object[]) crit.uniqueResult();
+        assertEquals(2, result.length);
+        assertEquals(5L, ((Number) result[0]).longValue());
+        assertEquals(7.2, ((Number) result[1]).doubleValue(), 0.0001);
+    }
+
+    public void testDistributedOffsetWithSkewedShards() {
+        // every result of the second shard comes after every result of the first
+        final Shard shardA = InMemoryShard.withValues(1, 1, 2, 3, 4, 5);
+        final Shard shardB = InMemoryShard.withValues(100, 100, 101, 102, 103, 104, 105);
+        assertEquals(Lists.<Object>newArrayList(new Row(5, 5)),
+                listPage(new SequentialShardAccessStrategy(), Order.asc("value"), 4, 1, true, shardA, shardB));
+    }
+
+    public void testDistributedOffsetWithUnevenShards() {
+        final Shard[] shards = {
+                InMemoryShard.withValues(1, 1, 4, 4, 9, 12, 15, 20, 21, 22, 30),
+                InMemoryShard.withValues(100, 2, 3, 4, 5, 6, 7, 8),
+                // runs out of results early, so deep pages fall back to the regular way
+                InMemoryShard.withValues(200, 4, 50)};
+        final ShardAccessStrategy strategy = new SequentialShardAccessStrategy();
+        for (final Order order : Arrays.asList(Order.asc("value"), Order.desc("value"))) {
+            for (int firstResult = shards.length; firstResult <= 20; firstResult++) {
+                for (int maxResults = 1; maxResults <= 4; maxResults++) {
+                    assertEquals(order + " " + firstResult + " " + maxResults,
+                            listPage(strategy, order, firstResult, maxResults, false, shards),
+                            listPage(strategy, order, firstResult, maxResults, true, shards));
+                }
+            }
+        }
+    }
+
+    public void testDistributedOffsetFallsBackWhenShardDoesNotAnswer() {
+        final Shard shardA = InMemoryShard.withValues(1, 1, 3, 5, 7, 9, 11);
+        final Shard shardB = InMemoryShard.withValues(100, 2, 4, 6, 8, 10, 12);
+        // leaves out the last shard the first time it is asked, like a timeout would
+        final ShardAccessStrategy strategy = new SequentialShardAccessStrategy() {
+
+            private boolean dropped;
+
+            @Override
+            protected Iterable<Shard> getNextOrderingOfShards(final List<Shard> shards) {
+                if (dropped) {
+                    return shards;
+                }
+                dropped = true;
+                return shards.subList(0, shards.size() - 1);
+            }
+        };
+        assertEquals(Lists.<Object>newArrayList(new Row(3, 5), new Row(102, 6)),
+                listPage(strategy, Order.asc("value"), 4, 2, true, shardA, shardB));
+    }
+
+    public void testSeekPagesAcrossShards() {
+        final List<List<Object>> pages = seekAll(Order.asc("value"), 3,
+                InMemoryShard.withValues(1, 5, 1, 9, 3, 7),
+                InMemoryShard.withValues(100, 2, 8, 4, 6, 10));
+        assertEquals(4, pages.size());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), valuesOf(pages));
+    }
+
+    public void testSeekPagesInDescendingOrder() {
+        final List<List<Object>> pages = seekAll(Order.desc("value"), 2,
+                InMemoryShard.withValues(1, 5, 1, 9, 3, 7),
+                InMemoryShard.withValues(100, 2, 8, 4, 6, 10));
+        assertEquals(Arrays.asList(10, 9, 8, 7, 6, 5, 4, 3, 2, 1), valuesOf(pages));
+    }
+
+    public void testSeekPagesBreakTiesByIdentifier() {
+        // every page boundary falls between results with the same value
+        final List<List<Object>> pages = seekAll(Order.asc("value"), 2,
+                new InMemoryShard(new Row(1, 7), new Row(3, 7), new Row(5, 7), new Row(7, 0)),
+                new InMemoryShard(new Row(2, 7), new Row(4, 7), new Row(6, 7)));
+        final List<Object> results = Lists.newArrayList();
+        for (final List<Object> page : pages) {
+            results.addAll(page);
+        }
+        assertEquals(Lists.<Object>newArrayList(new Row(7, 0), new Row(1, 7), new Row(2, 7), new Row(3, 7),
+                new Row(4, 7), new Row(5, 7), new Row(6, 7)), results);
+    }
+
+    /**
+     * @return the pages of results of a criteria with the given order, up to
+     *         and including the page without a next cursor
+     */
+    private List<List<Object>> seekAll(final Order order, final int pageSize, final Shard... shards) {
+        final List<List<Object>> pages = Lists.newArrayList();
+        String cursor = null;
+        do {
+            // every page needs a criteria of its own
+            final ShardedCriteriaImpl crit = new ShardedCriteriaImpl(new CriteriaId(nextCriteriaId++),
+                    Arrays.asList(shards), new CriteriaFactoryImpl(Row.class), new SequentialShardAccessStrategy());
+            crit.addOrder(order);
+            final SeekPage page = crit.seekPage(pageSize, cursor);
+            pages.add(page.getResults());
+            cursor = page.getNextCursor();
+            assertTrue("too many pages", pages.size() <= 20);
+        } while (cursor != null);
+        return pages;
+    }
+
+    private static List<Integer> valuesOf(final List<List<Object>> pages) {
+        final List<Integer> values = Lists.newArrayList();
+        for (final List<Object> page : pages) {
+            for (final Object row : page) {
+                values.add(((Row) row).getValue());
+            }
+        }
+        return values;
+    }
+
+    private List<?> listPage(final ShardAccessStrategy strategy, final Order order, final int firstResult,
+                             final int maxResults, final boolean distributedOffset, final Shard... shards) {
+        final ShardedCriteriaImpl crit = new ShardedCriteriaImpl(new CriteriaId(nextCriteriaId++),
+                Arrays.asList(shards), new CriteriaFactoryImpl(Row.class), strategy);
+        crit.addOrder(order);
+        // the tie-breaker the distributed offset adds itself
+        crit.addOrder(Order.asc("id"));
+        crit.setFirstResult(firstResult);
+        crit.setMaxResults(maxResults);
+        crit.setDistributedOffset(distributedOffset);
+        return crit.list();
+    }
+
+    private ShardedCriteriaImpl newCriteria(final Shard... shards) {
+        return new ShardedCriteriaImpl(new CriteriaId(nextCriteriaId++), Arrays.asList(shards),
+                new CriteriaFactoryDefaultMock(), new SequentialShardAccessStrategy());
+    }
 }
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.loadbalance;
+
+import junit.framework.TestCase;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.shards.ShardedSessionFactoryDefaultMock;
+import org.hibernate.shards.util.Lists;
+
+import java.util.List;
+
+public class LatencyAwareReplicaLoadBalancerTest extends TestCase {
+
+  private final SessionFactoryImplementor replica1 = new ShardedSessionFactoryDefaultMock();
+  private final SessionFactoryImplementor replica2 = new ShardedSessionFactoryDefaultMock();
+  private final List<SessionFactoryImplementor> replicas = Lists.newArrayList(replica1, replica2);
+
+  public void testUnmeasuredReplicasArePreferred() {
+    LatencyAwareReplicaLoadBalancer balancer = new LatencyAwareReplicaLoadBalancer();
+    balancer.recordLatency(replica1, 10);
+    for (int i = 0; i < 4; i++) {
+      assertSame(replica2, balancer.getNextReplica(replicas));
+    }
+  }
+
+  public void testFastestReplicaIsChosen() {
+    LatencyAwareReplicaLoadBalancer balancer = new LatencyAwareReplicaLoadBalancer();
+    balancer.recordLatency(replica1, 1000);
+    balancer.recordLatency(replica2, 10);
+    for (int i = 0; i < 4; i++) {
+      assertSame(replica2, balancer.getNextReplica(replicas));
+    }
+  }
+
+  public void testAverageMovesTowardsNewSamples() {
+    LatencyAwareReplicaLoadBalancer balancer = new LatencyAwareReplicaLoadBalancer();
+    assertEquals(-1, balancer.getAverageLatency(replica1));
+    balancer.recordLatency(replica1, 1000);
+    assertEquals(1000, balancer.getAverageLatency(replica1));
+    balancer.recordLatency(replica1, 6000);
+    assertEquals(2000, balancer.getAverageLatency(replica1));
+  }
+
+  public void testEquallyFastReplicasShareTheLoad() {
+    LatencyAwareReplicaLoadBalancer balancer = new LatencyAwareReplicaLoadBalancer();
+    balancer.recordLatency(replica1, 10);
+    balancer.recordLatency(replica2, 10);
+    assertNotSame(balancer.getNextReplica(replicas), balancer.getNextReplica(replicas));
+  }
+
+  public void testSlowReplicaIsStillProbed() {
+    LatencyAwareReplicaLoadBalancer balancer = new LatencyAwareReplicaLoadBalancer();
+    balancer.recordLatency(replica1, 1000);
+    balancer.recordLatency(replica2, 10);
+    int slowReads = 0;
+    for (int i = 0; i < 4 * LatencyAwareReplicaLoadBalancer.PROBE_INTERVAL; i++) {
+      if (balancer.getNextReplica(replicas) == replica1) {
+        slowReads++;
+      }
+    }
+    assertEquals(2, slowReads);
+  }
+
+  public void testFastestReplicaDoesNotGetAllReads() {
+    SessionFactoryImplementor replica3 = new ShardedSessionFactoryDefaultMock();
+    List<SessionFactoryImplementor> threeReplicas = Lists.newArrayList(replica1, replica2, replica3);
+    LatencyAwareReplicaLoadBalancer balancer = new LatencyAwareReplicaLoadBalancer();
+    balancer.recordLatency(replica1, 10);
+    balancer.recordLatency(replica2, 20);
+    balancer.recordLatency(replica3, 1000);
+    int fastestReads = 0;
+    int secondReads = 0;
+    for (int i = 0; i < 300; i++) {
+      SessionFactoryImplementor replica = balancer.getNextReplica(threeReplicas);
+      if (replica == replica1) {
+        fastestReads++;
+      } else if (replica == replica2) {
+        secondReads++;
+      }
+    }
+    assertTrue(fastestReads > secondReads);
+    assertTrue(secondReads > 0);
+  }
+}
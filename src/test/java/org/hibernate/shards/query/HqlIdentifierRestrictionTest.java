@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.query;
+
+import org.hibernate.shards.ShardId;
+import org.hibernate.shards.strategy.resolution.IdentifierShardResolver;
+import org.hibernate.shards.strategy.resolution.ShardResolutionStrategy;
+import org.hibernate.shards.strategy.selection.ShardResolutionStrategyData;
+import org.hibernate.shards.util.Maps;
+import org.hibernate.shards.util.Sets;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class HqlIdentifierRestrictionTest {
+
+    private static final Set<String> ID = Collections.singleton("id");
+
+    // entity n lives on shard n % 10
+    private static final IdentifierShardResolver SHARDS = new IdentifierShardResolver("Building", Long.class,
+            new ShardResolutionStrategy() {
+
+                @Override
+                public List<ShardId> selectShardIdsFromShardResolutionStrategyData(
+                        final ShardResolutionStrategyData data) {
+                    return Collections.singletonList(new ShardId((int) ((Long) data.getId() % 10)));
+                }
+            });
+
+    private final Map<Object, Object> parameters = Maps.newHashMap();
+
+    @Test
+    public void testNamedParameter() {
+        final HqlIdentifierRestriction restriction =
+                HqlIdentifierRestriction.analyze("from Building b where b.id = :id and b.name = :name");
+        assertEquals("Building", restriction.getEntityName());
+        parameters.put("id", 13L);
+        assertEquals(shards(3), restriction.selectShardIds(ID, parameters, SHARDS));
+    }
+
+    @Test
+    public void testPositionalParameters() {
+        final HqlIdentifierRestriction restriction = HqlIdentifierRestriction.analyze(
+                "select b.name, ? from Building b where b.name = ? and ? = b.id");
+        parameters.put(2, 25);
+        assertEquals(shards(5), restriction.selectShardIds(ID, parameters, SHARDS));
+    }
+
+    @Test
+    public void testInList() {
+        final HqlIdentifierRestriction restriction =
+                HqlIdentifierRestriction.analyze("delete from Building where id in (:ids) or id in (4, 7L)");
+        parameters.put("ids", Arrays.asList(1L, 11L, 2L));
+        assertEquals(shards(1, 2, 4, 7), restriction.selectShardIds(ID, parameters, SHARDS));
+    }
+
+    @Test
+    public void testConjunction() {
+        final HqlIdentifierRestriction restriction = HqlIdentifierRestriction.analyze(
+                "from Building b where b.id in (:ids) and (b.id = :id or b.id = 3)");
+        parameters.put("ids", Arrays.asList(1L, 2L, 3L));
+        parameters.put("id", 2L);
+        assertEquals(shards(2, 3), restriction.selectShardIds(ID, parameters, SHARDS));
+    }
+
+    @Test
+    public void testUnrestricted() {
+        parameters.put("id", 1L);
+        parameters.put("name", "b");
+        assertNull(HqlIdentifierRestriction.analyze("from Building b where b.id = :id or b.name = :name")
+                .selectShardIds(ID, parameters, SHARDS));
+        assertNull(HqlIdentifierRestriction.analyze("from Building b where b.name = :name")
+                .selectShardIds(ID, parameters, SHARDS));
+        assertNull(HqlIdentifierRestriction.analyze("from Building b where b.id = :other")
+                .selectShardIds(ID, parameters, SHARDS));
+        assertNull(HqlIdentifierRestriction.analyze("from Building b join b.floors f where id = :id")
+                .selectShardIds(ID, parameters, SHARDS));
+        assertNull(HqlIdentifierRestriction.analyze("from Building b where b.id = :id")
+                .selectShardIds(Collections.singleton("buildingId"), parameters, SHARDS));
+        assertSame(HqlIdentifierRestriction.NONE, HqlIdentifierRestriction.analyze("select * from building"));
+    }
+
+    @Test
+    public void testPartitionableParameterList() {
+        assertEquals("ids", HqlIdentifierRestriction.analyze(
+                "from Building b where b.id in (:ids) and (b.name = :name or b.id = 3)")
+                .getPartitionableParameterList(ID));
+        assertNull(HqlIdentifierRestriction.analyze("from Building b where b.id in (:ids) or b.id = 3")
+                .getPartitionableParameterList(ID));
+        assertNull(HqlIdentifierRestriction.analyze("from Building b where b.id in (:ids) and b.parent.id in (:ids)")
+                .getPartitionableParameterList(ID));
+        assertNull(HqlIdentifierRestriction.analyze("from Building b where b.id in (:ids, :more)")
+                .getPartitionableParameterList(ID));
+        assertNull(HqlIdentifierRestriction.analyze("from Building b where b.name in (:names)")
+                .getPartitionableParameterList(ID));
+    }
+
+    private static Set<ShardId> shards(final int... ids) {
+        final Set<ShardId> shardIds = Sets.newHashSet();
+        for (final int id : ids) {
+            shardIds.add(new ShardId(id));
+        }
+        return shardIds;
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.query;
+
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.strategy.exit.PartialAggregates;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HqlQueryAnalysisTest {
+
+    @Test
+    public void testEntityOrders() {
+        final HqlQueryAnalysis analysis =
+                HqlQueryAnalysis.analyze("from Building b where b.id > :id order by b.name desc, b.address.city");
+        assertNull(analysis.getAggregates());
+        assertFalse(analysis.isDistinct());
+        final List<InMemoryOrderBy> orders = analysis.getOrders();
+        assertEquals(2, orders.size());
+        assertEquals("name", orders.get(0).getExpression());
+        assertFalse(orders.get(0).isAscending());
+        assertEquals(-1, orders.get(0).getProjectionColumn());
+        assertEquals("address.city", orders.get(1).getExpression());
+        assertTrue(orders.get(1).isAscending());
+    }
+
+    @Test
+    public void testSelectedColumnOrders() {
+        final HqlQueryAnalysis analysis = HqlQueryAnalysis.analyze(
+                "select distinct b.name, b.height as h from Building b order by h desc, b.name");
+        assertTrue(analysis.isDistinct());
+        final List<InMemoryOrderBy> orders = analysis.getOrders();
+        assertEquals(1, orders.get(0).getProjectionColumn());
+        assertFalse(orders.get(0).isAscending());
+        assertEquals(0, orders.get(1).getProjectionColumn());
+    }
+
+    @Test
+    public void testAggregates() {
+        final HqlQueryAnalysis analysis = HqlQueryAnalysis.analyze(
+                "select b.name, count(*), SUM(b.height), max(b.height) from Building b group by b.name "
+                        + "order by count(*) desc");
+        assertEquals(Arrays.asList(PartialAggregates.group(), PartialAggregates.count(),
+                PartialAggregates.sum(), PartialAggregates.max()), analysis.getAggregates());
+        assertEquals(1, analysis.getOrders().get(0).getProjectionColumn());
+    }
+
+    @Test
+    public void testMergesAggregates() {
+        final HqlQueryAnalysis analysis =
+                HqlQueryAnalysis.analyze("select b.name, count(b) from Building b group by b.name order by b.name");
+        final ExitOperationsQueryCollector collector = new ExitOperationsQueryCollector();
+        collector.setAggregates(analysis.getAggregates());
+        collector.setOrders(analysis.getOrders());
+        final List<Object> results = collector.apply(Arrays.<Object>asList(
+                new Object[]{"b", 2L}, new Object[]{"a", 1L}, new Object[]{"b", 3L}));
+        assertEquals(2, results.size());
+        assertArrayEquals(new Object[]{"a", 1L}, (Object[]) results.get(0));
+        assertArrayEquals(new Object[]{"b", 5L}, (Object[]) results.get(1));
+    }
+
+    @Test
+    public void testNothingToMerge() {
+        assertSame(HqlQueryAnalysis.CONCATENATE, HqlQueryAnalysis.analyze("delete from Building"));
+        assertSame(HqlQueryAnalysis.CONCATENATE, HqlQueryAnalysis.analyze("select new Foo(b.name) from Building b"));
+        assertTrue(HqlQueryAnalysis.analyze("from Building").getOrders().isEmpty());
+    }
+
+    @Test
+    public void testUnmergeableQueriesAreConcatenated() {
+        final String[] queries = {
+                "from Order o join o.lines l order by o.date",
+                "select o.name from Order o order by o.date",
+                "from Order o order by lower(o.name)",
+                "from Order o, Line l where l.order = o order by o.id",
+                "select new Foo(b.name) from Building b order by b.name",
+                "select o.name, (select max(l.price) from Line l where l.order = o) from Order o order by o.date"};
+        for (final String hql : queries) {
+            assertSame(hql, HqlQueryAnalysis.CONCATENATE, HqlQueryAnalysis.analyze(hql));
+        }
+    }
+
+    @Test
+    public void testUnmergeableAggregatesAreRejected() {
+        final String[] queries = {
+                "select avg(b.height) from Building b",
+                "select b.name, count(*) from Building b group by b.name having count(*) > 1",
+                "select count(distinct b.name) from Building b",
+                "select new Foo(b.name, count(*)) from Building b group by b.name",
+                "select new Foo(max(b.height)) from Building b",
+                "select max(b.height) + 1 from Building b",
+                "select b.name, count(*) from Building b",
+                "select b.name, count(*) from Building b group by b.name order by lower(b.name)"};
+        for (final String hql : queries) {
+            try {
+                HqlQueryAnalysis.analyze(hql);
+                fail(hql);
+            } catch (UnsupportedOperationException e) {
+                // good
+            }
+        }
+    }
+
+    @Test
+    public void testNullsOrderingIsNotAnalysed() {
+        assertSame(HqlQueryAnalysis.CONCATENATE, HqlQueryAnalysis.analyze("from Order o order by o.date nulls last"));
+        assertSame(HqlQueryAnalysis.CONCATENATE,
+                HqlQueryAnalysis.analyze("from Order o order by o.date desc nulls first, o.id"));
+    }
+}
@@ -21,6 +21,7 @@ package org.hibernate.shards.query;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 import org.hibernate.Session;
+import org.hibernate.engine.SessionFactoryImplementor;
 
 /**
  * @author Maulik Shah
@@ -36,4 +37,9 @@ public class QueryFactoryDefaultMock implements QueryFactory {
     public SQLQuery createSQLQuery(Session session) {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public String getQueryString(SessionFactoryImplementor sessionFactory) {
+        throw new UnsupportedOperationException();
+    }
 }
@@ -37,6 +37,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Future;
 import java.util.Locale;
 import java.util.Map;
 
@@ -55,6 +56,21 @@ public class ShardedQueryDefaultMock implements ShardedQuery {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public boolean isReadOnlyRequested() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Future<List<Object>> listAsync() throws HibernateException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Future<Object> uniqueResultAsync() throws HibernateException {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public String getQueryString() {
         throw new UnsupportedOperationException();
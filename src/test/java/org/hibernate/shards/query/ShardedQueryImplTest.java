@@ -0,0 +1,326 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.query;
+
+import org.hibernate.Query;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.ShardId;
+import org.hibernate.shards.defaultmock.ClassMetadataDefaultMock;
+import org.hibernate.shards.defaultmock.QueryDefaultMock;
+import org.hibernate.shards.defaultmock.SessionFactoryDefaultMock;
+import org.hibernate.shards.defaultmock.TypeDefaultMock;
+import org.hibernate.shards.strategy.access.SequentialShardAccessStrategy;
+import org.hibernate.shards.strategy.access.ShardAccessStrategyDefaultMock;
+import org.hibernate.shards.strategy.resolution.ShardResolutionStrategy;
+import org.hibernate.shards.strategy.selection.ShardResolutionStrategyData;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.type.Type;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedQueryImplTest {
+
+    @Test
+    public void testPushesPageEndToShards() {
+        final RecordingShard shard = new RecordingShard("from Building b order by b.name");
+        final ShardedQueryImpl query = newQuery(shard);
+
+        query.setFirstResult(5);
+        query.setMaxResults(10);
+        // the query isn't analysed, and so established on a shard, until it executes
+        assertEquals(0, shard.establishCount);
+        assertTrue(shard.events.isEmpty());
+
+        query.list();
+        final RecordingQuery recorded = shard.replay();
+        assertEquals(Integer.valueOf(15), recorded.maxResults);
+        assertEquals(Integer.valueOf(15), recorded.fetchSize);
+
+        query.setFetchSize(3);
+        query.setFirstResult(20);
+        query.list();
+        final RecordingQuery replayed = shard.replay();
+        assertEquals(Integer.valueOf(30), replayed.maxResults);
+        assertEquals(Integer.valueOf(3), replayed.fetchSize);
+    }
+
+    @Test
+    public void testDoesNotLimitAggregates() {
+        final RecordingShard shard =
+                new RecordingShard("select b.name, count(*) from Building b group by b.name");
+        final ShardedQueryImpl query = newQuery(shard);
+        query.setMaxResults(10);
+        query.list();
+        final RecordingQuery recorded = shard.replay();
+        assertNull(recorded.maxResults);
+        assertNull(recorded.fetchSize);
+    }
+
+    @Test
+    public void testPartitionsIdentifierListByShard() {
+        final String hql = "from Building b where b.id in (:ids) and b.name = :name";
+        final RecordingShard even = new RecordingShard(hql, new ShardId(0));
+        final RecordingShard odd = new RecordingShard(hql, new ShardId(1));
+        final RecordingShard other = new RecordingShard(hql, new ShardId(2));
+        // building n lives on shard n % 2
+        final ShardedQueryImpl query = new ShardedQueryImpl(new QueryId(0), Lists.<Shard>newArrayList(even, odd, other),
+                new AdHocQueryFactoryImpl(hql), new ShardAccessStrategyDefaultMock(), new ShardResolutionStrategy() {
+
+                    @Override
+                    public List<ShardId> selectShardIdsFromShardResolutionStrategyData(
+                            final ShardResolutionStrategyData data) {
+                        return Collections.singletonList(new ShardId((int) ((Long) data.getId() % 2)));
+                    }
+                });
+        query.setString("name", "b");
+        query.setParameterList("ids", Arrays.asList(1L, 2L, 3L, 5L));
+
+        assertEquals(Arrays.<Shard>asList(even, odd), query.getTargetShards());
+        assertEquals(Arrays.<Object>asList(2L), even.replay().parameterList);
+        assertEquals(Arrays.<Object>asList(1L, 3L, 5L), odd.replay().parameterList);
+
+        query.setParameterList("ids", Arrays.asList(7L));
+        assertEquals(Arrays.<Shard>asList(odd), query.getTargetShards());
+        assertEquals(Arrays.<Object>asList(7L), odd.replay().parameterList);
+
+        // working out the target shards doesn't open a Session on any shard
+        assertEquals(0, even.establishCount + odd.establishCount + other.establishCount);
+    }
+
+    @Test
+    public void testConcatenatesQueriesThatCannotBeMerged() {
+        final String hql = "select o.name from Order o order by o.date";
+        final RecordingShard shard1 = new RecordingShard(hql).withResults("b", "c");
+        final RecordingShard shard2 = new RecordingShard(hql).withResults("a");
+        final ShardedQueryImpl query = new ShardedQueryImpl(new QueryId(0), Lists.<Shard>newArrayList(shard1, shard2),
+                new AdHocQueryFactoryImpl(hql), new SequentialShardAccessStrategy());
+        assertEquals(Arrays.asList("b", "c", "a"), query.list());
+        assertEquals("b", query.uniqueResult());
+    }
+
+    @Test
+    public void testIterateMergesOrderedResults() {
+        final String hql = "select b.name from Building b order by b.name desc";
+        final RecordingShard shard1 = new RecordingShard(hql).withResults("d", "b");
+        final RecordingShard shard2 = new RecordingShard(hql).withResults("c", "a");
+        final ShardedQueryImpl query = new ShardedQueryImpl(new QueryId(0), Lists.<Shard>newArrayList(shard1, shard2),
+                new AdHocQueryFactoryImpl(hql), new SequentialShardAccessStrategy());
+        final List<Object> results = Lists.newArrayList();
+        for (final Iterator<?> iter = query.iterate(); iter.hasNext(); ) {
+            results.add(iter.next());
+        }
+        assertEquals(Arrays.<Object>asList("d", "c", "b", "a"), results);
+    }
+
+    @Test
+    public void testIterateListsDistinctResults() {
+        final String hql = "select distinct b.name from Building b";
+        final RecordingShard shard1 = new RecordingShard(hql).withResults("b", "a");
+        final RecordingShard shard2 = new RecordingShard(hql).withResults("a", "c");
+        final ShardedQueryImpl query = new ShardedQueryImpl(new QueryId(0), Lists.<Shard>newArrayList(shard1, shard2),
+                new AdHocQueryFactoryImpl(hql), new SequentialShardAccessStrategy());
+        final List<Object> results = Lists.newArrayList();
+        for (final Iterator<?> iter = query.iterate(); iter.hasNext(); ) {
+            results.add(iter.next());
+        }
+        assertEquals(Arrays.<Object>asList("b", "a", "c"), results);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testScrollRejectsAggregates() {
+        newQuery(new RecordingShard("select count(*) from Building b")).scroll();
+    }
+
+    private static ShardedQueryImpl newQuery(final RecordingShard shard) {
+        return new ShardedQueryImpl(new QueryId(0), Collections.<Shard>singletonList(shard),
+                new AdHocQueryFactoryImpl(shard.hql), new SequentialShardAccessStrategy());
+    }
+
+    private static class RecordingShard extends ShardDefaultMock {
+
+        private final String hql;
+
+        private final List<QueryEvent> events = Lists.newArrayList();
+
+        private final ShardId shardId;
+
+        private List<Object> results = Collections.emptyList();
+
+        private int establishCount;
+
+        RecordingShard(final String hql) {
+            this(hql, new ShardId(0));
+        }
+
+        RecordingShard(final String hql, final ShardId shardId) {
+            this.hql = hql;
+            this.shardId = shardId;
+        }
+
+        @Override
+        public Set<ShardId> getShardIds() {
+            return Collections.singleton(shardId);
+        }
+
+        @Override
+        public SessionFactoryImplementor getSessionFactoryImplementor() {
+            return new SessionFactoryDefaultMock() {
+
+                @Override
+                public String getImportedClassName(final String name) {
+                    return "org.example." + name;
+                }
+
+                @Override
+                public ClassMetadata getClassMetadata(final String entityName) {
+                    return new BuildingMetadata();
+                }
+            };
+        }
+
+        @Override
+        public Query getQueryById(final QueryId queryId) {
+            return null;
+        }
+
+        @Override
+        public Query establishQuery(final ShardedQuery shardedQuery) {
+            establishCount++;
+            return new RecordingQuery(hql);
+        }
+
+        @Override
+        public void addQueryEvent(final QueryId id, final QueryEvent event) {
+            events.add(event);
+        }
+
+        RecordingShard withResults(final Object... results) {
+            this.results = Arrays.asList(results);
+            return this;
+        }
+
+        @Override
+        public List<Object> list(final QueryId queryId) {
+            return results;
+        }
+
+        @Override
+        public Object uniqueResult(final QueryId queryId) {
+            return results.isEmpty() ? null : results.get(0);
+        }
+
+        @Override
+        public Iterator<?> iterate(final QueryId queryId) {
+            return results.iterator();
+        }
+
+        RecordingQuery replay() {
+            final RecordingQuery query = new RecordingQuery(hql);
+            for (final QueryEvent event : events) {
+                event.onEvent(query);
+            }
+            return query;
+        }
+    }
+
+    private static class RecordingQuery extends QueryDefaultMock {
+
+        private final String hql;
+
+        private Integer maxResults;
+
+        private Integer fetchSize;
+
+        private Collection<?> parameterList;
+
+        RecordingQuery(final String hql) {
+            this.hql = hql;
+        }
+
+        @Override
+        public String getQueryString() {
+            return hql;
+        }
+
+        @Override
+        public Query setMaxResults(final int maxResults) {
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        @Override
+        public Query setFetchSize(final int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        @Override
+        public Query setString(final String name, final String val) {
+            return this;
+        }
+
+        @Override
+        public Query setParameterList(final String name, final Collection vals) {
+            this.parameterList = vals;
+            return this;
+        }
+    }
+
+    private static class BuildingMetadata extends ClassMetadataDefaultMock {
+
+        @Override
+        public String getEntityName() {
+            return "org.example.Building";
+        }
+
+        @Override
+        public String getIdentifierPropertyName() {
+            return "buildingId";
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return new String[]{"name"};
+        }
+
+        @Override
+        public Type getIdentifierType() {
+            return new TypeDefaultMock() {
+
+                @Override
+                public Class getReturnedClass() {
+                    return Long.class;
+                }
+            };
+        }
+    }
+}
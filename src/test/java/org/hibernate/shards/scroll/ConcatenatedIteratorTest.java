@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.scroll;
+
+import junit.framework.TestCase;
+import org.hibernate.Hibernate;
+import org.hibernate.JDBCException;
+import org.hibernate.engine.HibernateIterator;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Maps;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class ConcatenatedIteratorTest extends TestCase {
+
+    private final Shard shard1 = new ShardDefaultMock();
+    private final Shard shard2 = new ShardDefaultMock();
+    private final Shard shard3 = new ShardDefaultMock();
+    private final List<Shard> shards = Lists.newArrayList(shard1, shard2, shard3);
+
+    private final Map<Shard, ClosableIterator> iterators = Maps.newHashMap();
+
+    private final List<Shard> opened = Lists.newArrayList();
+
+    private final ShardOperation<Iterator<?>> openIterator = new ShardOperation<Iterator<?>>() {
+        public Iterator<?> execute(final Shard shard) {
+            opened.add(shard);
+            return iterators.get(shard);
+        }
+
+        public String getOperationName() {
+            return "iterate";
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        iterators.put(shard1, new ClosableIterator(Lists.newArrayList(1, 2)));
+        iterators.put(shard2, new ClosableIterator(Collections.emptyList()));
+        iterators.put(shard3, new ClosableIterator(Lists.newArrayList(3, 4, 5)));
+    }
+
+    public void testIteratesEveryShard() {
+        final Iterator<?> iter = new ConcatenatedIterator(shards, openIterator, 0, -1);
+        assertEquals(Lists.<Object>newArrayList(1, 2, 3, 4, 5), drain(iter));
+        for (final ClosableIterator shardIter : iterators.values()) {
+            assertTrue(shardIter.closed);
+        }
+    }
+
+    public void testShardsAreIteratedLazily() {
+        final Iterator<?> iter = new ConcatenatedIterator(shards, openIterator, 0, -1);
+        assertEquals(1, iter.next());
+        assertEquals(2, iter.next());
+        assertEquals(Lists.newArrayList(shard1), opened);
+        Hibernate.close(iter);
+        assertTrue(iterators.get(shard1).closed);
+        assertFalse(iter.hasNext());
+        assertEquals(Lists.newArrayList(shard1), opened);
+    }
+
+    public void testFirstResultAndMaxResults() {
+        final Iterator<?> iter = new ConcatenatedIterator(shards, openIterator, 1, 2);
+        assertEquals(Lists.<Object>newArrayList(2, 3), drain(iter));
+        assertTrue(iterators.get(shard3).closed);
+    }
+
+    private static List<Object> drain(final Iterator<?> iter) {
+        final List<Object> results = Lists.newArrayList();
+        while (iter.hasNext()) {
+            results.add(iter.next());
+        }
+        return results;
+    }
+
+    private static final class ClosableIterator implements HibernateIterator {
+
+        private final Iterator<?> delegate;
+
+        private boolean closed;
+
+        private ClosableIterator(final List<?> results) {
+            this.delegate = results.iterator();
+        }
+
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        public Object next() {
+            return delegate.next();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() throws JDBCException {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.scroll;
+
+import junit.framework.TestCase;
+import org.hibernate.ScrollableResults;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Maps;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class ConcatenatedScrollableResultsTest extends TestCase {
+
+    private final Shard shard1 = new ShardDefaultMock();
+    private final Shard shard2 = new ShardDefaultMock();
+    private final Shard shard3 = new ShardDefaultMock();
+    private final List<Shard> shards = Lists.newArrayList(shard1, shard2, shard3);
+
+    private final Map<Shard, ListScrollableResults> cursors = Maps.newHashMap();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cursors.put(shard1, new ListScrollableResults(Lists.newArrayList(1, 2)));
+        cursors.put(shard2, new ListScrollableResults(Collections.emptyList()));
+        cursors.put(shard3, new ListScrollableResults(Lists.newArrayList(3, 4, 5)));
+    }
+
+    public void testStreamsEveryShard() {
+        final ScrollableResults results = new ConcatenatedScrollableResults(shards, new OpenCursor(), 0, -1);
+        assertEquals(Lists.<Object>newArrayList(1, 2, 3, 4, 5), drain(results));
+        for (final ListScrollableResults cursor : cursors.values()) {
+            assertTrue(cursor.isClosed());
+        }
+    }
+
+    public void testFirstResultAndMaxResults() {
+        final OpenCursor openCursor = new OpenCursor();
+        final ScrollableResults results = new ConcatenatedScrollableResults(shards, openCursor, 1, 2);
+        assertEquals(Lists.<Object>newArrayList(2, 3), drain(results));
+        // the cursor we stopped in is closed right away
+        assertTrue(cursors.get(shard3).isClosed());
+    }
+
+    public void testCursorsAreOpenedLazily() {
+        final OpenCursor openCursor = new OpenCursor();
+        final ScrollableResults results = new ConcatenatedScrollableResults(shards, openCursor, 0, -1);
+        assertTrue(results.next());
+        assertEquals(0, results.getRowNumber());
+        assertEquals(1, results.get(0));
+        assertEquals(1, openCursor.opened);
+        results.close();
+        assertTrue(cursors.get(shard1).isClosed());
+        assertFalse(results.next());
+        assertEquals(1, openCursor.opened);
+    }
+
+    public void testForwardOnly() {
+        final ScrollableResults results = new ConcatenatedScrollableResults(shards, new OpenCursor(), 0, -1);
+        try {
+            results.previous();
+            fail("expected uoe");
+        } catch (UnsupportedOperationException uoe) {
+            // good
+        }
+    }
+
+    private static List<Object> drain(final ScrollableResults results) {
+        final List<Object> rows = Lists.newArrayList();
+        while (results.next()) {
+            rows.add(results.get()[0]);
+        }
+        return rows;
+    }
+
+    private class OpenCursor implements ShardOperation<ScrollableResults> {
+
+        private int opened;
+
+        public ScrollableResults execute(final Shard shard) {
+            opened++;
+            return cursors.get(shard);
+        }
+
+        public String getOperationName() {
+            return "scroll";
+        }
+    }
+}
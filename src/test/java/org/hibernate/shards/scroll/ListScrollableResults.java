@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.scroll;
+
+import org.hibernate.HibernateException;
+
+import java.util.List;
+
+/**
+ * Forward-only cursor over a list of single-column rows.
+ */
+public class ListScrollableResults extends ScrollableResultsDefaultMock {
+
+    private final List<?> rows;
+
+    private int index = -1;
+
+    private boolean closed;
+
+    public ListScrollableResults(final List<?> rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public boolean next() throws HibernateException {
+        return ++index < rows.size();
+    }
+
+    @Override
+    public Object[] get() throws HibernateException {
+        return new Object[]{get(0)};
+    }
+
+    @Override
+    public Object get(final int col) throws HibernateException {
+        return rows.get(index);
+    }
+
+    @Override
+    public void close() throws HibernateException {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
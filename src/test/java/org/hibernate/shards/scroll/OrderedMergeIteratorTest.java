@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package org.hibernate.shards.scroll;
+
+import junit.framework.TestCase;
+import org.hibernate.Hibernate;
+import org.hibernate.JDBCException;
+import org.hibernate.engine.HibernateIterator;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Maps;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class OrderedMergeIteratorTest extends TestCase {
+
+    private static final Comparator<Object> NATURAL_ORDER = new Comparator<Object>() {
+        @SuppressWarnings("unchecked")
+        public int compare(final Object o1, final Object o2) {
+            return ((Comparable<Object>) o1).compareTo(o2);
+        }
+    };
+
+    private final Shard shard1 = new ShardDefaultMock();
+    private final Shard shard2 = new ShardDefaultMock();
+    private final Shard shard3 = new ShardDefaultMock();
+    private final List<Shard> shards = Lists.newArrayList(shard1, shard2, shard3);
+
+    private final Map<Shard, ClosableIterator> iterators = Maps.newHashMap();
+
+    private final ShardOperation<Iterator<?>> openIterator = new ShardOperation<Iterator<?>>() {
+        public Iterator<?> execute(final Shard shard) {
+            return iterators.get(shard);
+        }
+
+        public String getOperationName() {
+            return "iterate";
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        iterators.put(shard1, new ClosableIterator(Lists.newArrayList(1, 4, 7, 8)));
+        iterators.put(shard2, new ClosableIterator(Collections.emptyList()));
+        iterators.put(shard3, new ClosableIterator(Lists.newArrayList(2, 3, null, 9)));
+    }
+
+    public void testMergesInOrder() {
+        final Iterator<?> iter = new OrderedMergeIterator(shards, openIterator, NATURAL_ORDER, 0, -1);
+        assertEquals(Lists.<Object>newArrayList(1, 2, 3, 4, 7, 8, 9), drain(iter));
+        for (final ClosableIterator shardIter : iterators.values()) {
+            assertTrue(shardIter.closed);
+        }
+    }
+
+    public void testFirstResultAndMaxResults() {
+        final Iterator<?> iter = new OrderedMergeIterator(shards, openIterator, NATURAL_ORDER, 2, 3);
+        assertEquals(Lists.<Object>newArrayList(3, 4, 7), drain(iter));
+        // stopping early releases every iterator
+        for (final ClosableIterator shardIter : iterators.values()) {
+            assertTrue(shardIter.closed);
+        }
+    }
+
+    public void testClose() {
+        final Iterator<?> iter = new OrderedMergeIterator(shards, openIterator, NATURAL_ORDER, 0, -1);
+        assertEquals(1, iter.next());
+        Hibernate.close(iter);
+        assertTrue(iterators.get(shard1).closed);
+        assertTrue(iterators.get(shard3).closed);
+        assertFalse(iter.hasNext());
+    }
+
+    private static List<Object> drain(final Iterator<?> iter) {
+        final List<Object> results = Lists.newArrayList();
+        while (iter.hasNext()) {
+            results.add(iter.next());
+        }
+        return results;
+    }
+
+    private static final class ClosableIterator implements HibernateIterator {
+
+        private final Iterator<?> delegate;
+
+        private boolean closed;
+
+        private ClosableIterator(final List<?> results) {
+            this.delegate = results.iterator();
+        }
+
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        public Object next() {
+            return delegate.next();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() throws JDBCException {
+            closed = true;
+        }
+    }
+}
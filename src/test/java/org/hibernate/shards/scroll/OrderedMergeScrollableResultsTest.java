@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.scroll;
+
+import junit.framework.TestCase;
+import org.hibernate.ScrollableResults;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.util.Lists;
+import org.hibernate.shards.util.Maps;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public class OrderedMergeScrollableResultsTest extends TestCase {
+
+    private static final Comparator<Object> NATURAL_ORDER = new Comparator<Object>() {
+        @SuppressWarnings("unchecked")
+        public int compare(final Object o1, final Object o2) {
+            return ((Comparable<Object>) o1).compareTo(o2);
+        }
+    };
+
+    private final Shard shard1 = new ShardDefaultMock();
+    private final Shard shard2 = new ShardDefaultMock();
+    private final Shard shard3 = new ShardDefaultMock();
+    private final List<Shard> shards = Lists.newArrayList(shard1, shard2, shard3);
+
+    private final Map<Shard, ListScrollableResults> cursors = Maps.newHashMap();
+
+    private final ShardOperation<ScrollableResults> openCursor = new ShardOperation<ScrollableResults>() {
+        public ScrollableResults execute(final Shard shard) {
+            return cursors.get(shard);
+        }
+
+        public String getOperationName() {
+            return "scroll";
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cursors.put(shard1, new ListScrollableResults(Lists.newArrayList(1, 4, 7, 8)));
+        cursors.put(shard2, new ListScrollableResults(Collections.emptyList()));
+        cursors.put(shard3, new ListScrollableResults(Lists.newArrayList(2, 3, null, 9)));
+    }
+
+    public void testMergesInOrder() {
+        final ScrollableResults results =
+                new OrderedMergeScrollableResults(shards, openCursor, NATURAL_ORDER, 0, -1);
+        assertEquals(Lists.<Object>newArrayList(1, 2, 3, 4, 7, 8, 9), drain(results));
+        for (final ListScrollableResults cursor : cursors.values()) {
+            assertTrue(cursor.isClosed());
+        }
+    }
+
+    public void testMergesInReverseOrder() {
+        cursors.put(shard1, new ListScrollableResults(Lists.newArrayList(8, 7, 4, 1)));
+        cursors.put(shard3, new ListScrollableResults(Lists.newArrayList(9, 3, 2)));
+        final ScrollableResults results = new OrderedMergeScrollableResults(
+                shards, openCursor, Collections.reverseOrder(NATURAL_ORDER), 0, -1);
+        assertEquals(Lists.<Object>newArrayList(9, 8, 7, 4, 3, 2, 1), drain(results));
+    }
+
+    public void testFirstResultAndMaxResults() {
+        final ScrollableResults results =
+                new OrderedMergeScrollableResults(shards, openCursor, NATURAL_ORDER, 2, 3);
+        assertEquals(Lists.<Object>newArrayList(3, 4, 7), drain(results));
+        // stopping early releases every cursor
+        for (final ListScrollableResults cursor : cursors.values()) {
+            assertTrue(cursor.isClosed());
+        }
+    }
+
+    public void testCurrentRowComesFromOneShard() {
+        final ScrollableResults results =
+                new OrderedMergeScrollableResults(shards, openCursor, NATURAL_ORDER, 0, -1);
+        assertTrue(results.next());
+        assertTrue(results.isFirst());
+        assertEquals(1, results.get(0));
+        assertTrue(results.next());
+        assertEquals(2, results.get(0));
+        assertEquals(1, results.getRowNumber());
+        results.close();
+        assertTrue(cursors.get(shard1).isClosed());
+        assertTrue(cursors.get(shard3).isClosed());
+    }
+
+    private static List<Object> drain(final ScrollableResults results) {
+        final List<Object> rows = Lists.newArrayList();
+        while (results.next()) {
+            rows.add(results.get()[0]);
+        }
+        return rows;
+    }
+}
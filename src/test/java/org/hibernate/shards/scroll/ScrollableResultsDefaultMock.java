@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.scroll;
+
+import org.hibernate.HibernateException;
+import org.hibernate.ScrollableResults;
+import org.hibernate.type.Type;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+public class ScrollableResultsDefaultMock implements ScrollableResults {
+
+  public boolean next() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public boolean previous() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public boolean scroll(int i) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public boolean last() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public boolean first() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public void beforeFirst() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public void afterLast() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public boolean isFirst() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public boolean isLast() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public void close() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Object[] get() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Object get(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Type getType(int i) {
+    throw new UnsupportedOperationException();
+  }
+
+  public Integer getInteger(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Long getLong(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Float getFloat(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Boolean getBoolean(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Double getDouble(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Short getShort(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Byte getByte(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Character getCharacter(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public byte[] getBinary(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public String getText(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Blob getBlob(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Clob getClob(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public String getString(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public BigDecimal getBigDecimal(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public BigInteger getBigInteger(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Date getDate(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Locale getLocale(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public Calendar getCalendar(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public TimeZone getTimeZone(int col) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public int getRowNumber() throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+
+  public boolean setRowNumber(int i) throws HibernateException {
+    throw new UnsupportedOperationException();
+  }
+}
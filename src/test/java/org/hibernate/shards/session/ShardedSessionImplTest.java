@@ -23,7 +23,9 @@ import org.hibernate.EntityMode;
 import org.hibernate.HibernateException;
 import org.hibernate.Interceptor;
 import org.hibernate.Session;
+import org.hibernate.TypeMismatchException;
 import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGenerator;
 import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.shards.Shard;
 import org.hibernate.shards.ShardDefaultMock;
@@ -31,11 +33,14 @@ import org.hibernate.shards.ShardId;
 import org.hibernate.shards.ShardedSessionFactoryDefaultMock;
 import org.hibernate.shards.defaultmock.ClassMetadataDefaultMock;
 import org.hibernate.shards.defaultmock.InterceptorDefaultMock;
+import org.hibernate.shards.defaultmock.SessionFactoryDefaultMock;
 import org.hibernate.shards.defaultmock.SessionDefaultMock;
 import org.hibernate.shards.defaultmock.TypeDefaultMock;
 import org.hibernate.shards.engine.ShardedSessionFactoryImplementor;
 import org.hibernate.shards.strategy.ShardStrategy;
 import org.hibernate.shards.strategy.ShardStrategyDefaultMock;
+import org.hibernate.shards.strategy.resolution.ShardResolutionStrategy;
+import org.hibernate.shards.strategy.selection.ShardResolutionStrategyData;
 import org.hibernate.shards.strategy.selection.ShardSelectionStrategy;
 import org.hibernate.shards.strategy.selection.ShardSelectionStrategyDefaultMock;
 import org.hibernate.shards.util.InterceptorList;
@@ -43,6 +48,7 @@ import org.hibernate.shards.util.Lists;
 import org.hibernate.shards.util.Maps;
 import org.hibernate.shards.util.Pair;
 import org.hibernate.shards.util.Sets;
+import org.hibernate.type.LongType;
 import org.hibernate.type.Type;
 
 import java.io.Serializable;
@@ -542,6 +548,134 @@ public class ShardedSessionImplTest extends TestCase {
         assertTrue(ShardedSessionImpl.buildShardListFromSessionFactoryShardIdMap(sessionFactoryShardIdMap, true, resolver, interceptor).isEmpty());
     }
 
+    public void testGetShardsById() {
+        final Map<SessionFactoryImplementor, Set<ShardId>> sessionFactoryShardIdMap = Maps.newLinkedHashMap();
+        sessionFactoryShardIdMap.put(new SessionFactoryDefaultMock(), Sets.newHashSet(new ShardId(0)));
+        sessionFactoryShardIdMap.put(new SessionFactoryDefaultMock(), Sets.newHashSet(new ShardId(1), new ShardId(2)));
+        final ShardedSessionImpl ssi = new ShardedSessionImpl(
+                new ShardedSessionFactoryDefaultMock() {
+                    @Override
+                    public Map<SessionFactoryImplementor, Set<ShardId>> getSessionFactoryShardIdMap() {
+                        return sessionFactoryShardIdMap;
+                    }
+
+                    @Override
+                    public List<SessionFactoryImplementor> getReplicaSessionFactories(
+                            final SessionFactoryImplementor factory) {
+                        return Collections.emptyList();
+                    }
+                },
+                new ShardStrategyDefaultMock(),
+                Collections.<Class<?>>emptySet(),
+                false);
+        final List<Shard> shards = ssi.getShards();
+
+        assertEquals(Collections.singletonList(shards.get(1)), ssi.getShardsById(Collections.singleton(new ShardId(2))));
+        assertEquals(shards, ssi.getShardsById(Lists.newArrayList(new ShardId(2), new ShardId(0), new ShardId(1))));
+        try {
+            ssi.onShards(Collections.singleton(new ShardId(3)));
+            fail();
+        } catch (HibernateException e) {
+            // good
+        }
+    }
+
+    public void testGroupIdsByShard() {
+        final Map<SessionFactoryImplementor, Set<ShardId>> sessionFactoryShardIdMap = Maps.newLinkedHashMap();
+        sessionFactoryShardIdMap.put(new SessionFactoryDefaultMock(), Sets.newHashSet(new ShardId(0)));
+        sessionFactoryShardIdMap.put(new SessionFactoryDefaultMock(), Sets.newHashSet(new ShardId(1), new ShardId(2)));
+        final ShardResolutionStrategy resolutionStrategy = new ShardResolutionStrategy() {
+            @Override
+            public List<ShardId> selectShardIdsFromShardResolutionStrategyData(final ShardResolutionStrategyData srsd) {
+                final int id = (Integer) srsd.getId();
+                if (id < 0) {
+                    return Lists.newArrayList(new ShardId(0), new ShardId(1));
+                }
+                return Collections.singletonList(new ShardId(id % 3));
+            }
+        };
+        final ShardedSessionImpl ssi = new ShardedSessionImpl(
+                new ShardedSessionFactoryDefaultMock() {
+                    @Override
+                    public Map<SessionFactoryImplementor, Set<ShardId>> getSessionFactoryShardIdMap() {
+                        return sessionFactoryShardIdMap;
+                    }
+
+                    @Override
+                    public List<SessionFactoryImplementor> getReplicaSessionFactories(
+                            final SessionFactoryImplementor factory) {
+                        return Collections.emptyList();
+                    }
+
+                    @Override
+                    public IdentifierGenerator getIdentifierGenerator(final String rootEntityName) {
+                        return null;
+                    }
+                },
+                new ShardStrategyDefaultMock() {
+                    @Override
+                    public ShardResolutionStrategy getShardResolutionStrategy() {
+                        return resolutionStrategy;
+                    }
+                },
+                Collections.<Class<?>>emptySet(),
+                false);
+        final List<Shard> shards = ssi.getShards();
+
+        final Map<Shard, List<Serializable>> idsByShard =
+                ssi.groupIdsByShard(Object.class, Lists.<Integer>newArrayList(4, 3, 2, 4, null, 0, -1));
+        assertEquals(Lists.newArrayList(shards.get(1), shards.get(0)), Lists.newArrayList(idsByShard.keySet()));
+        // ids 1 and 2 resolve to virtual shards of the same physical shard
+        assertEquals(Lists.<Serializable>newArrayList(4, 2, -1), idsByShard.get(shards.get(1)));
+        assertEquals(Lists.<Serializable>newArrayList(3, 0, -1), idsByShard.get(shards.get(0)));
+    }
+
+    public void testGetAllRejectsIdOfWrongType() {
+        final ShardedSessionImpl ssi = new ShardedSessionImpl(
+                new ShardedSessionFactoryDefaultMock() {
+                    @Override
+                    public Map<SessionFactoryImplementor, Set<ShardId>> getSessionFactoryShardIdMap() {
+                        return Collections.<SessionFactoryImplementor, Set<ShardId>>singletonMap(
+                                new SessionFactoryDefaultMock(), Sets.newHashSet(new ShardId(0)));
+                    }
+
+                    @Override
+                    public List<SessionFactoryImplementor> getReplicaSessionFactories(
+                            final SessionFactoryImplementor factory) {
+                        return Collections.emptyList();
+                    }
+
+                    @Override
+                    public IdentifierGenerator getIdentifierGenerator(final String rootEntityName) {
+                        return null;
+                    }
+
+                    @Override
+                    public ClassMetadata getClassMetadata(final Class persistentClass) {
+                        return new ClassMetadataDefaultMock() {
+                            @Override
+                            public String getIdentifierPropertyName() {
+                                return "id";
+                            }
+
+                            @Override
+                            public Type getIdentifierType() {
+                                return LongType.INSTANCE;
+                            }
+                        };
+                    }
+                },
+                new ShardStrategyDefaultMock(),
+                Collections.<Class<?>>emptySet(),
+                false);
+        try {
+            ssi.getAll(Object.class, Lists.<Serializable>newArrayList(1L, 2));
+            fail();
+        } catch (TypeMismatchException e) {
+            // good
+        }
+    }
+
     public void testFinalizeOnOpenSession() throws Throwable {
         final boolean[] closeCalled = {false};
         ShardedSessionImpl ssi = new MyShardedSessionImpl() {
@@ -18,15 +18,327 @@
 
 package org.hibernate.shards.strategy.access;
 
+import org.hibernate.HibernateException;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.ShardOperation;
+import org.hibernate.shards.ShardOperationDefaultMock;
+import org.hibernate.shards.defaultmock.SessionDefaultMock;
+import org.hibernate.shards.query.ExitOperationsQueryCollector;
+import org.hibernate.shards.strategy.exit.ConcatenateListsExitStrategy;
+import org.hibernate.shards.strategy.exit.ExitOperationsCollector;
+import org.hibernate.shards.util.Lists;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 /**
  * @author maxr@google.com (Max Ross)
  */
 public class ParallelShardAccessStrategyTest {
 
+    private ThreadPoolExecutor executor;
+
+    // keeps the slow shard busy until the test is over
+    private CountDownLatch slowShardLatch;
+
+    private final Shard fastShard = new NamedShard("fast");
+
+    private final Shard slowShard = new NamedShard("slow");
+
+    // set once the slow shard's operation has returned
+    private volatile boolean slowShardReturned;
+
+    @Before
+    public void setUp() {
+        executor = new ThreadPoolExecutor(2, 2, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        slowShardLatch = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        slowShardLatch.countDown();
+        executor.shutdownNow();
+    }
+
     @Test(expected = NullPointerException.class)
     public void testCtor() {
         new ParallelShardAccessStrategy(null);
     }
+
+    @Test(expected = HibernateException.class)
+    public void testTimeoutFails() {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(
+                executor, 100, 0, TimeUnit.MILLISECONDS, ShardAccessTimeoutPolicy.FAIL);
+        strategy.apply(
+                Lists.newArrayList(fastShard, slowShard),
+                new SlowShardOperation(),
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+    }
+
+    @Test
+    public void testTimeoutReturnsAvailableResults() {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(
+                executor, 100, 0, TimeUnit.MILLISECONDS, ShardAccessTimeoutPolicy.RETURN_AVAILABLE_RESULTS);
+        final List<Object> results = strategy.apply(
+                Lists.newArrayList(fastShard, slowShard),
+                new SlowShardOperation(),
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+        assertEquals(Collections.<Object>singletonList("fast"), results);
+    }
+
+    @Test
+    public void testTimeoutCancelsAndWaitsForSlowShard() {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(
+                executor, 100, 0, TimeUnit.MILLISECONDS, ShardAccessTimeoutPolicy.RETURN_AVAILABLE_RESULTS);
+        strategy.apply(
+                Lists.newArrayList(fastShard, slowShard),
+                new SlowShardOperation(),
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+        // nothing uses the Session of the slow shard anymore
+        assertTrue(slowShardReturned);
+    }
+
+    @Test
+    public void testApplyAsyncTimeoutCancelsAndWaitsForSlowShard() throws Exception {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(
+                executor, 100, 0, TimeUnit.MILLISECONDS, ShardAccessTimeoutPolicy.FAIL);
+        final Future<List<Object>> future = strategy.applyAsync(
+                Lists.newArrayList(fastShard, slowShard),
+                new SlowShardOperation(),
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof HibernateException);
+        }
+        assertTrue(slowShardReturned);
+    }
+
+    @Test
+    public void testDeadlineIsVisibleToShardOperation() {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(
+                executor, 0, 5, TimeUnit.SECONDS, ShardAccessTimeoutPolicy.FAIL);
+        final ShardOperation<List<Object>> operation = new ShardOperationDefaultMock<List<Object>>() {
+            @Override
+            public List<Object> execute(final Shard shard) {
+                return Collections.<Object>singletonList(
+                        ShardAccessDeadline.getCurrentDeadline().getShardTimeoutSeconds());
+            }
+
+            @Override
+            public String getOperationName() {
+                return "timeout";
+            }
+        };
+        final List<Object> results = strategy.apply(
+                Lists.newArrayList(fastShard),
+                operation,
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+        assertEquals(Collections.<Object>singletonList(5), results);
+        // the deadline doesn't leak into the calling thread
+        assertNull(ShardAccessDeadline.getCurrentDeadline());
+    }
+
+    @Test
+    public void testApplyAsyncCompilesOnShardThread() throws Exception {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(executor);
+        final ThreadRecordingExitStrategy exitStrategy = new ThreadRecordingExitStrategy();
+        final Future<List<Object>> future = strategy.applyAsync(
+                Lists.newArrayList(fastShard, slowShard),
+                new SlowShardOperation(),
+                exitStrategy,
+                new ExitOperationsQueryCollector());
+        // the slow shard hasn't answered yet
+        assertFalse(future.isDone());
+        slowShardLatch.countDown();
+        final List<Object> results = future.get(5, TimeUnit.SECONDS);
+        assertEquals(2, results.size());
+        assertTrue(results.contains("fast"));
+        assertTrue(results.contains("slow"));
+        assertNotSame(Thread.currentThread(), exitStrategy.compilingThread);
+    }
+
+    @Test
+    public void testApplyAsyncWithoutShards() throws Exception {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(executor);
+        final Future<List<Object>> future = strategy.applyAsync(
+                Collections.<Shard>emptyList(),
+                new SlowShardOperation(),
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+        assertTrue(future.isDone());
+        assertTrue(future.get().isEmpty());
+    }
+
+    @Test
+    public void testCancelApplyAsync() {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(executor);
+        final Future<List<Object>> future = strategy.applyAsync(
+                Lists.newArrayList(fastShard, slowShard),
+                new SlowShardOperation(),
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void testApplyAsyncReturnsAvailableResultsAtDeadline() throws Exception {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(
+                executor, 100, 0, TimeUnit.MILLISECONDS, ShardAccessTimeoutPolicy.RETURN_AVAILABLE_RESULTS);
+        final Future<List<Object>> future = strategy.applyAsync(
+                Lists.newArrayList(fastShard, slowShard),
+                new SlowShardOperation(),
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+        // the slow shard never answers before the Future completes
+        assertEquals(Collections.<Object>singletonList("fast"), future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testApplyAsyncTimeoutFails() throws Exception {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(
+                executor, 100, 0, TimeUnit.MILLISECONDS, ShardAccessTimeoutPolicy.FAIL);
+        final Future<List<Object>> future = strategy.applyAsync(
+                Lists.newArrayList(fastShard, slowShard),
+                new SlowShardOperation(),
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof HibernateException);
+        }
+    }
+
+    @Test
+    public void testApplyAsyncDoesNotFailWhenEveryShardAnswered() throws Exception {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(
+                executor, 100, 0, TimeUnit.MILLISECONDS, ShardAccessTimeoutPolicy.FAIL);
+        slowShardLatch.countDown();
+        final Future<List<Object>> future = strategy.applyAsync(
+                Lists.newArrayList(fastShard, slowShard),
+                new SlowShardOperation(),
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+        assertEquals(2, future.get(5, TimeUnit.SECONDS).size());
+        // the deadline passing afterwards changes nothing
+        Thread.sleep(200);
+        assertEquals(2, future.get().size());
+    }
+
+    @Test
+    public void testApplyAsyncPropagatesShardFailure() throws Exception {
+        final ParallelShardAccessStrategy strategy = new ParallelShardAccessStrategy(executor);
+        final RuntimeException failure = new RuntimeException("fast shard failed");
+        final Future<List<Object>> future = strategy.applyAsync(
+                Lists.newArrayList(fastShard, slowShard),
+                new SlowShardOperation() {
+                    @Override
+                    public List<Object> execute(final Shard shard) {
+                        if (shard == fastShard) {
+                            throw failure;
+                        }
+                        return super.execute(shard);
+                    }
+                },
+                new ConcatenateListsExitStrategy(),
+                new ExitOperationsQueryCollector());
+        // completes without waiting for the slow shard
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    private static final class ThreadRecordingExitStrategy extends ConcatenateListsExitStrategy {
+
+        private volatile Thread compilingThread;
+
+        @Override
+        public List<Object> compileResults(final ExitOperationsCollector exitOperationsCollector) {
+            compilingThread = Thread.currentThread();
+            return super.compileResults(exitOperationsCollector);
+        }
+    }
+
+    private class SlowShardOperation extends ShardOperationDefaultMock<List<Object>> {
+
+        @Override
+        public List<Object> execute(final Shard shard) {
+            if (shard == slowShard) {
+                try {
+                    slowShardLatch.await();
+                } catch (InterruptedException e) {
+                    // fall through and answer
+                }
+                slowShardReturned = true;
+            }
+            return Collections.<Object>singletonList(shard.toString());
+        }
+
+        @Override
+        public String getOperationName() {
+            return "slow";
+        }
+    }
+
+    private final class NamedShard extends ShardDefaultMock {
+
+        private final String name;
+
+        // cancelling the statement of the slow shard lets it answer
+        private final org.hibernate.classic.Session session = new SessionDefaultMock() {
+            @Override
+            public void cancelQuery() {
+                slowShardLatch.countDown();
+            }
+        };
+
+        private NamedShard(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public org.hibernate.classic.Session getSession() {
+            return session;
+        }
+
+        @Override
+        public org.hibernate.classic.Session getReadSession() {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
 }
@@ -24,6 +24,7 @@ import org.hibernate.shards.strategy.exit.ExitOperationsCollector;
 import org.hibernate.shards.strategy.exit.ExitStrategy;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * @author maxr@google.com (Max Ross)
@@ -34,4 +35,9 @@ public class ShardAccessStrategyDefaultMock implements ShardAccessStrategy {
       ExitStrategy<T> exitStrategy, ExitOperationsCollector exitOperationsCollector) {
     throw new UnsupportedOperationException();
   }
+
+  public <T> Future<T> applyAsync(List<Shard> shards, ShardOperation<T> operation,
+      ExitStrategy<T> exitStrategy, ExitOperationsCollector exitOperationsCollector) {
+    throw new UnsupportedOperationException();
+  }
 }
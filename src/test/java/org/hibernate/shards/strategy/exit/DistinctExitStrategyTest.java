@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.query.ExitOperationsQueryCollector;
+import org.hibernate.shards.util.Lists;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DistinctExitStrategyTest {
+
+    private final Shard shard = new ShardDefaultMock();
+
+    @Test
+    public void testDistinctExitOperation() {
+        final List<Object> results = new DistinctExitOperation(Projections.distinct(Projections.property("name")))
+                .apply(Arrays.<Object>asList("b", null, "a", "b", new Object[]{1, "x"}, "a", new Object[]{1, "x"}));
+        assertEquals(3, results.size());
+        assertEquals("b", results.get(0));
+        assertEquals("a", results.get(1));
+        assertArrayEquals(new Object[]{1, "x"}, (Object[]) results.get(2));
+    }
+
+    @Test
+    public void testRemovesDuplicatesAcrossShards() {
+        final DistinctExitStrategy strategy = new DistinctExitStrategy(new ConcatenateListsExitStrategy());
+        assertFalse(strategy.addResult(Arrays.<Object>asList("a", "b", null), shard));
+        assertFalse(strategy.addResult(Arrays.<Object>asList("b", "c"), shard));
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Object[]{"a", 1}, new Object[]{"a", 1}), shard));
+        final List<Object> results = strategy.compileResults(new ExitOperationsQueryCollector());
+        assertEquals(4, results.size());
+        assertEquals(Lists.<Object>newArrayList("a", "b", "c"), results.subList(0, 3));
+    }
+
+    @Test
+    public void testStopsAtLimitOfDistinctResults() {
+        final DistinctExitStrategy strategy = new DistinctExitStrategy(new LimitedConcatenateListsExitStrategy(3));
+        assertFalse(strategy.addResult(Arrays.<Object>asList("a", "b"), shard));
+        // only one of these is new
+        assertFalse(strategy.addResult(Arrays.<Object>asList("a", "b"), shard));
+        assertTrue(strategy.addResult(Arrays.<Object>asList("b", "c", "d"), shard));
+        assertEquals(Lists.<Object>newArrayList("a", "b", "c"),
+                strategy.compileResults(new ExitOperationsQueryCollector()));
+    }
+
+    @Test
+    public void testDistinctTopN() {
+        final List<InMemoryOrderBy> byFirstColumn =
+                Collections.singletonList(new InMemoryOrderBy(null, Order.desc("name")).onProjectionColumn(0));
+        final TopNExitStrategy strategy = new TopNExitStrategy(byFirstColumn, 2, true);
+        strategy.addResult(Arrays.<Object>asList(new Object[]{"c", 1}, new Object[]{"a", 1}), shard);
+        strategy.addResult(Arrays.<Object>asList(new Object[]{"d", 1}, new Object[]{"c", 1}), shard);
+        // dropped from the buffer before, and still can't make the cut
+        strategy.addResult(Arrays.<Object>asList(new Object[]{"a", 1}, new Object[]{"c", 1}), shard);
+        final List<Object> results = strategy.compileResults(new ExitOperationsQueryCollector());
+        assertEquals(2, results.size());
+        assertArrayEquals(new Object[]{"d", 1}, (Object[]) results.get(0));
+        assertArrayEquals(new Object[]{"c", 1}, (Object[]) results.get(1));
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.Order;
+import org.hibernate.engine.HibernateIterator;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.query.ExitOperationsQueryCollector;
+import org.hibernate.shards.util.Lists;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExternalMergeExitStrategyTest {
+
+    private final Shard shard = new ShardDefaultMock();
+
+    private final List<InMemoryOrderBy> byValue =
+            Collections.singletonList(new InMemoryOrderBy(null, Order.asc("value")));
+
+    @Test
+    public void testResultsWithinBudget() {
+        final ExternalMergeExitStrategy strategy = new ExternalMergeExitStrategy(byValue, 10, null);
+        strategy.addResult(Arrays.<Object>asList(new Value(3), new Value(5)), shard);
+        strategy.addResult(Arrays.<Object>asList(new Value(4)), shard);
+        final List<Object> results = strategy.compileResults(new ExitOperationsQueryCollector());
+        assertFalse(results instanceof SpilledResults);
+        assertEquals(Lists.<Object>newArrayList(new Value(3), new Value(4), new Value(5)), results);
+    }
+
+    @Test
+    public void testSpilledResults() {
+        final ExternalMergeExitStrategy strategy = new ExternalMergeExitStrategy(byValue, 2, null);
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Value(1), new Value(6), new Value(8)), shard));
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Value(2), null, new Value(7)), shard));
+        // not sorted the way we compare, so it gets sorted before it's spilled
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Value(5), new Value(3)), shard));
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Value(4)), shard));
+        final List<Object> results = strategy.compileResults(new ExitOperationsQueryCollector());
+        assertTrue(results instanceof SpilledResults);
+
+        final List<Object> expected = Lists.<Object>newArrayList(
+                new Value(1), new Value(2), new Value(3), new Value(4),
+                new Value(5), new Value(6), new Value(7), new Value(8));
+        assertEquals(expected.size(), results.size());
+        assertEquals(expected, Lists.newArrayList(results));
+        assertEquals(new Value(3), results.get(2));
+        assertEquals(new Value(4), results.get(3));
+        assertEquals(new Value(1), results.get(0));
+        assertEquals(new Value(8), results.get(7));
+
+        final HibernateIterator it = ((SpilledResults) results).iterateOnce();
+        assertEquals(new Value(1), it.next());
+        it.close();
+        try {
+            results.iterator();
+            fail();
+        } catch (IllegalStateException e) {
+            // good
+        }
+    }
+
+    @Test(expected = HibernateException.class)
+    public void testResultsThatCannotBeSpilled() {
+        final ExternalMergeExitStrategy strategy = new ExternalMergeExitStrategy(byValue, 0, null);
+        strategy.addResult(Arrays.<Object>asList(new TopNExitStrategyTest.Value(1)), shard);
+    }
+
+    public static final class Value implements Serializable {
+
+        private final int value;
+
+        public Value(final int value) {
+            this.value = value;
+        }
+
+        public Integer getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Value && ((Value) obj).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+}
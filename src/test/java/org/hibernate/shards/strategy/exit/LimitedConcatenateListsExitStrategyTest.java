@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.query.ExitOperationsQueryCollector;
+import org.hibernate.shards.util.Lists;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LimitedConcatenateListsExitStrategyTest {
+
+    private final Shard shard = new ShardDefaultMock();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimit() {
+        new LimitedConcatenateListsExitStrategy(-1);
+    }
+
+    @Test
+    public void testStopsOnceLimitIsReached() {
+        final LimitedConcatenateListsExitStrategy strategy = new LimitedConcatenateListsExitStrategy(3);
+        assertFalse(strategy.addResult(Arrays.<Object>asList(1, null), shard));
+        assertTrue(strategy.addResult(Arrays.<Object>asList(2, 3, 4), shard));
+        // late results are ignored
+        assertTrue(strategy.addResult(Arrays.<Object>asList(5), shard));
+        assertEquals(Lists.<Object>newArrayList(1, 2, 3),
+                strategy.compileResults(new ExitOperationsQueryCollector()));
+    }
+
+    @Test
+    public void testAppliesFirstResultAndMaxResults() {
+        final LimitedConcatenateListsExitStrategy strategy = new LimitedConcatenateListsExitStrategy(3);
+        assertTrue(strategy.addResult(Arrays.<Object>asList(1, 2, 3, 4), shard));
+        final ExitOperationsQueryCollector collector = new ExitOperationsQueryCollector();
+        collector.setFirstResult(1);
+        collector.setMaxResults(2);
+        assertEquals(Lists.<Object>newArrayList(2, 3), strategy.compileResults(collector));
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.Hibernate;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class NumericSumTest {
+
+    @Test
+    public void testTyped() {
+        final NumericSum longSum = NumericSum.forType(Hibernate.LONG);
+        longSum.add(3);
+        longSum.add(null);
+        longSum.add(4L);
+        assertEquals(7L, longSum.getResult());
+
+        final NumericSum doubleSum = NumericSum.forType(Hibernate.DOUBLE);
+        doubleSum.add(1.5f);
+        doubleSum.add(2.5);
+        assertEquals(4.0, doubleSum.getResult());
+
+        final NumericSum decimalSum = NumericSum.forType(Hibernate.BIG_DECIMAL);
+        decimalSum.add(new BigDecimal("0.1"));
+        decimalSum.add(new BigDecimal("0.2"));
+        assertEquals(new BigDecimal("0.3"), decimalSum.getResult());
+
+        assertNull(NumericSum.forType(Hibernate.LONG).getResult());
+    }
+
+    @Test
+    public void testAdaptiveWidens() {
+        NumericSum sum = NumericSum.forType(null);
+        sum.add(1);
+        sum.add(2L);
+        assertEquals(3L, sum.getResult());
+        sum.add(0.5);
+        assertEquals(3.5, sum.getResult());
+
+        sum = NumericSum.forType(null);
+        sum.add(BigInteger.TEN);
+        sum.add(5);
+        assertEquals(BigInteger.valueOf(15), sum.getResult());
+        sum.add(0.5);
+        assertEquals(new BigDecimal("15.5"), sum.getResult());
+    }
+
+    @Test
+    public void testAverage() {
+        final NumericSum sum = NumericSum.forType(Hibernate.BIG_DECIMAL);
+        assertNull(sum.average(0));
+        sum.add(new BigDecimal("10.00"));
+        sum.add(new BigDecimal("0.01"));
+        assertEquals(3.336666666666667, sum.average(3), 0);
+
+        final NumericSum longSum = NumericSum.forType(Hibernate.LONG);
+        longSum.add(5L);
+        assertEquals(2.5, longSum.average(2), 0);
+    }
+}
@@ -103,6 +103,29 @@ public class OrderExitOperationTest extends TestCase {
         assertEquals(1, sortedList.get(4).getValue());
     }
 
+    @SuppressWarnings("unchecked")
+    public void testApplyWithMaxSize() throws Exception {
+        List<Object> data = Lists.newArrayList();
+        data.add(new MyInt(3, "tomislav", null));
+        data.add(null);
+        data.add(new MyInt(1, "bomb", null));
+        data.add(new MyInt(27, "max", null));
+        data.add(new MyInt(2, "maulik", null));
+        data.add(new MyInt(5, "gut", null));
+
+        InMemoryOrderBy imob = new InMemoryOrderBy(null, Order.desc("value"));
+        OrderExitOperation oeo = new OrderExitOperation(Collections.singletonList(imob), 3);
+        List<MyInt> sortedList = (List<MyInt>) (List) oeo.apply(data);
+
+        assertEquals(3, sortedList.size());
+        assertEquals(27, sortedList.get(0).getValue());
+        assertEquals(5, sortedList.get(1).getValue());
+        assertEquals(3, sortedList.get(2).getValue());
+
+        oeo = new OrderExitOperation(Collections.singletonList(imob), 0);
+        assertTrue(oeo.apply(data).isEmpty());
+    }
+
     @SuppressWarnings("unchecked")
     public void testApplySingleNestedOrdering() throws Exception {
         List<Object> data = Lists.newArrayList();
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.criterion.Order;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.query.ExitOperationsQueryCollector;
+import org.hibernate.shards.strategy.exit.TopNExitStrategyTest.Value;
+import org.hibernate.shards.util.Lists;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OrderedMergeExitStrategyTest {
+
+    private final Shard shard = new ShardDefaultMock();
+
+    @Test
+    public void testMerge() {
+        final OrderedMergeExitStrategy strategy = new OrderedMergeExitStrategy(
+                Collections.singletonList(new InMemoryOrderBy(null, Order.asc("value"))));
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Value(1), new Value(4), null, new Value(9)), shard));
+        assertFalse(strategy.addResult(Collections.emptyList(), shard));
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Value(2), new Value(4), new Value(5)), shard));
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Value(0), new Value(10)), shard));
+        assertEquals(
+                Lists.<Object>newArrayList(new Value(0), new Value(1), new Value(2), new Value(4), new Value(4),
+                        new Value(5), new Value(9), new Value(10)),
+                strategy.compileResults(new ExitOperationsQueryCollector()));
+    }
+
+    @Test
+    public void testMergeDescending() {
+        final OrderedMergeExitStrategy strategy = new OrderedMergeExitStrategy(
+                Collections.singletonList(new InMemoryOrderBy(null, Order.desc("value"))));
+        strategy.addResult(Arrays.<Object>asList(new Value(8), new Value(3)), shard);
+        strategy.addResult(Arrays.<Object>asList(new Value(6), new Value(5), new Value(1)), shard);
+        final ExitOperationsQueryCollector collector = new ExitOperationsQueryCollector();
+        collector.setFirstResult(1);
+        collector.setMaxResults(3);
+        assertEquals(Lists.<Object>newArrayList(new Value(6), new Value(5), new Value(3)),
+                strategy.compileResults(collector));
+    }
+
+    @Test
+    public void testNoResults() {
+        final OrderedMergeExitStrategy strategy = new OrderedMergeExitStrategy(
+                Collections.singletonList(new InMemoryOrderBy(null, Order.asc("value"))));
+        final List<Object> results = strategy.compileResults(new ExitOperationsQueryCollector());
+        assertTrue(results.isEmpty());
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.shards.util.Lists;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelMergeSortTest {
+
+    // compares the tens only, so there are lots of ties
+    private static final Comparator<Integer> BY_TENS = new Comparator<Integer>() {
+        @Override
+        public int compare(final Integer i1, final Integer i2) {
+            return Integer.valueOf(i1 / 10).compareTo(i2 / 10);
+        }
+    };
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSort() {
+        for (final int size : new int[]{0, 1, 2, 5, 100, 1001}) {
+            for (final int parallelism : new int[]{1, 2, 3, 4, 7}) {
+                assertSortsLikeCollections(new ParallelMergeSort(executor, parallelism, 0), size);
+            }
+        }
+    }
+
+    @Test
+    public void testSortBelowThreshold() {
+        final Executor failingExecutor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        assertSortsLikeCollections(new ParallelMergeSort(failingExecutor, 4, 1000), 999);
+    }
+
+    @Test
+    public void testSortWithRejectingExecutor() {
+        final Executor rejectingExecutor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        assertSortsLikeCollections(new ParallelMergeSort(rejectingExecutor, 4, 0), 500);
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testComparatorFailure() {
+        final List<Object> list = Lists.<Object>newArrayList(3, "two", 1, 4);
+        new ParallelMergeSort(executor, 2, 0).sort(list, new Comparator<Object>() {
+            @Override
+            public int compare(final Object o1, final Object o2) {
+                return ((Integer) o1).compareTo((Integer) o2);
+            }
+        });
+    }
+
+    private static void assertSortsLikeCollections(final ParallelMergeSort mergeSort, final int size) {
+        final Random random = new Random(size);
+        final List<Integer> list = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            list.add(random.nextInt(size * 2 + 1));
+        }
+        final List<Integer> expected = Lists.newArrayList(list);
+        // Collections.sort is stable, so this also checks that the merge sort is
+        Collections.sort(expected, BY_TENS);
+        mergeSort.sort(list, BY_TENS);
+        assertEquals(expected, list);
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PartialAggregateExitOperationTest {
+
+    @Test
+    public void testCombinesColumns() {
+        final PartialAggregateExitOperation op = new PartialAggregateExitOperation(Arrays.asList(
+                PartialAggregates.count(),
+                PartialAggregates.sum(),
+                PartialAggregates.min(),
+                PartialAggregates.max(),
+                PartialAggregates.avg()));
+        // count, sum, min, max, then the sum and count of the average
+        final List<Object> results = op.apply(Arrays.<Object>asList(
+                new Object[]{3L, 10L, "b", 7, 6.0, 3L},
+                null,
+                new Object[]{0L, null, null, null, null, 0L},
+                new Object[]{1L, 5L, "a", 2, 4.0, 1L}));
+        assertEquals(1, results.size());
+        assertArrayEquals(new Object[]{4L, 15L, "a", 7, 2.5}, (Object[]) results.get(0));
+    }
+
+    @Test
+    public void testSingleColumn() {
+        final PartialAggregateExitOperation op =
+                new PartialAggregateExitOperation(Collections.singletonList(PartialAggregates.sum()));
+        assertEquals(Collections.<Object>singletonList(new BigDecimal("3.50")),
+                op.apply(Arrays.<Object>asList(new BigDecimal("1.25"), new BigDecimal("2.25"))));
+    }
+
+    @Test
+    public void testNoRows() {
+        final PartialAggregateExitOperation op = new PartialAggregateExitOperation(Arrays.asList(
+                PartialAggregates.count(), PartialAggregates.sum(), PartialAggregates.avg()));
+        final Object[] row = (Object[]) op.apply(Collections.emptyList()).get(0);
+        assertEquals(0L, row[0]);
+        assertNull(row[1]);
+        assertNull(row[2]);
+    }
+
+    @Test
+    public void testSumKeepsType() {
+        final PartialAggregateExitOperation op =
+                new PartialAggregateExitOperation(Collections.singletonList(PartialAggregates.sum()));
+        assertEquals(5.5, op.apply(Arrays.<Object>asList(2.5, 3.0)).get(0));
+        assertEquals(new BigDecimal("4.5"), op.apply(Arrays.<Object>asList(1L, new BigDecimal("3.5"))).get(0));
+    }
+
+    @Test
+    public void testGroups() {
+        final PartialAggregateExitOperation op = new PartialAggregateExitOperation(Arrays.asList(
+                PartialAggregates.group(), PartialAggregates.count(), PartialAggregates.avg()));
+        // group, count, then the sum and count of the average
+        final List<Object> results = op.apply(Arrays.<Object>asList(
+                new Object[]{"a", 2L, 6.0, 2L},
+                new Object[]{"b", 1L, 1.0, 1L},
+                new Object[]{"a", 1L, 3.0, 1L},
+                new Object[]{null, 1L, 5.0, 1L}));
+        assertEquals(3, results.size());
+        assertArrayEquals(new Object[]{"a", 3L, 3.0}, (Object[]) results.get(0));
+        assertArrayEquals(new Object[]{"b", 1L, 1.0}, (Object[]) results.get(1));
+        assertArrayEquals(new Object[]{null, 1L, 5.0}, (Object[]) results.get(2));
+    }
+
+    @Test
+    public void testGroupsWithoutRows() {
+        final PartialAggregateExitOperation op = new PartialAggregateExitOperation(Arrays.asList(
+                PartialAggregates.group(), PartialAggregates.count()));
+        assertTrue(op.apply(Collections.emptyList()).isEmpty());
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.PropertyNotFoundException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PropertyPathAccessorTest {
+
+    private static class Node {
+
+        // only accessible through the field
+        private final int weight;
+        private final String label;
+        private Node child;
+
+        Node(final int weight, final String label) {
+            this.weight = weight;
+            this.label = label;
+        }
+
+        // the getter is preferred over the field
+        private String getLabel() {
+            return "label:" + label;
+        }
+
+        boolean isLeaf() {
+            return child == null;
+        }
+    }
+
+    private static class SubNode extends Node {
+
+        SubNode(final int weight, final String label) {
+            super(weight, label);
+        }
+    }
+
+    @Test
+    public void testGetPath() {
+        assertEquals("child.weight", PropertyPathAccessor.forPath("child.weight").getPath());
+    }
+
+    @Test
+    public void testGetValue() {
+        final Node node = new SubNode(3, "parent");
+        node.child = new Node(5, "child");
+
+        assertEquals(3, PropertyPathAccessor.forPath("weight").getValue(node));
+        assertEquals("label:parent", PropertyPathAccessor.forPath("label").getValue(node));
+        assertEquals(false, PropertyPathAccessor.forPath("leaf").getValue(node));
+        assertEquals(5, PropertyPathAccessor.forPath("child.weight").getValue(node));
+        assertEquals("label:child", PropertyPathAccessor.forPath("child.label").getValue(node));
+        assertEquals(true, PropertyPathAccessor.forPath("child.leaf").getValue(node));
+
+        // same path, different classes along the way
+        assertEquals(5, PropertyPathAccessor.forPath("weight").getValue(node.child));
+    }
+
+    @Test
+    public void testGetValueWithNulls() {
+        final Node node = new Node(3, "parent");
+        assertNull(PropertyPathAccessor.forPath("child.weight").getValue(node));
+        assertNull(PropertyPathAccessor.forPath("weight").getValue(null));
+    }
+
+    @Test(expected = PropertyNotFoundException.class)
+    public void testGetValueOfMissingProperty() {
+        PropertyPathAccessor.forPath("doesNotExist").getValue(new Node(1, "node"));
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.exit;
+
+import org.hibernate.criterion.Order;
+import org.hibernate.shards.Shard;
+import org.hibernate.shards.ShardDefaultMock;
+import org.hibernate.shards.criteria.InMemoryOrderBy;
+import org.hibernate.shards.query.ExitOperationsQueryCollector;
+import org.hibernate.shards.util.Lists;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TopNExitStrategyTest {
+
+    private final Shard shard = new ShardDefaultMock();
+
+    private final List<InMemoryOrderBy> byValue =
+            Collections.singletonList(new InMemoryOrderBy(null, Order.asc("value")));
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSize() {
+        new TopNExitStrategy(byValue, -1);
+    }
+
+    @Test
+    public void testKeepsFirstResults() {
+        final TopNExitStrategy strategy = new TopNExitStrategy(byValue, 3);
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Value(4), new Value(9), null), shard));
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Value(1), new Value(7)), shard));
+        assertFalse(strategy.addResult(Arrays.<Object>asList(new Value(2)), shard));
+        final ExitOperationsQueryCollector collector = new ExitOperationsQueryCollector();
+        collector.setFirstResult(1);
+        collector.setMaxResults(2);
+        assertEquals(Lists.<Object>newArrayList(new Value(2), new Value(4)), strategy.compileResults(collector));
+    }
+
+    public static final class Value {
+
+        private final int value;
+
+        public Value(final int value) {
+            this.value = value;
+        }
+
+        public Integer getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Value && ((Value) obj).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2007 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+
+package org.hibernate.shards.strategy.resolution;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IdentifierShardResolverTest {
+
+    @Test
+    public void testToIdentifier() {
+        assertEquals(3L, IdentifierShardResolver.toIdentifier(3, Long.class));
+        assertEquals(3, IdentifierShardResolver.toIdentifier(3L, Integer.class));
+        assertEquals(BigInteger.TEN, IdentifierShardResolver.toIdentifier(10L, BigInteger.class));
+        assertEquals("a", IdentifierShardResolver.toIdentifier("a", String.class));
+        assertNull(IdentifierShardResolver.toIdentifier(Long.MAX_VALUE, Integer.class));
+        assertNull(IdentifierShardResolver.toIdentifier("3", Long.class));
+    }
+}
@@ -40,6 +40,7 @@ public class ShardedTransactionImplTest extends TestCase {
 
   private ShardedTransactionImpl sti;
   private TransactionStub transaction1;
+  private List<Shard> shards;
 
   private class TransactionStub extends ShardedTransactionDefaultMock {
     public boolean fail = false;
@@ -103,6 +104,7 @@ public class ShardedTransactionImplTest extends TestCase {
 
   private static class MockShard extends ShardDefaultMock {
     private Session session;
+    private boolean transactionActive;
 
     MockShard(Session s) {
       session = s;
@@ -112,6 +114,16 @@ public class ShardedTransactionImplTest extends TestCase {
     public Session getSession() {
       return session;
     }
+
+    @Override
+    public void setTransactionActive(boolean active) {
+      transactionActive = active;
+    }
+
+    @Override
+    public boolean isTransactionActive() {
+      return transactionActive;
+    }
   }
 
   private static class MockShardedSessionImplementor extends ShardedSessionImplementorDefaultMock {
@@ -132,7 +144,7 @@ public class ShardedTransactionImplTest extends TestCase {
     TransactionStub transaction1
         = new TransactionStub();
     this.transaction1 = new TransactionStub();
-    List<Shard> shards = Lists.newArrayList();
+    shards = Lists.newArrayList();
     shards.add(new MockShard(new MockSession(transaction1)));
     shards.add(new MockShard(new MockSession(this.transaction1)));
     sti = new ShardedTransactionImpl(new MockShardedSessionImplementor(shards));
@@ -243,6 +255,25 @@ public class ShardedTransactionImplTest extends TestCase {
     }
   }
 
+  public void testShardsReadFromPrimaryWhileActive() {
+    assertFalse(isTransactionActiveOnShards());
+    sti.begin();
+    assertTrue(isTransactionActiveOnShards());
+    sti.commit();
+    assertFalse(isTransactionActiveOnShards());
+
+    sti.begin();
+    assertTrue(isTransactionActiveOnShards());
+    sti.rollback();
+    assertFalse(isTransactionActiveOnShards());
+  }
+
+  private boolean isTransactionActiveOnShards() {
+    boolean active = shards.get(0).isTransactionActive();
+    assertEquals(active, shards.get(1).isTransactionActive());
+    return active;
+  }
+
   public void testRollbackWithOneFailedTransaction() {
     sti.begin();
     transaction1.fail = true;